@@ -0,0 +1,83 @@
+package com.calculator.bench; // This file belongs to the 'com.calculator.bench' package.
+
+import com.calculator.engine.CalculatorEngine; // The code we are measuring.
+import com.calculator.engine.CompiledExpression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// This is the JMH version of EngineBenchmark's main scenarios (see bench/pom.xml for how to build
+// and run it). JMH takes care of what a hand-written loop can't: every benchmark runs in fresh
+// JVMs (forks), results go into a Blackhole so the JIT can't remove the work, and the numbers come
+// with error bars. It reports throughput (ops/s) and average time (ns/op); the GC profiler (on by
+// default, see 'main') adds the allocation rate (gc.alloc.rate.norm is bytes per operation).
+//   - parseAndEval: engine.evaluate(String), i.e. lexer + parser + optimizer + run, every time.
+//   - eval: engine.evaluate(CompiledExpression), i.e. only running the compiled program.
+// The scenarios are exactly EngineBenchmark.scenarios(): short arithmetic, deep nesting,
+// function-heavy, variable-heavy and a very long input.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineJmh {
+
+    @Param({"short-arithmetic", "deep-nesting", "function-heavy", "variable-heavy", "long-input"})
+    public String scenario;
+
+    private CalculatorEngine engine;
+    private String expression;
+    private CompiledExpression compiled;
+
+    @Setup
+    public void setUp() {
+        engine = new CalculatorEngine();
+        // The same variables as EngineBenchmark, so "variable-heavy" computes the same numbers.
+        engine.storeVariable("A", 1.5);
+        engine.storeVariable("B", -2.25);
+        engine.storeVariable("C", 3.0);
+        engine.storeVariable("D", 0.5);
+        engine.storeVariable("E", 7.0);
+        engine.storeVariable("F", 11.0);
+        engine.storeVariable("X", 0.25);
+        engine.setM(4.0);
+
+        for (EngineBenchmark.Scenario s : EngineBenchmark.scenarios()) {
+            if (s.name.equals(scenario)) expression = s.expression;
+        }
+        if (expression == null) throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        compiled = engine.compile(expression);
+    }
+
+    @Benchmark
+    public double parseAndEval() {
+        return engine.evaluate(expression); // Returning the result hands it to JMH's Blackhole.
+    }
+
+    @Benchmark
+    public double eval() {
+        return engine.evaluate(compiled);
+    }
+
+    // Runs the benchmarks like org.openjdk.jmh.Main (all its options work), with the GC profiler added.
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -1,5 +1,8 @@
 package com.calculator; // This file belongs to the 'com.calculator' package.
 
+import com.calculator.batch.BatchRunner; // The headless (no window) mode.
+import com.calculator.batch.StatRunner; // Statistics of big CSV files, without a window.
+import com.calculator.server.CalculatorServer; // The local network service mode.
 import com.calculator.ui.CalculatorUI; // We need to import the CalculatorUI class from its package.
 import javax.swing.SwingUtilities; // We need this to safely create the UI.
 
@@ -8,6 +11,21 @@ public class Main {
     // This 'main' method is the entry point for Java.
     public static void main(String[] args) { 
         
+        // "--batch [--threads N] [--decimal DIGITS] [input [output]]" evaluates a file line by line without a window.
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchRunner.runFromArgs(args));
+        }
+
+        // "--stat [--threads N] [--x COLUMN] [--y COLUMN] FILE [EXPRESSION ...]" prints statistics of a CSV file.
+        if (args.length > 0 && args[0].equals("--stat")) {
+            System.exit(StatRunner.runFromArgs(args));
+        }
+
+        // "--server [port]" runs the engine as a service on localhost instead of opening a window.
+        if (args.length > 0 && args[0].equals("--server")) {
+            System.exit(CalculatorServer.runFromArgs(args));
+        }
+
         // This makes sure our window (JFrame) is created on a safe thread.
         SwingUtilities.invokeLater(new Runnable() { 
             public void run() {
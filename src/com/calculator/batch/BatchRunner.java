@@ -0,0 +1,200 @@
+package com.calculator.batch; // This file belongs to the 'com.calculator.batch' package.
+
+import com.calculator.engine.AdaptivePrecision; // For the most digits '--decimal' allows.
+import com.calculator.engine.CalculatorEngine; // We need the engine to do the math.
+import com.calculator.engine.ExpressionCache; // For the cache policy.
+import com.calculator.engine.NumberFormatter; // Turns the results into text.
+
+import java.io.BufferedReader; // Reads the input in big buffered blocks.
+import java.io.BufferedWriter; // Writes the output in big buffered blocks.
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.MathContext; // How many digits '--decimal' answers are correct to.
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets; // Expressions contain 'π' and '√', so we always use UTF-8.
+import java.util.ArrayDeque; // A queue of chunks that are still being worked on.
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder; // A counter many threads can bump without waiting.
+
+// This class runs the calculator without a window: it reads one expression per line
+// and writes one answer per line, in the same order.
+// Memory use stays the same no matter how big the file is: we only ever hold a few
+// chunks of lines at a time. With more than one thread, chunks are evaluated in
+// parallel, but they are always written out in input order.
+// OOP Concept: Abstraction. Main just calls 'run' and doesn't care how the lines flow.
+public class BatchRunner {
+
+    private static final int CHUNK_LINES = 1024; // Lines handed to a worker at once.
+    private static final int BUFFER_SIZE = 1 << 16; // 64 KB read/write buffers.
+
+    private final CalculatorEngine engine; // Shared by all workers (the engine is thread-safe).
+    private final int threads; // How many worker threads to use (1 = no pool).
+    private volatile boolean decimal; // true = exact decimal answers (engine.evaluateDecimal).
+    private final LongAdder lines = new LongAdder(); // How many lines we have processed.
+    private final LongAdder errors = new LongAdder(); // How many of them were errors.
+
+    public BatchRunner(CalculatorEngine engine, int threads) {
+        this.engine = engine;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Getters for the summary counters.
+    public long getLines() { return this.lines.sum(); }
+    public long getErrors() { return this.errors.sum(); }
+
+    // Turns the decimal mode on or off. When it is on, every line is evaluated with
+    // engine.evaluateDecimal, so "0.1+0.2" gives "0.3" (correct to the engine's
+    // getAdaptivePrecision().getMathContext() digits) instead of "0.30000000000000004".
+    public void setDecimal(boolean decimal) {
+        this.decimal = decimal;
+    }
+
+    // This is called from Main for "--batch [--threads N] [--decimal DIGITS] [input [output]]".
+    // A missing file name (or "-") means standard input / standard output.
+    // "--decimal DIGITS" turns on the decimal mode with answers correct to DIGITS digits.
+    // Returns the exit code for the program.
+    public static int runFromArgs(String[] args) {
+        int threads = 1;
+        int digits = 0; // 0 = the normal double answers.
+        String inName = "-", outName = "-";
+        int fileArgs = 0;
+        try {
+            for (int i = 1; i < args.length; i++) { // args[0] is "--batch".
+                if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--decimal") && i + 1 < args.length) {
+                    digits = Integer.parseInt(args[++i]);
+                    if (digits < 1 || digits > AdaptivePrecision.MAX_DIGITS) throw new IllegalArgumentException("Bad digits");
+                } else if (fileArgs == 0) {
+                    inName = args[i]; fileArgs++;
+                } else if (fileArgs == 1) {
+                    outName = args[i]; fileArgs++;
+                } else {
+                    throw new IllegalArgumentException("Too many file names");
+                }
+            }
+        } catch (IllegalArgumentException e) { // Also a NumberFormatException, e.g. "--threads abc".
+            System.err.println("Usage: --batch [--threads N] [--decimal DIGITS] [input [output]]");
+            return 2;
+        }
+
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.enableCache(4096, ExpressionCache.Policy.LRU); // Repeated lines skip the parser.
+        BatchRunner runner = new BatchRunner(engine, threads);
+        if (digits > 0) {
+            engine.getAdaptivePrecision().setMathContext(new MathContext(digits, RoundingMode.HALF_EVEN)); // The same rounding as the default.
+            runner.setDecimal(true);
+        }
+        long start = System.nanoTime();
+        try (InputStream in = inName.equals("-") ? System.in : new FileInputStream(inName);
+             OutputStream out = outName.equals("-") ? System.out : new FileOutputStream(outName)) {
+            runner.run(in, out);
+        } catch (IOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 1;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.err.println("Evaluated " + runner.getLines() + " lines (" + runner.getErrors() + " errors) in " + millis + " ms");
+        return 0;
+    }
+
+    // Reads every line from 'in' and writes its answer to 'out'.
+    public void run(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (threads == 1) runSerial(reader, writer);
+        else runParallel(reader, writer);
+        writer.flush();
+    }
+
+    // One thread: read a line, evaluate it, write it.
+    private void runSerial(BufferedReader reader, BufferedWriter writer) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            writer.write(evaluateLine(line));
+            writer.newLine();
+        }
+    }
+
+    // Many threads: read chunks of lines and give each chunk to the pool.
+    // We keep at most 'threads * 2' chunks in flight and always write the oldest one first,
+    // so the output order matches the input order and memory stays bounded.
+    private void runParallel(BufferedReader reader, BufferedWriter writer) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<String[]>> inFlight = new ArrayDeque<Future<String[]>>();
+        try {
+            String[] chunk;
+            while ((chunk = readChunk(reader)) != null) {
+                final String[] work = chunk;
+                inFlight.addLast(pool.submit(new Callable<String[]>() {
+                    public String[] call() {
+                        for (int i = 0; i < work.length; i++) work[i] = evaluateLine(work[i]); // Answers replace the lines.
+                        return work;
+                    }
+                }));
+                if (inFlight.size() >= threads * 2) writeChunk(inFlight.removeFirst(), writer); // Wait for the oldest.
+            }
+            while (!inFlight.isEmpty()) writeChunk(inFlight.removeFirst(), writer); // Drain the rest.
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Reads up to CHUNK_LINES lines, or returns null at the end of the input.
+    private static String[] readChunk(BufferedReader reader) throws IOException {
+        String[] chunk = new String[CHUNK_LINES];
+        int count = 0;
+        String line;
+        while (count < CHUNK_LINES && (line = reader.readLine()) != null) chunk[count++] = line;
+        if (count == 0) return null;
+        return count == CHUNK_LINES ? chunk : Arrays.copyOf(chunk, count);
+    }
+
+    // Waits for one chunk to finish and writes its answers.
+    private void writeChunk(Future<String[]> future, BufferedWriter writer) throws IOException {
+        String[] answers;
+        try {
+            answers = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        for (String answer : answers) {
+            writer.write(answer);
+            writer.newLine();
+        }
+    }
+
+    // Evaluates one line and turns the answer (or the error) into text.
+    // Every line is independent: one bad line never stops the run.
+    private String evaluateLine(String line) {
+        lines.increment();
+        if (line.trim().isEmpty()) return ""; // Keep blank lines blank.
+        try {
+            if (decimal) return NumberFormatter.format(engine.evaluateDecimal(line));
+            return format(engine.evaluate(line));
+        } catch (RuntimeException e) {
+            errors.increment();
+            // Show the same simple message the calculator display shows (e.g. "Syntax Error").
+            return e.getMessage() == null ? "Error" : e.getMessage().replace("java.lang.RuntimeException: ", "");
+        }
+    }
+
+    // Formats a result like the calculator display (no ".0" for whole numbers, otherwise the
+    // shortest text that reads back as the same double).
+    public static String format(double result) {
+        return NumberFormatter.format(result);
+    }
+}
@@ -0,0 +1,197 @@
+package com.calculator.batch; // This file belongs to the 'com.calculator.batch' package.
+
+import com.calculator.engine.CalculatorEngine; // Where the results are stored (A..F).
+import com.calculator.engine.StatAccumulator; // Collects the statistics in one pass.
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// This class computes statistics of a column (or of two columns) of a big CSV file.
+// The file is cut into byte ranges; each range is read by its own thread into its own
+// StatAccumulator, and the accumulators are merged in file order at the end. A range owns the
+// lines that start inside it, so every line is read exactly once.
+// Memory use doesn't depend on the file size: only one line per thread is held at a time.
+// Lines whose column isn't a number (e.g. a header) are skipped and counted.
+// OOP Concept: Abstraction. Callers get one StatAccumulator; the splitting is hidden here.
+public class StatRunner {
+
+    private static final int BUFFER_SIZE = 1 << 16; // 64 KB read buffers.
+    private static final long MIN_PART = 1 << 20; // Don't cut the file into parts smaller than 1 MB.
+
+    private StatRunner() { }
+
+    // The result of reading a file: the statistics and how many lines were skipped.
+    public static final class Result {
+        public final StatAccumulator stats;
+        public final long skipped;
+
+        Result(StatAccumulator stats, long skipped) {
+            this.stats = stats;
+            this.skipped = skipped;
+        }
+    }
+
+    // This is called from Main for "--stat [--threads N] [--x COLUMN] [--y COLUMN] FILE [EXPRESSION ...]".
+    // Columns are counted from 1; without --y the file is one-variable data. The results go into
+    // A..F (see StatAccumulator.storeInto) and each EXPRESSION is then evaluated with them (e.g. "A+2B").
+    // Returns the exit code for the program.
+    public static int runFromArgs(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int xColumn = 1, yColumn = 0;
+        String file = null;
+        List<String> expressions = new ArrayList<String>();
+        boolean valid = true;
+        try {
+            for (int i = 1; i < args.length; i++) { // args[0] is "--stat".
+                if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--x") && i + 1 < args.length) xColumn = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--y") && i + 1 < args.length) yColumn = Integer.parseInt(args[++i]);
+                else if (file == null) file = args[i];
+                else expressions.add(args[i]);
+            }
+        } catch (NumberFormatException e) { // e.g. "--x abc"
+            valid = false;
+        }
+        if (!valid || file == null || threads < 1 || xColumn < 1 || yColumn < 0) {
+            System.err.println("Usage: --stat [--threads N] [--x COLUMN] [--y COLUMN] FILE [EXPRESSION ...]");
+            return 2;
+        }
+
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = read(Paths.get(file), xColumn, yColumn, threads);
+        } catch (IOException e) {
+            System.err.println("Stat failed: " + e.getMessage());
+            return 1;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.print(result.stats);
+
+        CalculatorEngine engine = new CalculatorEngine();
+        result.stats.storeInto(engine);
+        for (String expression : expressions) {
+            String answer;
+            try {
+                answer = BatchRunner.format(engine.evaluate(expression));
+            } catch (RuntimeException e) {
+                answer = e.getMessage() == null ? "Error" : e.getMessage();
+            }
+            System.out.println(expression + " = " + answer);
+        }
+        System.err.println("Read " + result.stats.getCount() + " values (" + result.skipped + " lines skipped) in " + millis + " ms");
+        return 0;
+    }
+
+    // Reads column 'xColumn' (and 'yColumn', if it isn't 0) of every line of 'file', using up to 'threads' threads.
+    public static Result read(Path file, final int xColumn, final int yColumn, int threads) throws IOException {
+        if (xColumn < 1 || yColumn < 0) throw new IllegalArgumentException("Columns are counted from 1");
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+        int parts = (int) Math.max(1, Math.min(Math.max(1, threads) * 4L, size / MIN_PART)); // A few per thread, to even out the work.
+        if (parts == 1) return readRange(file, 0, size, xColumn, yColumn);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, parts));
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (int p = 0; p < parts; p++) {
+                final Path path = file;
+                final long from = size * p / parts, to = size * (p + 1) / parts;
+                futures.add(pool.submit(new Callable<Result>() {
+                    public Result call() throws IOException {
+                        return readRange(path, from, to, xColumn, yColumn);
+                    }
+                }));
+            }
+            StatAccumulator total = new StatAccumulator(yColumn != 0);
+            long skipped = 0;
+            for (Future<Result> future : futures) { // Merged in file order.
+                Result part = future.get();
+                total.merge(part.stats);
+                skipped += part.skipped;
+            }
+            return new Result(total, skipped);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Reads the lines that start at a byte in [from, to).
+    private static Result readRange(Path file, long from, long to, int xColumn, int yColumn) throws IOException {
+        StatAccumulator stats = new StatAccumulator(yColumn != 0);
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = Math.max(0, from - 1);
+            channel.position(position);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            if (from > 0) { // The line that started before 'from' belongs to the range before us.
+                int b;
+                while ((b = in.read()) != -1) {
+                    position++;
+                    if (b == '\n') break;
+                }
+            }
+            byte[] line = new byte[256];
+            while (position < to) {
+                int length = 0, b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    if (length == line.length) line = Arrays.copyOf(line, length * 2);
+                    line[length++] = (byte) b;
+                }
+                position += length + (b == '\n' ? 1 : 0);
+                if (length > 0 && !addLine(stats, line, length, xColumn, yColumn)) skipped++;
+                if (b == -1) break;
+            }
+        }
+        return new Result(stats, skipped);
+    }
+
+    // Adds the numbers in one line. Returns false if they aren't there or aren't numbers.
+    private static boolean addLine(StatAccumulator stats, byte[] line, int length, int xColumn, int yColumn) {
+        String x = column(line, length, xColumn);
+        String y = yColumn == 0 ? null : column(line, length, yColumn);
+        if (x == null || (yColumn != 0 && y == null)) return false;
+        try {
+            if (yColumn == 0) stats.add(Double.parseDouble(x));
+            else stats.add(Double.parseDouble(x), Double.parseDouble(y));
+            return true;
+        } catch (NumberFormatException e) {
+            return false; // e.g. a header line.
+        }
+    }
+
+    // Column 'number' (from 1) of a line, split at ',', ';' or tabs, or null if the line has fewer columns.
+    private static String column(byte[] line, int length, int number) {
+        int start = 0, column = 1;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',' || line[i] == ';' || line[i] == '\t') {
+                if (column == number) return new String(line, start, i - start, StandardCharsets.UTF_8).trim();
+                column++;
+                start = i + 1;
+            }
+        }
+        return null;
+    }
+}
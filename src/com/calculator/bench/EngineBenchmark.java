@@ -0,0 +1,384 @@
+package com.calculator.bench; // This file belongs to the 'com.calculator.bench' package.
+
+import com.calculator.engine.CalculatorEngine; // The code we are measuring.
+import com.calculator.engine.CompiledExpression;
+import com.calculator.engine.LivePreview;
+import com.calculator.engine.Matrix;
+import com.calculator.engine.NumberFormatter;
+
+import java.lang.management.ManagementFactory; // Gives us the per-thread allocation counter.
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+// This is the quick benchmark run for the engine's hot paths. It needs nothing but the JDK,
+// so it runs from the same 'src' folder as the calculator. For numbers to compare and publish,
+// use the JMH module in 'bench/' (EngineJmh: the same scenarios, with forks, Blackholes and the
+// GC profiler); this class is the smoke run that also covers the other features below:
+//
+//   java -cp bin com.calculator.bench.EngineBenchmark [--time ms] [--threads N] [--only name]
+//
+// For every scenario it measures two things:
+//   - "parse+eval": engine.evaluate(String), i.e. lexer + parser + run, every time.
+//   - "eval": engine.evaluate(CompiledExpression), i.e. only running the compiled program.
+//     After the warm-up that is the program's bytecode version (see BytecodeCompiler); run with
+//     -Dcalculator.bytecodeThreshold=0 to measure the interpreter instead.
+// It reports throughput (ops/s), average time (ns/op) and allocation (bytes/op), in the spirit
+// of JMH's thrpt / avgt modes and its GC profiler. Each measurement is preceded by a warm-up
+// of the same length so the JIT has compiled the hot code first.
+// Then it compares 'eval' with evaluateDecimal (AdaptivePrecision) on its fast and slow paths,
+// and with evaluateComplex (complex mode) on a real and a truly complex expression,
+// compares the old String.format display formatting with NumberFormatter,
+// measures the live preview while an expression is typed, times matrix products and LU decompositions
+// (up to 2000 x 2000) on 1 to N threads, and at the end it measures how 'eval' throughput scales from 1 to N threads sharing one engine.
+public class EngineBenchmark {
+
+    // Anything we compute is added here, so the JIT cannot throw the work away.
+    static volatile double sink;
+
+    // One benchmark case: a name and an expression.
+    static final class Scenario {
+        final String name;
+        final String expression;
+
+        Scenario(String name, String expression) {
+            this.name = name;
+            this.expression = expression;
+        }
+    }
+
+    // One measured result.
+    static final class Result {
+        final double opsPerSecond;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(double opsPerSecond, double nanosPerOp, double bytesPerOp) {
+            this.opsPerSecond = opsPerSecond;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    // Something we can run many times in a loop.
+    interface Operation {
+        double run();
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = 1000; // Warm-up time and measurement time per case.
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        String only = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--time": millis = Long.parseLong(args[++i]); break;
+                case "--threads": maxThreads = Integer.parseInt(args[++i]); break;
+                case "--only": only = args[++i]; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        final CalculatorEngine engine = new CalculatorEngine();
+        engine.storeVariable("A", 1.5);
+        engine.storeVariable("B", -2.25);
+        engine.storeVariable("C", 3.0);
+        engine.storeVariable("D", 0.5);
+        engine.storeVariable("E", 7.0);
+        engine.storeVariable("F", 11.0);
+        engine.storeVariable("X", 0.25);
+        engine.setM(4.0);
+
+        System.out.printf("%-20s %-11s %15s %12s %12s%n", "Scenario", "Mode", "ops/s", "ns/op", "B/op");
+        for (Scenario scenario : scenarios()) {
+            if (only != null && !scenario.name.equals(only)) continue;
+            final String text = scenario.expression;
+            final CompiledExpression compiled = engine.compile(text);
+
+            Result full = measure(new Operation() {
+                public double run() { return engine.evaluate(text); }
+            }, millis);
+            print(scenario.name, "parse+eval", full);
+
+            Result eval = measure(new Operation() {
+                public double run() { return engine.evaluate(compiled); }
+            }, millis);
+            print(scenario.name, "eval", eval);
+        }
+
+        // Adaptive precision: the same program in 'double' and as a decimal answer.
+        // "decimal-fast" is proven from the double result; "decimal-slow" (3.0000000015, a tie at
+        // 10 digits) needs BigDecimal.
+        System.out.println();
+        String[][] decimals = {{"decimal-fast", "0.1+0.2*3-1.25/4"}, {"decimal-slow", "1.0000000005*C"}};
+        for (String[] scenario : decimals) {
+            if (only != null && !scenario[0].equals(only)) continue;
+            final CompiledExpression compiled = engine.compile(scenario[1]);
+            final CompiledExpression exact = engine.compileExact(scenario[1]);
+
+            Result eval = measure(new Operation() {
+                public double run() { return engine.evaluate(compiled); }
+            }, millis);
+            print(scenario[0], "eval", eval);
+
+            Result decimal = measure(new Operation() {
+                public double run() { return engine.evaluateDecimal(exact).signum(); }
+            }, millis);
+            print(scenario[0], "decimal", decimal);
+        }
+
+        // Complex mode: "complex-real" runs a real program both ways (the complex stacks cost a little),
+        // "complex" is an expression with complex values all the way through. The only allocation
+        // should be the one Complex answer per call.
+        if (only == null || only.startsWith("complex")) {
+            final CompiledExpression real = engine.compile("sin(A)*cos(X)+sqrt(B^2+C)/(1+X)-ln(E)");
+            final CompiledExpression complex = engine.compile("(3+4i)^2*e^(iπ/4)/(A-2i)+sqrt(B)+ln(-C)");
+            print("complex-real", "eval", measure(new Operation() {
+                public double run() { return engine.evaluate(real); }
+            }, millis));
+            print("complex-real", "complex", measure(new Operation() {
+                public double run() { return engine.evaluateComplex(real).getReal(); }
+            }, millis));
+            print("complex", "complex", measure(new Operation() {
+                public double run() { return engine.evaluateComplex(complex).getImaginary(); }
+            }, millis));
+        }
+
+        // Showing an answer: the display's old String.format("%s") against Double.toString and
+        // NumberFormatter (the shortest text that reads back as the same double), on typical answers.
+        if (only == null || only.equals("format")) {
+            Random random = new Random(42);
+            final double[] answers = new double[1024];
+            for (int i = 0; i < answers.length; i++) answers[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 8);
+            print("format", "%s", measure(new Operation() {
+                int next;
+                public double run() { return String.format("%s", answers[next++ & 1023]).length(); }
+            }, millis));
+            print("format", "toString", measure(new Operation() {
+                int next;
+                public double run() { return Double.toString(answers[next++ & 1023]).length(); }
+            }, millis));
+            print("format", "shortest", measure(new Operation() {
+                int next;
+                public double run() { return NumberFormatter.format(answers[next++ & 1023]).length(); }
+            }, millis));
+            System.out.println();
+        }
+
+        // Live preview: typing a 200-term expression one key at a time, with a preview after
+        // every key. "incremental" keeps one LivePreview (it reuses its checkpoint);
+        // "scratch" uses a new one every time (the whole text is parsed again).
+        if (only == null || only.equals("live-preview")) {
+            StringBuilder typed = new StringBuilder();
+            for (int i = 0; i < 200; i++) typed.append(i == 0 ? "" : "+").append("sin(").append(i % 90).append(")*1.5");
+            final String text = typed.toString();
+            final LivePreview live = new LivePreview(engine);
+
+            Result incremental = measure(new Operation() {
+                public double run() {
+                    double sum = 0;
+                    for (int end = 1; end <= text.length(); end++) {
+                        Double value = live.preview(text.substring(0, end));
+                        if (value != null) sum += value;
+                    }
+                    return sum;
+                }
+            }, millis);
+            print("live-preview", "incremental", incremental);
+
+            Result scratch = measure(new Operation() {
+                public double run() {
+                    double sum = 0;
+                    for (int end = 1; end <= text.length(); end++) {
+                        Double value = new LivePreview(engine).preview(text.substring(0, end));
+                        if (value != null) sum += value;
+                    }
+                    return sum;
+                }
+            }, millis);
+            print("live-preview", "scratch", scratch);
+            System.out.println();
+        }
+
+        // SOLVE and ∫dx: one parse, many evaluations ("integrate" splits subintervals across the Fork/Join pool).
+        if (only == null || only.equals("solve")) {
+            print("solve", "X^3-2X-5", measure(new Operation() {
+                public double run() { return engine.solve("X^3-2X-5", 1).getRoot(); }
+            }, millis));
+        }
+        if (only == null || only.equals("integrate")) {
+            print("integrate", "sin(1/X)", measure(new Operation() {
+                public double run() { return engine.integrate("sin(1/X)", 0.001, 1).getValue(); }
+            }, millis));
+            System.out.println();
+        }
+
+        // Graph sampling: one 1920-pixel-wide strip of tan(X) (adaptive, with asymptotes).
+        if (only == null || only.equals("graph")) {
+            final CompiledExpression tan = engine.compile("tan(X)");
+            print("graph", "tan(X) 1920px", measure(new Operation() {
+                public double run() { return engine.sampleCurve(tan, engine.getSnapshot(), -30, 30, 60.0 / 1920, 60.0 / 1920).size(); }
+            }, millis));
+            System.out.println();
+        }
+
+        List<Integer> counts = new ArrayList<Integer>(); // 1, 2, 4, ... and always maxThreads last.
+        for (int threads = 1; threads < maxThreads; threads *= 2) counts.add(threads);
+        counts.add(maxThreads);
+
+        // Matrices: one n x n product and one LU decomposition (det) per size and thread count.
+        if (only == null || only.equals("matrix")) measureMatrices(counts);
+
+        // Thread scaling: many threads evaluating on one shared engine.
+        final CompiledExpression shared = engine.compile("sin(A)*cos(X)+sqrt(B^2+C)/(1+X)-ln(E)");
+        System.out.println();
+        System.out.printf("%-8s %15s %10s%n", "Threads", "ops/s", "speed-up");
+        double single = 0;
+        for (int threads : counts) {
+            double ops = measureThreads(engine, shared, threads, millis);
+            if (threads == 1) single = ops;
+            System.out.printf("%-8d %15.0f %9.2fx%n", threads, ops, ops / single);
+        }
+    }
+
+    // The expressions we measure. Together they cover the engine's main code paths.
+    static List<Scenario> scenarios() {
+        List<Scenario> list = new ArrayList<Scenario>();
+        list.add(new Scenario("short-arithmetic", "1+2*3-4/5"));
+
+        StringBuilder nested = new StringBuilder(); // "((((...(1+1)+1)...)+1)" 200 levels deep.
+        for (int i = 0; i < 200; i++) nested.append('(');
+        nested.append('1');
+        for (int i = 0; i < 200; i++) nested.append("+1)");
+        list.add(new Scenario("deep-nesting", nested.toString()));
+
+        list.add(new Scenario("function-heavy", "sin(asinh(log(cos(tanh(ln(sqrt(atan(45)+2)))+1)+3)))+acosh(cosh(2))"));
+        list.add(new Scenario("variable-heavy", "A*B+C*D-E/F+X*M-A^2+B*C*D+E*X-F/M+AB+CX"));
+
+        StringBuilder longInput = new StringBuilder(); // 2000 terms: "1.5*2+2.5*3+..."
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) longInput.append(i % 2 == 0 ? '+' : '-');
+            longInput.append(i % 97).append('.').append(i % 10).append('*').append(i % 7 + 1);
+        }
+        list.add(new Scenario("long-input", longInput.toString()));
+        return list;
+    }
+
+    // Runs 'op' for a warm-up period, then for a measurement period, on this thread.
+    static Result measure(Operation op, long millis) {
+        runFor(op, millis); // Warm-up (result ignored).
+
+        com.sun.management.ThreadMXBean mx = threadBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = mx == null ? 0 : mx.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = runFor(op, millis);
+        long elapsed = System.nanoTime() - start;
+        long bytes = mx == null ? 0 : mx.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        return new Result(ops * 1e9 / elapsed, (double) elapsed / ops, (double) bytes / ops);
+    }
+
+    // Calls 'op' in batches until 'millis' have passed, and returns how many calls were made.
+    static long runFor(Operation op, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long count = 0;
+        double sum = 0;
+        do {
+            for (int i = 0; i < 256; i++) { // Check the clock only every 256 calls.
+                try {
+                    sum += op.run();
+                } catch (RuntimeException e) {
+                    sum += 1; // Errors are part of the workload too.
+                }
+            }
+            count += 256;
+        } while (System.nanoTime() < deadline);
+        sink = sum;
+        return count;
+    }
+
+    // Measures total 'eval' throughput with 'threads' threads sharing one engine.
+    static double measureThreads(final CalculatorEngine engine, final CompiledExpression compiled, int threads, final long millis) throws InterruptedException {
+        final long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        final Operation op = new Operation() {
+            public double run() { return engine.evaluate(compiled); }
+        };
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    runFor(op, millis); // Warm-up.
+                    counts[index] = runFor(op, millis);
+                }
+            });
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        long total = 0;
+        for (long c : counts) total += c;
+        return total * 1000.0 / millis;
+    }
+
+    // Times A*A and det(A) for random n x n matrices. Each thread count gets its own Fork/Join pool,
+    // and the work is started inside it, so the kernels split across exactly that many threads.
+    // These take seconds each, so every case is run a few times (fewer for big n) and the best time is kept.
+    static void measureMatrices(List<Integer> counts) throws Exception {
+        System.out.printf("%-8s %-8s %12s %9s %9s %12s %9s %9s%n", "Size", "Threads", "multiply ms", "GFLOP/s", "speed-up", "LU ms", "GFLOP/s", "speed-up");
+        Random random = new Random(42);
+        for (int n : new int[] {250, 500, 1000, 2000}) {
+            double[] values = new double[n * n];
+            for (int i = 0; i < values.length; i++) values[i] = random.nextDouble() - 0.5;
+            final Matrix m = Matrix.of(n, n, values);
+            int runs = n <= 500 ? 5 : n <= 1000 ? 3 : 1;
+            double flops = (double) n * n * n; // Multiply-adds in A*A; LU needs a third of that.
+            double singleMultiply = 0, singleLu = 0;
+            for (int threads : counts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    double multiply = bestMillis(pool, new Operation() {
+                        public double run() { return m.times(m).get(0, 0); }
+                    }, runs);
+                    double lu = bestMillis(pool, new Operation() {
+                        public double run() { return m.determinant(); }
+                    }, runs);
+                    if (threads == 1) {
+                        singleMultiply = multiply;
+                        singleLu = lu;
+                    }
+                    System.out.printf("%-8d %-8d %12.1f %9.2f %8.2fx %12.1f %9.2f %8.2fx%n", n, threads,
+                        multiply, 2 * flops / multiply / 1e6, singleMultiply / multiply,
+                        lu, 2 * flops / 3 / lu / 1e6, singleLu / lu);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+        System.out.println();
+    }
+
+    // Runs 'op' inside 'pool' 'runs' times and returns the fastest time in milliseconds.
+    static double bestMillis(ForkJoinPool pool, final Operation op, int runs) throws Exception {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            sink = pool.submit(new Callable<Double>() {
+                public Double call() { return op.run(); }
+            }).get();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+    // The HotSpot thread bean can report allocated bytes per thread; other JVMs may not.
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    private static void print(String scenario, String mode, Result r) {
+        System.out.printf("%-20s %-11s %15.0f %12.1f %12.1f%n", scenario, mode, r.opsPerSecond, r.nanosPerOp, r.bytesPerOp);
+    }
+}
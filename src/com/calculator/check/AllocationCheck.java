@@ -0,0 +1,86 @@
+package com.calculator.check; // This file belongs to the 'com.calculator.check' package.
+
+import com.calculator.engine.CalculatorEngine; // The code we are checking.
+import com.calculator.engine.CompiledExpression;
+import com.calculator.engine.EngineState;
+
+import java.lang.management.ManagementFactory; // Gives us the per-thread allocation counter.
+
+// This check proves that running a compiled program allocates nothing once the JIT has warmed up:
+// the postfix program runs on primitive double[] stacks (kept per thread) with integer opcodes and
+// function ids, so there is nothing to box and nothing to build per call.
+// It needs nothing but the JDK:
+//
+//   java -cp bin com.calculator.check.AllocationCheck [--calls N]
+//
+// After the warm-up (which also lets BytecodeCompiler turn the hot programs into bytecode) it runs
+// every expression N times and reads the thread's allocation counter before and after. It prints
+// bytes per call and exits with 1 if any expression allocated. Run it with
+// -Dcalculator.bytecodeThreshold=2147483647 to check the interpreter instead of the bytecode.
+public class AllocationCheck {
+
+    // Arithmetic, nesting, built-in functions, variables, 'Ans' and a user function.
+    private static final String[] EXPRESSIONS = {
+        "1+2*3-4/5", "((((1+2)*3)-4)/5)^2", "sin(A)*cos(X)+sqrt(B^2+C)/(1+X)-ln(E)",
+        "asinh(X)+log(X+1)*tanh(A)", "A*X^2+B*X+C+Ans", "f(X)+f(A)"
+    };
+
+    // Anything we compute is added here, so the JIT cannot throw the work away.
+    static volatile double sink;
+
+    public static void main(String[] args) {
+        int calls = 1_000_000;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--calls") && i + 1 < args.length) calls = Integer.parseInt(args[++i]);
+            else {
+                System.err.println("Usage: AllocationCheck [--calls N]");
+                System.exit(2);
+            }
+        }
+
+        com.sun.management.ThreadMXBean mx = threadBean();
+        if (mx == null) {
+            System.err.println("This JVM cannot count allocated bytes per thread.");
+            System.exit(2);
+        }
+
+        CalculatorEngine engine = new CalculatorEngine();
+        engine.storeVariable("A", 0.5);
+        engine.storeVariable("B", 3);
+        engine.storeVariable("C", 4);
+        engine.storeVariable("E", 2.5);
+        engine.storeVariable("X", 1.25);
+        engine.setLastAnswer(7);
+        engine.defineFunction("f", "X^2+1");
+        EngineState snapshot = engine.getSnapshot();
+
+        long thread = Thread.currentThread().getId();
+        int failures = 0;
+        for (String expression : EXPRESSIONS) {
+            CompiledExpression compiled = engine.compile(expression);
+            run(engine, compiled, snapshot, calls); // Warm-up (the JIT and the bytecode tier).
+            long before = mx.getThreadAllocatedBytes(thread);
+            run(engine, compiled, snapshot, calls);
+            long bytes = mx.getThreadAllocatedBytes(thread) - before;
+            boolean ok = bytes == 0;
+            if (!ok) failures++;
+            System.out.printf("%-45s %10.3f B/call  %s%n", expression, (double) bytes / calls, ok ? "OK" : "FAILED");
+        }
+
+        System.out.println(failures == 0 ? "PASSED" : failures + " expression(s) allocated");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Runs 'compiled' 'calls' times against the same snapshot.
+    private static void run(CalculatorEngine engine, CompiledExpression compiled, EngineState snapshot, int calls) {
+        double sum = 0;
+        for (int i = 0; i < calls; i++) sum += engine.evaluate(compiled, snapshot);
+        sink = sum;
+    }
+
+    // The HotSpot thread bean can report allocated bytes per thread; other JVMs may not.
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+}
@@ -0,0 +1,193 @@
+package com.calculator.check; // This file belongs to the 'com.calculator.check' package.
+
+import com.calculator.engine.CalculatorEngine; // The code we are checking.
+import com.calculator.engine.EngineState;
+import com.calculator.engine.ExpressionCache;
+
+import java.util.concurrent.CountDownLatch; // Starts all threads at the same moment.
+import java.util.concurrent.atomic.AtomicInteger;
+
+// This is a stress test for one CalculatorEngine shared by many threads. It needs nothing but the JDK:
+//
+//   java -cp bin com.calculator.check.ConcurrencyCheck [--threads N] [--rounds R]
+//
+// It checks four things, each with all threads hammering the same engine at once:
+//   1. M+ never loses an update (the final M is exactly threads * rounds).
+//   2. Threads storing into different variables never undo each other's writes.
+//   3. An evaluation always sees one consistent snapshot: while one thread keeps changing X,
+//      "X*2+1" always equals 2 * (the snapshot's X) + 1, and no reader ever sees X go backwards.
+//   4. With a shared cache and DEG/RAD switching back and forth, every result is bit-identical
+//      to the one a single thread computed for the same mode.
+// It exits with 1 if any check failed.
+public class ConcurrencyCheck {
+
+    // Expressions for check 4: constant ones (their results are cached), mode-dependent ones and variables.
+    private static final String[] EXPRESSIONS = {
+        "1+2*3", "sin(30)+cos(60)", "2^10-1", "sqrt(2)*π", "asinh(1)*tanh(0.5)",
+        "A*X^2+B*X+C", "tan(45)*A", "log(1000)+ln(e)", "acos(0.5)", "(1+2)*(3+4)/5"
+    };
+
+    private static final AtomicInteger failures = new AtomicInteger();
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int rounds = 200_000;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--rounds") && i + 1 < args.length) rounds = Integer.parseInt(args[++i]);
+            else {
+                System.err.println("Usage: ConcurrencyCheck [--threads N] [--rounds R]");
+                System.exit(2);
+            }
+        }
+        System.out.println(threads + " threads, " + rounds + " rounds each");
+
+        checkMemoryPlus(threads, rounds);
+        checkSeparateVariables(rounds);
+        checkSnapshots(threads, rounds);
+        checkSharedCache(threads, rounds);
+
+        System.out.println(failures.get() == 0 ? "PASSED" : failures.get() + " failure(s)");
+        System.exit(failures.get() == 0 ? 0 : 1);
+    }
+
+    // 1. Every thread presses M+ 'rounds' times.
+    private static void checkMemoryPlus(int threads, final int rounds) throws InterruptedException {
+        int before = failures.get();
+        final CalculatorEngine engine = new CalculatorEngine();
+        runAll(threads, new Worker() {
+            public void run(int index) {
+                for (int i = 0; i < rounds; i++) engine.addToM(1);
+            }
+        });
+        if (engine.getM() != (double) threads * rounds) fail("M = " + engine.getM());
+        report("M+ from all threads", before);
+    }
+
+    // 2. Thread i stores 1, 2, 3, ... into variable A + i (A..F).
+    private static void checkSeparateVariables(final int rounds) throws InterruptedException {
+        int before = failures.get();
+        final CalculatorEngine engine = new CalculatorEngine();
+        final String[] names = {"A", "B", "C", "D", "E", "F"};
+        runAll(names.length, new Worker() {
+            public void run(int index) {
+                for (int i = 1; i <= rounds; i++) engine.storeVariable(names[index], i);
+            }
+        });
+        for (String name : names) {
+            double value = engine.getSnapshot().getVariable(name);
+            if (value != rounds) fail(name + " = " + value);
+        }
+        report("stores into different variables", before);
+    }
+
+    // 3. Thread 0 keeps storing X = 1, 2, 3, ...; the others evaluate against snapshots.
+    private static void checkSnapshots(int threads, final int rounds) throws InterruptedException {
+        int before = failures.get();
+        final CalculatorEngine engine = new CalculatorEngine();
+        runAll(threads, new Worker() {
+            public void run(int index) {
+                if (index == 0) {
+                    for (int i = 1; i <= rounds; i++) engine.storeVariable("X", i);
+                    return;
+                }
+                double lastX = 0;
+                for (int i = 0; i < rounds; i++) {
+                    EngineState snapshot = engine.getSnapshot();
+                    double x = snapshot.getVariable("X");
+                    double value = engine.evaluate("X*2+1", snapshot);
+                    if (value != x * 2 + 1 || x < lastX) {
+                        fail("X = " + x + " (before " + lastX + ") gave " + value);
+                        return;
+                    }
+                    lastX = x;
+                }
+            }
+        });
+        report("consistent snapshots", before);
+    }
+
+    // 4. Thread 0 switches DEG/RAD; the others evaluate through a shared cache.
+    private static void checkSharedCache(int threads, final int rounds) throws InterruptedException {
+        int before = failures.get();
+        final CalculatorEngine engine = new CalculatorEngine();
+        engine.useCache(new ExpressionCache(4, ExpressionCache.Policy.LRU)); // Smaller than the list, so entries are evicted too.
+        engine.storeVariable("A", 1.5);
+        engine.storeVariable("B", -2);
+        engine.storeVariable("C", 0.25);
+        engine.storeVariable("X", 3);
+
+        // The answers one thread gets, without a cache, in RAD [0] and DEG [1] mode.
+        CalculatorEngine single = new CalculatorEngine();
+        single.storeVariable("A", 1.5);
+        single.storeVariable("B", -2);
+        single.storeVariable("C", 0.25);
+        single.storeVariable("X", 3);
+        final long[][] expected = new long[2][EXPRESSIONS.length];
+        for (int mode = 0; mode < 2; mode++) {
+            single.setDegrees(mode == 1);
+            for (int i = 0; i < EXPRESSIONS.length; i++) expected[mode][i] = Double.doubleToLongBits(single.evaluate(EXPRESSIONS[i]));
+        }
+
+        runAll(threads, new Worker() {
+            public void run(int index) {
+                if (index == 0) {
+                    for (int i = 0; i < rounds / 10; i++) engine.setDegrees(i % 2 == 0);
+                    return;
+                }
+                for (int i = 0; i < rounds; i++) {
+                    int e = (i + index) % EXPRESSIONS.length;
+                    EngineState snapshot = engine.getSnapshot();
+                    long bits = Double.doubleToLongBits(engine.evaluate(EXPRESSIONS[e], snapshot));
+                    if (bits != expected[snapshot.isDegrees() ? 1 : 0][e]) {
+                        fail(EXPRESSIONS[e] + " gave " + Double.longBitsToDouble(bits) + " in " + (snapshot.isDegrees() ? "DEG" : "RAD"));
+                        return;
+                    }
+                }
+            }
+        });
+        report("shared cache with DEG/RAD switching", before);
+    }
+
+    // --- Helpers ---
+
+    // The work of one thread; 'index' is 0 .. threads-1.
+    interface Worker {
+        void run(int index);
+    }
+
+    // Starts 'threads' threads at the same moment and waits for all of them.
+    private static void runAll(int threads, final Worker worker) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] all = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            all[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        worker.run(index);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        fail("thread " + index + ": " + e);
+                    }
+                }
+            });
+            all[t].start();
+        }
+        start.countDown();
+        for (Thread thread : all) thread.join();
+    }
+
+    // Records one failure (and prints it).
+    private static void fail(String message) {
+        failures.incrementAndGet();
+        System.out.println("  " + message);
+    }
+
+    // Prints whether a check passed: it did if nothing failed since 'before'.
+    private static void report(String name, int before) {
+        System.out.println((failures.get() == before ? "OK      " : "FAILED  ") + name);
+    }
+}
@@ -0,0 +1,111 @@
+package com.calculator.check; // This file belongs to the 'com.calculator.check' package.
+
+import com.calculator.engine.NumberFormatter; // The code we are checking.
+
+import java.math.BigDecimal; // Exact decimal values of doubles, to prove no shorter text exists.
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+// This check proves that NumberFormatter writes every double correctly. It needs nothing but the JDK:
+//
+//   java -cp bin com.calculator.check.FormatCheck [--numbers N] [--seed S]
+//
+// For N random doubles (any bit pattern, numbers with few decimals like 12.345, subnormals,
+// and whole numbers) plus a list of hard cases, it checks that:
+//   1. toShortestString reads back (Double.parseDouble) as exactly the same double.
+//   2. It is the shortest such text: no decimal with one digit less reads back as the same double.
+//      (Like Double.toString, the layout "d.dE±n" always shows at least two digits, so when two
+//      digits are needed anyway the closest two-digit decimal wins, e.g. 2 * Double.MIN_VALUE is
+//      "9.9E-324", not "1.0E-323". So a two-digit answer is never counted as too long.)
+//   3. It never has more digits than Double.toString (counting at least two, as above); on Java 19
+//      and newer (where Double.toString uses the same algorithm) the text must be exactly the same.
+//   4. format() of a whole number is exactly String.format("%d", (long) v), as before.
+// It exits with 1 if any check failed.
+public class FormatCheck {
+
+    private static final boolean SAME_AS_JDK = Runtime.version().feature() >= 19;
+    private static final double[] HARD_CASES = {
+        0.0, -0.0, 1.0, -1.0, 0.1, 0.001, 0.0009999, 1e7, 9999999.5, Double.MIN_VALUE, -Double.MIN_VALUE,
+        2 * Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL, 1e23, 2.82879384806159E17, 1e22,
+        9007199254740993.0, 1e300, 123456.789, Math.PI, -Math.E, 0x1p63, -0x1p63, 1e19, 5e-324, 2e-323,
+        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN
+    };
+
+    private static long failures = 0;
+
+    public static void main(String[] args) {
+        int numbers = 1_000_000;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--numbers") && i + 1 < args.length) numbers = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+            else {
+                System.err.println("Usage: FormatCheck [--numbers N] [--seed S]");
+                System.exit(2);
+            }
+        }
+
+        for (double v : HARD_CASES) check(v);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < numbers; i++) {
+            switch (i % 5) {
+                case 0: check(Double.longBitsToDouble(random.nextLong())); break; // Any bit pattern.
+                case 1: check(random.nextDouble() * Math.pow(10, random.nextInt(-10, 12))); break;
+                case 2: check(Math.round(random.nextDouble() * 1e6) / 1e3); break; // Like 12.345.
+                case 3: check(Double.longBitsToDouble(random.nextLong(1, 1L << 52))); break; // Subnormals.
+                default: check((double) (random.nextLong() >> random.nextInt(64))); break; // Whole numbers.
+            }
+        }
+
+        System.out.println((HARD_CASES.length + numbers) + " numbers checked, " + failures + " failed");
+        System.out.println(failures == 0 ? "PASSED" : "FAILED");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // Runs every check on one double.
+    private static void check(double v) {
+        String text = NumberFormatter.toShortestString(v);
+        String jdk = Double.toString(v);
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            if (!text.equals(jdk)) fail(v, text, "should be " + jdk);
+            return;
+        }
+        if (Double.doubleToRawLongBits(Double.parseDouble(text)) != Double.doubleToRawLongBits(v)) {
+            fail(v, text, "reads back as " + Double.parseDouble(text));
+            return;
+        }
+        int digits = digits(text);
+        if (digits > 2 && fewerDigitsWork(v, digits - 1)) fail(v, text, "a shorter text reads back too");
+        if (SAME_AS_JDK ? !text.equals(jdk) : digits > Math.max(2, digits(jdk))) fail(v, text, "Double.toString gives " + jdk);
+        if (v == (long) v) {
+            String expected = String.format("%d", (long) v);
+            String formatted = NumberFormatter.format(v);
+            if (!formatted.equals(expected)) fail(v, formatted, "String.format gives " + expected);
+        }
+    }
+
+    // The significant digits of a text like "-1.2300E-5" (3 here).
+    private static int digits(String text) {
+        int e = text.indexOf('E');
+        String mantissa = (e < 0 ? text : text.substring(0, e)).replace("-", "").replace(".", "");
+        mantissa = mantissa.replaceFirst("^0+", "").replaceFirst("0+$", "");
+        return Math.max(1, mantissa.length());
+    }
+
+    // True if a decimal with only 'digits' significant digits reads back as v. Only the two
+    // decimals right below and right above v can, so rounding v down and up is enough.
+    private static boolean fewerDigitsWork(double v, int digits) {
+        BigDecimal exact = new BigDecimal(v);
+        for (RoundingMode mode : new RoundingMode[] {RoundingMode.FLOOR, RoundingMode.CEILING}) {
+            if (Double.parseDouble(exact.round(new MathContext(digits, mode)).toString()) == v) return true;
+        }
+        return false;
+    }
+
+    // Records one failure (and prints the first few).
+    private static void fail(double v, String text, String why) {
+        failures++;
+        if (failures <= 10) System.out.println("  " + Double.toString(v) + " -> \"" + text + "\": " + why);
+    }
+}
@@ -0,0 +1,94 @@
+package com.calculator.check; // This file belongs to the 'com.calculator.check' package.
+
+import com.calculator.engine.CalculatorEngine; // The code we are checking.
+import com.calculator.engine.CompiledExpression;
+import com.calculator.engine.EngineState;
+
+import java.util.Random;
+
+// This check proves that the optimizer never changes an answer. It generates random expressions
+// (numbers, variables, 'Ans', π, e, unary minus, brackets, + - * / ^ and every built-in function),
+// compiles each one twice - optimized (engine.compile) and not optimized (engine.compileExact,
+// which runs the parser only) - and runs both with random variable values, including 0, -0, NaN
+// and huge numbers, in DEG and RAD mode. The two results must have exactly the same bits (or fail
+// with the same error). It needs nothing but the JDK:
+//
+//   java -cp bin com.calculator.check.OptimizerCheck [--expressions N] [--seed S]
+//
+// It exits with 1 if any result differed. Run it with -Dcalculator.bytecodeThreshold=1 to compare
+// the bytecode versions too (then every program is compiled to bytecode after its first run).
+public class OptimizerCheck {
+
+    private static final String[] LEAVES = {"A", "B", "X", "M", "Ans", "0", "1", "-1", "2", "0.5", "10", "30", "45", "π", "e", "0.0", "3"};
+    private static final String[] FUNCTIONS = {"sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+        "asinh", "acosh", "atanh", "sqrt", "log", "ln"};
+    private static final double[] VALUES = {0.0, -0.0, 1, -1, 2.5, -3, Double.NaN, 1e300, 30, 0.5};
+    private static final String[] VARIABLES = {"A", "B", "X", "M"};
+
+    public static void main(String[] args) {
+        int expressions = 200_000;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--expressions") && i + 1 < args.length) expressions = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+            else {
+                System.err.println("Usage: OptimizerCheck [--expressions N] [--seed S]");
+                System.exit(2);
+            }
+        }
+
+        Random random = new Random(seed);
+        CalculatorEngine engine = new CalculatorEngine();
+        long compared = 0, failures = 0;
+        for (int i = 0; i < expressions; i++) {
+            String expression = generate(random, 1 + random.nextInt(6));
+            CompiledExpression plain, optimized;
+            try {
+                plain = engine.compileExact(expression);
+                optimized = engine.compile(expression);
+            } catch (RuntimeException e) {
+                continue; // A syntax error: nothing to compare.
+            }
+
+            for (int k = 0; k < 4; k++) {
+                for (String variable : VARIABLES) engine.storeVariable(variable, VALUES[random.nextInt(VALUES.length)]);
+                engine.setLastAnswer(VALUES[random.nextInt(VALUES.length)]);
+                for (int mode = 0; mode < 2; mode++) {
+                    engine.setDegrees(mode == 1);
+                    EngineState snapshot = engine.getSnapshot();
+                    String expected = run(engine, plain, snapshot);
+                    String actual = run(engine, optimized, snapshot);
+                    compared++;
+                    if (!expected.equals(actual)) {
+                        failures++;
+                        if (failures <= 10) System.out.println("MISMATCH " + expression + (mode == 1 ? " (DEG): " : " (RAD): ") + expected + " vs " + actual);
+                    }
+                }
+            }
+        }
+
+        System.out.println(compared + " results compared, " + failures + " differed");
+        System.out.println(failures == 0 ? "PASSED" : "FAILED");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // A random expression at most 'depth' levels deep.
+    private static String generate(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) return LEAVES[random.nextInt(LEAVES.length)];
+        switch (random.nextInt(7)) {
+            case 0: return FUNCTIONS[random.nextInt(FUNCTIONS.length)] + "(" + generate(random, depth - 1) + ")";
+            case 1: return "-" + generate(random, depth - 1);
+            case 2: return "(" + generate(random, depth - 1) + ")";
+            default: return generate(random, depth - 1) + "+-*/^".charAt(random.nextInt(5)) + generate(random, depth - 1);
+        }
+    }
+
+    // The result's exact bits (all NaNs count as one), or the error message.
+    private static String run(CalculatorEngine engine, CompiledExpression compiled, EngineState snapshot) {
+        try {
+            return Long.toHexString(Double.doubleToLongBits(engine.evaluate(compiled, snapshot)));
+        } catch (RuntimeException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.math.BigDecimal; // Exact decimal numbers (slow, but 0.1 + 0.2 is really 0.3).
+import java.math.MathContext; // How many digits to keep, and how to round.
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.LongAdder; // A counter many threads can add to cheaply.
+
+// This class gives answers that are correct to a requested number of digits (e.g. "0.1+0.2" is 0.3,
+// not 0.30000000000000004), without making every calculation slow:
+//
+//   1. Fast path: run the program in 'double', and next to every number also keep an upper bound
+//      on how far it can be from the exact answer. If the whole range [value - error, value + error]
+//      rounds to the same digits, those digits are proven correct and we are done.
+//   2. Slow path: otherwise, run the program again with BigDecimal ranges, starting from the exact
+//      typed numbers (kept by CalculatorEngine.compileExact), with more and more extra digits
+//      until the digits are proven.
+//
+// BigDecimal can add, subtract, multiply, divide, take whole-number powers and square roots.
+// Other functions (sin, log, ...) are done in 'double' with their error bound, so they can prove
+// about 15 digits. Answers that could not be proven (user functions, asinh, or an exact rounding
+// tie) are still returned, and counted as 'approximate'.
+// The error bounds are worst-case bounds: the rounding of every operation (at most half an ulp),
+// the documented accuracy of java.lang.Math (1 or 2.5 ulps), and how much each function can
+// stretch the error of its argument (its largest slope over the argument's range).
+// OOP Concept: Encapsulation. The engine calls 'evaluate'; the two paths are hidden in here.
+public class AdaptivePrecision {
+
+    // π and e to 100 digits (enough for MAX_DIGITS plus the first guard digits). The slow path
+    // treats them as ranges of ± CONSTANT_ERROR, since their digits go on forever.
+    static final BigDecimal PI = new BigDecimal("3.141592653589793238462643383279502884197169399375105820974944592307816406286208998628034825342117068");
+    static final BigDecimal E = new BigDecimal("2.718281828459045235360287471352662497757247093699959574966967627724076630353547594571382178525166427");
+
+    private static final BigDecimal CONSTANT_ERROR = new BigDecimal("1E-99");
+    public static final int MAX_DIGITS = 80; // The most digits you can ask for.
+    private static final int GUARD_DIGITS = 10; // Extra digits the slow path starts with.
+    private static final int MAX_GUARD_DIGITS = 320; // The most extra digits it tries before giving up.
+    private static final double U = 0x1p-53; // The largest relative rounding error of one double operation.
+    private static final int FAST_DIGITS = 15; // Doubles can prove at most this many digits.
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private volatile MathContext mathContext = new MathContext(10, RoundingMode.HALF_EVEN); // 10 digits, like the display.
+
+    // --- Counters ---
+    private final LongAdder fastPath = new LongAdder(); // Answers proven by the double path.
+    private final LongAdder slowPath = new LongAdder(); // Answers that needed BigDecimal.
+    private final LongAdder approximate = new LongAdder(); // Slow-path answers that could not be proven.
+
+    // Each thread gets its own reusable stack for the fast path (values and their errors).
+    private static final ThreadLocal<double[]> SCRATCH = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[32];
+        }
+    };
+
+    // Sets how many digits answers must be correct to, and how to round them.
+    public void setMathContext(MathContext mathContext) {
+        if (mathContext.getPrecision() < 1 || mathContext.getPrecision() > MAX_DIGITS) {
+            throw new IllegalArgumentException("Digits must be between 1 and " + MAX_DIGITS);
+        }
+        this.mathContext = mathContext;
+    }
+
+    public MathContext getMathContext() {
+        return this.mathContext;
+    }
+
+    // Getters for the counters.
+    public long getFastPathCount() { return fastPath.sum(); }
+    public long getSlowPathCount() { return slowPath.sum(); }
+    public long getApproximateCount() { return approximate.sum(); }
+
+    // Sets all counters back to 0.
+    public void resetCounters() {
+        fastPath.reset();
+        slowPath.reset();
+        approximate.reset();
+    }
+
+    // Evaluates a program from CalculatorEngine.compileExact, correct to getMathContext() digits.
+    BigDecimal evaluate(CompiledExpression program, EngineState snapshot) {
+        if (program.getExactConstants() == null) throw new IllegalArgumentException("Not compiled with compileExact: " + program);
+        if (program.usesAns() && !snapshot.ansValid()) throw new RuntimeException("Syntax Error");
+        MathContext mc = this.mathContext; // Read once: another thread may change it.
+
+        BigDecimal result = runFast(program, snapshot, mc);
+        if (result != null) {
+            fastPath.increment();
+            return result;
+        }
+        slowPath.increment();
+        return runExact(program, snapshot, mc);
+    }
+
+    // --- 1. The fast path ---
+
+    // Runs the program in double with error bounds. Returns the proven answer, or null if it can't prove it.
+    private BigDecimal runFast(CompiledExpression program, EngineState snapshot, MathContext mc) {
+        if (mc.getPrecision() > FAST_DIGITS || !roundsToNearest(mc.getRoundingMode())) return null;
+
+        boolean isDegrees = snapshot.isDegrees();
+        int[] code = program.getCode(isDegrees);
+        double[] constants = program.getConstants(isDegrees);
+        double[] constantErrors = program.getConstantErrors();
+        MathFunction[] functions = program.getFunctions();
+        double[] vars = snapshot.vars();
+
+        int n = program.getMaxStack();
+        double[] stack = SCRATCH.get();
+        if (stack.length < 2 * n) {
+            stack = new double[2 * n];
+            SCRATCH.set(stack);
+        }
+        // stack[i] is a value, stack[n + i] is the bound on its error.
+        int sp = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >> 8;
+            switch (instruction & 0xFF) {
+                case CompiledExpression.PUSH: stack[sp] = constants[arg]; stack[n + sp] = constantErrors[arg]; sp++; break;
+                case CompiledExpression.LOAD_VAR: stack[sp] = vars[arg]; stack[n + sp] = 0.0; sp++; break; // Stored numbers are taken as exact.
+                case CompiledExpression.LOAD_ANS: stack[sp] = snapshot.ansValue(); stack[n + sp] = 0.0; sp++; break;
+                case CompiledExpression.NEG: stack[sp - 1] = -stack[sp - 1]; break; // Exact: the error stays the same.
+                case CompiledExpression.CALL: {
+                    MathFunction f = functions[arg];
+                    if (!f.isBuiltin()) return null; // We don't know how accurate user functions are.
+                    double x = stack[sp - 1], ex = stack[n + sp - 1];
+                    double v = BuiltinFunctions.apply(arg, x, isDegrees);
+                    double ev = functionError(arg, x, ex, v, isDegrees);
+                    if (!(ev >= 0) || Double.isInfinite(ev)) return null; // Could not bound it (NaN also lands here).
+                    if (underflowed(v, ev)) return null;
+                    stack[sp - 1] = v;
+                    stack[n + sp - 1] = ev;
+                    break;
+                }
+                case CompiledExpression.CALL2:
+                case CompiledExpression.LOAD_ARG: return null; // Only user functions use these.
+                case CompiledExpression.LOAD_I: throw new RuntimeException("Math Error"); // The same error as 'run'.
+                default: { // One of the five operators.
+                    sp--;
+                    double a = stack[sp - 1], ea = stack[n + sp - 1];
+                    double b = stack[sp], eb = stack[n + sp];
+                    double v, ev;
+                    switch (instruction & 0xFF) {
+                        case CompiledExpression.ADD: v = a + b; ev = ea + eb + Math.abs(v) * U; break;
+                        case CompiledExpression.SUB: v = a - b; ev = ea + eb + Math.abs(v) * U; break;
+                        case CompiledExpression.MUL:
+                            v = a * b;
+                            if (v == 0 && a != 0 && b != 0) return null; // The product underflowed to 0.
+                            ev = Math.abs(a) * eb + Math.abs(b) * ea + ea * eb + Math.abs(v) * U;
+                            break;
+                        case CompiledExpression.DIV:
+                            if (b == 0 && eb == 0) throw new ArithmeticException("Division by Zero"); // The same error as 'run'.
+                            if (eb >= Math.abs(b)) return null; // The exact divisor might be 0 (or might not be).
+                            v = a / b;
+                            if (v == 0 && a != 0) return null; // The quotient underflowed to 0.
+                            ev = (Math.abs(a) * eb + Math.abs(b) * ea) / (Math.abs(b) * (Math.abs(b) - eb)) + Math.abs(v) * U;
+                            break;
+                        default: // POW
+                            v = Math.pow(a, b);
+                            ev = powError(a, ea, b, eb, v);
+                            break;
+                    }
+                    if (!(ev >= 0) || Double.isInfinite(ev) || Double.isInfinite(v) || Double.isNaN(v)) return null;
+                    if (underflowed(v, ev)) return null;
+                    stack[sp - 1] = v;
+                    stack[n + sp - 1] = ev;
+                    break;
+                }
+            }
+        }
+        // The error sums above are themselves rounded, so make the bound a little bigger.
+        return roundIfProven(stack[0], stack[n] * (1 + 8 * U), mc);
+    }
+
+    // The bounds above take each rounding as at most |v| * U, which is only true for normal doubles.
+    // Below Double.MIN_NORMAL a result is rounded to a fixed step instead (and can even become 0),
+    // so a value or an error bound down there is never trusted: the exact path answers instead.
+    private static boolean underflowed(double v, double ev) {
+        return (v != 0 && Math.abs(v) < Double.MIN_NORMAL) || (ev != 0 && ev < Double.MIN_NORMAL);
+    }
+
+    // An error bound for f(x) when x is off by at most 'ex'. 'v' is the computed f(x).
+    // Returns NaN if we can't bound it.
+    private static double functionError(int id, double x, double ex, double v, boolean isDegrees) {
+        // sin, cos and tan take degrees in DEG mode: Math.toRadians adds one more rounding.
+        if (isDegrees && id <= BuiltinFunctions.TAN) {
+            double r = Math.toRadians(x);
+            ex = Math.toRadians(ex) * (1 + 4 * U) + Math.abs(r) * 3 * U;
+            x = r;
+        }
+        double slope; // The steepest the function gets between x - ex and x + ex.
+        double ulps; // How many ulps java.lang.Math may be off.
+        switch (id) {
+            case BuiltinFunctions.SIN:
+            case BuiltinFunctions.COS: slope = 1.0; ulps = 1; break;
+            case BuiltinFunctions.TAN: {
+                if (ex > 0.1) return Double.NaN;
+                double c1 = Math.cos(x - ex), c2 = Math.cos(x + ex);
+                if (Math.signum(c1) != Math.signum(c2) || c1 == 0) return Double.NaN; // There is a pole in between.
+                double c = Math.min(Math.abs(c1), Math.abs(c2)) * (1 - 4 * U);
+                slope = 1.0 / (c * c); // d/dx tan = 1/cos^2, largest where |cos| is smallest.
+                ulps = 1;
+                break;
+            }
+            case BuiltinFunctions.ASIN:
+            case BuiltinFunctions.ACOS: {
+                double far = Math.abs(x) + ex;
+                if (far >= 1) return Double.NaN; // Too close to the edge of the domain.
+                slope = 1.0 / Math.sqrt(1 - far * far) * (1 + 4 * U);
+                ulps = 1;
+                break;
+            }
+            case BuiltinFunctions.ATAN:
+            case BuiltinFunctions.TANH: slope = 1.0; ulps = (id == BuiltinFunctions.ATAN) ? 1 : 2.5; break;
+            case BuiltinFunctions.SINH:
+            case BuiltinFunctions.COSH: slope = Math.cosh(Math.abs(x) + ex) * (1 + 4 * U); ulps = 2.5; break;
+            case BuiltinFunctions.SQRT:
+                if (x - ex <= 0) return ex == 0 && x == 0 ? 0.0 : Double.NaN;
+                slope = 0.5 / Math.sqrt(x - ex) * (1 + 4 * U);
+                ulps = 0.5; // Math.sqrt is correctly rounded.
+                break;
+            case BuiltinFunctions.LN:
+            case BuiltinFunctions.LOG:
+                if (x - ex <= 0) return Double.NaN;
+                slope = 1.0 / (x - ex) * (1 + 4 * U);
+                if (id == BuiltinFunctions.LOG) slope /= 2.302585092994045; // ln(10), rounded down.
+                ulps = 1;
+                break;
+            default: return Double.NaN; // asinh, acosh, atanh use formulas with no known error bound.
+        }
+        double error = slope * ex + ulps * Math.ulp(v);
+        // asin, acos and atan give degrees in DEG mode: Math.toDegrees adds one more rounding.
+        if (isDegrees && id >= BuiltinFunctions.ASIN && id <= BuiltinFunctions.ATAN) {
+            error = Math.toDegrees(error) * (1 + 4 * U) + Math.abs(v) * 3 * U;
+        }
+        return error;
+    }
+
+    // An error bound for a^b. For a > 0, a^b only grows or only shrinks in each argument, so the
+    // extremes are at the corners of the ranges. For a < 0 that only works for whole exponents.
+    private static double powError(double a, double ea, double b, double eb, double v) {
+        if (ea == 0 && eb == 0) return 2 * Math.ulp(v); // Math.pow is within 1 ulp (plus 1 for safety).
+        boolean wholeExponent = eb == 0 && b == Math.rint(b);
+        if (a - ea <= 0 && !(wholeExponent && (a + ea < 0))) return Double.NaN; // The range touches 0, or a fractional power of a negative.
+        double worst = 0.0;
+        for (int i = 0; i < 4; i++) {
+            double corner = Math.pow(a + ((i & 1) == 0 ? -ea : ea), b + ((i & 2) == 0 ? -eb : eb));
+            worst = Math.max(worst, Math.abs(corner - v) + 2 * Math.ulp(corner));
+        }
+        return worst + 2 * Math.ulp(v);
+    }
+
+    // True for the rounding modes that round to the nearest digit (the tie rule doesn't matter
+    // here, because a value that is close to a tie is never proven).
+    private static boolean roundsToNearest(RoundingMode mode) {
+        return mode == RoundingMode.HALF_EVEN || mode == RoundingMode.HALF_UP || mode == RoundingMode.HALF_DOWN;
+    }
+
+    // Rounds v to mc's digits if every number within 'error' of v rounds to the same digits, otherwise null.
+    private static BigDecimal roundIfProven(double v, double error, MathContext mc) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Double.isNaN(error)) return null;
+        if (v == 0) return (error == 0) ? BigDecimal.ZERO : null;
+        int digits = mc.getPrecision();
+        double av = Math.abs(v);
+
+        // Scale v so it has 'digits' digits before the point: x = |v| * 10^shift.
+        int shift = digits - 1 - (int) Math.floor(Math.log10(av));
+        double x = scale(av, shift);
+        if (x >= POWERS_OF_TEN[digits]) x = scale(av, --shift); // log10 can be one off near powers of ten.
+        else if (x < POWERS_OF_TEN[digits - 1]) x = scale(av, ++shift);
+        if (Double.isNaN(x)) return null; // 10^shift is not an exact double.
+
+        double scaledError = scale(error, shift) * (1 + 4 * U) + x * 2 * U; // Scaling x rounded once too.
+        double nearest = Math.rint(x);
+        double distance = 0.5 - Math.abs(x - nearest); // How far x is from the nearest half-way point.
+        if (!(scaledError < distance)) return null; // The exact answer might round the other way.
+        if (x - scaledError < POWERS_OF_TEN[digits - 1]) return null; // It might have one digit less.
+
+        long unscaled = (long) nearest;
+        BigDecimal result = BigDecimal.valueOf(v < 0 ? -unscaled : unscaled, shift);
+        return (unscaled >= (long) POWERS_OF_TEN[digits]) ? result.round(mc) : result; // 9.99.. rounded up to 10.0.
+    }
+
+    // value * 10^shift with one rounding, or NaN if 10^shift is not an exact double.
+    private static double scale(double value, int shift) {
+        if (shift >= 0) return shift < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[shift] : Double.NaN;
+        return -shift < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-shift] : Double.NaN;
+    }
+
+    // --- 2. The slow path ---
+
+    // Runs the program with BigDecimal intervals: every value is kept as [low, high], rounded down
+    // and up, so the exact answer is always inside. If both ends round to the same digits, those
+    // digits are proven. If not, we try again with more digits (10 extra, then 20, 40, ...).
+    // If even the last try can't decide, the exact answer sits right on a rounding tie (e.g. 1/8
+    // reached through a repeating decimal), so we round the middle as if it were that tie.
+    private BigDecimal runExact(CompiledExpression program, EngineState snapshot, MathContext mc) {
+        int digits = mc.getPrecision();
+        for (int guard = GUARD_DIGITS; ; guard *= 2) {
+            boolean lastTry = guard >= MAX_GUARD_DIGITS;
+            Interval result = runIntervals(program, snapshot, digits + guard, lastTry);
+            if (result != null) {
+                BigDecimal low = result.low.round(mc), high = result.high.round(mc);
+                if (low.compareTo(high) == 0 && result.proven) return zeroIfZero(low);
+                if (lastTry || !result.proven) { // It can't get better than this.
+                    approximate.increment();
+                    if (result.proven && result.low.signum() <= 0 && result.high.signum() >= 0) return BigDecimal.ZERO; // e.g. 1-1^3.
+                    BigDecimal middle = result.low.add(result.high).divide(BigDecimal.valueOf(2));
+                    return zeroIfZero(middle.round(new MathContext(digits + guard / 2, RoundingMode.HALF_EVEN)).round(mc));
+                }
+            }
+        }
+    }
+
+    // A zero from the slow path keeps the scale of the step that made it (e.g. 0E-100 from 0*e),
+    // so we hand back plain BigDecimal.ZERO, the same 0 the fast path gives.
+    private static BigDecimal zeroIfZero(BigDecimal value) {
+        return value.signum() == 0 ? BigDecimal.ZERO : value;
+    }
+
+    // A range [low, high] that contains the exact value. 'proven' is false if a step could only guess.
+    private static final class Interval {
+        final BigDecimal low, high;
+        final boolean proven;
+
+        Interval(BigDecimal low, BigDecimal high, boolean proven) {
+            this.low = low;
+            this.high = high;
+            this.proven = proven;
+        }
+    }
+
+    // Runs the program once with 'precision' digits. Returns null if a step needs more digits
+    // (e.g. a divisor whose range still contains 0). On the last try such steps decide as best they can.
+    private static Interval runIntervals(CompiledExpression program, EngineState snapshot, int precision, boolean lastTry) {
+        MathContext down = new MathContext(precision, RoundingMode.FLOOR);
+        MathContext up = new MathContext(precision, RoundingMode.CEILING);
+        boolean isDegrees = snapshot.isDegrees();
+        int[] code = program.getCode(isDegrees);
+        BigDecimal[] exact = program.getExactConstants();
+        MathFunction[] functions = program.getFunctions();
+        double[] vars = snapshot.vars();
+        boolean proven = true;
+
+        BigDecimal[] low = new BigDecimal[program.getMaxStack()];
+        BigDecimal[] high = new BigDecimal[program.getMaxStack()];
+        int sp = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >> 8;
+            switch (instruction & 0xFF) {
+                case CompiledExpression.PUSH:
+                    if (exact[arg] == PI || exact[arg] == E) { // Only 100 of their digits are known.
+                        low[sp] = exact[arg].subtract(CONSTANT_ERROR);
+                        high[sp] = exact[arg].add(CONSTANT_ERROR);
+                    } else {
+                        low[sp] = high[sp] = exact[arg];
+                    }
+                    sp++;
+                    break;
+                case CompiledExpression.LOAD_VAR: low[sp] = high[sp] = exactOf(vars[arg]); sp++; break;
+                case CompiledExpression.LOAD_ANS: low[sp] = high[sp] = exactOf(snapshot.ansValue()); sp++; break;
+                case CompiledExpression.LOAD_I: throw new RuntimeException("Math Error"); // i is not a real number.
+                case CompiledExpression.NEG: {
+                    BigDecimal l = low[sp - 1];
+                    low[sp - 1] = high[sp - 1].negate();
+                    high[sp - 1] = l.negate();
+                    break;
+                }
+                case CompiledExpression.ADD:
+                    sp--;
+                    low[sp - 1] = low[sp - 1].add(low[sp], down);
+                    high[sp - 1] = high[sp - 1].add(high[sp], up);
+                    break;
+                case CompiledExpression.SUB: {
+                    sp--;
+                    BigDecimal l = low[sp - 1].subtract(high[sp], down);
+                    high[sp - 1] = high[sp - 1].subtract(low[sp], up);
+                    low[sp - 1] = l;
+                    break;
+                }
+                case CompiledExpression.MUL: {
+                    sp--;
+                    BigDecimal[] a = {low[sp - 1], high[sp - 1]}, b = {low[sp], high[sp]};
+                    BigDecimal l = null, h = null;
+                    for (BigDecimal x : a) {
+                        for (BigDecimal y : b) { // The extremes are at the corners.
+                            l = min(l, x.multiply(y, down));
+                            h = max(h, x.multiply(y, up));
+                        }
+                    }
+                    low[sp - 1] = l;
+                    high[sp - 1] = h;
+                    break;
+                }
+                case CompiledExpression.DIV: {
+                    sp--;
+                    if (low[sp].signum() == 0 && high[sp].signum() == 0) throw new ArithmeticException("Division by Zero");
+                    if (low[sp].signum() <= 0 && high[sp].signum() >= 0) { // The divisor might be 0.
+                        if (!lastTry) return null;
+                        throw new ArithmeticException("Division by Zero"); // Within 10^-300 of 0: it is 0.
+                    }
+                    BigDecimal[] a = {low[sp - 1], high[sp - 1]}, b = {low[sp], high[sp]};
+                    BigDecimal l = null, h = null;
+                    for (BigDecimal x : a) {
+                        for (BigDecimal y : b) {
+                            l = min(l, x.divide(y, down));
+                            h = max(h, x.divide(y, up));
+                        }
+                    }
+                    low[sp - 1] = l;
+                    high[sp - 1] = h;
+                    break;
+                }
+                case CompiledExpression.POW: {
+                    sp--;
+                    BigDecimal exponent = low[sp];
+                    if (exponent.compareTo(high[sp]) == 0 && isSmallWholeNumber(exponent)) {
+                        int n = exponent.intValueExact();
+                        if (!power(low, high, sp - 1, n, precision, lastTry)) return null;
+                    } else {
+                        proven &= inDoubles(low, high, sp - 1, Math.pow(middle(low[sp - 1], high[sp - 1]), middle(low[sp], high[sp])));
+                    }
+                    break;
+                }
+                case CompiledExpression.CALL: {
+                    MathFunction f = functions[arg];
+                    if (f.isBuiltin() && arg == BuiltinFunctions.SQRT) {
+                        if (high[sp - 1].signum() < 0) throw new RuntimeException("Math Error"); // No real square root.
+                        if (low[sp - 1].signum() < 0) { // The exact argument might be just below 0.
+                            if (!lastTry) return null;
+                            low[sp - 1] = BigDecimal.ZERO;
+                        }
+                        // BigDecimal.sqrt is within one ulp, so step one ulp further out.
+                        BigDecimal l = low[sp - 1].sqrt(down), h = high[sp - 1].sqrt(up);
+                        low[sp - 1] = widen(l, -1, precision);
+                        high[sp - 1] = widen(h, 1, precision);
+                        if (low[sp - 1].signum() < 0) low[sp - 1] = BigDecimal.ZERO;
+                    } else if (f.isBuiltin()) {
+                        // No BigDecimal version: use the double function, with its error bound if we have one.
+                        double x = middle(low[sp - 1], high[sp - 1]);
+                        double ex = high[sp - 1].subtract(low[sp - 1]).doubleValue() + Math.ulp(x);
+                        double v = BuiltinFunctions.apply(arg, x, isDegrees);
+                        double ev = functionError(arg, x, ex, v, isDegrees);
+                        // A bound wider than the value itself (e.g. tanh of a huge, rough number) proves nothing.
+                        if (ev >= 0 && ev <= Math.abs(v) * 0x1p-20 && !Double.isInfinite(v)) {
+                            BigDecimal center = new BigDecimal(v), radius = new BigDecimal(ev);
+                            low[sp - 1] = center.subtract(radius);
+                            high[sp - 1] = center.add(radius);
+                        } else {
+                            proven &= inDoubles(low, high, sp - 1, v);
+                        }
+                    } else { // A user function: we can only take its double answer.
+                        CompiledExpression body = f.getBody();
+                        double[] room = new double[body == null ? 0 : body.getMaxStack()];
+                        proven &= inDoubles(low, high, sp - 1, f.apply(middle(low[sp - 1], high[sp - 1]), vars, snapshot.ansValue(), isDegrees, room, 0));
+                    }
+                    break;
+                }
+                case CompiledExpression.CALL2:
+                    sp--;
+                    proven &= inDoubles(low, high, sp - 1, functions[arg].apply(middle(low[sp - 1], high[sp - 1]), middle(low[sp], high[sp])));
+                    break;
+            }
+        }
+        return new Interval(low[0], high[0], proven);
+    }
+
+    // Raises the interval in slot i to the whole power n. Returns false if it needs more digits.
+    private static boolean power(BigDecimal[] low, BigDecimal[] high, int i, int n, int precision, boolean lastTry) {
+        BigDecimal l = low[i], h = high[i];
+        boolean containsZero = l.signum() <= 0 && h.signum() >= 0;
+        if (n < 0 && containsZero) {
+            if (l.signum() == 0 && h.signum() == 0) throw new RuntimeException("Math Error"); // 0 to a negative power.
+            if (!lastTry) return false;
+            throw new RuntimeException("Math Error");
+        }
+        if (n >= 0 && l.compareTo(h) == 0 && (long) l.precision() * n <= precision) {
+            low[i] = high[i] = l.pow(n); // Short enough to do exactly (e.g. 1.1^4 = 1.4641).
+            return true;
+        }
+        // BigDecimal.pow(n, mc) is within two ulps, so we step two ulps further out.
+        MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+        BigDecimal powerOfLow = l.pow(n, mc), powerOfHigh = h.pow(n, mc);
+        BigDecimal a = widen(powerOfLow, -2, precision), b = widen(powerOfHigh, -2, precision);
+        BigDecimal c = widen(powerOfLow, 2, precision), d = widen(powerOfHigh, 2, precision);
+        low[i] = min(a, b);
+        high[i] = max(c, d);
+        if (containsZero && n % 2 == 0 && n > 0) low[i] = BigDecimal.ZERO; // e.g. [-1, 2]^2 is [0, 4].
+        return true;
+    }
+
+    // Moves a value 'ulps' units in its last place (down if negative), where the last place is
+    // digit number 'precision' (BigDecimal.ulp can't be used: "2" has an ulp of 1).
+    private static BigDecimal widen(BigDecimal value, int ulps, int precision) {
+        if (value.signum() == 0) return value; // 0 is always exact (e.g. 0^4).
+        BigDecimal ulp = BigDecimal.ONE.scaleByPowerOfTen(value.precision() - value.scale() - precision);
+        return value.add(ulp.multiply(BigDecimal.valueOf(ulps)));
+    }
+
+    // Puts a double answer into slot i (for steps BigDecimal can't do). Returns false: it is not proven.
+    private static boolean inDoubles(BigDecimal[] low, BigDecimal[] high, int i, double value) {
+        low[i] = high[i] = exactOf(value);
+        return false;
+    }
+
+    // The middle of an interval, as a double.
+    private static double middle(BigDecimal low, BigDecimal high) {
+        return low.add(high).doubleValue() / 2;
+    }
+
+    private static BigDecimal min(BigDecimal a, BigDecimal b) {
+        return (a == null || b.compareTo(a) < 0) ? b : a;
+    }
+
+    private static BigDecimal max(BigDecimal a, BigDecimal b) {
+        return (a == null || b.compareTo(a) > 0) ? b : a;
+    }
+
+    // True if the number is a whole number BigDecimal.pow can handle.
+    private static boolean isSmallWholeNumber(BigDecimal value) {
+        return value.signum() == 0 || (value.stripTrailingZeros().scale() <= 0 && value.abs().compareTo(BigDecimal.valueOf(9999)) <= 0);
+    }
+
+    // The exact value of a double. NaN and infinity have no decimal value.
+    private static BigDecimal exactOf(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) throw new RuntimeException("Math Error");
+        return new BigDecimal(value);
+    }
+}
@@ -0,0 +1,49 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class knows every function built into the calculator (sin, cos, log, ...).
+// Each function has a small integer 'id', so compiled programs can say "CALL 3"
+// instead of comparing strings every time they run. These ids are the same in every
+// FunctionTable; functions the user defines get the ids after COUNT.
+// OOP Concept: Abstraction. Callers only use an id; the math is hidden in here.
+final class BuiltinFunctions {
+
+    // --- Function ids ---
+    static final int SIN = 0, COS = 1, TAN = 2;
+    static final int ASIN = 3, ACOS = 4, ATAN = 5;
+    static final int SINH = 6, COSH = 7, TANH = 8;
+    static final int ASINH = 9, ACOSH = 10, ATANH = 11;
+    static final int SQRT = 12, LOG = 13, LN = 14;
+    static final int COUNT = 15; // How many functions there are.
+
+    // The name of each function, indexed by its id.
+    static final String[] NAMES = {
+        "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+        "asinh", "acosh", "atanh", "sqrt", "log", "ln"
+    };
+
+    private BuiltinFunctions() { }
+
+    // This applies function 'id' to a number.
+    static double apply(int id, double val, boolean isDegrees) {
+        switch (id) {
+            // Basic trig functions take degrees in DEG mode, so convert to radians first.
+            case SIN: return Math.sin(isDegrees ? Math.toRadians(val) : val);
+            case COS: return Math.cos(isDegrees ? Math.toRadians(val) : val);
+            case TAN: return Math.tan(isDegrees ? Math.toRadians(val) : val);
+            // Inverse trig results are converted back to degrees in DEG mode.
+            case ASIN: return isDegrees ? Math.toDegrees(Math.asin(val)) : Math.asin(val);
+            case ACOS: return isDegrees ? Math.toDegrees(Math.acos(val)) : Math.acos(val);
+            case ATAN: return isDegrees ? Math.toDegrees(Math.atan(val)) : Math.atan(val);
+            case SINH: return Math.sinh(val);
+            case COSH: return Math.cosh(val);
+            case TANH: return Math.tanh(val);
+            case ASINH: return Math.log(val + Math.sqrt(val*val + 1.0));
+            case ACOSH: return Math.log(val + Math.sqrt(val*val - 1.0));
+            case ATANH: return 0.5 * Math.log((1.0 + val) / (1.0 - val));
+            case SQRT: return Math.sqrt(val);
+            case LOG: return Math.log10(val);
+            case LN: return Math.log(val);
+            default: throw new RuntimeException("Unknown function: " + id);
+        }
+    }
+}
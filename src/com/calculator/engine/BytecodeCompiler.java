@@ -0,0 +1,335 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.io.ByteArrayOutputStream; // The class file is written into memory.
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles; // Defines the hidden classes.
+import java.util.HashMap;
+import java.util.Map;
+
+// This class is the second tier of the engine. Once a program has been run THRESHOLD times (see
+// CompiledExpression.run), it is turned into a small class with one method that computes the
+// expression straight from its arguments, e.g. "sin(A)*2+X" becomes
+//   return Math.sin(Math.toRadians(vars[0])) * 2.0 + vars[6];
+// There is no loop, no switch and no stack array, so the JIT compiles it like code we wrote by
+// hand (and inlines Math.sin and friends). The values live on the JVM's own operand stack.
+//
+// The class is a 'hidden class' (MethodHandles.Lookup.defineHiddenClass): it has no name other
+// code can find, and since it is not defined as STRONG, the JVM can unload it as soon as its
+// CompiledExpression is gone (e.g. evicted from the ExpressionCache).
+//
+// The answers are exactly the same as the interpreter's: the same double operations in the same
+// order, the same Math methods, the same DEG/RAD conversions, and the same errors ("Division by
+// Zero", and "Math Error" for i). Anything that could throw is a call to one of the small static
+// helpers below, so the generated method never branches (and needs no stack map frames).
+// Set -Dcalculator.bytecodeThreshold=0 to turn this tier off.
+// OOP Concept: Abstraction. CompiledExpression only calls 'compile'.
+final class BytecodeCompiler {
+
+    // How many interpreted runs a program needs before it is compiled to bytecode.
+    static final int THRESHOLD = Integer.getInteger("calculator.bytecodeThreshold", 1000);
+
+    // Bigger programs stay interpreted (a JVM method may hold at most 64 KB of bytecode).
+    static final int MAX_INSTRUCTIONS = 4000;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup(); // Hidden classes go in this package.
+    private static final String CLASS_NAME = "com/calculator/engine/GeneratedExpression";
+    private static final String RUN_DESCRIPTOR = "([DDD[Lcom/calculator/engine/MathFunction;[DI)D";
+
+    // The local variable slots of the generated 'run' (a double takes two).
+    private static final int VARS = 1, ANS = 2, ARGUMENT = 4, FUNCTIONS = 6, STACK = 7, BASE = 8, LOCALS = 9;
+
+    private BytecodeCompiler() { }
+
+    // Returns the bytecode version of 'program' in one mode, or null if it can't be made
+    // (the program is too long, or this JVM refuses the class). Then the interpreter just goes on.
+    static BytecodeProgram compile(CompiledExpression program, boolean isDegrees) {
+        int[] code = program.getCode(isDegrees);
+        if (code.length > MAX_INSTRUCTIONS) return null;
+        try {
+            byte[] bytes = writeClass(code, program.getConstants(isDegrees), program.getFunctions(), program.getMaxStack(), isDegrees);
+            Class<?> hidden = LOOKUP.defineHiddenClass(bytes, true).lookupClass(); // Not STRONG: it can be unloaded.
+            return (BytecodeProgram) hidden.getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // --- Helpers the generated code calls ---
+
+    static double divide(double a, double b) {
+        if (b == 0) throw new ArithmeticException("Division by Zero"); // The same check as 'run'.
+        return a / b;
+    }
+
+    static double call(double x, MathFunction f, double[] vars, double ans, boolean isDegrees, double[] stack, int base) {
+        return f.apply(x, vars, ans, isDegrees, stack, base);
+    }
+
+    static double call2(double a, double b, MathFunction f) {
+        return f.apply(a, b);
+    }
+
+    static double imaginary() {
+        throw new RuntimeException("Math Error"); // i is not a real number (the same as 'run').
+    }
+
+    // --- Writing the class file ---
+
+    // JVM instruction codes (see the JVM specification, chapter 6).
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14;
+    private static final int ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, ALOAD_0 = 0x2a;
+    private static final int DALOAD = 0x31, AALOAD = 0x32;
+    private static final int POP2 = 0x58, DUP2 = 0x5c, DUP2_X2 = 0x5e;
+    private static final int DCONST_1 = 0x0f, DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+    private static final int DRETURN = 0xaf, RETURN = 0xb1, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private static byte[] writeClass(int[] code, double[] constants, MathFunction[] functions, int maxStack, boolean isDegrees) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        for (int instruction : code) {
+            int arg = instruction >> 8;
+            switch (instruction & 0xFF) {
+                case CompiledExpression.PUSH: body.write(LDC2_W); u2(body, pool.doubleConstant(constants[arg])); break;
+                case CompiledExpression.LOAD_VAR: // vars[arg]
+                    body.write(ALOAD); body.write(VARS);
+                    pushInt(body, pool, arg);
+                    body.write(DALOAD);
+                    break;
+                case CompiledExpression.LOAD_ANS: body.write(DLOAD); body.write(ANS); break;
+                case CompiledExpression.LOAD_ARG: body.write(DLOAD); body.write(ARGUMENT); break;
+                case CompiledExpression.LOAD_I: invokeHelper(body, pool, "imaginary", "()D"); break;
+                case CompiledExpression.ADD: body.write(DADD); break;
+                case CompiledExpression.SUB: body.write(DSUB); break;
+                case CompiledExpression.MUL: body.write(DMUL); break;
+                case CompiledExpression.DIV: invokeHelper(body, pool, "divide", "(DD)D"); break;
+                case CompiledExpression.POW: invokeMath(body, pool, "pow", "(DD)D"); break;
+                case CompiledExpression.NEG: body.write(DNEG); break;
+                case CompiledExpression.CALL:
+                    if (functions[arg].isBuiltin()) {
+                        builtin(body, pool, arg, isDegrees);
+                    } else { // call(x, functions[arg], vars, ans, isDegrees, stack, base)
+                        loadFunction(body, pool, arg);
+                        body.write(ALOAD); body.write(VARS);
+                        body.write(DLOAD); body.write(ANS);
+                        body.write(ICONST_0 + (isDegrees ? 1 : 0));
+                        body.write(ALOAD); body.write(STACK);
+                        body.write(ILOAD); body.write(BASE);
+                        invokeHelper(body, pool, "call", "(DLcom/calculator/engine/MathFunction;[DDZ[DI)D");
+                    }
+                    break;
+                case CompiledExpression.CALL2:
+                    loadFunction(body, pool, arg);
+                    invokeHelper(body, pool, "call2", "(DDLcom/calculator/engine/MathFunction;)D");
+                    break;
+                default: throw new IllegalStateException("Unknown instruction: " + (instruction & 0xFF));
+            }
+        }
+        body.write(DRETURN);
+
+        // The class: final, implements BytecodeProgram, a constructor and 'run'.
+        int thisClass = pool.classRef(CLASS_NAME);
+        int objectClass = pool.classRef("java/lang/Object");
+        int interfaceClass = pool.classRef("com/calculator/engine/BytecodeProgram");
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>"), initType = pool.utf8("()V");
+        int runName = pool.utf8("run"), runType = pool.utf8(RUN_DESCRIPTOR);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // Minor version.
+        out.writeShort(61); // Java 17.
+        pool.writeTo(out);
+        out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+        out.writeShort(thisClass);
+        out.writeShort(objectClass);
+        out.writeShort(1); // One interface.
+        out.writeShort(interfaceClass);
+        out.writeShort(0); // No fields.
+        out.writeShort(2); // Two methods.
+
+        byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit, (byte) RETURN};
+        writeMethod(out, initName, initType, codeName, 1, 1, init);
+        // Every value takes two slots; the extra 8 is for a helper call's arguments (or atanh's copies).
+        writeMethod(out, runName, runType, codeName, 2 * maxStack + 8, LOCALS, body.toByteArray());
+
+        out.writeShort(0); // No class attributes.
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // One built-in function on the value on top of the stack, exactly like BuiltinFunctions.apply.
+    private static void builtin(ByteArrayOutputStream body, ConstantPool pool, int id, boolean isDegrees) {
+        switch (id) {
+            case BuiltinFunctions.SIN: case BuiltinFunctions.COS: case BuiltinFunctions.TAN:
+                if (isDegrees) invokeMath(body, pool, "toRadians", "(D)D");
+                invokeMath(body, pool, BuiltinFunctions.NAMES[id], "(D)D");
+                break;
+            case BuiltinFunctions.ASIN: case BuiltinFunctions.ACOS: case BuiltinFunctions.ATAN:
+                invokeMath(body, pool, BuiltinFunctions.NAMES[id], "(D)D");
+                if (isDegrees) invokeMath(body, pool, "toDegrees", "(D)D");
+                break;
+            case BuiltinFunctions.SINH: case BuiltinFunctions.COSH: case BuiltinFunctions.TANH: case BuiltinFunctions.SQRT:
+                invokeMath(body, pool, BuiltinFunctions.NAMES[id], "(D)D");
+                break;
+            case BuiltinFunctions.LOG: invokeMath(body, pool, "log10", "(D)D"); break;
+            case BuiltinFunctions.LN: invokeMath(body, pool, "log", "(D)D"); break;
+            case BuiltinFunctions.ASINH: case BuiltinFunctions.ACOSH: // log(v + sqrt(v*v ± 1.0))
+                body.write(DUP2);
+                body.write(DUP2);
+                body.write(DMUL);
+                body.write(DCONST_1);
+                body.write(id == BuiltinFunctions.ASINH ? DADD : DSUB);
+                invokeMath(body, pool, "sqrt", "(D)D");
+                body.write(DADD);
+                invokeMath(body, pool, "log", "(D)D");
+                break;
+            case BuiltinFunctions.ATANH: // 0.5 * log((1.0 + v) / (1.0 - v))
+                body.write(DUP2); // v v
+                body.write(DCONST_1);
+                body.write(DADD); // v (v+1)
+                body.write(DUP2_X2);
+                body.write(POP2); // (v+1) v
+                body.write(DNEG);
+                body.write(DCONST_1);
+                body.write(DADD); // (v+1) (1-v), the same bits as 1.0 - v
+                body.write(DDIV);
+                invokeMath(body, pool, "log", "(D)D");
+                body.write(LDC2_W);
+                u2(body, pool.doubleConstant(0.5));
+                body.write(DMUL);
+                break;
+            default: throw new IllegalStateException("Unknown function: " + id);
+        }
+    }
+
+    // Pushes functions[id].
+    private static void loadFunction(ByteArrayOutputStream body, ConstantPool pool, int id) {
+        body.write(ALOAD);
+        body.write(FUNCTIONS);
+        pushInt(body, pool, id);
+        body.write(AALOAD);
+    }
+
+    private static void pushInt(ByteArrayOutputStream body, ConstantPool pool, int value) {
+        if (value <= 5) {
+            body.write(ICONST_0 + value);
+        } else if (value < 128) {
+            body.write(BIPUSH);
+            body.write(value);
+        } else {
+            body.write(SIPUSH); // Function ids and slots are far below 32768.
+            u2(body, value);
+        }
+    }
+
+    private static void invokeMath(ByteArrayOutputStream body, ConstantPool pool, String name, String descriptor) {
+        body.write(INVOKESTATIC);
+        u2(body, pool.methodRef("java/lang/Math", name, descriptor));
+    }
+
+    private static void invokeHelper(ByteArrayOutputStream body, ConstantPool pool, String name, String descriptor) {
+        body.write(INVOKESTATIC);
+        u2(body, pool.methodRef("com/calculator/engine/BytecodeCompiler", name, descriptor));
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int type, int codeName, int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001); // ACC_PUBLIC
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1); // One attribute: Code.
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length); // The length of everything below.
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // No exception handlers.
+        out.writeShort(0); // No attributes.
+    }
+
+    private static void u2(ByteArrayOutputStream body, int value) {
+        body.write(value >> 8);
+        body.write(value);
+    }
+
+    // The class file's table of constants (names, types, numbers). Each one is added only once.
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private int count = 1; // Entry 0 is never used.
+
+        int utf8(String text) {
+            Integer index = indexes.get("U" + text);
+            if (index != null) return index;
+            write(1, text, null);
+            return add("U" + text, 1);
+        }
+
+        int classRef(String internalName) {
+            Integer index = indexes.get("C" + internalName);
+            if (index != null) return index;
+            int name = utf8(internalName);
+            write(7, null, new int[] {name});
+            return add("C" + internalName, 1);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = indexes.get(key);
+            if (index != null) return index;
+            int ownerClass = classRef(owner);
+            int nameIndex = utf8(name), typeIndex = utf8(descriptor);
+            Integer nameAndType = indexes.get("N" + name + descriptor);
+            if (nameAndType == null) {
+                write(12, null, new int[] {nameIndex, typeIndex});
+                nameAndType = add("N" + name + descriptor, 1);
+            }
+            write(10, null, new int[] {ownerClass, nameAndType});
+            return add(key, 1);
+        }
+
+        int doubleConstant(double value) {
+            String key = "D" + Double.doubleToRawLongBits(value); // -0.0 and 0.0 are different constants.
+            Integer index = indexes.get(key);
+            if (index != null) return index;
+            try {
+                out.writeByte(6);
+                out.writeLong(Double.doubleToRawLongBits(value));
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // Never happens: it writes to memory.
+            }
+            return add(key, 2); // A double takes two entries.
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            if (count > 0xFFFF) throw new IOException("Too many constants");
+            target.writeShort(count);
+            out.flush();
+            bytes.writeTo(target);
+        }
+
+        private int add(String key, int size) {
+            int index = count;
+            indexes.put(key, index);
+            count += size;
+            return index;
+        }
+
+        // One entry: a UTF-8 text, or a tag followed by two-byte indexes.
+        private void write(int tag, String text, int[] refs) {
+            try {
+                out.writeByte(tag);
+                if (text != null) out.writeUTF(text);
+                else for (int ref : refs) out.writeShort(ref);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
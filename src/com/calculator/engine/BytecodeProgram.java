@@ -0,0 +1,12 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// A compiled program that was turned into real JVM bytecode by BytecodeCompiler.
+// Each one is an object of its own hidden class, made for one expression in one DEG/RAD mode.
+// It does exactly what CompiledExpression.run does with the same arguments.
+// OOP Concept: Polymorphism. CompiledExpression calls 'run' without knowing which class it is.
+interface BytecodeProgram {
+
+    // 'functions' is the program's function table; 'stack' (from index 'base' upwards) is free
+    // space for the user functions it calls.
+    double run(double[] vars, double ans, double argument, MathFunction[] functions, double[] stack, int base);
+}
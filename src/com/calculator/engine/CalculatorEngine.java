@@ -1,260 +1,507 @@
 package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
 
-import java.util.ArrayList; // We need ArrayList to build our 'stack' data structure.
-import java.util.Arrays; // We need this for a helper list of trig functions.
+import java.math.BigDecimal; // Answers from the adaptive-precision mode.
+import java.util.concurrent.ForkJoinPool; // Runs big X sweeps on all CPU cores.
+import java.util.concurrent.atomic.AtomicReference; // Lets us swap in a new state in one safe step.
 
 // This is the 'brain' of our calculator. It does all the math.
 // OOP Concept: This class is a good example of Abstraction and Encapsulation.
 // It hides all complex logic from the UI.
-public class CalculatorEngine { 
+// One engine can be shared by many threads: every evaluation reads one frozen EngineState,
+// and every change swaps in a new EngineState, so nobody ever has to wait for a lock.
+public class CalculatorEngine {
 
     // --- Calculation State ---
     // All these variables are 'private', so only this class can access them directly.
     // OOP Concept: This is Encapsulation.
-    private double varA, varB, varC, varD, varE, varF, varX; // For STO/RCL memory.
-    private double varM = 0.0; // For M+ memory.
-    private String lastAnswer = "0"; // For the 'Ans' button.
-    private boolean isDegrees = true; // To track DEG or RAD mode.
+    // The variables (A..F, X, M), 'Ans' and DEG/RAD mode all live in one immutable EngineState.
+    private final AtomicReference<EngineState> state = new AtomicReference<EngineState>(EngineState.INITIAL);
+    private volatile ExpressionCache cache = null; // Remembers compiled expressions (off until enableCache is called).
+    private final EngineMetrics metrics = new EngineMetrics(); // Timing numbers (off until metrics.setEnabled(true)).
+    private final FunctionRegistry functions = new FunctionRegistry(); // The built-in functions, plus any the user defines.
+    private final AdaptivePrecision precision = new AdaptivePrecision(); // Settings and counters for evaluateDecimal.
+    private volatile EvaluationLimits limits = new EvaluationLimits(); // How big an expression may be (see useLimits).
+
+    // True if this JVM has Java Flight Recorder (a trimmed-down runtime might not).
+    private static final boolean JFR_AVAILABLE = jfrAvailable();
+
+    // Each thread gets its own reusable stack for running compiled programs.
+    private static final ThreadLocal<double[]> SCRATCH = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[16];
+        }
+    };
 
     // --- Public Methods (API for the Engine) ---
     // These 'public' methods are the *only* way the UI can interact with this class.
+    // Every setter below works the same way: read the current state, build a changed copy,
+    // and swap it in with 'compareAndSet'. If another thread changed the state in between,
+    // the swap fails and we simply try again with the newer state.
 
-    // A 'setter' method to change the private 'isDegrees' variable.
+    // A 'setter' method to change the DEG/RAD mode.
     // OOP Concept: This is part of Encapsulation.
-    public void setDegrees(boolean isDegrees) { 
-        this.isDegrees = isDegrees; // 'this' refers to the current object.
+    public void setDegrees(boolean isDegrees) {
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withDegrees(isDegrees)));
     }
 
-    // A 'getter' method to read the private 'isDegrees' variable.
+    // A 'getter' method to read the DEG/RAD mode.
     // OOP Concept: This is also part of Encapsulation.
-    public boolean isDegrees() { 
-        return this.isDegrees;
+    public boolean isDegrees() {
+        return state.get().isDegrees();
+    }
+
+    // Setter for 'lastAnswer'. We turn it into a number once here, not on every evaluation.
+    // A complex answer like "3+4i" works too, but only complex mode (evaluateComplex) can use it.
+    public void setLastAnswer(String lastAnswer) {
+        Complex answer = Complex.parse(lastAnswer); // null: using 'Ans' will be a Syntax Error.
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withLastAnswer(lastAnswer, answer)));
+    }
+
+    // Setter for 'lastAnswer' straight from a result (what '=' does). The exact double is kept,
+    // so nothing is turned into text and read back; the text is just what the display shows.
+    public void setLastAnswer(double lastAnswer) {
+        setLastAnswer(new Complex(lastAnswer, 0.0));
     }
 
-    // Setter for 'lastAnswer'.
-    public void setLastAnswer(String lastAnswer) { 
-        this.lastAnswer = lastAnswer;
+    // The same for a complex result (from evaluateComplex).
+    public void setLastAnswer(Complex lastAnswer) {
+        String text = lastAnswer.isReal() ? NumberFormatter.format(lastAnswer.getReal()) : lastAnswer.toString();
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withLastAnswer(text, lastAnswer)));
     }
 
     // Getter for 'varM'.
-    public double getM() { 
-        return this.varM;
+    public double getM() {
+        return state.get().vars()[CompiledExpression.SLOT_M];
     }
 
     // Setter for 'varM'.
-    public void setM(double m) { 
-        this.varM = m;
+    public void setM(double m) {
+        setSlot(CompiledExpression.SLOT_M, m);
     }
-    
+
+    // Adds to 'varM' in one safe step (so two threads pressing M+ never lose an update).
+    public void addToM(double amount) {
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withVariable(CompiledExpression.SLOT_M, current.vars()[CompiledExpression.SLOT_M] + amount)));
+    }
+
     // This public method lets the UI store a value in one of our private variables.
-    public void storeVariable(String varName, double value) { 
-        switch (varName) { 
-            case "A": this.varA = value; break; // 'this.varA' refers to the private field.
-            case "B": this.varB = value; break;
-            case "C": this.varC = value; break;
-            case "D": this.varD = value; break;
-            case "E": this.varE = value; break;
-            case "F": this.varF = value; break;
-            case "X": this.varX = value; break;
-            case "M": this.varM = value; break;
-        }
+    public void storeVariable(String varName, double value) {
+        if (!isVariableName(varName)) return; // Unknown names are ignored, as before.
+        setSlot(Lexer.variableSlot(varName.charAt(0)), value);
     }
 
-    // --- ArrayList-based Stack helper methods ---
-    // These methods are 'private', so the UI can't see them.
-    // OOP Concept: This is Abstraction. We are hiding *how* our stack works.
-    
-    // A 'generic' push method (works for any type 'T').
-    private <T> void push(ArrayList<T> list, T item) { 
-        list.add(item); // Add the item to the end of the list.
+    // True for the names storeVariable accepts: "A".."F", "X" and "M".
+    public static boolean isVariableName(String varName) {
+        return varName.length() == 1 && Lexer.variableSlot(varName.charAt(0)) >= 0;
     }
-    
-    // A 'generic' pop method.
-    private <T> T pop(ArrayList<T> list) { 
-        if (list.isEmpty()) throw new RuntimeException("Stack underflow"); // Safety check.
-        return list.remove(list.size() - 1); // Remove and return the last item.
+
+    // Returns the current frozen state. Evaluating against it always gives consistent results,
+    // even if other threads change variables in the meantime.
+    public EngineState getSnapshot() {
+        return state.get();
     }
-    
-    // A 'generic' peek method.
-    private <T> T peek(ArrayList<T> list) { 
-        if (list.isEmpty()) throw new RuntimeException("Stack is empty"); // Safety check.
-        return list.get(list.size() - 1); // Return the last item (but don't remove it).
+
+    // This private helper swaps in a state with one variable slot changed.
+    private void setSlot(int slot, double value) {
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withVariable(slot, value)));
+    }
+
+    // Turns on the expression cache. It keeps at most 'maxSize' expressions and evicts by 'policy'.
+    // Only expressions without variables, 'Ans' and impure functions get their result stored, so
+    // storeVariable, setM and setLastAnswer never make a stored result wrong. Each result remembers the
+    // DEG/RAD mode it was computed in, so after setDegrees it is simply computed again.
+    public void enableCache(int maxSize, ExpressionCache.Policy policy) {
+        this.cache = new ExpressionCache(maxSize, policy);
+    }
+
+    // Uses a cache that may also be used by other engines (e.g. one per server session).
+    // This is safe because cached programs never depend on an engine's variables, and stored
+    // results are only kept for expressions without variables, 'Ans' or impure functions.
+    public void useCache(ExpressionCache cache) {
+        this.cache = cache;
+    }
+
+    // Turns the expression cache off and forgets everything in it.
+    public void disableCache() {
+        this.cache = null;
+    }
+
+    // Getter for the cache (null if it is off), so callers can read its counters.
+    public ExpressionCache getCache() {
+        return this.cache;
     }
-    // --- End of ArrayList-based Stack helpers ---
 
     // This is the main public method the UI calls to get a result.
     // OOP Concept: Abstraction. The UI doesn't know *how* we evaluate, just that we *do*.
-    public double evaluate(String expression) { 
-        // Step 1: Replace all variable names with their stored values.
-        expression = expression.replaceAll("A", "(" + this.varA + ")");
-        expression = expression.replaceAll("B", "(" + this.varB + ")");
-        // ... (rest of variable replacements) ...
-        expression = expression.replaceAll("C", "(" + this.varC + ")");
-        expression = expression.replaceAll("D", "(" + this.varD + ")");
-        expression = expression.replaceAll("E", "(" + this.varE + ")");
-        expression = expression.replaceAll("F", "(" + this.varF + ")");
-        expression = expression.replaceAll("X", "(" + this.varX + ")");
-        expression = expression.replaceAll("M", "(" + this.varM + ")");
-
-        expression = expression.replaceAll("Ans", "(" + this.lastAnswer + ")");
-        expression = expression.replaceAll("π", String.valueOf(Math.PI));
-        expression = expression.replaceAll("e", String.valueOf(Math.E));
-        expression = expression.replaceAll("√", "sqrt"); // Change '√' to "sqrt"
-        
-        // Step 2: Add implied multiplication (e.g., "5sin" -> "5*sin")
-        expression = expression.replaceAll("(\\d)([a-zA-Z(])", "$1*$2"); 
-        expression = expression.replaceAll("(\\))(\\d)", "$1*$2"); 
-        expression = expression.replaceAll("(\\))([a-zA-Z(])", "$1*$2"); 
-        
-        char[] tokens = expression.toCharArray(); // Convert the string into an array of characters.
-        
-        // We use two ArrayLists as 'stacks' to do the math.
-        ArrayList<Double> values = new ArrayList<Double>(); // One stack for numbers.
-        ArrayList<Object> ops = new ArrayList<Object>(); // One stack for operators ('+' or "sin").
-
-        // Step 3: Loop through the expression (This is the Shunting-Yard algorithm).
-        for (int i = 0; i < tokens.length; i++) { 
-            if (tokens[i] == ' ') continue; // Skip spaces.
-            
-            // If it's a number (or a decimal point)...
-            if ((tokens[i] >= '0' && tokens[i] <= '9') || tokens[i] == '.') {
-                StringBuilder sbuf = new StringBuilder(); // Build the full number string.
-                while (i < tokens.length && ((tokens[i] >= '0' && tokens[i] <= '9') || tokens[i] == '.')) {
-                    sbuf.append(tokens[i++]);
-                }
-                i--; // Go back one character (we went one too far).
-                push(values, Double.parseDouble(sbuf.toString())); // Add the number to the 'values' stack.
-            } 
-            // If it's a letter (start of a function like "sin" or "sqrt")...
-            else if (Character.isLetter(tokens[i])) { 
-                StringBuilder sbuf = new StringBuilder(); // Build the function name.
-                while (i < tokens.length && Character.isLetter(tokens[i])) {
-                    sbuf.append(tokens[i++]);
-                }
-                i--;
-                push(ops, sbuf.toString()); // Add the function name to the 'ops' stack.
-            } 
-            // If it's an open parenthesis...
-            else if (tokens[i] == '(') { 
-                push(ops, tokens[i]); // Push it onto the 'ops' stack.
-            } 
-            // If it's a close parenthesis...
-            else if (tokens[i] == ')') { 
-                // Solve everything inside the parentheses.
-                while (!ops.isEmpty() && !peek(ops).equals('(')) {
-                    applyOp(ops, values);
-                }
-                if (!ops.isEmpty()) pop(ops); // Get rid of the '('.
-                
-                // If there was a function before the '(', (e.g., "sin(...)"), apply it now.
-                if (!ops.isEmpty() && peek(ops) instanceof String) {
-                    applyFunc(ops, values);
-                }
-            } 
-            // If it's a math operator (+, -, *, /)...
-            else { 
-                // Handle negative numbers (e.g., "-5" or "(-5").
-                if (tokens[i] == '-' && (i == 0 || "+-*/^(".indexOf(tokens[i-1]) != -1)) {
-                    push(values, -1.0); // Push -1.
-                    push(ops, '*'); // and a '*'.
-                } else {
-                    // While the operator on the stack has higher precedence, apply it.
-                    while (!ops.isEmpty() && hasPrecedence(tokens[i], peek(ops))) {
-                        applyOp(ops, values);
-                    }
-                    push(ops, tokens[i]); // Push the current operator.
+    public double evaluate(String expression) {
+        return evaluate(expression, state.get());
+    }
+
+    // The same as above, but against a state from getSnapshot() instead of the current one.
+    public double evaluate(String expression, EngineState snapshot) {
+        // Only take the timed path if someone is looking (two cheap 'volatile' reads otherwise).
+        if (metrics.isEnabled() || (JFR_AVAILABLE && EvaluationEvent.isRecording())) return evaluateInstrumented(expression, snapshot);
+
+        ExpressionCache cache = this.cache; // Read once: another thread may turn it off.
+        if (cache == null) return evaluate(compile(expression), snapshot); // Parse once, then run the program.
+        return evaluateCached(cache, cache.lookupOrCompile(expression, this), snapshot, false); // With the cache on, look for this text first.
+    }
+
+    // Runs a program found in (or just added to) the cache. If 'timed' is true, every function call is
+    // timed for the metrics (see evaluateTimed).
+    private double evaluateCached(ExpressionCache cache, ExpressionCache.Entry entry, EngineState snapshot, boolean timed) {
+        CompiledExpression program = entry.program;
+        // Depends on state, or calls an impure function (e.g. a random number): always run.
+        if (program.usesVariables() || program.usesAns() || program.usesImpure()) return timed ? evaluateTimed(program, snapshot) : evaluate(program, snapshot);
+
+        // A constant expression: reuse the stored result if it was made in the same DEG/RAD mode.
+        ExpressionCache.Result stored = entry.result;
+        if (stored != null && stored.isDegrees == snapshot.isDegrees()) {
+            cache.countResultHit();
+            return stored.value;
+        }
+        double result = timed ? evaluateTimed(program, snapshot) : evaluate(program, snapshot); // Errors (e.g. Division by Zero) are thrown and not stored.
+        entry.result = new ExpressionCache.Result(result, snapshot.isDegrees());
+        return result;
+    }
+
+    // The same as evaluate(String, EngineState), but it measures the "parse" phase (lexer and parser,
+    // or the cache lookup) and the "run" phase separately. The numbers go to the metrics (if they are
+    // on) and to a JFR event (if a recording is running).
+    private double evaluateInstrumented(String expression, EngineState snapshot) {
+        EvaluationEvent event = JFR_AVAILABLE ? new EvaluationEvent() : null;
+        if (event != null) event.begin();
+        String outcome = EngineMetrics.OK;
+        CompiledExpression program = null;
+        long start = System.nanoTime();
+        long parsed = start;
+        try {
+            ExpressionCache cache = this.cache;
+            ExpressionCache.Entry entry = null;
+            if (cache == null) {
+                program = compile(expression);
+            } else {
+                entry = cache.lookupOrCompile(expression, this);
+                program = entry.program;
+            }
+            parsed = System.nanoTime();
+            boolean timed = metrics.isEnabled(); // Time each function call too (not needed for the JFR event).
+            if (entry != null) return evaluateCached(cache, entry, snapshot, timed);
+            return timed ? evaluateTimed(program, snapshot) : evaluate(program, snapshot);
+        } catch (RuntimeException e) {
+            outcome = EngineMetrics.outcomeOf(e);
+            throw e; // Measuring never changes what the caller sees.
+        } finally {
+            long end = System.nanoTime();
+            if (program == null) parsed = end; // It failed while parsing, so there was no run phase.
+            long parseNanos = parsed - start;
+            long runNanos = end - parsed;
+            if (metrics.isEnabled()) {
+                metrics.record(parseNanos, runNanos, outcome);
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.expressionLength = expression.length();
+                    event.outcome = outcome;
+                    event.parseNanos = parseNanos;
+                    event.runNanos = runNanos;
+                    event.commit();
                 }
             }
         }
-        
-        // Step 4: After the loop, apply any remaining operations.
-        while (!ops.isEmpty()) {
-            applyOp(ops, values);
+    }
+
+    // Checks once whether the JFR classes can be loaded.
+    private static boolean jfrAvailable() {
+        try {
+            EvaluationEvent.isRecording();
+            return true;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    // Getter for this engine's metrics. Call getMetrics().setEnabled(true) to start collecting,
+    // and getMetrics().snapshot() to read the numbers.
+    public EngineMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    // This runs an expression that was already compiled, using the current variable values.
+    // Call 'compile' once and this method many times to skip all the parsing work.
+    // It allocates nothing: variables are already numbers and the stack is reused.
+    public double evaluate(CompiledExpression compiled) {
+        return evaluate(compiled, state.get());
+    }
+
+    // The same as above, but against a state from getSnapshot().
+    public double evaluate(CompiledExpression compiled, EngineState snapshot) {
+        if (compiled.usesAns() && !snapshot.ansValid()) throw new RuntimeException("Syntax Error");
+        double[] stack = SCRATCH.get(); // This thread's own stack.
+        if (stack.length < compiled.getMaxStack()) { // Grow once if needed.
+            stack = new double[compiled.getMaxStack()];
+            SCRATCH.set(stack);
         }
-        
-        if(values.size() != 1) throw new RuntimeException("Syntax Error"); // Safety check.
-        return pop(values); // The last number on the stack is our answer!
-    }
-    
-    // This private helper applies an operator (like '+') to the top two numbers.
-    private void applyOp(ArrayList<Object> ops, ArrayList<Double> values) { 
-        Object op = pop(ops); // Get the operator (e.g., '+').
-        if(op.equals('(')) throw new RuntimeException("Mismatched Parentheses");
-        if(values.size() < 2) throw new RuntimeException("Syntax Error");
-        double right = pop(values); // Get the right-hand number.
-        double left = pop(values); // Get the left-hand number.
-        char operator = (char) op; // Convert the operator object to a 'char'.
-        
-        // Do the math based on the operator.
-        switch (operator) { 
-            case '+': push(values, left + right); break;
-            case '-': push(values, left - right); break;
-            case '*': push(values, left * right); break;
-            case '/':
-                if (right == 0) throw new ArithmeticException("Division by Zero"); // Error check.
-                push(values, left / right);
-                break;
-            case '^': push(values, Math.pow(left, right)); break;
+        return compiled.run(snapshot.vars(), snapshot.ansValue(), snapshot.isDegrees(), stack);
+    }
+
+    // The same, but every function call is timed and recorded in the metrics (by function name).
+    private double evaluateTimed(CompiledExpression compiled, EngineState snapshot) {
+        if (compiled.usesAns() && !snapshot.ansValid()) throw new RuntimeException("Syntax Error");
+        double[] stack = SCRATCH.get();
+        if (stack.length < compiled.getMaxStack()) {
+            stack = new double[compiled.getMaxStack()];
+            SCRATCH.set(stack);
         }
+        return compiled.runTimed(snapshot.vars(), snapshot.ansValue(), snapshot.isDegrees(), stack, metrics);
     }
 
-    // This private helper applies a function (like 'sin') to the top number.
-    private void applyFunc(ArrayList<Object> ops, ArrayList<Double> values) { 
-        String f = (String) pop(ops); // Get the function name (e.g., "sin").
-        if (values.isEmpty()) throw new RuntimeException("Syntax Error");
-        double val = pop(values); // Get the number to apply the function to.
-        double result;
+    // This evaluates one expression for many X values (e.g. to make a table).
+    // The text is parsed only once, and big arrays are split across all CPU cores.
+    // results[i] is exactly what evaluate() would give after storeVariable("X", xs[i]).
+    // X itself is not changed. If some element fails, the error of the first failing one is thrown.
+    public double[] evaluate(String expression, double[] xs) {
+        ExpressionCache cache = this.cache;
+        CompiledExpression program = (cache == null) ? compile(expression) : cache.lookupOrCompile(expression, this).program;
+        return evaluate(program, xs);
+    }
+
+    // The same as above, for an expression that was already compiled.
+    public double[] evaluate(CompiledExpression compiled, double[] xs) {
+        return evaluate(compiled, xs, state.get()); // Every element sees the same variables.
+    }
 
-        // Check if it's a basic trig function.
-        boolean isAngular = Arrays.asList("sin", "cos", "tan").contains(f);
-        // Check if it's an inverse trig function.
-        boolean isInverseAngular = Arrays.asList("asin", "acos", "atan").contains(f);
+    // The same as above, with the variables of 'snapshot' (e.g. so every block of a table sees the same ones).
+    public double[] evaluate(CompiledExpression compiled, double[] xs, EngineState snapshot) {
+        if (compiled.usesAns() && !snapshot.ansValid()) throw new RuntimeException("Syntax Error");
+        double[] results = new double[xs.length];
+        // The task works on a copy of the variables, so the shared state is never touched.
+        SweepTask task = new SweepTask(compiled, snapshot.vars().clone(), snapshot.ansValue(), snapshot.isDegrees(), xs, results, 0, xs.length);
+        if (xs.length <= SweepTask.SPLIT_SIZE) task.compute(); // Small: run right here.
+        else ForkJoinPool.commonPool().invoke(task); // Big: use the shared Fork/Join pool.
+        if (task.error != null) throw task.error;
+        return results;
+    }
+
+    // --- Matrices ---
 
-        // OOP: Encapsulation. Check our private 'isDegrees' variable.
-        if (this.isDegrees && isAngular) { 
-            val = Math.toRadians(val); // Convert to radians before calculation.
+    // Stores a matrix in "A".."F". It doesn't change the number in that letter (see EngineState.getMatrix).
+    public void storeMatrix(String varName, Matrix matrix) {
+        int slot = varName.length() == 1 ? Lexer.variableSlot(varName.charAt(0)) : -1;
+        if (slot < CompiledExpression.SLOT_A || slot > CompiledExpression.SLOT_F) {
+            throw new IllegalArgumentException("Matrices can only be stored in A..F");
         }
+        EngineState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withMatrix(slot, matrix)));
+    }
 
-        // Do the math based on the function name.
-        switch(f) { 
-            case "sin": result = Math.sin(val); break;
-            case "cos": result = Math.cos(val); break;
-            case "tan": result = Math.tan(val); break;
-            case "asin": result = Math.asin(val); break;
-            case "acos": result = Math.acos(val); break;
-            case "atan": result = Math.atan(val); break;
-            case "sinh": result = Math.sinh(val); break;
-            case "cosh": result = Math.cosh(val); break;
-            case "tanh": result = Math.tanh(val); break;
-            case "asinh": result = Math.log(val + Math.sqrt(val*val + 1.0)); break;
-            case "acosh": result = Math.log(val + Math.sqrt(val*val - 1.0)); break;
-            case "atanh": result = 0.5 * Math.log((1.0 + val) / (1.0 - val)); break;
-            case "sqrt": result = Math.sqrt(val); break;
-            case "log": result = Math.log10(val); break;
-            case "ln": result = Math.log(val); break;
-            default: throw new RuntimeException("Unknown function: " + f);
+    // Returns the matrix stored in "A".."F", or null.
+    public Matrix getMatrix(String varName) {
+        return state.get().getMatrix(varName);
+    }
+
+    // This evaluates a matrix expression, e.g. "A*B", "solve(A,[1,2])" or "det(A)" (a 1 x 1 matrix);
+    // see MatrixParser for everything it understands. Big products, LU decompositions and
+    // inverses are split across the Fork/Join pool.
+    // Throws "Dimension Error" if sizes don't fit, and "Math Error" for a singular matrix or an overflow.
+    public Matrix evaluateMatrix(String expression) {
+        return evaluateMatrix(expression, state.get());
+    }
+
+    // The same as above, against a state from getSnapshot().
+    public Matrix evaluateMatrix(String expression, EngineState snapshot) {
+        limits.checkInputLength(expression.length()); // Every number inside is an expression with the limits too.
+        Matrix result = new MatrixParser(expression, this, snapshot, limits).parse();
+        for (double v : result.data()) {
+            if (Double.isNaN(v) || Double.isInfinite(v)) throw new RuntimeException("Math Error");
         }
+        return result;
+    }
+
+    // --- Complex mode ---
 
-        // If we are in degree mode, convert inverse trig results back to degrees.
-        if (this.isDegrees && isInverseAngular) { 
-            result = Math.toDegrees(result);
+    // Each thread gets its own pair of stacks (real parts, imaginary parts) for complex programs.
+    private static final ThreadLocal<double[][]> COMPLEX_SCRATCH = new ThreadLocal<double[][]>() {
+        @Override
+        protected double[][] initialValue() {
+            return new double[][] {new double[16], new double[16]};
         }
-        
-        push(values, result); // Push the final result back onto the 'values' stack.
-    }
-    
-    // This private helper checks operator precedence (e.g., '*' is higher than '+').
-    private boolean hasPrecedence(char op1, Object op2) { 
-        if (op2.equals('(') || op2.equals(')')) return false; // Parentheses have lowest precedence.
-        if (op2 instanceof String) return false; // Functions (like "sin") have highest.
-        
-        char op2Char = (char) op2;
-        // '^' (power) is highest.
-        if ((op1 == '^') && (op2Char == '*' || op2Char == '/' || op2Char == '+' || op2Char == '-')) return false;
-        // '*' and '/' are next.
-        if ((op1 == '*' || op1 == '/') && (op2Char == '+' || op2Char == '-')) return false;
-        // '+' and '-' are lowest.
-        return true;
+    };
+
+    // This evaluates an expression with complex numbers, e.g. "sqrt(-4)" gives 2i, "ln(-1)" gives πi
+    // and "(3+4i)(1-2i)" gives 11-2i. 'i' is the imaginary unit. Real answers are exactly the same
+    // as evaluate() gives; see ComplexEvaluator for how each function is extended.
+    // Throws "Math Error" if the answer is not a number (NaN) even as a complex number.
+    public Complex evaluateComplex(String expression) {
+        return evaluateComplex(expression, state.get());
+    }
+
+    // The same as above, against a state from getSnapshot().
+    public Complex evaluateComplex(String expression, EngineState snapshot) {
+        ExpressionCache cache = this.cache;
+        CompiledExpression program = (cache == null) ? compile(expression) : cache.lookupOrCompile(expression, this).program;
+        return evaluateComplex(program, snapshot); // The cached real result is never used here.
+    }
+
+    // The same as above, for an expression that was already compiled.
+    // The only object it makes is the Complex it returns.
+    public Complex evaluateComplex(CompiledExpression compiled) {
+        return evaluateComplex(compiled, state.get());
+    }
+
+    // The same as above, against a state from getSnapshot().
+    public Complex evaluateComplex(CompiledExpression compiled, EngineState snapshot) {
+        if (compiled.usesAns() && !snapshot.ansComplexValid()) throw new RuntimeException("Syntax Error");
+        double[][] stacks = COMPLEX_SCRATCH.get(); // This thread's own stacks.
+        if (stacks[0].length < compiled.getMaxStack()) { // Grow once if needed.
+            stacks = new double[][] {new double[compiled.getMaxStack()], new double[compiled.getMaxStack()]};
+            COMPLEX_SCRATCH.set(stacks);
+        }
+        double[] re = stacks[0], im = stacks[1];
+        ComplexEvaluator.run(compiled, snapshot.vars(), snapshot.ansValue(), snapshot.ansImaginary(), snapshot.isDegrees(),
+            re, im, 0, 0.0, 0.0);
+        if (Double.isNaN(re[0]) || Double.isNaN(im[0])) throw new RuntimeException("Math Error");
+        return new Complex(re[0], im[0]);
+    }
+
+    // --- SOLVE and ∫dx ---
+
+    // This finds an X that makes the expression 0, starting the search at 'guess'
+    // (e.g. solve("X^2-2", 1) gives √2). "L=R" solves L-R = 0 (e.g. "X^3=2X+1").
+    // The expression is compiled once and run for each X the solver tries (see Solver).
+    // X itself is not changed. Throws "Can't Solve" if no root is found.
+    public SolveResult solve(String equation, double guess) {
+        return Solver.solve(new FunctionOfX(compileEquation(equation), state.get()), guess);
+    }
+
+    // The same as above, for a root between 'low' and 'high' (the expression must have
+    // different signs at the two ends).
+    public SolveResult solve(String equation, double low, double high) {
+        return Solver.solve(new FunctionOfX(compileEquation(equation), state.get()), low, high);
+    }
+
+    // "L=R" becomes "(L)-(R)"; an expression without '=' is used as it is.
+    private CompiledExpression compileEquation(String equation) {
+        int equals = equation.indexOf('=');
+        if (equals < 0) return compile(equation);
+        if (equation.indexOf('=', equals + 1) >= 0) throw new RuntimeException("Syntax Error"); // e.g. "X=1=2"
+        return compile("(" + equation.substring(0, equals) + ")-(" + equation.substring(equals + 1) + ")");
+    }
+
+    // This integrates the expression over X from 'from' to 'to' (e.g. integrate("X^2", 0, 3) gives 9).
+    // The subintervals are evaluated in parallel on the Fork/Join pool (see Integrator).
+    public IntegrationResult integrate(String expression, double from, double to) {
+        return integrate(expression, from, to, Integrator.DEFAULT_TOLERANCE);
+    }
+
+    // The same as above, with the relative error allowed (e.g. 1e-6).
+    public IntegrationResult integrate(String expression, double from, double to, double tolerance) {
+        if (Double.isNaN(from) || Double.isInfinite(from) || Double.isNaN(to) || Double.isInfinite(to)) {
+            throw new RuntimeException("Math Error"); // Infinite bounds are not supported.
+        }
+        if (!(tolerance > 0)) throw new IllegalArgumentException("tolerance must be positive");
+        FunctionOfX f = new FunctionOfX(compile(expression), state.get());
+        if (from == to) return new IntegrationResult(0.0, 0.0, 0, 0, 0, true);
+        if (from > to) return Integrator.integrate(f, to, from, tolerance).negate(); // ∫ from b to a is -∫ from a to b.
+        return Integrator.integrate(f, from, to, tolerance);
+    }
+
+    // --- Graphs ---
+
+    // This picks the points for drawing f(X) from 'from' to 'to' on a graph where one pixel is
+    // 'xPerPixel' wide and 'yPerPixel' high: more points where the curve bends, and gaps where it
+    // jumps or has no value (see CurveSampler). It uses the variables of 'snapshot' and is thread-safe,
+    // so several parts of one graph can be sampled in parallel.
+    public Curve sampleCurve(CompiledExpression compiled, EngineState snapshot, double from, double to, double xPerPixel, double yPerPixel) {
+        if (!(from < to) || !(xPerPixel > 0) || !(yPerPixel > 0)) throw new IllegalArgumentException("Bad graph range");
+        return CurveSampler.sample(new FunctionOfX(compiled, snapshot), from, to, xPerPixel, yPerPixel);
+    }
+
+    // This method turns the text into a 'CompiledExpression' (a small postfix program).
+    // Variables and 'Ans' stay as names, so the result can be reused after they change.
+    // The lexer reads the text in one pass. It already knows about variables,
+    // 'Ans', 'π', 'e', '√' and implied multiplication (e.g. "5sin" -> "5*sin").
+    // The optimizer then computes constant parts once (e.g. "2^10*sin(30)"), with exactly the same results.
+    // Function names are looked up in this engine's FunctionRegistry now, not when the program runs.
+    public CompiledExpression compile(String expression) {
+        CompiledExpression parsed = new ExpressionParser(expression, functions.table(), limits).parse(); // A fresh parser each time, so this is thread-safe.
+        return Optimizer.optimize(parsed);
+    }
+
+    // --- Adaptive precision ---
+
+    // This is like compile, but it keeps the exact typed numbers (0.1 stays exactly 0.1) and skips
+    // the optimizer, so the program can be used with evaluateDecimal.
+    public CompiledExpression compileExact(String expression) {
+        return new ExpressionParser(expression, functions.table(), limits, false, true).parse();
+    }
+
+    // This gives an answer correct to getAdaptivePrecision().getMathContext() digits
+    // (e.g. "0.1+0.2" gives exactly 0.3). It uses fast double math when it can prove the digits,
+    // and BigDecimal only when it can't (see AdaptivePrecision).
+    public BigDecimal evaluateDecimal(String expression) {
+        return evaluateDecimal(compileExact(expression));
+    }
+
+    // The same, against a snapshot (e.g. the variables as they were when '=' was pressed).
+    public BigDecimal evaluateDecimal(String expression, EngineState snapshot) {
+        return precision.evaluate(compileExact(expression), snapshot);
     }
-}
 
+    // The same as above, for a program from compileExact (parse once, evaluate many times).
+    public BigDecimal evaluateDecimal(CompiledExpression compiled) {
+        return precision.evaluate(compiled, state.get());
+    }
+
+    // Getter for the adaptive-precision settings and counters.
+    public AdaptivePrecision getAdaptivePrecision() {
+        return this.precision;
+    }
+
+    // --- Limits ---
+
+    // Getter for the limits on expression size, so callers can change them or read their counters.
+    public EvaluationLimits getLimits() {
+        return this.limits;
+    }
+
+    // Uses limits that may also be used by other engines (e.g. one set for all server sessions),
+    // so their counters show every request that tripped them. Programs that are already compiled
+    // (or cached) are not checked again.
+    public void useLimits(EvaluationLimits limits) {
+        if (limits == null) throw new IllegalArgumentException("Limits must not be null");
+        this.limits = limits;
+    }
+
+    // Getter for this engine's functions, so callers can add their own (see FunctionRegistry).
+    public FunctionRegistry getFunctions() {
+        return this.functions;
+    }
+
+    // Defines a one-argument function from an expression over X, e.g. defineFunction("f", "X^2+1")
+    // makes "f(3)" give 10. Inside the expression X is the argument; A..F, M and 'Ans' are read
+    // when the function is called. It can use functions defined before it (but not itself).
+    public MathFunction defineFunction(String name, String expressionOverX) {
+        CompiledExpression body = new ExpressionParser(expressionOverX, functions.table(), limits, true, false).parse();
+        return functions.defineExpression(name, Optimizer.optimize(body));
+    }
+}
@@ -0,0 +1,50 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.CancellationException; // What a stopped calculation throws.
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+// The long loops of the engine (SOLVE, ∫dx, the matrix kernels and LU) check for this now and
+// then, so a calculation the window has given up on (Future.cancel(true) interrupts its thread)
+// stops within a few milliseconds instead of running on and keeping a worker thread busy.
+//
+// A loop on the calling thread just uses the static 'check'. Fork/Join tasks run on the pool's
+// threads, but the interrupt goes to the thread that started the work (the 'owner'), and
+// ForkJoinTask.invoke() waits without noticing interrupts. So the owner starts the tasks with
+// 'invoke' below, which waits in a way that does notice them and then raises a flag that every
+// task checks.
+final class Cancellation {
+
+    private final Thread owner = Thread.currentThread(); // The thread that started the work.
+    private volatile boolean cancelled = false; // Set when the owner was interrupted while waiting.
+
+    // Throws a CancellationException if the current thread was interrupted.
+    // The interrupt stays set, so the code that started the work can see it too.
+    static void check() {
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("Cancelled");
+    }
+
+    // The same, for the tasks of one calculation (on any thread).
+    void checkTask() {
+        if (cancelled || owner.isInterrupted()) throw new CancellationException("Cancelled");
+    }
+
+    // Runs 'task' like task.invoke() (in the caller's Fork/Join pool if there is one, otherwise in
+    // the common pool) and returns its result. If the owner is interrupted while it waits, every
+    // task of this calculation is told to stop and a CancellationException is thrown.
+    <T> T invoke(ForkJoinTask<T> task) {
+        task.fork();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt(); // Keep the interrupt for our caller.
+            throw new CancellationException("Cancelled");
+        } catch (ExecutionException e) { // A task failed: throw what it threw (e.g. "Math Error").
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.math.BigDecimal; // The exact typed numbers (only for AdaptivePrecision).
+
+// This class holds an expression that has already been parsed by the engine.
+// It is stored as a small 'postfix program' (e.g. "2+A" becomes: PUSH 2, LOAD A, ADD),
+// so it can be run again and again without re-reading the text.
+// OOP Concept: This is Encapsulation. Once created, nothing can change its program (it is 'immutable');
+// it only gets faster when a hot one is compiled to JVM bytecode (see BytecodeCompiler).
+public final class CompiledExpression {
+
+    // --- Instruction codes ---
+    // Every instruction is one 'int': the low 8 bits are the code, the rest is the argument.
+    static final int PUSH = 0; // Push constants[arg] onto the stack.
+    static final int LOAD_VAR = 1; // Push the variable in slot 'arg' (A..F, X, M).
+    static final int LOAD_ANS = 2; // Push the last answer.
+    static final int ADD = 3; // Pop two numbers, push their sum.
+    static final int SUB = 4; // Pop two numbers, push their difference.
+    static final int MUL = 5; // Pop two numbers, push their product.
+    static final int DIV = 6; // Pop two numbers, push their quotient.
+    static final int POW = 7; // Pop two numbers, push left ^ right.
+    static final int CALL = 8; // Apply the one-argument function with id 'arg' to the top number.
+    static final int NEG = 9; // Flip the sign of the top number (the optimizer's short form of "-1 *").
+    static final int CALL2 = 10; // Pop two numbers, apply the two-argument function with id 'arg', push the answer.
+    static final int LOAD_ARG = 11; // Push the argument (only inside a function defined as an expression over X).
+    static final int LOAD_I = 12; // Push the imaginary unit i (only ComplexEvaluator can; here it is a Math Error).
+
+    // --- Variable slots ---
+    // These numbers tell LOAD_VAR which variable to read.
+    static final int SLOT_A = 0, SLOT_B = 1, SLOT_C = 2, SLOT_D = 3, SLOT_E = 4, SLOT_F = 5;
+    static final int SLOT_X = 6, SLOT_M = 7;
+    static final int SLOT_COUNT = 8; // How many variable slots there are.
+
+    // --- The program ---
+    // All fields are 'final', so a compiled expression can be shared safely.
+    private final String source; // The original text (kept for messages and debugging).
+    // The optimizer may fold "sin(30)" into a number, and that number depends on DEG/RAD.
+    // So there is one program for each mode. They are the same arrays when nothing depends on the mode.
+    private final int[] radiansCode; // The postfix instructions used in RAD mode.
+    private final double[] radiansConstants; // The numbers used by PUSH in RAD mode.
+    private final int[] degreesCode; // The postfix instructions used in DEG mode.
+    private final double[] degreesConstants; // The numbers used by PUSH in DEG mode.
+    private final int maxStack; // The deepest the stack ever gets while running.
+    private final boolean usesAns; // True if the expression reads 'Ans'.
+    private final boolean usesVariables; // True if the expression reads any variable.
+    private final boolean usesImpure; // True if it calls a function that is not pure (MathFunction.IMPURE).
+    private final MathFunction[] functions; // The function table it was compiled with (CALL 'arg' means functions[arg]).
+    private final String[] functionNames; // The different functions it calls (for the metrics).
+    private final BigDecimal[] exactConstants; // The exact value of each constant, or null (see CalculatorEngine.compileExact).
+    private final double[] constantErrors; // How far each double constant is from its exact value (or null).
+    private final long operations; // How many operations one run does, counting user functions' bodies (see EvaluationLimits).
+
+    // --- The bytecode tier (see BytecodeCompiler) ---
+    // These are the only fields that change. Races are harmless: 'runs' is only a trigger (a lost
+    // update just means a few more interpreted runs), and a BytecodeProgram has no fields, so any
+    // thread that sees one can use it. Two threads may both compile it; one copy is then thrown away.
+    private int runs = 0; // How many times the interpreter has run this program (it stops at the threshold).
+    private BytecodeProgram radiansBytecode = null; // The bytecode version for each mode, once it is made.
+    private BytecodeProgram degreesBytecode = null;
+
+    // This constructor is package-private: only the engine is allowed to build programs.
+    CompiledExpression(String source, int[] code, double[] constants, int maxStack, boolean usesAns, boolean usesVariables,
+                       boolean usesImpure, MathFunction[] functions, BigDecimal[] exactConstants) {
+        this(source, code, constants, code, constants, maxStack, usesAns, usesVariables, usesImpure, functions,
+            collectFunctionNames(code, functions), exactConstants);
+    }
+
+    // This constructor is used by the Optimizer, which may make a different program for each mode.
+    CompiledExpression(String source, int[] radiansCode, double[] radiansConstants, int[] degreesCode, double[] degreesConstants,
+                       int maxStack, boolean usesAns, boolean usesVariables, boolean usesImpure, MathFunction[] functions,
+                       String[] functionNames, BigDecimal[] exactConstants) {
+        this.source = source;
+        this.radiansCode = radiansCode;
+        this.radiansConstants = radiansConstants;
+        this.degreesCode = degreesCode;
+        this.degreesConstants = degreesConstants;
+        this.maxStack = maxStack;
+        this.usesAns = usesAns;
+        this.usesVariables = usesVariables;
+        this.usesImpure = usesImpure;
+        this.functions = functions;
+        this.functionNames = functionNames;
+        this.exactConstants = exactConstants;
+        this.constantErrors = (exactConstants == null) ? null : constantErrors(radiansConstants, exactConstants);
+        this.operations = Math.max(countOperations(radiansCode, functions), countOperations(degreesCode, functions));
+    }
+
+    // One per instruction, plus every operation of the user functions it calls. It stops growing at
+    // Long.MAX_VALUE (functions that call functions can double it at every level).
+    private static long countOperations(int[] code, MathFunction[] functions) {
+        long count = 0;
+        for (int instruction : code) {
+            int op = instruction & 0xFF;
+            long cost = (op == CALL || op == CALL2) ? functions[instruction >> 8].getOperations() : 1;
+            count = (count > Long.MAX_VALUE - cost) ? Long.MAX_VALUE : count + cost;
+        }
+        return count;
+    }
+
+    // 0 if a constant is exactly a double (like 0.5 or 2), otherwise half an ulp (like 0.1 or π).
+    private static double[] constantErrors(double[] constants, BigDecimal[] exact) {
+        double[] errors = new double[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            errors[i] = (new BigDecimal(constants[i]).compareTo(exact[i]) == 0) ? 0.0 : Math.ulp(constants[i]) * 0.5;
+        }
+        return errors;
+    }
+
+    // Finds every function the program calls, each name only once (e.g. "sin(1)+sin(2)" -> {"sin"}).
+    private static String[] collectFunctionNames(int[] code, MathFunction[] functions) {
+        boolean[] seen = new boolean[functions.length];
+        int count = 0;
+        for (int instruction : code) {
+            int op = instruction & 0xFF;
+            if ((op == CALL || op == CALL2) && !seen[instruction >> 8]) {
+                seen[instruction >> 8] = true;
+                count++;
+            }
+        }
+        String[] names = new String[count];
+        int next = 0;
+        for (int id = 0; id < seen.length; id++) if (seen[id]) names[next++] = functions[id].getName();
+        return names;
+    }
+
+    // Getter for the original text.
+    public String getSource() {
+        return this.source;
+    }
+
+    // Getter that tells the engine whether it needs to look up 'Ans'.
+    public boolean usesAns() {
+        return this.usesAns;
+    }
+
+    // Getter that tells whether the expression reads A..F, X or M.
+    public boolean usesVariables() {
+        return this.usesVariables;
+    }
+
+    // Getter that tells whether the expression calls an impure function, so running it again
+    // may give a different answer even when nothing else changed (its result is never cached).
+    public boolean usesImpure() {
+        return this.usesImpure;
+    }
+
+    // Getter for the functions this expression calls (shared array: callers must not change it).
+    String[] getFunctionNames() {
+        return this.functionNames;
+    }
+
+    // Getters for the program of one mode (used by the Optimizer).
+    int[] getCode(boolean isDegrees) {
+        return isDegrees ? this.degreesCode : this.radiansCode;
+    }
+
+    double[] getConstants(boolean isDegrees) {
+        return isDegrees ? this.degreesConstants : this.radiansConstants;
+    }
+
+    // Getter for the exact constants (null unless the program came from compileExact).
+    BigDecimal[] getExactConstants() {
+        return this.exactConstants;
+    }
+
+    double[] getConstantErrors() {
+        return this.constantErrors;
+    }
+
+    // Getter for the function table this program was compiled with.
+    MathFunction[] getFunctions() {
+        return this.functions;
+    }
+
+    // True if the answer can be different in DEG and RAD mode.
+    boolean dependsOnMode() {
+        if (radiansCode != degreesCode) return true; // The optimizer already made one program per mode.
+        for (int instruction : radiansCode) {
+            int op = instruction & 0xFF;
+            if ((op == CALL || op == CALL2) && functions[instruction >> 8].dependsOnMode()) return true;
+        }
+        return false;
+    }
+
+    // Getter for how many operations one run does (each user function call counts all of its body).
+    long getOperations() {
+        return this.operations;
+    }
+
+    // Getter for how many stack slots 'run' needs.
+    int getMaxStack() {
+        return this.maxStack;
+    }
+
+    // This runs the program against the given variable values.
+    // It never looks at the text again, so it is much faster than parsing.
+    // The caller passes in the 'stack' array (at least getMaxStack() long), so running
+    // a program allocates nothing at all: no boxing, no lists, no strings.
+    double run(double[] vars, double ans, boolean isDegrees, double[] stack) {
+        return run(vars, ans, isDegrees, stack, 0, 0.0);
+    }
+
+    // The same, but using 'stack' from index 'base' upwards, with 'argument' as the value of LOAD_ARG.
+    // This is how a function defined as an expression runs inside the program that calls it.
+    // After BytecodeCompiler.THRESHOLD runs, the program is compiled to bytecode and that runs instead.
+    double run(double[] vars, double ans, boolean isDegrees, double[] stack, int base, double argument) {
+        BytecodeProgram bytecode = isDegrees ? degreesBytecode : radiansBytecode;
+        if (bytecode != null) return bytecode.run(vars, ans, argument, functions, stack, base);
+        if (runs < BytecodeCompiler.THRESHOLD && ++runs == BytecodeCompiler.THRESHOLD) compileToBytecode();
+
+        int[] code = isDegrees ? degreesCode : radiansCode; // Pick the program for this mode.
+        double[] constants = isDegrees ? degreesConstants : radiansConstants;
+        int sp = base; // 'sp' (stack pointer) is where the next value goes.
+
+        for (int pc = 0; pc < code.length; pc++) { // 'pc' (program counter) walks the instructions.
+            int instruction = code[pc];
+            int arg = instruction >> 8; // The argument lives in the high bits.
+            switch (instruction & 0xFF) { // The code lives in the low 8 bits.
+                case PUSH: stack[sp++] = constants[arg]; break;
+                case LOAD_VAR: stack[sp++] = vars[arg]; break;
+                case LOAD_ANS: stack[sp++] = ans; break;
+                case ADD: sp--; stack[sp - 1] = stack[sp - 1] + stack[sp]; break;
+                case SUB: sp--; stack[sp - 1] = stack[sp - 1] - stack[sp]; break;
+                case MUL: sp--; stack[sp - 1] = stack[sp - 1] * stack[sp]; break;
+                case DIV:
+                    sp--;
+                    if (stack[sp] == 0) throw new ArithmeticException("Division by Zero"); // Error check.
+                    stack[sp - 1] = stack[sp - 1] / stack[sp];
+                    break;
+                case POW: sp--; stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]); break;
+                case CALL: stack[sp - 1] = functions[arg].apply(stack[sp - 1], vars, ans, isDegrees, stack, sp); break;
+                case NEG: stack[sp - 1] = -stack[sp - 1]; break;
+                case CALL2: sp--; stack[sp - 1] = functions[arg].apply(stack[sp - 1], stack[sp]); break;
+                case LOAD_ARG: stack[sp++] = argument; break;
+                case LOAD_I: throw new RuntimeException("Math Error"); // i is not a real number (use evaluateComplex).
+            }
+        }
+        return stack[base]; // The compiler made sure exactly one number is left.
+    }
+
+    // The same as run(vars, ans, isDegrees, stack), but it times every function call and records it
+    // in 'metrics' under the function's name. A function defined as an expression counts everything its
+    // body does. It always interprets (and doesn't count towards the bytecode THRESHOLD), so only the
+    // engine's instrumented path uses it, and only while the metrics are on.
+    double runTimed(double[] vars, double ans, boolean isDegrees, double[] stack, EngineMetrics metrics) {
+        int[] code = isDegrees ? degreesCode : radiansCode;
+        double[] constants = isDegrees ? degreesConstants : radiansConstants;
+        int sp = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >> 8;
+            long start;
+            switch (instruction & 0xFF) {
+                case PUSH: stack[sp++] = constants[arg]; break;
+                case LOAD_VAR: stack[sp++] = vars[arg]; break;
+                case LOAD_ANS: stack[sp++] = ans; break;
+                case ADD: sp--; stack[sp - 1] = stack[sp - 1] + stack[sp]; break;
+                case SUB: sp--; stack[sp - 1] = stack[sp - 1] - stack[sp]; break;
+                case MUL: sp--; stack[sp - 1] = stack[sp - 1] * stack[sp]; break;
+                case DIV:
+                    sp--;
+                    if (stack[sp] == 0) throw new ArithmeticException("Division by Zero");
+                    stack[sp - 1] = stack[sp - 1] / stack[sp];
+                    break;
+                case POW: sp--; stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]); break;
+                case CALL:
+                    start = System.nanoTime();
+                    stack[sp - 1] = functions[arg].apply(stack[sp - 1], vars, ans, isDegrees, stack, sp);
+                    metrics.recordCall(functions[arg].getName(), System.nanoTime() - start);
+                    break;
+                case NEG: stack[sp - 1] = -stack[sp - 1]; break;
+                case CALL2:
+                    sp--;
+                    start = System.nanoTime();
+                    stack[sp - 1] = functions[arg].apply(stack[sp - 1], stack[sp]);
+                    metrics.recordCall(functions[arg].getName(), System.nanoTime() - start);
+                    break;
+                case LOAD_ARG: stack[sp++] = 0.0; break; // A top-level program has no argument (as in run).
+                case LOAD_I: throw new RuntimeException("Math Error");
+            }
+        }
+        return stack[0];
+    }
+
+    // Makes the bytecode version of both modes (only one class if the mode makes no difference).
+    // If it can't be made, this program simply stays interpreted.
+    private void compileToBytecode() {
+        BytecodeProgram radians = BytecodeCompiler.compile(this, false);
+        degreesBytecode = dependsOnMode() ? BytecodeCompiler.compile(this, true) : radians;
+        radiansBytecode = radians;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledExpression[" + source + "]";
+    }
+}
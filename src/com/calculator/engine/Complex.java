@@ -0,0 +1,78 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class is one complex answer, a + bi, as CalculatorEngine.evaluateComplex returns it.
+// Only the final answer is a Complex object: while an expression runs, the real and imaginary
+// parts live in two plain double[] stacks (see ComplexEvaluator), so no objects are made per step.
+// OOP Concept: Encapsulation. The two parts are 'private final', so a Complex never changes.
+public final class Complex {
+
+    private final double re; // The real part (a).
+    private final double im; // The imaginary part (b).
+
+    public Complex(double re, double im) {
+        this.re = re;
+        this.im = im == 0 ? 0.0 : im; // Never keep a -0.0 imaginary part (it would print as "-0i").
+    }
+
+    public double getReal() { return this.re; }
+    public double getImaginary() { return this.im; }
+
+    // True if there is no imaginary part (e.g. "sqrt(4)", or "i*i" which is -1).
+    public boolean isReal() { return this.im == 0; }
+
+    // The answer as the display shows it: "3+4i", "3-4i", "2.5i", "i", "-i" or just "3".
+    // Whole numbers are shown without ".0", like the rest of the calculator does.
+    @Override
+    public String toString() {
+        if (im == 0) return number(re);
+        String imaginary = (im == 1) ? "i" : (im == -1) ? "-i" : number(im) + "i";
+        if (re == 0) return imaginary;
+        return number(re) + (im > 0 ? "+" : "") + imaginary;
+    }
+
+    // This reads what toString writes (e.g. "3-4i", "-i" or "2.5"), so a complex answer can be
+    // used as 'Ans' again. Returns null if the text is not a number of that form.
+    public static Complex parse(String text) {
+        text = text.trim();
+        if (text.isEmpty()) return null;
+        try {
+            if (!text.endsWith("i")) return new Complex(Double.parseDouble(text), 0.0);
+            String body = text.substring(0, text.length() - 1);
+            // The imaginary part starts at the last '+' or '-' that isn't the sign of an exponent ("1E-5").
+            int split = 0;
+            for (int i = body.length() - 1; i > 0; i--) {
+                char c = body.charAt(i);
+                if ((c == '+' || c == '-') && body.charAt(i - 1) != 'E') {
+                    split = i;
+                    break;
+                }
+            }
+            double re = split == 0 ? 0.0 : Double.parseDouble(body.substring(0, split));
+            String imaginary = body.substring(split);
+            double im;
+            if (imaginary.isEmpty() || imaginary.equals("+")) im = 1.0;
+            else if (imaginary.equals("-")) im = -1.0;
+            else im = Double.parseDouble(imaginary);
+            return new Complex(re, im);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Complex)) return false;
+        Complex c = (Complex) other;
+        return Double.compare(re, c.re) == 0 && Double.compare(im, c.im) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(re) + Double.hashCode(im);
+    }
+
+    // One part as text (no ".0" for whole numbers).
+    private static String number(double v) {
+        return NumberFormatter.format(v);
+    }
+}
@@ -0,0 +1,313 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class runs a compiled program with complex numbers (complex mode, see
+// CalculatorEngine.evaluateComplex). It runs exactly the same program as CompiledExpression.run,
+// but every value has a real part and an imaginary part, kept in two parallel double[] stacks
+// ('re' and 'im'). No object is made while it runs: every operation reads and writes those arrays.
+//
+// Real numbers give exactly the same answers as real mode: as long as a value has no imaginary
+// part and the real function is defined there, the same real function is used (e.g. "sqrt(4)"
+// is Math.sqrt). Only where real mode would give NaN (e.g. "sqrt(-1)", "ln(-2)", "asin(2)" or
+// "(-8)^(1/3)") is the complex formula used, and it gives the principal value.
+// User functions made from Java code (unary/binary) only work with real arguments.
+// OOP Concept: Abstraction. The engine only calls 'run'.
+final class ComplexEvaluator {
+
+    private static final double HALF_PI = Math.PI / 2;
+    private static final double LN10 = Math.log(10.0);
+    private static final double TO_RADIANS = Math.PI / 180.0;
+    private static final double TO_DEGREES = 180.0 / Math.PI;
+    private static final int MAX_REPEATED_POWER = 1024; // z^n for whole n up to this uses multiplication.
+
+    private ComplexEvaluator() { }
+
+    // Runs 'program' using re[base..] and im[base..] as the stack (each at least getMaxStack() long
+    // past 'base'). 'argument' (argRe + argIm i) is the value of LOAD_ARG inside a user function.
+    // The answer is left in re[base] and im[base].
+    static void run(CompiledExpression program, double[] vars, double ansRe, double ansIm, boolean isDegrees,
+                    double[] re, double[] im, int base, double argRe, double argIm) {
+        int[] code = program.getCode(isDegrees);
+        double[] constants = program.getConstants(isDegrees);
+        MathFunction[] functions = program.getFunctions();
+        int sp = base;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >> 8;
+            switch (instruction & 0xFF) {
+                case CompiledExpression.PUSH: re[sp] = constants[arg]; im[sp] = 0.0; sp++; break;
+                case CompiledExpression.LOAD_VAR: re[sp] = vars[arg]; im[sp] = 0.0; sp++; break;
+                case CompiledExpression.LOAD_ANS: re[sp] = ansRe; im[sp] = ansIm; sp++; break;
+                case CompiledExpression.LOAD_ARG: re[sp] = argRe; im[sp] = argIm; sp++; break;
+                case CompiledExpression.LOAD_I: re[sp] = 0.0; im[sp] = 1.0; sp++; break;
+                case CompiledExpression.ADD: sp--; re[sp - 1] += re[sp]; im[sp - 1] += im[sp]; break;
+                case CompiledExpression.SUB: sp--; re[sp - 1] -= re[sp]; im[sp - 1] -= im[sp]; break;
+                case CompiledExpression.MUL: sp--; multiply(re, im, sp - 1, re[sp], im[sp]); break;
+                case CompiledExpression.DIV: sp--; divide(re, im, sp - 1, re[sp], im[sp]); break;
+                case CompiledExpression.POW: sp--; power(re, im, sp - 1, re[sp], im[sp]); break;
+                case CompiledExpression.NEG: re[sp - 1] = -re[sp - 1]; im[sp - 1] = -im[sp - 1]; break;
+                case CompiledExpression.CALL: call(functions[arg], vars, ansRe, ansIm, isDegrees, re, im, sp); break;
+                case CompiledExpression.CALL2: {
+                    sp--;
+                    if (im[sp - 1] != 0 || im[sp] != 0) throw new RuntimeException("Math Error"); // Real arguments only.
+                    re[sp - 1] = functions[arg].apply(re[sp - 1], re[sp]);
+                    break;
+                }
+            }
+        }
+    }
+
+    // A one-argument function on the top value (re[sp - 1], im[sp - 1]).
+    private static void call(MathFunction f, double[] vars, double ansRe, double ansIm, boolean isDegrees,
+                             double[] re, double[] im, int sp) {
+        int top = sp - 1;
+        CompiledExpression body = f.getBody();
+        if (body != null) { // A function defined as an expression runs just above its argument.
+            run(body, vars, ansRe, ansIm, isDegrees, re, im, sp, re[top], im[top]);
+            re[top] = re[sp];
+            im[top] = im[sp];
+        } else if (f.isBuiltin()) {
+            builtin(f.getId(), re, im, top, isDegrees);
+        } else {
+            if (im[top] != 0) throw new RuntimeException("Math Error"); // Java-code functions only take real numbers.
+            re[top] = f.apply(re[top], vars, ansRe, isDegrees, re, sp);
+        }
+    }
+
+    // --- Arithmetic (each one changes the value at index 'i') ---
+
+    // z[i] = z[i] * (c + di)
+    static void multiply(double[] re, double[] im, int i, double c, double d) {
+        double a = re[i], b = im[i];
+        if (b == 0 && d == 0) { // Real times real: exactly like real mode.
+            re[i] = a * c;
+            return;
+        }
+        re[i] = a * c - b * d;
+        im[i] = a * d + b * c;
+    }
+
+    // z[i] = z[i] / (c + di), with Smith's method so big or small parts don't overflow on the way.
+    static void divide(double[] re, double[] im, int i, double c, double d) {
+        if (c == 0 && d == 0) throw new ArithmeticException("Division by Zero");
+        double a = re[i], b = im[i];
+        if (d == 0) { // Dividing by a real number.
+            re[i] = a / c;
+            im[i] = b / c;
+        } else if (Math.abs(c) >= Math.abs(d)) {
+            double r = d / c, t = c + d * r;
+            re[i] = (a + b * r) / t;
+            im[i] = (b - a * r) / t;
+        } else {
+            double r = c / d, t = c * r + d;
+            re[i] = (a * r + b) / t;
+            im[i] = (b * r - a) / t;
+        }
+    }
+
+    // z[i] = z[i] ^ (c + di)
+    static void power(double[] re, double[] im, int i, double c, double d) {
+        double a = re[i], b = im[i];
+        if (b == 0 && d == 0) { // Real ^ real: use Math.pow unless it has no real answer.
+            double result = Math.pow(a, c);
+            if (!Double.isNaN(result) || Double.isNaN(a) || Double.isNaN(c)) {
+                re[i] = result;
+                return;
+            }
+        }
+        if (d == 0 && c == Math.rint(c) && Math.abs(c) <= MAX_REPEATED_POWER) { // A whole power: multiply (exact for i^2).
+            long n = (long) Math.abs(c);
+            double pr = 1.0, pi = 0.0; // The answer so far.
+            double br = a, bi = b; // z, z^2, z^4, ...
+            while (n > 0) {
+                if ((n & 1) != 0) {
+                    double t = pr * br - pi * bi;
+                    pi = pr * bi + pi * br;
+                    pr = t;
+                }
+                double t = br * br - bi * bi;
+                bi = 2 * br * bi;
+                br = t;
+                n >>= 1;
+            }
+            re[i] = pr;
+            im[i] = pi;
+            if (c < 0) { // z^-n = 1 / z^n
+                re[i] = 1.0;
+                im[i] = 0.0;
+                divide(re, im, i, pr, pi);
+            }
+            return;
+        }
+        if (a == 0 && b == 0) { // 0^w is 0 if w's real part is positive, and has no value otherwise.
+            if (c > 0) {
+                re[i] = 0.0;
+                im[i] = 0.0;
+                return;
+            }
+            throw new RuntimeException("Math Error");
+        }
+        // z^w = e^(w * ln z)
+        ln(re, im, i, a, b);
+        double lr = re[i], li = im[i];
+        exp(re, im, i, c * lr - d * li, c * li + d * lr);
+    }
+
+    // --- Built-in functions ---
+
+    // Applies built-in function 'id' to the value at index 'i'.
+    static void builtin(int id, double[] re, double[] im, int i, boolean isDegrees) {
+        double x = re[i], y = im[i];
+        if (y == 0) { // A real number: the real function, unless it has no real answer there.
+            double result = BuiltinFunctions.apply(id, x, isDegrees);
+            if (!Double.isNaN(result) || Double.isNaN(x)) {
+                re[i] = result;
+                im[i] = 0.0;
+                return;
+            }
+            y = 0.0; // Never -0.0, so the branch cuts below always pick the same side.
+        }
+        if (isDegrees && id <= BuiltinFunctions.TAN) { // sin, cos and tan take degrees in DEG mode.
+            x *= TO_RADIANS;
+            y *= TO_RADIANS;
+        }
+        switch (id) {
+            case BuiltinFunctions.SIN:
+                re[i] = Math.sin(x) * Math.cosh(y);
+                im[i] = Math.cos(x) * Math.sinh(y);
+                break;
+            case BuiltinFunctions.COS:
+                re[i] = Math.cos(x) * Math.cosh(y);
+                im[i] = -Math.sin(x) * Math.sinh(y);
+                break;
+            case BuiltinFunctions.TAN: {
+                // tan(x+iy) = (sin 2x + i sinh 2y) / (cos 2x + cosh 2y); far from the real line it is just ±i.
+                double t = Math.cos(2 * x) + Math.cosh(2 * y);
+                if (Double.isInfinite(t)) {
+                    re[i] = 0.0;
+                    im[i] = Math.signum(y);
+                } else {
+                    re[i] = Math.sin(2 * x) / t;
+                    im[i] = Math.sinh(2 * y) / t;
+                }
+                break;
+            }
+            case BuiltinFunctions.ASIN: asin(re, im, i, x, y); break;
+            case BuiltinFunctions.ACOS: // acos z = π/2 - asin z
+                asin(re, im, i, x, y);
+                re[i] = HALF_PI - re[i];
+                im[i] = -im[i];
+                break;
+            case BuiltinFunctions.ATAN: { // atan z = (i/2) (ln(1 - iz) - ln(1 + iz))
+                ln(re, im, i, 1 + y, -x);
+                double pr = re[i], pi = im[i];
+                ln(re, im, i, 1 - y, x);
+                double qr = pr - re[i], qi = pi - im[i];
+                re[i] = -qi / 2;
+                im[i] = qr / 2;
+                break;
+            }
+            case BuiltinFunctions.SINH:
+                re[i] = Math.sinh(x) * Math.cos(y);
+                im[i] = Math.cosh(x) * Math.sin(y);
+                break;
+            case BuiltinFunctions.COSH:
+                re[i] = Math.cosh(x) * Math.cos(y);
+                im[i] = Math.sinh(x) * Math.sin(y);
+                break;
+            case BuiltinFunctions.TANH: { // tanh(x+iy) = (sinh 2x + i sin 2y) / (cosh 2x + cos 2y)
+                double t = Math.cosh(2 * x) + Math.cos(2 * y);
+                if (Double.isInfinite(t)) {
+                    re[i] = Math.signum(x);
+                    im[i] = 0.0;
+                } else {
+                    re[i] = Math.sinh(2 * x) / t;
+                    im[i] = Math.sin(2 * y) / t;
+                }
+                break;
+            }
+            case BuiltinFunctions.ASINH: { // asinh z = ln(z + sqrt(z^2 + 1))
+                sqrt(re, im, i, x * x - y * y + 1, 2 * x * y);
+                ln(re, im, i, x + re[i], y + im[i]);
+                break;
+            }
+            case BuiltinFunctions.ACOSH: { // acosh z = ln(z + sqrt(z + 1) sqrt(z - 1))
+                if (y == 0 && x > -1 && x < 1) { // Exactly i acos(x) there (the formula leaves a tiny real part).
+                    re[i] = 0.0;
+                    im[i] = Math.acos(x);
+                    break;
+                }
+                sqrt(re, im, i, x + 1, y);
+                double pr = re[i], pi = im[i];
+                sqrt(re, im, i, x - 1, y);
+                double qr = re[i], qi = im[i];
+                ln(re, im, i, x + pr * qr - pi * qi, y + pr * qi + pi * qr);
+                break;
+            }
+            case BuiltinFunctions.ATANH: { // atanh z = (ln(1 + z) - ln(1 - z)) / 2
+                ln(re, im, i, 1 + x, y);
+                double pr = re[i], pi = im[i];
+                ln(re, im, i, 1 - x, -y);
+                re[i] = (pr - re[i]) / 2;
+                im[i] = (pi - im[i]) / 2;
+                break;
+            }
+            case BuiltinFunctions.SQRT: sqrt(re, im, i, x, y); break;
+            case BuiltinFunctions.LOG:
+                ln(re, im, i, x, y);
+                re[i] /= LN10;
+                im[i] /= LN10;
+                break;
+            case BuiltinFunctions.LN: ln(re, im, i, x, y); break;
+            default: throw new RuntimeException("Unknown function: " + id);
+        }
+        if (isDegrees && id >= BuiltinFunctions.ASIN && id <= BuiltinFunctions.ATAN) { // Inverse trig answers in degrees.
+            re[i] *= TO_DEGREES;
+            im[i] *= TO_DEGREES;
+        }
+    }
+
+    // asin z = -i ln(iz + sqrt(1 - z^2)), written to index 'i'.
+    private static void asin(double[] re, double[] im, int i, double x, double y) {
+        sqrt(re, im, i, 1 - (x * x - y * y), -2 * x * y);
+        ln(re, im, i, re[i] - y, im[i] + x);
+        double lr = re[i];
+        re[i] = im[i];
+        im[i] = -lr;
+    }
+
+    // The principal square root of x + yi (the one with a real part >= 0), written to index 'i'.
+    static void sqrt(double[] re, double[] im, int i, double x, double y) {
+        if (x == 0 && y == 0) {
+            re[i] = 0.0;
+            im[i] = 0.0;
+            return;
+        }
+        double t = Math.sqrt((Math.abs(x) + Math.hypot(x, y)) / 2); // No cancellation: both terms are >= 0.
+        if (x >= 0) {
+            re[i] = t;
+            im[i] = y / (2 * t);
+        } else {
+            re[i] = Math.abs(y) / (2 * t);
+            im[i] = y < 0 ? -t : t; // On the cut (a negative real number) the answer is +ti, e.g. sqrt(-4) = 2i.
+        }
+    }
+
+    // The principal natural log of x + yi (imaginary part in (-π, π]), written to index 'i'.
+    static void ln(double[] re, double[] im, int i, double x, double y) {
+        re[i] = Math.log(Math.hypot(x, y));
+        im[i] = Math.atan2(y == 0 ? 0.0 : y, x); // ln(-2) = ln 2 + πi (never -πi from a -0.0).
+    }
+
+    // e^(x + yi), written to index 'i'.
+    static void exp(double[] re, double[] im, int i, double x, double y) {
+        double r = Math.exp(x);
+        if (y == 0) { // Stay exactly real.
+            re[i] = r;
+            im[i] = 0.0;
+            return;
+        }
+        re[i] = r * Math.cos(y);
+        im[i] = r * Math.sin(y);
+    }
+}
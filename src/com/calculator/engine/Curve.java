@@ -0,0 +1,25 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// The points of a graph, from CalculatorEngine.sampleCurve, in order of X.
+// A point whose Y is NaN is a gap: the line stops there and starts again at the next point
+// (e.g. at a 'tan' asymptote, or where 'ln' or '√' has no value).
+// OOP Concept: Encapsulation. It is immutable; the points can only be read with getters.
+public final class Curve {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int size;
+    private final long evaluations; // How many times the expression was run.
+
+    Curve(double[] xs, double[] ys, int size, long evaluations) {
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+        this.evaluations = evaluations;
+    }
+
+    public int size() { return this.size; }
+    public double getX(int i) { return this.xs[i]; }
+    public double getY(int i) { return this.ys[i]; } // NaN for a gap.
+    public long getEvaluations() { return this.evaluations; }
+}
@@ -0,0 +1,112 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Arrays;
+
+// This class picks the points for drawing a graph of f(X) (see CalculatorEngine.sampleCurve).
+//
+// It starts with one point every INITIAL_PIXELS pixels. Each piece between two points is cut in
+// half while a straight line between them would be visibly wrong: when the middle value is more
+// than a quarter pixel away from the line, or when the function has a value at one end but not at
+// the other (like √X near 0). Pieces stop at 1/8 of a pixel. So a straight line costs a few points
+// and a sharp bend gets many.
+// If a piece is still a big jump when it is that thin, and the middle value isn't between the two
+// ends, the function jumps there (like 'tan' at 90°): the line is broken instead of drawn across.
+// The expression is compiled once and run for every X (see FunctionOfX).
+// OOP Concept: Abstraction. The graph just asks for a curve; how the points are chosen is hidden here.
+final class CurveSampler {
+
+    private static final int INITIAL_PIXELS = 4; // The first points are this many pixels apart.
+    private static final int MAX_DEPTH = 5; // 4 px / 2^5 = 1/8 px.
+    private static final double TOLERANCE_PIXELS = 0.25; // How far the line may be from the curve.
+
+    private final FunctionOfX f;
+    private final double yPerPixel;
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private int size = 0;
+
+    private CurveSampler(FunctionOfX f, double yPerPixel) {
+        this.f = f;
+        this.yPerPixel = yPerPixel;
+    }
+
+    // Samples f from 'from' to 'to' (both included), for a graph where one pixel is
+    // 'xPerPixel' wide and 'yPerPixel' high.
+    static Curve sample(FunctionOfX f, double from, double to, double xPerPixel, double yPerPixel) {
+        CurveSampler sampler = new CurveSampler(f, yPerPixel);
+        int pieces = (int) Math.max(1, Math.min(1 << 20, Math.ceil((to - from) / (INITIAL_PIXELS * xPerPixel))));
+        double a = from, fa = sampler.value(from);
+        sampler.add(a, fa);
+        for (int i = 1; i <= pieces; i++) {
+            double b = (i == pieces) ? to : from + (to - from) * i / pieces;
+            double fb = sampler.value(b);
+            sampler.refine(a, fa, b, fb, 0);
+            a = b;
+            fa = fb;
+        }
+        return new Curve(sampler.xs, sampler.ys, sampler.size, f.evaluations);
+    }
+
+    // Adds the points after 'a' up to and including 'b'.
+    private void refine(double a, double fa, double b, double fb, int depth) {
+        double m = 0.5 * (a + b);
+        if (m <= a || m >= b) { // No doubles in between (a very deep zoom).
+            add(b, fb);
+            return;
+        }
+        boolean aOk = isNumber(fa), bOk = isNumber(fb);
+        if (!aOk && !bOk) { // No value anywhere here: one gap is enough.
+            add(b, Double.NaN);
+            return;
+        }
+        double fm = value(m);
+        if (depth < MAX_DEPTH) {
+            boolean split;
+            if (aOk != bOk || !isNumber(fm)) split = true; // Find where the function starts or stops.
+            else split = Math.abs(fm - 0.5 * (fa + fb)) > TOLERANCE_PIXELS * yPerPixel; // Bent.
+            if (split) {
+                refine(a, fa, m, fm, depth + 1);
+                refine(m, fm, b, fb, depth + 1);
+                return;
+            }
+            add(b, fb); // Straight enough: the line from a to b is right.
+            return;
+        }
+        // As thin as we go. A big jump where the middle isn't between the ends is a discontinuity.
+        if (aOk && bOk && isNumber(fm) && Math.abs(fb - fa) > 2 * yPerPixel && !isBetween(fm, fa, fb)) {
+            add(m, Double.NaN); // Lift the pen.
+            add(b, fb);
+            return;
+        }
+        add(m, isNumber(fm) ? fm : Double.NaN);
+        add(b, isNumber(fb) ? fb : Double.NaN);
+    }
+
+    private void add(double x, double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    // f(x), or NaN if it fails there (e.g. Division by Zero at X = 0).
+    private double value(double x) {
+        try {
+            double y = f.at(x);
+            return isNumber(y) ? y : Double.NaN;
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isNumber(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+
+    private static boolean isBetween(double v, double a, double b) {
+        return a <= b ? (v >= a && v <= b) : (v >= b && v <= a);
+    }
+}
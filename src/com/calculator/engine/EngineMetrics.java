@@ -0,0 +1,115 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap; // A map many threads can add to safely.
+
+// This class collects timing numbers for an engine's evaluate(String) calls:
+//   - how long each phase took ("parse" = lexer + parser or cache lookup, "run" = the program),
+//   - the total time, grouped by outcome ("OK", "Syntax Error", "Division by Zero", ...),
+//   - the time of each function call, grouped by function name ("sin", "log", ...). Only the call
+//     itself is timed (a function defined as an expression includes its body), not the whole expression.
+// It is switched off by default. When it is off, the engine only reads one 'volatile'
+// boolean per call, so the cost is close to zero.
+// OOP Concept: Encapsulation. The engine calls 'record'; everyone else reads a 'snapshot'.
+public class EngineMetrics {
+
+    public static final String OK = "OK"; // The outcome name for a successful evaluation.
+
+    private volatile boolean enabled = false;
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram run = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final ConcurrentHashMap<String, LatencyHistogram> byOutcome = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentHashMap<String, LatencyHistogram> byFunction = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    // Switches recording on or off at any time (even while other threads are evaluating).
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // Records one evaluation.
+    void record(long parseNanos, long runNanos, String outcome) {
+        long totalNanos = parseNanos + runNanos;
+        parse.record(parseNanos);
+        run.record(runNanos);
+        total.record(totalNanos);
+        histogramFor(byOutcome, outcome).record(totalNanos);
+    }
+
+    // Records one function call (CompiledExpression.runTimed calls this while the metrics are on).
+    void recordCall(String function, long nanos) {
+        histogramFor(byFunction, function).record(nanos);
+    }
+
+    // Finds (or creates) the histogram for a name.
+    private static LatencyHistogram histogramFor(ConcurrentHashMap<String, LatencyHistogram> map, String name) {
+        LatencyHistogram histogram = map.get(name);
+        if (histogram == null) {
+            LatencyHistogram fresh = new LatencyHistogram();
+            histogram = map.putIfAbsent(name, fresh);
+            if (histogram == null) histogram = fresh; // We were first.
+        }
+        return histogram;
+    }
+
+    // Turns an exception from the engine into an outcome name (its message, without "Unknown function: x" details).
+    static String outcomeOf(RuntimeException e) {
+        String message = e.getMessage();
+        if (message == null) return e.getClass().getSimpleName();
+        if (message.startsWith("Unknown function")) return "Unknown function";
+        return message;
+    }
+
+    // Takes a frozen copy of all the numbers.
+    public Snapshot snapshot() {
+        return new Snapshot(parse.snapshot(), run.snapshot(), total.snapshot(), copy(byOutcome), copy(byFunction));
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> copy(ConcurrentHashMap<String, LatencyHistogram> map) {
+        TreeMap<String, LatencyHistogram.Snapshot> result = new TreeMap<String, LatencyHistogram.Snapshot>(); // Sorted by name.
+        for (Map.Entry<String, LatencyHistogram> entry : map.entrySet()) result.put(entry.getKey(), entry.getValue().snapshot());
+        return result;
+    }
+
+    // A frozen copy of the metrics. All getters return values that never change.
+    public static final class Snapshot {
+        private final LatencyHistogram.Snapshot parse, run, total;
+        private final Map<String, LatencyHistogram.Snapshot> byOutcome, byFunction;
+
+        Snapshot(LatencyHistogram.Snapshot parse, LatencyHistogram.Snapshot run, LatencyHistogram.Snapshot total,
+                 Map<String, LatencyHistogram.Snapshot> byOutcome, Map<String, LatencyHistogram.Snapshot> byFunction) {
+            this.parse = parse;
+            this.run = run;
+            this.total = total;
+            this.byOutcome = byOutcome;
+            this.byFunction = byFunction;
+        }
+
+        public long getEvaluations() { return total.getCount(); }
+        public LatencyHistogram.Snapshot getParse() { return this.parse; }
+        public LatencyHistogram.Snapshot getRun() { return this.run; }
+        public LatencyHistogram.Snapshot getTotal() { return this.total; }
+        public Map<String, LatencyHistogram.Snapshot> getByOutcome() { return this.byOutcome; }
+        public Map<String, LatencyHistogram.Snapshot> getByFunction() { return this.byFunction; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("total    ").append(total).append('\n');
+            sb.append("parse    ").append(parse).append('\n');
+            sb.append("run      ").append(run).append('\n');
+            for (Map.Entry<String, LatencyHistogram.Snapshot> e : byOutcome.entrySet()) {
+                sb.append("outcome  ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+            }
+            for (Map.Entry<String, LatencyHistogram.Snapshot> e : byFunction.entrySet()) {
+                sb.append("function ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
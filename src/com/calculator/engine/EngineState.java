@@ -0,0 +1,86 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class is a frozen copy of everything an evaluation reads: the variables A..F, X, M,
+// the matrices stored in A..F, the last answer and the DEG/RAD mode. It can never change after
+// it is created, so any number of threads can read it at the same time without locks.
+// To "change" a value, the engine makes a new EngineState with one field different
+// and swaps it in (this is called 'copy-on-write').
+// OOP Concept: Encapsulation. All fields are 'private final' and the arrays are never handed out.
+public final class EngineState {
+
+    // The state every new engine starts with: all variables 0, Ans = 0, DEG mode.
+    static final EngineState INITIAL = new EngineState(new double[CompiledExpression.SLOT_COUNT], new Matrix[CompiledExpression.SLOT_COUNT], "0", 0.0, 0.0, true, true, true);
+
+    private final double[] vars; // The variable slots (nobody writes to this array after construction).
+    private final Matrix[] matrices; // A matrix per slot, or null (only A..F are used; never written to either).
+    private final String lastAnswer; // 'Ans' as the UI gave it.
+    private final double ansValue; // 'Ans' as a number (the real part of a complex answer).
+    private final double ansImaginary; // The imaginary part of 'Ans' (0 unless it was a complex answer).
+    private final boolean ansValid; // False if 'lastAnswer' is not a real number.
+    private final boolean ansComplexValid; // False if 'lastAnswer' is not even a complex number (e.g. "3+4i").
+    private final boolean isDegrees; // DEG or RAD mode.
+
+    // Package-private: only the engine creates states.
+    EngineState(double[] vars, Matrix[] matrices, String lastAnswer, double ansValue, double ansImaginary,
+                boolean ansValid, boolean ansComplexValid, boolean isDegrees) {
+        this.vars = vars;
+        this.matrices = matrices;
+        this.lastAnswer = lastAnswer;
+        this.ansValue = ansValue;
+        this.ansImaginary = ansImaginary;
+        this.ansValid = ansValid;
+        this.ansComplexValid = ansComplexValid;
+        this.isDegrees = isDegrees;
+    }
+
+    // --- Public getters ---
+
+    // Returns the value of a variable ("A".."F", "X" or "M"), or 0 for unknown names.
+    public double getVariable(String varName) {
+        int slot = varName.length() == 1 ? Lexer.variableSlot(varName.charAt(0)) : -1;
+        return slot >= 0 ? vars[slot] : 0.0;
+    }
+
+    // Returns the matrix stored in "A".."F", or null if there is none. A letter's matrix and its
+    // number are separate (like "MatA" and "A" on a real calculator).
+    public Matrix getMatrix(String varName) {
+        int slot = varName.length() == 1 ? Lexer.variableSlot(varName.charAt(0)) : -1;
+        return slot >= 0 ? matrices[slot] : null;
+    }
+
+    public String getLastAnswer() { return this.lastAnswer; }
+    public boolean isDegrees() { return this.isDegrees; }
+
+    // --- Package-private getters used by the evaluator ---
+    // 'vars' is shared, not copied, so callers must never write to it.
+    double[] vars() { return this.vars; }
+    double ansValue() { return this.ansValue; }
+    boolean ansValid() { return this.ansValid; }
+    double ansImaginary() { return this.ansImaginary; }
+    boolean ansComplexValid() { return this.ansComplexValid; }
+
+    // --- Copy-on-write helpers ---
+    // Each returns a new state with one thing changed. 'this' is never modified.
+
+    EngineState withVariable(int slot, double value) {
+        double[] copy = vars.clone();
+        copy[slot] = value;
+        return new EngineState(copy, matrices, lastAnswer, ansValue, ansImaginary, ansValid, ansComplexValid, isDegrees);
+    }
+
+    EngineState withMatrix(int slot, Matrix matrix) {
+        Matrix[] copy = matrices.clone();
+        copy[slot] = matrix;
+        return new EngineState(vars, copy, lastAnswer, ansValue, ansImaginary, ansValid, ansComplexValid, isDegrees);
+    }
+
+    // 'answer' is null if the text is not a number at all (then using 'Ans' is a Syntax Error).
+    EngineState withLastAnswer(String text, Complex answer) {
+        if (answer == null) return new EngineState(vars, matrices, text, 0.0, 0.0, false, false, isDegrees);
+        return new EngineState(vars, matrices, text, answer.getReal(), answer.getImaginary(), answer.isReal(), true, isDegrees);
+    }
+
+    EngineState withDegrees(boolean degrees) {
+        return new EngineState(vars, matrices, lastAnswer, ansValue, ansImaginary, ansValid, ansComplexValid, degrees);
+    }
+}
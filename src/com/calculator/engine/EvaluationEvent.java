@@ -0,0 +1,73 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.HashSet;
+import java.util.Set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event; // The base class for custom Java Flight Recorder (JFR) events.
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+
+// This is a custom Java Flight Recorder event. While a JFR recording is running
+// (e.g. started with -XX:StartFlightRecording or from JDK Mission Control), the engine
+// emits one of these for every evaluate(String) call, so slow expressions show up
+// in the recording with their length, outcome and per-phase times.
+// OOP Concept: Inheritance. 'extends Event' lets JFR time and store this object.
+@Name("com.calculator.Evaluation")
+@Label("Calculator Evaluation")
+@Category("Calculator")
+@Description("One call to CalculatorEngine.evaluate(String)")
+class EvaluationEvent extends Event {
+
+    @Label("Expression Length")
+    int expressionLength;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseNanos;
+
+    @Label("Run Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long runNanos;
+
+    // --- Is any recording running? ---
+    // The engine checks this flag so it only builds events while someone is recording.
+    private static volatile boolean recording = false;
+    private static final Set<Recording> running = new HashSet<Recording>();
+
+    static {
+        try {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recorderInitialized(FlightRecorder recorder) {
+                    for (Recording r : recorder.getRecordings()) recordingStateChanged(r); // Recordings started before us.
+                }
+
+                @Override
+                public void recordingStateChanged(Recording r) {
+                    synchronized (running) {
+                        if (r.getState() == RecordingState.RUNNING) running.add(r);
+                        else running.remove(r);
+                        recording = !running.isEmpty();
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            recording = false; // No JFR in this JVM: events are simply never emitted.
+        }
+    }
+
+    // True while at least one JFR recording is running.
+    static boolean isRecording() {
+        return recording;
+    }
+}
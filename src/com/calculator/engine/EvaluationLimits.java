@@ -0,0 +1,96 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.atomic.LongAdder; // A counter many threads can add to cheaply.
+
+// This class holds the limits that stop one pathological expression from tying up the engine,
+// e.g. a megabyte of "1+1+1...", ten thousand nested brackets, or a user function that calls
+// another one a million times over. Every limit is checked while the expression is compiled
+// (one comparison per character, token or bracket), so an evaluation that passes costs nothing
+// extra when it runs. Each limit throws its own error:
+//   "Input Too Long"    more than getMaxInputLength() characters
+//   "Too Many Tokens"   more than getMaxTokens() numbers, names, operators and brackets
+//   "Nesting Too Deep"  more than getMaxNesting() brackets open at the same time
+//   "Too Complex"       more than getMaxOperations() operations per run (the instructions of
+//                       the program, counting those of every user function it calls)
+// and counts how often it tripped. One EvaluationLimits can be shared by many engines (see
+// CalculatorEngine.useLimits), e.g. by all the sessions of a server, so the counters add up.
+// OOP Concept: Encapsulation. The settings are private; the parser only calls the 'check' methods.
+public class EvaluationLimits {
+
+    // --- The settings (generous enough that no one would hit them by typing) ---
+    private volatile int maxInputLength = 100_000;
+    private volatile int maxTokens = 20_000;
+    private volatile int maxNesting = 256;
+    private volatile long maxOperations = 1_000_000;
+
+    // --- Counters ---
+    private final LongAdder inputTooLong = new LongAdder();
+    private final LongAdder tooManyTokens = new LongAdder();
+    private final LongAdder nestingTooDeep = new LongAdder();
+    private final LongAdder tooComplex = new LongAdder();
+
+    // Setters (every limit must be at least 1).
+    public void setMaxInputLength(int maxInputLength) { this.maxInputLength = positive(maxInputLength); }
+    public void setMaxTokens(int maxTokens) { this.maxTokens = positive(maxTokens); }
+    public void setMaxNesting(int maxNesting) { this.maxNesting = positive(maxNesting); }
+    public void setMaxOperations(long maxOperations) { this.maxOperations = positive(maxOperations); }
+
+    // Getters for the settings.
+    public int getMaxInputLength() { return this.maxInputLength; }
+    public int getMaxTokens() { return this.maxTokens; }
+    public int getMaxNesting() { return this.maxNesting; }
+    public long getMaxOperations() { return this.maxOperations; }
+
+    // Getters for the counters.
+    public long getInputTooLongCount() { return inputTooLong.sum(); }
+    public long getTooManyTokensCount() { return tooManyTokens.sum(); }
+    public long getNestingTooDeepCount() { return nestingTooDeep.sum(); }
+    public long getTooComplexCount() { return tooComplex.sum(); }
+
+    // Sets all counters back to 0.
+    public void resetCounters() {
+        inputTooLong.reset();
+        tooManyTokens.reset();
+        nestingTooDeep.reset();
+        tooComplex.reset();
+    }
+
+    // Throws "Input Too Long" if 'length' characters are too many. The parser calls this, and so do
+    // front ends that read the input themselves (the server checks each request line before keeping it).
+    public void checkInputLength(int length) {
+        if (length > maxInputLength) {
+            inputTooLong.increment();
+            throw new RuntimeException("Input Too Long");
+        }
+    }
+
+    // --- Package-private checks (the parser reads the settings once, then calls these) ---
+
+    // Called once the token count has gone over 'max' (the parser compares, so the common case is one 'if').
+    RuntimeException tooManyTokens() {
+        tooManyTokens.increment();
+        return new RuntimeException("Too Many Tokens");
+    }
+
+    RuntimeException nestingTooDeep() {
+        nestingTooDeep.increment();
+        return new RuntimeException("Nesting Too Deep");
+    }
+
+    void checkOperations(long operations) {
+        if (operations > maxOperations) {
+            tooComplex.increment();
+            throw new RuntimeException("Too Complex");
+        }
+    }
+
+    private static int positive(int value) {
+        if (value < 1) throw new IllegalArgumentException("Limits must be at least 1");
+        return value;
+    }
+
+    private static long positive(long value) {
+        if (value < 1) throw new IllegalArgumentException("Limits must be at least 1");
+        return value;
+    }
+}
@@ -0,0 +1,130 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.LinkedHashMap; // A map that remembers order, which gives us LRU/FIFO eviction for free.
+import java.util.Map; // We need Map.Entry for the eviction hook.
+
+// This class remembers expressions the engine has already compiled.
+// If the same text comes in again, we skip the lexer and parser completely.
+// For expressions that use no variables, no 'Ans' and no impure functions, it also remembers the final result.
+// OOP Concept: Encapsulation. The engine only asks 'lookupOrCompile'; the map is hidden.
+// All methods that touch the map are 'synchronized', so one cache can be shared by many threads.
+// Compiling happens outside the lock, so threads never wait for each other's parsing.
+public class ExpressionCache {
+
+    // How the cache picks what to throw away when it is full.
+    public enum Policy {
+        LRU, // Least Recently Used: throw away the entry nobody has asked for in the longest time.
+        FIFO // First In, First Out: throw away the oldest entry, even if it is popular.
+    }
+
+    // One remembered expression.
+    static final class Entry {
+        final CompiledExpression program; // The parsed program (never changes).
+        // The stored result (only for expressions without variables, 'Ans' or impure functions), or null.
+        // It is replaced as a whole, so a reader never sees a value from one mode and a flag from another.
+        volatile Result result = null;
+
+        Entry(CompiledExpression program) {
+            this.program = program;
+        }
+    }
+
+    // A stored result and the DEG/RAD mode it was computed in. It never changes once made.
+    static final class Result {
+        final double value;
+        final boolean isDegrees;
+
+        Result(double value, boolean isDegrees) {
+            this.value = value;
+            this.isDegrees = isDegrees;
+        }
+    }
+
+    private final int maxSize; // The most entries we keep.
+    private final Policy policy; // How we evict.
+    private final LinkedHashMap<String, Entry> map; // The entries themselves.
+
+    // --- Counters ---
+    private long hits = 0; // Lookups that found a program.
+    private long misses = 0; // Lookups that had to compile.
+    private long resultHits = 0; // Hits that could also skip running the program.
+    private long evictions = 0; // Entries thrown away because the cache was full.
+
+    // Creates a cache that holds at most 'maxSize' expressions.
+    public ExpressionCache(int maxSize, Policy policy) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Cache size must be positive");
+        this.maxSize = maxSize;
+        this.policy = policy;
+        // 'true' makes the map move an entry to the end every time it is read (that is LRU).
+        this.map = new LinkedHashMap<String, Entry>(16, 0.75f, policy == Policy.LRU) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ExpressionCache.this.maxSize) {
+                    evictions++;
+                    return true; // Throw away the eldest entry.
+                }
+                return false;
+            }
+        };
+    }
+
+    // Getters for the settings.
+    public int getMaxSize() { return this.maxSize; }
+    public Policy getPolicy() { return this.policy; }
+    public synchronized int size() { return map.size(); }
+
+    // Getters for the counters.
+    public synchronized long getHits() { return this.hits; }
+    public synchronized long getMisses() { return this.misses; }
+    public synchronized long getResultHits() { return this.resultHits; }
+    public synchronized long getEvictions() { return this.evictions; }
+
+    // Forgets everything (the counters are kept).
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    // Finds the entry for this text, or compiles it with 'engine' and remembers it.
+    // A program only counts if it was compiled with the same function table as the engine has now:
+    // engines sharing this cache may have defined different functions (or redefined one), and then
+    // the same text can mean something else.
+    Entry lookupOrCompile(String expression, CalculatorEngine engine) {
+        String key = normalize(expression);
+        MathFunction[] functions = engine.getFunctions().table().byId;
+        Entry entry = lookup(key, functions);
+        if (entry != null) return entry;
+        CompiledExpression program = engine.compile(key); // Outside the lock (may throw a Syntax Error).
+        return store(key, program);
+    }
+
+    // Finds the entry for this text and function table, or returns null. Counts a hit or a miss.
+    private synchronized Entry lookup(String key, MathFunction[] functions) {
+        Entry entry = map.get(key);
+        if (entry != null && entry.program.getFunctions() != functions) entry = null; // Made with other functions.
+        if (entry == null) misses++;
+        else hits++;
+        return entry;
+    }
+
+    // Remembers a freshly compiled program and returns its entry.
+    // If another thread stored the same text (with the same functions) first, we keep theirs.
+    private synchronized Entry store(String key, CompiledExpression program) {
+        Entry entry = map.get(key);
+        if (entry == null || entry.program.getFunctions() != program.getFunctions()) {
+            entry = new Entry(program);
+            map.put(key, entry);
+        }
+        return entry;
+    }
+
+    // Called by the engine when a stored result was used.
+    synchronized void countResultHit() {
+        resultHits++;
+    }
+
+    // Turns an expression into its cache key. Spaces at the ends don't change the meaning, so we drop them.
+    // (Spaces in the middle do matter: "1 2" is an error but "12" is a number.)
+    static String normalize(String expression) {
+        return expression.trim(); // 'trim' returns the same String when there is nothing to remove.
+    }
+}
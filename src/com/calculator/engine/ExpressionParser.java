@@ -0,0 +1,239 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Arrays; // We need Arrays.copyOf to grow our stack.
+
+// This class turns the lexer's tokens into a postfix program (the Shunting-Yard algorithm).
+// A new parser is made for every compile, so its stack is never shared between threads.
+// For the live preview (see LivePreview) it can also save its state between two tokens and
+// later carry on from there with a longer text, so a typed prefix is only parsed once.
+// OOP Concept: Abstraction. The engine just calls 'parse()' and gets a CompiledExpression back.
+class ExpressionParser {
+
+    private Lexer lexer; // Gives us the tokens.
+    private final ProgramBuilder out; // Collects the postfix program.
+    private final FunctionTable functions; // The functions names are resolved against.
+    private final boolean overX; // True when compiling a function body: X then means the argument.
+    private final boolean exact; // True if the exact typed numbers should be kept (for AdaptivePrecision).
+
+    // --- Limits (see EvaluationLimits) ---
+    private final EvaluationLimits limits;
+    private final int maxTokens; // Read once, so each token costs one comparison.
+    private final int maxNesting;
+    private int tokens = 0; // How many tokens we have read.
+    private int open = 0; // How many '(' are on the 'ops' stack.
+
+    // --- Primitive stack helper methods ---
+    // These methods are 'private', so nobody outside can see them.
+    // OOP Concept: This is Abstraction. We are hiding *how* our stack works.
+    // The 'ops' stack holds plain ints: an operator character ('+', '(' ...) or FUNCTION_OP + a function id.
+    private static final int FUNCTION_OP = 256; // Entries at or above this are functions.
+    private int[] ops = new int[16]; // The operator stack.
+    private int[] commas = new int[16]; // For each '(' on the 'ops' stack: how many ',' we have seen inside it.
+    private int opsSize = 0;
+
+    ExpressionParser(String expression, FunctionTable functions, EvaluationLimits limits) {
+        this(expression, functions, limits, false, false);
+    }
+
+    ExpressionParser(String expression, FunctionTable functions, EvaluationLimits limits, boolean overX, boolean exact) {
+        limits.checkInputLength(expression.length()); // Before anything reads the text.
+        this.limits = limits;
+        this.maxTokens = limits.getMaxTokens();
+        this.maxNesting = limits.getMaxNesting();
+        this.lexer = new Lexer(expression, functions);
+        this.out = new ProgramBuilder(expression, functions, exact);
+        this.functions = functions;
+        this.overX = overX;
+        this.exact = exact;
+    }
+
+    // Push an entry onto the 'ops' stack.
+    private void push(int op) {
+        if (op == '(' && ++open > maxNesting) throw limits.nestingTooDeep();
+        if (opsSize == ops.length) { // Grow if full.
+            ops = Arrays.copyOf(ops, opsSize * 2);
+            commas = Arrays.copyOf(commas, opsSize * 2);
+        }
+        commas[opsSize] = 0;
+        ops[opsSize++] = op;
+    }
+
+    // Pop an entry from the 'ops' stack.
+    private int pop() {
+        if (opsSize == 0) throw new RuntimeException("Stack underflow"); // Safety check.
+        return ops[--opsSize];
+    }
+
+    // Look at the top entry of the 'ops' stack.
+    private int peek() {
+        if (opsSize == 0) throw new RuntimeException("Stack is empty"); // Safety check.
+        return ops[opsSize - 1];
+    }
+    // --- End of stack helpers ---
+
+    // This reads all the tokens and returns the finished program.
+    CompiledExpression parse() {
+        // Loop through the tokens (This is the Shunting-Yard algorithm).
+        for (int kind = lexer.next(); kind != Lexer.END; kind = lexer.next()) {
+            countToken();
+            accept(kind);
+        }
+
+        // After the loop, emit any remaining operations.
+        while (opsSize > 0) {
+            out.operator(pop());
+        }
+
+        return build();
+    }
+
+    // Builds the program ('build' checks that exactly one number is left) and checks how much work it is.
+    private CompiledExpression build() {
+        CompiledExpression program = out.build();
+        limits.checkOperations(program.getOperations());
+        return program;
+    }
+
+    private void countToken() {
+        if (++tokens > maxTokens) throw limits.tooManyTokens();
+    }
+
+    // Handles one token.
+    private void accept(int kind) {
+        switch (kind) {
+            case Lexer.NUMBER: // Emit the number.
+                if (exact) out.pushConstant(lexer.number(), lexer.exactNumber());
+                else out.pushConstant(lexer.number());
+                break;
+            case Lexer.VARIABLE: // Variables are read when the program runs.
+                if (overX && lexer.slot() == CompiledExpression.SLOT_X) out.loadArgument(); // In "f = X^2+1", X is f's argument.
+                else out.loadVariable(lexer.slot());
+                break;
+            case Lexer.ANS: out.loadAns(); break; // So is 'Ans'.
+            case Lexer.IMAGINARY: out.loadImaginary(); break; // 'i' (see ComplexEvaluator).
+            case Lexer.FUNCTION: push(FUNCTION_OP + lexer.function()); break; // Functions wait on the 'ops' stack.
+            case Lexer.OPEN: push('('); break; // Push it onto the 'ops' stack.
+            case Lexer.CLOSE:
+                // Emit everything inside the parentheses.
+                while (opsSize > 0 && peek() != '(') {
+                    out.operator(pop());
+                }
+                int arguments = 1;
+                if (opsSize > 0) arguments += commas[opsSize - 1]; // One more argument than commas.
+                if (opsSize > 0) { // Get rid of the '('.
+                    pop();
+                    open--;
+                }
+
+                // If there was a function before the '(', (e.g., "sin(...)"), emit it now.
+                if (opsSize > 0 && peek() >= FUNCTION_OP) {
+                    MathFunction f = functions.byId[pop() - FUNCTION_OP];
+                    if (f.getArity() != arguments) throw new RuntimeException("Syntax Error"); // e.g. "sin(1,2)"
+                    out.function(f);
+                } else if (arguments != 1) {
+                    throw new RuntimeException("Syntax Error"); // e.g. "(1,2)"
+                }
+                break;
+            case Lexer.COMMA: // Finish one argument, e.g. the "5" in "nCr(5,2)".
+                while (opsSize > 0 && peek() != '(') {
+                    out.operator(pop());
+                }
+                if (opsSize == 0) throw new RuntimeException("Syntax Error"); // A ',' outside of brackets.
+                commas[opsSize - 1]++;
+                break;
+            case Lexer.NEGATE: // Handle negative numbers (e.g., "-5" or "(-5").
+                out.pushConstant(-1.0); // Push -1.
+                push('*'); // and a '*'.
+                break;
+            case Lexer.OPERATOR: // If it's a math operator (+, -, *, /, ^)...
+                // While the operator on the stack has higher precedence, emit it.
+                while (opsSize > 0 && hasPrecedence(lexer.operator(), peek())) {
+                    out.operator(pop());
+                }
+                push(lexer.operator()); // Push the current operator.
+                break;
+        }
+    }
+
+    // --- Live preview support ---
+
+    // The parser's state between two tokens. Saving it is cheap: the program so far is only
+    // ever added to, so we just remember how long it was, plus a copy of the (small) 'ops' stack.
+    static final class Checkpoint {
+        final Lexer.Position position;
+        final ProgramBuilder.Mark mark;
+        final int[] ops;
+        final int[] commas;
+        final int tokens;
+
+        Checkpoint(Lexer.Position position, ProgramBuilder.Mark mark, int[] ops, int[] commas, int tokens) {
+            this.position = position;
+            this.mark = mark;
+            this.ops = ops;
+            this.commas = commas;
+            this.tokens = tokens;
+        }
+    }
+
+    // Reads the next token and handles it. Returns false at the end of the text.
+    boolean step() {
+        int kind = lexer.next();
+        if (kind == Lexer.END) return false;
+        countToken();
+        accept(kind);
+        return true;
+    }
+
+    // True if there is a clean break here, i.e. no token is waiting behind an implied '*'.
+    boolean atTokenBoundary() {
+        return !lexer.hasPending();
+    }
+
+    // How far into the text we have read.
+    int position() {
+        return lexer.position();
+    }
+
+    // Saves the current state (only call it at a token boundary).
+    Checkpoint checkpoint() {
+        return new Checkpoint(lexer.save(), out.mark(), Arrays.copyOf(ops, opsSize), Arrays.copyOf(commas, opsSize), tokens);
+    }
+
+    // Goes back to a saved state, to carry on reading 'text' (which must start with the same
+    // characters as the text the checkpoint was saved from, up to and a bit beyond its position).
+    void resume(Checkpoint checkpoint, String text) {
+        limits.checkInputLength(text.length());
+        lexer = new Lexer(text, functions, checkpoint.position);
+        out.reset(checkpoint.mark, text);
+        tokens = checkpoint.tokens;
+        opsSize = 0;
+        open = 0; // 'push' counts the saved '(' again.
+        for (int i = 0; i < checkpoint.ops.length; i++) {
+            push(checkpoint.ops[i]);
+            commas[i] = checkpoint.commas[i];
+        }
+    }
+
+    // Finishes the program as if every open bracket were closed, e.g. "2*sin(30" as "2*sin(30)".
+    // It throws (like parse) if that still doesn't make sense, e.g. "2+" or "sin(".
+    CompiledExpression finishOpen() {
+        while (opsSize > 0) {
+            if (peek() == '(') accept(Lexer.CLOSE);
+            else out.operator(pop());
+        }
+        return build();
+    }
+
+    // This private helper checks operator precedence (e.g., '*' is higher than '+').
+    private boolean hasPrecedence(int op1, int op2) {
+        if (op2 == '(' || op2 == ')') return false; // Parentheses have lowest precedence.
+        if (op2 >= FUNCTION_OP) return false; // Functions (like "sin") have highest.
+
+        // '^' (power) is highest.
+        if ((op1 == '^') && (op2 == '*' || op2 == '/' || op2 == '+' || op2 == '-')) return false;
+        // '*' and '/' are next.
+        if ((op1 == '*' || op1 == '/') && (op2 == '+' || op2 == '-')) return false;
+        // '+' and '-' are lowest.
+        return true;
+    }
+}
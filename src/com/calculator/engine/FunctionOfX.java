@@ -0,0 +1,41 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This helper runs one compiled program as a function of X: at(2.5) is the value with X = 2.5.
+// The other variables, 'Ans' and DEG/RAD come from one EngineState, so every call sees the same ones.
+// It has its own copy of the variables and its own stack, so each thread needs its own
+// FunctionOfX (see 'copy'). Used by the solver and the integrator, which call it many times.
+// OOP Concept: Encapsulation. Callers just ask for f(x); the program and stack are hidden.
+final class FunctionOfX {
+
+    private final CompiledExpression program;
+    private final double[] vars; // A private copy (we change X in it).
+    private final double ans;
+    private final boolean isDegrees;
+    private final double[] stack;
+    long evaluations = 0; // How many times 'at' was called.
+
+    FunctionOfX(CompiledExpression program, EngineState snapshot) {
+        this(program, snapshot.vars().clone(), snapshot.ansValue(), snapshot.isDegrees());
+        if (program.usesAns() && !snapshot.ansValid()) throw new RuntimeException("Syntax Error");
+    }
+
+    private FunctionOfX(CompiledExpression program, double[] vars, double ans, boolean isDegrees) {
+        this.program = program;
+        this.vars = vars;
+        this.ans = ans;
+        this.isDegrees = isDegrees;
+        this.stack = new double[Math.max(1, program.getMaxStack())];
+    }
+
+    // The value of the program with X = x.
+    double at(double x) {
+        evaluations++;
+        vars[CompiledExpression.SLOT_X] = x;
+        return program.run(vars, ans, isDegrees, stack);
+    }
+
+    // A new FunctionOfX for another thread (same program and variables).
+    FunctionOfX copy() {
+        return new FunctionOfX(program, vars.clone(), ans, isDegrees);
+    }
+}
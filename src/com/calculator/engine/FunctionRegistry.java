@@ -0,0 +1,131 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference; // Lets us swap in a new table in one safe step.
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+// This class holds the functions one engine knows: the built-in ones (sin, cos, ..., ln)
+// and any the user adds, e.g.
+//
+//   engine.getFunctions().define("cbrt", Math::cbrt);
+//   engine.getFunctions().define("nCr", (n, r) -> ...);   // called as nCr(5,2)
+//   engine.defineFunction("f", "X^2+1");                   // called as f(3)
+//
+// Names are resolved to an integer id once, when an expression is compiled, so running a
+// program never compares strings. Redefining a name gives it a new id; programs compiled
+// before that keep calling the old definition.
+// Like EngineState, every change swaps in a new frozen FunctionTable, so readers never wait.
+// OOP Concept: Encapsulation. The table is hidden; callers only define, remove and look up.
+public class FunctionRegistry {
+
+    private final AtomicReference<FunctionTable> table = new AtomicReference<FunctionTable>(FunctionTable.BUILTINS);
+
+    // Defines a one-argument function. 'flags' may contain MathFunction.ANGULAR,
+    // MathFunction.INVERSE_ANGULAR and MathFunction.IMPURE.
+    public MathFunction define(String name, DoubleUnaryOperator f, int flags) {
+        if (f == null) throw new NullPointerException("function");
+        checkName(name);
+        FunctionTable current, next;
+        MathFunction defined;
+        do {
+            current = table.get();
+            defined = MathFunction.unary(name, current.nextId(), f, flags);
+            next = current.with(defined);
+        } while (!table.compareAndSet(current, next));
+        return defined;
+    }
+
+    // Defines a pure one-argument function that does not care about DEG/RAD.
+    public MathFunction define(String name, DoubleUnaryOperator f) {
+        return define(name, f, 0);
+    }
+
+    // Defines a two-argument function, called like "nCr(5,2)". Only MathFunction.IMPURE
+    // is allowed in 'flags' (two-argument functions always get their arguments as they are).
+    public MathFunction define(String name, DoubleBinaryOperator f, int flags) {
+        if (f == null) throw new NullPointerException("function");
+        if ((flags & (MathFunction.ANGULAR | MathFunction.INVERSE_ANGULAR)) != 0) {
+            throw new IllegalArgumentException("Two-argument functions cannot be angular");
+        }
+        checkName(name);
+        FunctionTable current, next;
+        MathFunction defined;
+        do {
+            current = table.get();
+            defined = MathFunction.binary(name, current.nextId(), f, flags);
+            next = current.with(defined);
+        } while (!table.compareAndSet(current, next));
+        return defined;
+    }
+
+    // Defines a pure two-argument function.
+    public MathFunction define(String name, DoubleBinaryOperator f) {
+        return define(name, f, 0);
+    }
+
+    // Defines a function from a program compiled with X as its argument (see CalculatorEngine.defineFunction).
+    MathFunction defineExpression(String name, CompiledExpression body) {
+        checkName(name);
+        FunctionTable current, next;
+        MathFunction defined;
+        do {
+            current = table.get();
+            defined = MathFunction.expression(name, current.nextId(), body);
+            next = current.with(defined);
+        } while (!table.compareAndSet(current, next));
+        return defined;
+    }
+
+    // Removes a user-defined function. Returns false if there was none with this name.
+    public boolean remove(String name) {
+        FunctionTable current;
+        do {
+            current = table.get();
+            MathFunction f = current.lookup(name);
+            if (f == null) return false;
+            if (f.isBuiltin()) throw new IllegalArgumentException("Cannot remove built-in function: " + name);
+        } while (!table.compareAndSet(current, current.without(name)));
+        return true;
+    }
+
+    // Finds the function currently called 'name', or null.
+    public MathFunction lookup(String name) {
+        return table.get().lookup(name);
+    }
+
+    // All functions that can be called now, sorted by name.
+    public List<MathFunction> getFunctions() {
+        MathFunction[] list = table.get().current();
+        Arrays.sort(list, new Comparator<MathFunction>() {
+            @Override
+            public int compare(MathFunction a, MathFunction b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return new ArrayList<MathFunction>(Arrays.asList(list));
+    }
+
+    // The current frozen table (what the compiler resolves names against).
+    FunctionTable table() {
+        return table.get();
+    }
+
+    // Names are letters and start with a lowercase one (so they never clash with the variables
+    // A..F, X, M or 'Ans'), and must not hide a built-in function or Euler's number 'e'.
+    private static void checkName(String name) {
+        if (name == null || name.isEmpty() || name.charAt(0) < 'a' || name.charAt(0) > 'z') {
+            throw new IllegalArgumentException("Invalid function name: " + name);
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) throw new IllegalArgumentException("Invalid function name: " + name);
+        }
+        if (name.equals("e")) throw new IllegalArgumentException("Invalid function name: " + name);
+        MathFunction existing = FunctionTable.BUILTINS.lookup(name);
+        if (existing != null) throw new IllegalArgumentException("Cannot redefine built-in function: " + name);
+    }
+}
@@ -0,0 +1,98 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Arrays;
+
+// This class is one frozen version of a FunctionRegistry: every function that was ever
+// defined (indexed by id), and the names that are defined right now.
+// Compiled programs keep the 'byId' array they were compiled with, so a CALL instruction is
+// just 'byId[id]', and redefining a function later never changes an old program.
+// OOP Concept: Encapsulation. It is immutable, so many threads can read it without locks.
+final class FunctionTable {
+
+    // The table every new registry starts with: just the built-in functions.
+    static final FunctionTable BUILTINS = builtins();
+
+    final MathFunction[] byId; // Every function ever defined. A function's id is its index here.
+    private final MathFunction[] current; // The functions that can be called by name now, longest names first.
+
+    private FunctionTable(MathFunction[] byId, MathFunction[] current) {
+        this.byId = byId;
+        this.current = current;
+    }
+
+    private static FunctionTable builtins() {
+        MathFunction[] all = new MathFunction[BuiltinFunctions.COUNT];
+        for (int id = 0; id < all.length; id++) all[id] = MathFunction.builtin(id);
+        return new FunctionTable(all, sortByLength(all.clone()));
+    }
+
+    // Finds the function currently called 'name', or null.
+    MathFunction lookup(String name) {
+        for (MathFunction f : current) {
+            if (f.getName().equals(name)) return f;
+        }
+        return null;
+    }
+
+    // Finds the longest function name that starts at 'pos' in 'text', or null.
+    // (Longer names come first, so "sinh" wins over "sin".)
+    MathFunction match(String text, int pos) {
+        for (MathFunction f : current) {
+            if (text.startsWith(f.getName(), pos)) return f;
+        }
+        return null;
+    }
+
+    // The length of the longest name that can be called now (they are sorted longest first).
+    int longestName() {
+        return current.length == 0 ? 0 : current[0].getName().length();
+    }
+
+    // The id the next new function will get.
+    int nextId() {
+        return byId.length;
+    }
+
+    // Returns a copy with 'f' added. An older function with the same name can no longer be
+    // called by name, but it keeps its id, so programs that already use it still work.
+    FunctionTable with(MathFunction f) {
+        MathFunction[] all = Arrays.copyOf(byId, byId.length + 1);
+        all[f.getId()] = f;
+        MathFunction[] names = Arrays.copyOf(current, current.length + 1);
+        int count = 0;
+        for (MathFunction g : current) {
+            if (!g.getName().equals(f.getName())) names[count++] = g;
+        }
+        names[count++] = f;
+        return new FunctionTable(all, sortByLength(Arrays.copyOf(names, count)));
+    }
+
+    // Returns a copy where 'name' can no longer be called (old programs still work).
+    FunctionTable without(String name) {
+        MathFunction[] names = new MathFunction[current.length];
+        int count = 0;
+        for (MathFunction g : current) {
+            if (!g.getName().equals(name)) names[count++] = g;
+        }
+        return new FunctionTable(byId, Arrays.copyOf(names, count));
+    }
+
+    // All functions that can be called by name now.
+    MathFunction[] current() {
+        return current.clone();
+    }
+
+    // Sorts longest name first (a simple insertion sort: the table is small).
+    private static MathFunction[] sortByLength(MathFunction[] list) {
+        for (int i = 1; i < list.length; i++) {
+            MathFunction f = list[i];
+            int j = i - 1;
+            while (j >= 0 && list[j].getName().length() < f.getName().length()) {
+                list[j + 1] = list[j];
+                j--;
+            }
+            list[j + 1] = f;
+        }
+        return list;
+    }
+}
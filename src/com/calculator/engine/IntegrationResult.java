@@ -0,0 +1,47 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// The answer of CalculatorEngine.integrate: the integral, an estimate of its error, and how
+// much work it took. Two results for neighbouring intervals can be added with 'plus'.
+// OOP Concept: Encapsulation. It is immutable; the fields can only be read with getters.
+public final class IntegrationResult {
+
+    private final double value; // The integral.
+    private final double errorEstimate; // |true integral - value| is probably at most this.
+    private final int intervals; // How many subintervals the final answer is made of.
+    private final int maxDepth; // How many times the deepest subinterval was halved.
+    private final long evaluations; // How many times the expression was run.
+    private final boolean converged; // False if some subinterval hit the depth limit first.
+
+    IntegrationResult(double value, double errorEstimate, int intervals, int maxDepth, long evaluations, boolean converged) {
+        this.value = value;
+        this.errorEstimate = errorEstimate;
+        this.intervals = intervals;
+        this.maxDepth = maxDepth;
+        this.evaluations = evaluations;
+        this.converged = converged;
+    }
+
+    // The result for two neighbouring intervals together.
+    IntegrationResult plus(IntegrationResult other) {
+        return new IntegrationResult(value + other.value, errorEstimate + other.errorEstimate, intervals + other.intervals,
+            Math.max(maxDepth, other.maxDepth), evaluations + other.evaluations, converged && other.converged);
+    }
+
+    // The same result for the reversed interval (∫ from b to a is -∫ from a to b).
+    IntegrationResult negate() {
+        return new IntegrationResult(-value, errorEstimate, intervals, maxDepth, evaluations, converged);
+    }
+
+    public double getValue() { return this.value; }
+    public double getErrorEstimate() { return this.errorEstimate; }
+    public int getIntervals() { return this.intervals; }
+    public int getMaxDepth() { return this.maxDepth; }
+    public long getEvaluations() { return this.evaluations; }
+    public boolean isConverged() { return this.converged; }
+
+    @Override
+    public String toString() {
+        return value + " ±" + errorEstimate + " (" + intervals + " intervals, " + evaluations + " evaluations"
+            + (converged ? "" : ", not converged") + ")";
+    }
+}
@@ -0,0 +1,128 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.RecursiveTask; // The Fork/Join base class for tasks that return a value.
+import java.util.concurrent.atomic.AtomicInteger; // The halvings left, shared by all tasks.
+
+// This task integrates a function of X over [a, b] with adaptive Gauss–Kronrod quadrature (the ∫dx key).
+//
+// On each interval it uses the 15-point Kronrod rule, which also contains a 7-point Gauss rule.
+// Both are evaluated from the same 15 values, and |Kronrod - Gauss| tells us roughly how wrong
+// the answer on this interval can be. If that is too much, the interval is halved and each half
+// gets half of the allowed error. The halves are independent, so (like SweepTask) they run on
+// different cores: near the top of the tree each half is a new task, deeper down the work is
+// too small to be worth a task and the halves are done in a simple recursion.
+// The halves are always added left + right, so the answer doesn't depend on how many cores there are.
+// A wildly oscillating function (like sin(1/X) near 0) could need endless halvings, so all tasks
+// share a budget of MAX_SPLITS; when it is used up, the answer is given as not converged.
+// Every task first checks whether the integration was cancelled (see Cancellation), so a
+// cancelled ∫dx also stops the work on the pool's threads.
+// OOP Concept: Inheritance. 'extends RecursiveTask' lets the Fork/Join pool run this object.
+final class Integrator extends RecursiveTask<IntegrationResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final double DEFAULT_TOLERANCE = 1e-10; // Relative to the size of the answer (and also absolute).
+    private static final int PARALLEL_DEPTH = 10; // Halvings that are still split into new tasks.
+    private static final int MAX_DEPTH = 50; // Never halve an interval more often than this.
+    private static final int MAX_SPLITS = 100000; // Halvings in total (about 3 million evaluations).
+    private static final int POINTS = 15;
+
+    // The Gauss–Kronrod 7/15 nodes on [-1, 1] (only the positive half; the rule is symmetric)
+    // and weights, as in QUADPACK's qk15. Every second node is also a Gauss node.
+    private static final double[] NODES = {
+        0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+        0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+        0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+        0.207784955007898467600689403773245, 0.0 };
+    private static final double[] KRONROD_WEIGHTS = {
+        0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+        0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+        0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+        0.204432940075298892414161999234649, 0.209482141084727828012999174891714 };
+    private static final double[] GAUSS_WEIGHTS = { // For NODES[1], NODES[3], NODES[5] and the center.
+        0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+        0.381830050505118944950369775488975, 0.417959183673469387755102040816327 };
+
+    private final FunctionOfX f; // This task's own copy (each thread needs one).
+    private final double a, b;
+    private final double kronrod, error; // The 15-point answer on [a, b] and its error estimate.
+    private final double tolerance; // The error allowed on [a, b].
+    private final int depth;
+    private final AtomicInteger splitsLeft; // Shared by all the tasks of one integration.
+    private final Cancellation cancellation; // Shared by all the tasks of one integration.
+
+    private Integrator(FunctionOfX f, double a, double b, double kronrod, double error, double tolerance, int depth,
+                       AtomicInteger splitsLeft, Cancellation cancellation) {
+        this.f = f;
+        this.a = a;
+        this.b = b;
+        this.kronrod = kronrod;
+        this.error = error;
+        this.tolerance = tolerance;
+        this.depth = depth;
+        this.splitsLeft = splitsLeft;
+        this.cancellation = cancellation;
+    }
+
+    // Integrates f from 'from' to 'to' (from < to, both finite). The error allowed is
+    // 'tolerance' times the size of the answer, but never less than 'tolerance' itself.
+    static IntegrationResult integrate(FunctionOfX f, double from, double to, double tolerance) {
+        double[] rule = rule(f, from, to);
+        double allowed = Math.max(tolerance, tolerance * Math.abs(rule[0]));
+        Cancellation cancellation = new Cancellation();
+        Integrator task = new Integrator(f, from, to, rule[0], rule[1], allowed, 0, new AtomicInteger(MAX_SPLITS), cancellation);
+        if (task.isFinished()) return task.leaf();
+        return cancellation.invoke(task);
+    }
+
+    @Override
+    protected IntegrationResult compute() {
+        if (isFinished() || splitsLeft.getAndDecrement() <= 0) return leaf();
+        cancellation.checkTask();
+
+        // Halve, and give each half half of the allowed error.
+        double middle = 0.5 * (a + b);
+        FunctionOfX g = (depth < PARALLEL_DEPTH) ? f.copy() : f; // A task needs its own copy; a plain recursion can share ours.
+        double[] left = rule(f, a, middle);
+        double[] right = rule(g, middle, b);
+        Integrator leftTask = new Integrator(f, a, middle, left[0], left[1], tolerance / 2, depth + 1, splitsLeft, cancellation);
+        Integrator rightTask = new Integrator(g, middle, b, right[0], right[1], tolerance / 2, depth + 1, splitsLeft, cancellation);
+        IntegrationResult sum;
+        if (depth < PARALLEL_DEPTH) {
+            invokeAll(leftTask, rightTask); // Run both halves (in parallel if there are free cores).
+            sum = leftTask.join().plus(rightTask.join());
+        } else {
+            sum = leftTask.compute().plus(rightTask.compute());
+        }
+        return sum.plus(new IntegrationResult(0.0, 0.0, 0, 0, 2 * POINTS, true)); // Count the two rules done here.
+    }
+
+    // True if [a, b] needs no more halving: the error is small enough, or halving can't help.
+    private boolean isFinished() {
+        if (error <= tolerance) return true;
+        if (Double.isNaN(kronrod) || Double.isInfinite(kronrod)) return true; // Broken here: halving won't fix it.
+        if (depth >= MAX_DEPTH) return true;
+        double middle = 0.5 * (a + b);
+        return middle <= a || middle >= b; // No doubles left between a and b.
+    }
+
+    // The result for [a, b] as it is (no more halving).
+    private IntegrationResult leaf() {
+        return new IntegrationResult(kronrod, error, 1, depth, depth == 0 ? POINTS : 0, error <= tolerance);
+    }
+
+    // The Gauss–Kronrod rule on [lo, hi]: { 15-point answer, |15-point - 7-point| }.
+    private static double[] rule(FunctionOfX f, double lo, double hi) {
+        double center = 0.5 * (lo + hi), half = 0.5 * (hi - lo);
+        double fc = f.at(center);
+        double kronrod = fc * KRONROD_WEIGHTS[7];
+        double gauss = fc * GAUSS_WEIGHTS[3];
+        for (int i = 0; i < 7; i++) {
+            double dx = half * NODES[i];
+            double pair = f.at(center - dx) + f.at(center + dx);
+            kronrod += pair * KRONROD_WEIGHTS[i];
+            if (i % 2 == 1) gauss += pair * GAUSS_WEIGHTS[i / 2];
+        }
+        return new double[] { kronrod * half, Math.abs(kronrod - gauss) * half };
+    }
+}
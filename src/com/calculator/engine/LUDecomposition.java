@@ -0,0 +1,189 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.RecursiveAction; // The Fork/Join base class for tasks that return nothing.
+
+// This class splits a square matrix into P * A = L * U (L has 1s on its diagonal and zeros
+// above it, U has zeros below it, and P swaps rows). With that, the determinant is the product
+// of U's diagonal, and A * X = B is solved with two cheap triangular passes.
+//
+// It is the "blocked" version of Gaussian elimination with partial pivoting: the columns are done
+// PANEL at a time. A panel is eliminated the simple way (it is thin, so that is cheap), and then
+// all the rest of the matrix is updated with ONE big product (A22 -= L21 * U12). That product is
+// nearly all the work for big matrices, and it runs on the blocked, parallel MatrixKernels.
+// L and U are kept together in one flat row-major array ('lu'), as usual.
+// Each column (and each row of a substitution) first checks for an interrupt (see Cancellation).
+final class LUDecomposition {
+
+    static final int PANEL = 64; // Columns eliminated before each big update.
+
+    // Substitutions with fewer multiply-adds than this run on the calling thread.
+    private static final long PARALLEL_WORK = MatrixKernels.PARALLEL_WORK;
+    private static final int MIN_COLS = 64; // Never split the right-hand sides into pieces narrower than this.
+    private static final int CHUNK = 64; // Columns of the right-hand sides done in one pass.
+
+    private final int n;
+    private final double[] lu; // L below the diagonal, U on and above it.
+    private final int[] perm; // Row i of L*U is row perm[i] of the original matrix.
+    private boolean evenSwaps = true; // For the sign of the determinant.
+    private boolean zeroPivot = false; // A column had only exact zeros left: the determinant is 0.
+    private boolean singular = false; // Too close to singular to solve with (see the constructor).
+
+    LUDecomposition(Matrix matrix) {
+        n = matrix.getRows();
+        lu = matrix.toArray();
+        perm = new int[n];
+        // The biggest number in each row. A pivot that is tiny next to its own row makes the matrix
+        // 'singular' for solve and inverse, so e.g. [[1,2,3],[4,5,6],[7,8,9]] has no inverse even
+        // though rounding leaves 1e-16 behind. The elimination itself only stops at a pivot that is
+        // exactly 0, so the determinant stays the plain product of the pivots (tiny, huge or NaN).
+        double[] rowSize = new double[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+            for (int c = 0; c < n; c++) rowSize[i] = Math.max(rowSize[i], Math.abs(lu[i * n + c]));
+        }
+        double epsilon = n * Math.ulp(1.0);
+
+        for (int k0 = 0; k0 < n && !zeroPivot; k0 += PANEL) {
+            int k1 = Math.min(n, k0 + PANEL);
+
+            // 1. Eliminate the panel (columns k0..k1-1, all rows from k0 down).
+            for (int j = k0; j < k1; j++) {
+                Cancellation.check();
+                int p = j;
+                double best = Math.abs(lu[j * n + j]);
+                for (int i = j + 1; i < n; i++) {
+                    double v = Math.abs(lu[i * n + j]);
+                    if (v > best) {
+                        best = v;
+                        p = i;
+                    }
+                }
+                if (best == 0.0) { // Only zeros left in this column.
+                    zeroPivot = true;
+                    singular = true;
+                    break;
+                }
+                if (!(best > epsilon * rowSize[p])) singular = true; // Too small to divide by safely (NaN and infinity land here too).
+                if (p != j) swapRows(p, j, rowSize);
+                double pivot = lu[j * n + j];
+                for (int i = j + 1; i < n; i++) {
+                    int row = i * n;
+                    double l = lu[row + j] / pivot;
+                    lu[row + j] = l;
+                    if (l == 0.0) continue;
+                    for (int c = j + 1; c < k1; c++) lu[row + c] -= l * lu[j * n + c];
+                }
+            }
+            if (zeroPivot || k1 == n) break;
+
+            // 2. The panel's rows to the right: U12 = L11⁻¹ * A12.
+            for (int j = k0; j < k1; j++) {
+                for (int i = j + 1; i < k1; i++) {
+                    double l = lu[i * n + j];
+                    if (l == 0.0) continue;
+                    for (int c = k1; c < n; c++) lu[i * n + c] -= l * lu[j * n + c];
+                }
+            }
+
+            // 3. Everything below and to the right: A22 -= L21 * U12 (blocked and parallel).
+            MatrixKernels.multiplyAdd(lu, k1 * n + k0, n, lu, k0 * n + k1, n, lu, k1 * n + k1, n,
+                                      n - k1, k1 - k0, n - k1, -1.0);
+        }
+    }
+
+    // Swaps two whole rows (and remembers it in 'perm').
+    private void swapRows(int p, int q, double[] rowSize) {
+        for (int c = 0; c < n; c++) {
+            double t = lu[p * n + c];
+            lu[p * n + c] = lu[q * n + c];
+            lu[q * n + c] = t;
+        }
+        int t = perm[p]; perm[p] = perm[q]; perm[q] = t;
+        double s = rowSize[p]; rowSize[p] = rowSize[q]; rowSize[q] = s;
+        evenSwaps = !evenSwaps;
+    }
+
+    boolean isSingular() { return this.singular; }
+
+    // The product of U's diagonal, with a minus sign for an odd number of swaps.
+    double determinant() {
+        if (zeroPivot) return 0.0;
+        double det = evenSwaps ? 1.0 : -1.0;
+        for (int i = 0; i < n; i++) det *= lu[i * n + i];
+        return det;
+    }
+
+    // The X with A * X = B. Throws "Math Error" if A is singular.
+    Matrix solve(Matrix b) {
+        if (singular) throw new RuntimeException("Math Error");
+        int m = b.getCols();
+        double[] source = b.data();
+        double[] x = new double[n * m];
+        for (int i = 0; i < n; i++) System.arraycopy(source, perm[i] * m, x, i * m, m); // P * B.
+        Cancellation cancellation = new Cancellation();
+        SubstitutionTask task = new SubstitutionTask(x, m, 0, m, cancellation);
+        if ((long) n * n * m <= PARALLEL_WORK || m < 2 * MIN_COLS) task.substitute();
+        else cancellation.invoke(task);
+        return new Matrix(n, m, x);
+    }
+
+    // Solves L * U * X = P * B for the columns [from, to) of X: first L (forward, top to bottom),
+    // then U (backward). Each piece of columns is independent, so wide right-hand sides (like the
+    // identity, for an inverse) are split across the Fork/Join pool.
+    // The loops go along rows, so they read the flat arrays in order.
+    private final class SubstitutionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] x;
+        private final int m, from, to;
+        private final Cancellation cancellation; // Shared by all the tasks of one 'solve'.
+
+        SubstitutionTask(double[] x, int m, int from, int to, Cancellation cancellation) {
+            this.x = x;
+            this.m = m;
+            this.from = from;
+            this.to = to;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) n * n * (to - from) <= PARALLEL_WORK || to - from < 2 * MIN_COLS) {
+                substitute();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SubstitutionTask(x, m, from, middle, cancellation), new SubstitutionTask(x, m, middle, to, cancellation));
+        }
+
+        // Works through the columns CHUNK at a time, so the part of X being updated stays in the cache.
+        void substitute() {
+            for (int c0 = from; c0 < to; c0 += CHUNK) {
+                int c1 = Math.min(to, c0 + CHUNK);
+                for (int i = 0; i < n; i++) { // L has 1s on its diagonal.
+                    cancellation.checkTask();
+                    int row = i * m;
+                    for (int k = 0; k < i; k++) {
+                        double l = lu[i * n + k];
+                        if (l == 0.0) continue;
+                        int other = k * m;
+                        for (int c = c0; c < c1; c++) x[row + c] -= l * x[other + c];
+                    }
+                }
+                for (int i = n - 1; i >= 0; i--) {
+                    cancellation.checkTask();
+                    int row = i * m;
+                    for (int k = i + 1; k < n; k++) {
+                        double u = lu[i * n + k];
+                        if (u == 0.0) continue;
+                        int other = k * m;
+                        for (int c = c0; c < c1; c++) x[row + c] -= u * x[other + c];
+                    }
+                    double pivot = lu[i * n + i];
+                    for (int c = c0; c < c1; c++) x[row + c] /= pivot;
+                }
+            }
+        }
+    }
+}
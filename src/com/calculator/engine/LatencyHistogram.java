@@ -0,0 +1,78 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray; // An array of counters that many threads can update.
+
+// This class counts how long things took, without storing every single time.
+// Times are sorted into 'buckets' by powers of two (1 ns, 2 ns, 4 ns, ... ), so it always
+// uses the same small amount of memory and recording is just one array increment.
+// OOP Concept: Encapsulation. Callers only 'record' and 'snapshot'; the buckets are hidden.
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64; // Enough for any 'long' number of nanoseconds.
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // counts[i] = times in [2^(i-1), 2^i).
+    private final AtomicLong total = new AtomicLong(); // How many times were recorded.
+    private final AtomicLong sum = new AtomicLong(); // The sum of all times (for the mean).
+    private final AtomicLong max = new AtomicLong(); // The longest time seen.
+
+    // Adds one time (in nanoseconds).
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        long seen;
+        while (nanos > (seen = max.get()) && !max.compareAndSet(seen, nanos)) { } // Keep the biggest.
+    }
+
+    // The bucket a time falls into: 0 for 0 ns, otherwise the number of bits it needs.
+    private static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    // Takes a frozen copy of the current numbers.
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, total.get(), sum.get(), max.get());
+    }
+
+    // A frozen copy of a histogram. Percentiles are read from the buckets, so they are
+    // upper bounds that are at most 2x the true value (good enough to spot slow phases).
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] buckets, long count, long sumNanos, long maxNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return this.count; }
+        public long getMaxNanos() { return this.maxNanos; }
+        public double getMeanNanos() { return count == 0 ? 0 : (double) sumNanos / count; }
+
+        // Returns (an upper bound of) the time that 'fraction' of all records were below, e.g. 0.99 for p99.
+        public long getPercentileNanos(double fraction) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(maxNanos, i == 0 ? 0 : (1L << i) - 1);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                count, getMeanNanos(), getPercentileNanos(0.50), getPercentileNanos(0.99), maxNanos);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.math.BigDecimal; // The exact value of a typed number (for AdaptivePrecision).
+
+// This class reads an expression one token at a time, in a single pass from left to right.
+// It understands numbers, variables (A..F, X, M), 'Ans', 'π', 'e', 'i', '√', function names,
+// brackets and operators, and it adds the hidden '*' for implied multiplication (e.g. "2A").
+// It never builds new strings, so it replaces the old chain of 'replaceAll' calls.
+// OOP Concept: Abstraction. The compiler just asks for 'next()' and doesn't care about characters.
+class Lexer {
+
+    // --- Token kinds returned by next() ---
+    static final int END = 0; // No more input.
+    static final int NUMBER = 1; // A number or a constant (π, e). Read it with number().
+    static final int VARIABLE = 2; // A variable. Read its slot with slot().
+    static final int ANS = 3; // The 'Ans' keyword.
+    static final int FUNCTION = 4; // A function name. Read its id with function().
+    static final int OPEN = 5; // '('
+    static final int CLOSE = 6; // ')'
+    static final int OPERATOR = 7; // '+', '-', '*', '/' or '^'. Read it with operator().
+    static final int NEGATE = 8; // A '-' that means "negative" (e.g. "-5" or "(-5").
+    static final int COMMA = 9; // ',' between the arguments of a two-argument function.
+    static final int IMAGINARY = 10; // The imaginary unit 'i' (only complex mode can use its value).
+
+    // Powers of ten that a 'double' can hold exactly (used by the fast number reader).
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final String text; // The expression we are reading.
+    private final FunctionTable functions; // The function names we know.
+    private int pos = 0; // Where we are in the text.
+    private int tokenStart = 0; // Where the current token begins.
+    private int previous = END; // The kind of the last token we returned.
+    private boolean hasPending = false; // True if a token was held back behind an implied '*'.
+    private int pendingKind; // The kind of the held-back token.
+    private boolean literal = false; // True if the token just read was typed digits (not π or e).
+    private boolean previousWasLiteral = false; // The same, for the last token we returned.
+
+    // The value of the current token (only one of these is used, depending on the kind).
+    private double number;
+    private int slot;
+    private int function;
+    private char operator;
+
+    Lexer(String text, FunctionTable functions) {
+        this.text = text;
+        this.functions = functions;
+    }
+
+    // Starts reading 'text' at a position saved (with 'save') from a text with the same beginning.
+    Lexer(String text, FunctionTable functions, Position position) {
+        this(text, functions);
+        this.pos = position.pos;
+        this.tokenStart = position.pos;
+        this.previous = position.previous;
+        this.literal = position.literal;
+    }
+
+    // Where a lexer is between two tokens: enough to carry on reading from there.
+    static final class Position {
+        final int pos;
+        final int previous;
+        final boolean literal;
+
+        Position(int pos, int previous, boolean literal) {
+            this.pos = pos;
+            this.previous = previous;
+            this.literal = literal;
+        }
+    }
+
+    // Saves where we are (only between tokens, i.e. when hasPending() is false).
+    Position save() {
+        return new Position(pos, previous, literal);
+    }
+
+    // True if a token is held back behind an implied '*'.
+    boolean hasPending() {
+        return this.hasPending;
+    }
+
+    // How far into the text we have read.
+    int position() {
+        return this.pos;
+    }
+
+    // Getters for the current token's value.
+    double number() { return this.number; }
+    int slot() { return this.slot; }
+    int function() { return this.function; }
+    char operator() { return this.operator; }
+
+    // The exact value of the current NUMBER token: the typed digits, or π and e to 100 digits.
+    // Only AdaptivePrecision needs this, so the normal compiler never pays for it.
+    BigDecimal exactNumber() {
+        if (literal) return new BigDecimal(text.substring(tokenStart, pos));
+        return (number == Math.PI) ? AdaptivePrecision.PI : AdaptivePrecision.E;
+    }
+
+    // This reads the next token and returns its kind.
+    int next() {
+        if (hasPending) { // Last time we handed out an implied '*', so now return the token we held back.
+            hasPending = false;
+            return previous = pendingKind;
+        }
+
+        while (pos < text.length() && text.charAt(pos) == ' ') pos++; // Skip spaces.
+        if (pos >= text.length()) return previous = END;
+
+        previousWasLiteral = literal;
+        literal = false;
+        tokenStart = pos;
+        int kind = readToken();
+
+        // Implied multiplication: a value followed by something that starts a value.
+        // (e.g. "2A", "2π", "3sin(", ")(" or "A(")
+        if (endsValue(previous) && startsValue(kind)) {
+            hasPending = true; // Keep this token (its value is already stored) for the next call.
+            pendingKind = kind;
+            operator = '*';
+            return previous = OPERATOR;
+        }
+        return previous = kind;
+    }
+
+    // Reads one token starting at 'pos' and fills in its value.
+    private int readToken() {
+        char c = text.charAt(pos);
+
+        // If it's a number (or a decimal point)...
+        if ((c >= '0' && c <= '9') || c == '.') {
+            // Two numbers in a row (e.g. "1 2") is an error, just like before.
+            if (previous == NUMBER && previousWasLiteral) throw new RuntimeException("Syntax Error");
+            number = readNumber();
+            literal = true;
+            return NUMBER;
+        }
+        switch (c) {
+            case '(': pos++; return OPEN;
+            case ')': pos++; return CLOSE;
+            case ',': pos++; return COMMA;
+            case 'π': pos++; number = Math.PI; return NUMBER;
+            case '√': pos++; function = BuiltinFunctions.SQRT; return FUNCTION;
+            case '+': case '*': case '/': case '^':
+                pos++;
+                operator = c;
+                return OPERATOR;
+            case '-':
+                pos++;
+                operator = c;
+                // A '-' at the start, after an operator, after '(' or after ',' means "negative".
+                return (previous == END || previous == OPERATOR || previous == NEGATE || previous == OPEN || previous == COMMA) ? NEGATE : OPERATOR;
+        }
+
+        // 'Ans' and the single-letter variables.
+        if (text.startsWith("Ans", pos)) {
+            pos += 3;
+            return ANS;
+        }
+        int variable = variableSlot(c);
+        if (variable >= 0) {
+            pos++;
+            slot = variable;
+            return VARIABLE;
+        }
+
+        if (Character.isLetter(c)) {
+            // Find the longest function name that starts here.
+            MathFunction f = functions.match(text, pos);
+            if (f != null) {
+                pos += f.getName().length();
+                function = f.getId();
+                return FUNCTION;
+            }
+            // No function matched, so a lone 'e' is Euler's number.
+            if (c == 'e') {
+                pos++;
+                number = Math.E;
+                return NUMBER;
+            }
+            // ... and a lone 'i' is the imaginary unit.
+            if (c == 'i') {
+                pos++;
+                return IMAGINARY;
+            }
+            // Anything else is a name we don't know (e.g. "sec").
+            int end = pos;
+            while (end < text.length() && Character.isLetter(text.charAt(end))) end++;
+            throw new RuntimeException("Unknown function: " + text.substring(pos, end));
+        }
+        throw new RuntimeException("Syntax Error"); // Any other character is not allowed.
+    }
+
+    // Reads a number like "12", "3.5" or ".25" without creating a String.
+    private double readNumber() {
+        int start = pos;
+        long digits = 0; // The digits we have read, as one whole number.
+        int significant = 0; // How many digits went into 'digits' (leading zeros don't count).
+        int decimals = 0; // How many of those digits came after the '.'.
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits != 0 || c != '0') significant++;
+                if (significant <= 18) digits = digits * 10 + (c - '0'); // Stay inside a 'long'.
+                if (seenPoint) decimals++;
+            } else if (c == '.') {
+                if (seenPoint) throw new RuntimeException("Syntax Error"); // e.g. "1.2.3"
+                seenPoint = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (!seenDigit) throw new RuntimeException("Syntax Error"); // A lone "."
+
+        // Fast path: up to 15 digits and a small power of ten are both exact doubles,
+        // and one division rounds correctly, so this gives the same answer as parseDouble.
+        if (significant <= 15 && decimals < POWERS_OF_TEN.length) {
+            return digits / POWERS_OF_TEN[decimals];
+        }
+        return Double.parseDouble(text.substring(start, pos)); // Rare long numbers.
+    }
+
+    // This helper maps a variable letter to its slot number, or -1 if it is not a variable.
+    static int variableSlot(char c) {
+        switch (c) {
+            case 'A': return CompiledExpression.SLOT_A;
+            case 'B': return CompiledExpression.SLOT_B;
+            case 'C': return CompiledExpression.SLOT_C;
+            case 'D': return CompiledExpression.SLOT_D;
+            case 'E': return CompiledExpression.SLOT_E;
+            case 'F': return CompiledExpression.SLOT_F;
+            case 'X': return CompiledExpression.SLOT_X;
+            case 'M': return CompiledExpression.SLOT_M;
+            default: return -1;
+        }
+    }
+
+    // True if a token of this kind can be the end of a value (a number, variable or ')').
+    private static boolean endsValue(int kind) {
+        return kind == NUMBER || kind == VARIABLE || kind == ANS || kind == IMAGINARY || kind == CLOSE;
+    }
+
+    // True if a token of this kind can start a value (a number, variable, function or '(').
+    private static boolean startsValue(int kind) {
+        return kind == NUMBER || kind == VARIABLE || kind == ANS || kind == IMAGINARY || kind == FUNCTION || kind == OPEN;
+    }
+}
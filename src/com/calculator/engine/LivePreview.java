@@ -0,0 +1,84 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class computes a preview of an expression while it is still being typed, e.g. the
+// calculator can show "= 0.5" as soon as "sin(30" is on the display.
+//
+// Typing mostly adds characters at the end, so the text usually starts with the same
+// characters as last time. The parser saves its state (a checkpoint) a little before the end of
+// the text, and the next preview carries on from there instead of parsing everything again.
+// (The last few characters are always read again: "1" may become "12", and "si" may become "sin".)
+//
+// Unfinished input never counts as an error: open brackets are closed for the preview
+// ("2*(3+4" shows 14), and anything that still doesn't make sense ("2+", "sin(") gives no preview.
+// One LivePreview belongs to one display; 'preview' is synchronized, so it may be called from
+// a background thread.
+// OOP Concept: Encapsulation. The checkpoint is hidden; the UI only asks for a preview.
+public class LivePreview {
+
+    private final CalculatorEngine engine;
+    private FunctionTable table = null; // The functions the checkpoint was parsed with.
+    private ExpressionParser parser = null;
+    private ExpressionParser.Checkpoint checkpoint = null; // Where the next preview can start, or null.
+    private String checkpointText = null; // The text the checkpoint was saved from.
+    private int reused = 0; // How many characters the last preview did not have to read again.
+
+    public LivePreview(CalculatorEngine engine) {
+        this.engine = engine;
+    }
+
+    // Returns the value of 'text' (with open brackets closed), or null if it has none yet.
+    public synchronized Double preview(String text) {
+        try {
+            return engine.evaluate(parse(text));
+        } catch (RuntimeException e) {
+            return null; // Not finished yet (or not valid): no preview, and never an error.
+        }
+    }
+
+    // The same for complex mode (see CalculatorEngine.evaluateComplex), e.g. "√(-4" shows 2i.
+    public synchronized Complex previewComplex(String text) {
+        try {
+            return engine.evaluateComplex(parse(text));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Parses 'text' (from the checkpoint if it can) and returns it as a program with open brackets closed.
+    // Throws if the text doesn't make sense yet.
+    private CompiledExpression parse(String text) {
+        FunctionTable current = engine.getFunctions().table();
+        // The lexer may look this far past a token to decide where it ends (e.g. "sin" or "sinh").
+        int lookahead = Math.max(3, current.longestName()); // 3 is for 'Ans'.
+
+        if (checkpoint != null && current == table && canResume(text, lookahead)) {
+            parser.resume(checkpoint, text);
+            reused = checkpoint.position.pos;
+        } else { // Start from scratch (the first time, after a DEL past the checkpoint, or new functions).
+            table = current;
+            parser = new ExpressionParser(text, current, engine.getLimits());
+            checkpoint = null;
+            reused = 0;
+        }
+
+        while (parser.step()) {
+            // Save the state once the rest of the text can no longer change how this token was read.
+            if (parser.atTokenBoundary() && parser.position() + lookahead <= text.length()) {
+                checkpoint = parser.checkpoint();
+                checkpointText = text;
+            }
+        }
+        return parser.finishOpen();
+    }
+
+    // How many characters the last preview skipped thanks to the checkpoint (for tests and benchmarks).
+    public synchronized int getReusedLength() {
+        return this.reused;
+    }
+
+    // True if 'text' starts with the same characters as the checkpoint's text, far enough past the checkpoint.
+    private boolean canResume(String text, int lookahead) {
+        int needed = checkpoint.position.pos + lookahead;
+        return text.length() >= needed && text.regionMatches(0, checkpointText, 0, needed);
+    }
+}
@@ -0,0 +1,112 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.function.DoubleBinaryOperator; // f(a, b) on primitive doubles (no boxing).
+import java.util.function.DoubleUnaryOperator; // f(x) on primitive doubles (no boxing).
+
+// This class describes one function the calculator can call: its name, its id, how many
+// arguments it takes, and some facts about it that the engine uses:
+//   - ANGULAR: the argument is an angle, so in DEG mode it is turned into radians first (like sin).
+//   - INVERSE_ANGULAR: the answer is an angle, so in DEG mode it is turned into degrees (like asin).
+//   - pure: the same input always gives the same answer, so the Optimizer may compute it early.
+// A function is either built in, a Java lambda (one or two arguments), or an expression over X.
+// OOP Concept: Encapsulation. Once created, nothing can change it (it is 'immutable').
+public final class MathFunction {
+
+    // --- Flags for FunctionRegistry.define ---
+    public static final int ANGULAR = 1; // The argument is an angle.
+    public static final int INVERSE_ANGULAR = 2; // The answer is an angle.
+    public static final int IMPURE = 4; // The answer may change between calls (never computed early).
+
+    // --- What kind of function this is ---
+    private static final int BUILTIN = 0, UNARY = 1, BINARY = 2, EXPRESSION = 3;
+
+    private final String name;
+    private final int id; // Its index in the function table (what CALL instructions use).
+    private final int kind;
+    private final int flags;
+    private final DoubleUnaryOperator unary; // Only for UNARY.
+    private final DoubleBinaryOperator binary; // Only for BINARY.
+    private final CompiledExpression body; // Only for EXPRESSION: the program, with X as the argument.
+
+    private MathFunction(String name, int id, int kind, int flags, DoubleUnaryOperator unary, DoubleBinaryOperator binary, CompiledExpression body) {
+        this.name = name;
+        this.id = id;
+        this.kind = kind;
+        this.flags = flags;
+        this.unary = unary;
+        this.binary = binary;
+        this.body = body;
+    }
+
+    // --- Factory methods (only the registry creates functions) ---
+    static MathFunction builtin(int id) {
+        int flags = 0;
+        if (id <= BuiltinFunctions.TAN) flags = ANGULAR;
+        else if (id <= BuiltinFunctions.ATAN) flags = INVERSE_ANGULAR;
+        return new MathFunction(BuiltinFunctions.NAMES[id], id, BUILTIN, flags, null, null, null);
+    }
+
+    static MathFunction unary(String name, int id, DoubleUnaryOperator f, int flags) {
+        return new MathFunction(name, id, UNARY, flags, f, null, null);
+    }
+
+    static MathFunction binary(String name, int id, DoubleBinaryOperator f, int flags) {
+        return new MathFunction(name, id, BINARY, flags, null, f, null);
+    }
+
+    static MathFunction expression(String name, int id, CompiledExpression body) {
+        // It is pure if its answer depends only on X (no other variables, no 'Ans', nothing impure inside).
+        int flags = (body.usesVariables() || body.usesAns() || body.usesImpure()) ? IMPURE : 0;
+        return new MathFunction(name, id, EXPRESSION, flags, null, null, body);
+    }
+
+    // --- Getters ---
+    public String getName() { return this.name; }
+    public int getId() { return this.id; }
+    public int getArity() { return kind == BINARY ? 2 : 1; }
+    public boolean isBuiltin() { return kind == BUILTIN; }
+    public boolean isAngular() { return (flags & ANGULAR) != 0; }
+    public boolean isInverseAngular() { return (flags & INVERSE_ANGULAR) != 0; }
+    public boolean isPure() { return (flags & IMPURE) == 0; }
+
+    // The program of an expression function, or null.
+    CompiledExpression getBody() { return this.body; }
+
+    // How many operations one call does: 1, or all of the body's (see EvaluationLimits).
+    long getOperations() { return body == null ? 1 : body.getOperations(); }
+
+    // True if calling it reads A..F, X or M (only possible for expression functions).
+    boolean usesVariables() { return body != null && body.usesVariables(); }
+
+    // True if calling it reads 'Ans'.
+    boolean usesAns() { return body != null && body.usesAns(); }
+
+    // True if the answer can be different in DEG and RAD mode.
+    boolean dependsOnMode() {
+        if (body != null) return body.dependsOnMode();
+        return (flags & (ANGULAR | INVERSE_ANGULAR)) != 0;
+    }
+
+    // Calls a one-argument function. 'stack' and 'top' give an expression function room to run
+    // (it uses stack[top] upwards), and 'vars'/'ans' are what its variables and 'Ans' read.
+    double apply(double x, double[] vars, double ans, boolean isDegrees, double[] stack, int top) {
+        switch (kind) {
+            case BUILTIN: return BuiltinFunctions.apply(id, x, isDegrees);
+            case EXPRESSION: return body.run(vars, ans, isDegrees, stack, top, x);
+            default:
+                if (isDegrees && isAngular()) x = Math.toRadians(x);
+                double result = unary.applyAsDouble(x);
+                return (isDegrees && isInverseAngular()) ? Math.toDegrees(result) : result;
+        }
+    }
+
+    // Calls a two-argument function (the arguments are used as they are, in both modes).
+    double apply(double a, double b) {
+        return binary.applyAsDouble(a, b);
+    }
+
+    @Override
+    public String toString() {
+        return name + "/" + getArity();
+    }
+}
@@ -0,0 +1,162 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Arrays; // For equals and hashCode.
+
+// This class is a matrix of numbers (a vector is a matrix with one column).
+// The numbers are kept in one flat 'double[]', row after row ("row-major"): the number in
+// row r, column c is data[r * cols + c]. That is much faster than a list of boxed Doubles, and
+// the loops below walk through memory in order.
+//
+// A Matrix never changes after it is made, so it can be stored in A..F and shared by
+// many threads, just like EngineState.
+// Errors: sizes that don't fit together give "Dimension Error"; inverting or solving with a
+// singular matrix gives "Math Error".
+// OOP Concept: Encapsulation. The array is private and never handed out (toArray makes a copy).
+public final class Matrix {
+
+    private final int rows, cols;
+    private final double[] data; // rows * cols numbers, row after row (nobody writes to it after construction).
+
+    // Makes a matrix from 'values', given row after row (e.g. Matrix.of(2, 2, 1, 2, 3, 4) is [[1,2],[3,4]]).
+    public static Matrix of(int rows, int cols, double... values) {
+        if (values.length != (long) rows * cols) throw new IllegalArgumentException("Need " + (long) rows * cols + " values");
+        return new Matrix(rows, cols, values.clone());
+    }
+
+    // Package-private: wraps 'data' without copying it (the caller must not change it afterwards).
+    Matrix(int rows, int cols, double[] data) {
+        if (rows < 1 || cols < 1) throw new IllegalArgumentException("A matrix needs at least one row and column");
+        this.rows = rows;
+        this.cols = cols;
+        this.data = data;
+    }
+
+    // The n x n identity matrix (1 on the diagonal, 0 elsewhere).
+    public static Matrix identity(int n) {
+        double[] data = new double[n * n];
+        for (int i = 0; i < n; i++) data[i * n + i] = 1.0;
+        return new Matrix(n, n, data);
+    }
+
+    // --- Getters ---
+
+    public int getRows() { return this.rows; }
+    public int getCols() { return this.cols; }
+    public boolean isSquare() { return rows == cols; }
+
+    // The number in row 'r', column 'c' (both counted from 0).
+    public double get(int r, int c) {
+        if (r < 0 || r >= rows || c < 0 || c >= cols) throw new IndexOutOfBoundsException("(" + r + ", " + c + ")");
+        return data[r * cols + c];
+    }
+
+    // A copy of all the numbers, row after row.
+    public double[] toArray() { return data.clone(); }
+
+    // Package-private: the array itself, for the kernels (never write to it).
+    double[] data() { return this.data; }
+
+    // --- Arithmetic ---
+
+    public Matrix plus(Matrix other) {
+        return add(other, 1.0);
+    }
+
+    public Matrix minus(Matrix other) {
+        return add(other, -1.0);
+    }
+
+    // this + sign * other.
+    private Matrix add(Matrix other, double sign) {
+        if (other.rows != rows || other.cols != cols) throw new RuntimeException("Dimension Error");
+        double[] result = new double[data.length];
+        for (int i = 0; i < result.length; i++) result[i] = data[i] + sign * other.data[i];
+        return new Matrix(rows, cols, result);
+    }
+
+    // Every number times 'factor'.
+    public Matrix times(double factor) {
+        double[] result = new double[data.length];
+        for (int i = 0; i < result.length; i++) result[i] = data[i] * factor;
+        return new Matrix(rows, cols, result);
+    }
+
+    // The matrix product this * other. It uses cache-sized blocks, and big products are split
+    // across the Fork/Join pool (see MatrixKernels.multiplyAdd).
+    public Matrix times(Matrix other) {
+        if (cols != other.rows) throw new RuntimeException("Dimension Error");
+        double[] result = new double[rows * other.cols];
+        MatrixKernels.multiplyAdd(data, 0, cols, other.data, 0, other.cols, result, 0, other.cols, rows, cols, other.cols, 1.0);
+        return new Matrix(rows, other.cols, result);
+    }
+
+    // Rows become columns. Done in small square tiles, so both arrays are read in cache-friendly pieces.
+    public Matrix transpose() {
+        double[] result = new double[data.length];
+        final int tile = 32;
+        for (int r0 = 0; r0 < rows; r0 += tile) {
+            for (int c0 = 0; c0 < cols; c0 += tile) {
+                int r1 = Math.min(rows, r0 + tile), c1 = Math.min(cols, c0 + tile);
+                for (int r = r0; r < r1; r++) {
+                    for (int c = c0; c < c1; c++) result[c * rows + r] = data[r * cols + c];
+                }
+            }
+        }
+        return new Matrix(cols, rows, result);
+    }
+
+    // --- Square matrices (these use the LU decomposition, see LUDecomposition) ---
+
+    // The determinant: the product of the pivots, so a nearly singular matrix gives a tiny number
+    // (not 0), and an infinite or NaN element gives Infinity or NaN.
+    public double determinant() {
+        return decompose().determinant();
+    }
+
+    // The inverse. Throws "Math Error" if the matrix is singular.
+    public Matrix inverse() {
+        return decompose().solve(identity(rows));
+    }
+
+    // The X with this * X = b (b has one column per right-hand side). Throws "Math Error" if
+    // the matrix is singular. This is faster and more accurate than inverse().times(b).
+    public Matrix solve(Matrix b) {
+        if (b.rows != rows) throw new RuntimeException("Dimension Error");
+        return decompose().solve(b);
+    }
+
+    private LUDecomposition decompose() {
+        if (!isSquare()) throw new RuntimeException("Dimension Error");
+        return new LUDecomposition(this);
+    }
+
+    // --- Comparing and printing ---
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Matrix)) return false;
+        Matrix other = (Matrix) o;
+        return rows == other.rows && cols == other.cols && Arrays.equals(data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + cols) + Arrays.hashCode(data);
+    }
+
+    // The same form that evaluateMatrix reads, e.g. "[[1,2],[3,4]]".
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int r = 0; r < rows; r++) {
+            text.append(r == 0 ? "[" : ",[");
+            for (int c = 0; c < cols; c++) {
+                if (c > 0) text.append(',');
+                double v = data[r * cols + c];
+                text.append(NumberFormatter.format(v));
+            }
+            text.append(']');
+        }
+        return text.append(']').toString();
+    }
+}
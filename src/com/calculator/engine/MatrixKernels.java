@@ -0,0 +1,123 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.RecursiveAction; // The Fork/Join base class for tasks that return nothing.
+
+// The inner loops of Matrix and LUDecomposition. Everything works on flat row-major arrays with
+// an 'offset' (where the block starts) and a 'stride' (the length of a full row), so the same
+// code can multiply whole matrices or blocks inside a bigger one (as LU does).
+//
+// C += sign * A * B is done in blocks of K_BLOCK x J_BLOCK of B (about 256 KB, so it stays in
+// the CPU cache while every row of A uses it), with the "i-k-j" loop order: the innermost loop
+// walks along a row of B and a row of C, which the JIT turns into fast vector code.
+// Big products are split by rows of C across the Fork/Join pool (see MultiplyTask). The rows
+// don't share any output, so the answer is exactly the same with 1 or 64 threads.
+// Every block first checks whether the calculation was cancelled (see Cancellation), so a
+// cancelled calculation doesn't finish a huge product first.
+final class MatrixKernels {
+
+    static final int K_BLOCK = 128; // Rows of B per block.
+    static final int J_BLOCK = 256; // Columns of B (and C) per block.
+
+    // Products with fewer multiply-adds than this run on the calling thread (about 0.1 ms of work).
+    static final long PARALLEL_WORK = 1L << 18;
+    static final int MIN_ROWS = 16; // Never split into pieces with fewer rows than this.
+
+    private MatrixKernels() { }
+
+    // C += sign * A * B, where A is rows x inner, B is inner x cols and C is rows x cols.
+    // Runs in the caller's Fork/Join pool if there is one, otherwise in the common pool.
+    static void multiplyAdd(double[] a, int aOffset, int aStride,
+                            double[] b, int bOffset, int bStride,
+                            double[] c, int cOffset, int cStride,
+                            int rows, int inner, int cols, double sign) {
+        Cancellation cancellation = new Cancellation();
+        if ((long) rows * inner * cols <= PARALLEL_WORK || rows < 2 * MIN_ROWS) {
+            multiplyAddBlocked(a, aOffset, aStride, b, bOffset, bStride, c, cOffset, cStride, rows, inner, cols, sign, cancellation);
+        } else {
+            cancellation.invoke(new MultiplyTask(a, aOffset, aStride, b, bOffset, bStride, c, cOffset, cStride, rows, inner, cols, sign, cancellation));
+        }
+    }
+
+    // The single-threaded blocked kernel. It stops if the calculation is cancelled.
+    static void multiplyAddBlocked(double[] a, int aOffset, int aStride,
+                                   double[] b, int bOffset, int bStride,
+                                   double[] c, int cOffset, int cStride,
+                                   int rows, int inner, int cols, double sign, Cancellation cancellation) {
+        for (int k0 = 0; k0 < inner; k0 += K_BLOCK) {
+            int k1 = Math.min(inner, k0 + K_BLOCK);
+            for (int j0 = 0; j0 < cols; j0 += J_BLOCK) {
+                cancellation.checkTask();
+                int j1 = Math.min(cols, j0 + J_BLOCK);
+                int i = 0;
+                for (; i + 4 <= rows; i += 4) { // Four rows of C at a time: each number of B is read once for all four.
+                    int a0 = aOffset + i * aStride, c0 = cOffset + i * cStride;
+                    int a1 = a0 + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+                    int c1 = c0 + cStride, c2 = c1 + cStride, c3 = c2 + cStride;
+                    for (int k = k0; k < k1; k++) {
+                        double x0 = sign * a[a0 + k], x1 = sign * a[a1 + k], x2 = sign * a[a2 + k], x3 = sign * a[a3 + k];
+                        int bRow = bOffset + k * bStride;
+                        for (int j = j0; j < j1; j++) {
+                            double bkj = b[bRow + j];
+                            c[c0 + j] += x0 * bkj;
+                            c[c1 + j] += x1 * bkj;
+                            c[c2 + j] += x2 * bkj;
+                            c[c3 + j] += x3 * bkj;
+                        }
+                    }
+                }
+                for (; i < rows; i++) { // The last few rows, one at a time.
+                    int aRow = aOffset + i * aStride;
+                    int cRow = cOffset + i * cStride;
+                    for (int k = k0; k < k1; k++) {
+                        double aik = sign * a[aRow + k]; // No skipping of 0s: 0 * Infinity must be NaN here too.
+                        int bRow = bOffset + k * bStride;
+                        for (int j = j0; j < j1; j++) c[cRow + j] += aik * b[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    // Splits a product by rows of C until each piece is small, then runs the blocked kernel.
+    // OOP Concept: Inheritance. 'extends RecursiveAction' lets the Fork/Join pool run this object.
+    private static final class MultiplyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] a, b, c;
+        private final int aOffset, aStride, bOffset, bStride, cOffset, cStride;
+        private final int rows, inner, cols;
+        private final double sign;
+        private final Cancellation cancellation; // Shared by all the tasks of one product.
+
+        MultiplyTask(double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride,
+                     double[] c, int cOffset, int cStride, int rows, int inner, int cols, double sign, Cancellation cancellation) {
+            this.a = a;
+            this.aOffset = aOffset;
+            this.aStride = aStride;
+            this.b = b;
+            this.bOffset = bOffset;
+            this.bStride = bStride;
+            this.c = c;
+            this.cOffset = cOffset;
+            this.cStride = cStride;
+            this.rows = rows;
+            this.inner = inner;
+            this.cols = cols;
+            this.sign = sign;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) rows * inner * cols <= PARALLEL_WORK || rows < 2 * MIN_ROWS) { // Small enough: no more splitting.
+                multiplyAddBlocked(a, aOffset, aStride, b, bOffset, bStride, c, cOffset, cStride, rows, inner, cols, sign, cancellation);
+                return;
+            }
+            int top = rows / 2; // The top half and the bottom half of C (and of A).
+            invokeAll(new MultiplyTask(a, aOffset, aStride, b, bOffset, bStride, c, cOffset, cStride, top, inner, cols, sign, cancellation),
+                      new MultiplyTask(a, aOffset + top * aStride, aStride, b, bOffset, bStride,
+                                       c, cOffset + top * cStride, cStride, rows - top, inner, cols, sign, cancellation));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.ArrayList;
+import java.util.List;
+
+// This class reads and evaluates a matrix expression (see CalculatorEngine.evaluateMatrix), e.g.
+//   "[[1,2],[3,4]]"        a matrix, row by row      "[1,2,3]"      a vector (one column)
+//   "A*B+C", "2A", "A/2"   arithmetic                 "Aᵀ", "A⁻¹"    transpose and inverse
+//   "det(A)", "trn(A)", "inv(A)", "solve(A,B)", "idn(3)"
+// A..F are the matrices stored with storeMatrix. Every number inside [...] is an ordinary
+// expression (e.g. "[[π/2, sin(30)]]"), evaluated with the same snapshot.
+// A number (or det(...)) is a 1 x 1 matrix; multiplying by one scales the other matrix.
+// It works straight on the characters with one method per grammar rule ("recursive descent"):
+//   expression = term (('+' | '-') term)*
+//   term       = factor (('*' | '×' | '/' | '÷') factor)*
+//   factor     = '-' factor | primary ('ᵀ' | '⁻¹')*
+// Every grammar rule calls itself through 'factor', so 'factor' counts how deep it is: brackets,
+// function calls and '-' signs inside each other may go getMaxNesting() deep ("Nesting Too Deep"),
+// and operators and operands together may number getMaxTokens() ("Too Many Tokens"), the same
+// limits (and counters) as ordinary expressions. Without them, "((((...1))))" or "-----...1"
+// would run the Java stack out.
+final class MatrixParser {
+
+    static final int MAX_SIZE = 4096; // The most rows or columns idn() may make.
+
+    private final String text;
+    private final CalculatorEngine engine; // Evaluates the numbers inside [...].
+    private final EngineState snapshot;
+    private final EvaluationLimits limits;
+    private final int maxTokens, maxNesting; // Read once, so each check costs one comparison.
+    private int pos = 0;
+    private int tokens = 0; // Operators and operands read so far.
+    private int depth = 0; // How many 'factor' calls are running right now.
+
+    MatrixParser(String text, CalculatorEngine engine, EngineState snapshot, EvaluationLimits limits) {
+        this.text = text;
+        this.engine = engine;
+        this.snapshot = snapshot;
+        this.limits = limits;
+        this.maxTokens = limits.getMaxTokens();
+        this.maxNesting = limits.getMaxNesting();
+    }
+
+    Matrix parse() {
+        Matrix result = expression();
+        if (peek() != 0) throw new RuntimeException("Syntax Error"); // Something left over.
+        return result;
+    }
+
+    private Matrix expression() {
+        Matrix result = term();
+        while (true) {
+            char c = peek();
+            if (c == '+') { pos++; token(); result = result.plus(term()); }
+            else if (c == '-') { pos++; token(); result = result.minus(term()); }
+            else return result;
+        }
+    }
+
+    private Matrix term() {
+        Matrix result = factor();
+        while (true) {
+            char c = peek();
+            if (c == '*' || c == '×') { pos++; token(); result = multiply(result, factor()); }
+            else if (c == '/' || c == '÷') {
+                pos++;
+                token();
+                Matrix divisor = factor();
+                if (!isScalar(divisor)) throw new RuntimeException("Dimension Error"); // Only by a number.
+                if (divisor.get(0, 0) == 0.0) throw new ArithmeticException("Division by Zero");
+                result = result.times(1.0 / divisor.get(0, 0));
+            }
+            else if (startsPrimary(c)) result = multiply(result, factor()); // Implied '*', e.g. "2A" or "A(B+C)".
+            else return result;
+        }
+    }
+
+    private Matrix factor() {
+        token();
+        if (++depth > maxNesting) throw limits.nestingTooDeep();
+        try {
+            if (peek() == '-') {
+                pos++;
+                return factor().times(-1.0);
+            }
+            Matrix result = primary();
+            while (true) {
+                if (peek() == 'ᵀ') { pos++; token(); result = result.transpose(); }
+                else if (text.startsWith("⁻¹", pos)) { pos += 2; token(); result = result.inverse(); }
+                else return result;
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    private Matrix primary() {
+        char c = peek();
+        if (c == '[') return literal();
+        if (c == '(') {
+            pos++;
+            Matrix inside = expression();
+            expect(')');
+            return inside;
+        }
+        if ((c >= '0' && c <= '9') || c == '.') return scalar(number());
+        if (c >= 'A' && c <= 'F') { // A stored matrix ("AB" is A times B, as in ordinary expressions).
+            pos++;
+            Matrix stored = snapshot.getMatrix(String.valueOf(c));
+            if (stored == null) throw new RuntimeException("Math Error"); // Nothing stored there.
+            return stored;
+        }
+        if (c >= 'a' && c <= 'z') return function();
+        throw new RuntimeException("Syntax Error");
+    }
+
+    // det(M), trn(M), inv(M), solve(M, B) or idn(n).
+    private Matrix function() {
+        int start = pos;
+        while (charAt(pos) >= 'a' && charAt(pos) <= 'z') pos++;
+        String name = text.substring(start, pos);
+        expect('(');
+        Matrix argument = expression();
+        Matrix result;
+        switch (name) {
+            case "det": result = scalar(argument.determinant()); break;
+            case "trn": result = argument.transpose(); break;
+            case "inv": result = argument.inverse(); break;
+            case "solve":
+                expect(',');
+                result = argument.solve(expression());
+                break;
+            case "idn":
+                double n = isScalar(argument) ? argument.get(0, 0) : Double.NaN;
+                if (!(n >= 1 && n <= MAX_SIZE) || n != Math.floor(n)) throw new RuntimeException("Math Error");
+                result = Matrix.identity((int) n);
+                break;
+            default: throw new RuntimeException("Syntax Error"); // Unknown function.
+        }
+        expect(')');
+        return result;
+    }
+
+    // "[[1,2],[3,4]]" (rows) or "[1,2,3]" (a column vector).
+    private Matrix literal() {
+        expect('[');
+        if (peek() != '[') { // A vector: one number per row.
+            double[] values = row();
+            return new Matrix(values.length, 1, values);
+        }
+        List<double[]> rows = new ArrayList<double[]>();
+        do {
+            expect('[');
+            rows.add(row());
+        } while (accept(','));
+        expect(']');
+        int cols = rows.get(0).length;
+        double[] data = new double[rows.size() * cols];
+        for (int r = 0; r < rows.size(); r++) {
+            if (rows.get(r).length != cols) throw new RuntimeException("Dimension Error"); // Rows of different lengths.
+            System.arraycopy(rows.get(r), 0, data, r * cols, cols);
+        }
+        return new Matrix(rows.size(), cols, data);
+    }
+
+    // The numbers up to (and including) the next ']'. Each one is an ordinary expression.
+    private double[] row() {
+        List<Double> values = new ArrayList<Double>();
+        while (true) {
+            int start = pos, depth = 0;
+            while (pos < text.length()) { // Find the ',' or ']' that ends this number (not one inside brackets).
+                char c = text.charAt(pos);
+                if (c == '(') depth++;
+                else if (c == ')') depth--;
+                else if ((c == ',' || c == ']') && depth == 0) break;
+                else if (c == '[') throw new RuntimeException("Syntax Error");
+                pos++;
+            }
+            String element = text.substring(start, pos).trim();
+            if (element.isEmpty() || pos == text.length()) throw new RuntimeException("Syntax Error");
+            values.add(engine.evaluate(element, snapshot));
+            if (text.charAt(pos++) == ']') break;
+        }
+        double[] row = new double[values.size()];
+        for (int i = 0; i < row.length; i++) row[i] = values.get(i);
+        return row;
+    }
+
+    // A plain number, e.g. "2" or "0.5" (for anything more, put it inside [...]).
+    private double number() {
+        int start = pos;
+        while (Character.isDigit(charAt(pos)) || charAt(pos) == '.') pos++;
+        try {
+            return Double.parseDouble(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Syntax Error"); // e.g. "1.2.3"
+        }
+    }
+
+    // --- Helpers ---
+
+    // Counts one operator or operand.
+    private void token() {
+        if (++tokens > maxTokens) throw limits.tooManyTokens();
+    }
+
+    // '*' with a 1 x 1 matrix on one side scales the other side.
+    private static Matrix multiply(Matrix left, Matrix right) {
+        if (isScalar(left) && !isScalar(right)) return right.times(left.get(0, 0));
+        if (isScalar(right)) return left.times(right.get(0, 0));
+        return left.times(right);
+    }
+
+    private static boolean isScalar(Matrix m) { return m.getRows() == 1 && m.getCols() == 1; }
+
+    private static Matrix scalar(double value) { return new Matrix(1, 1, new double[] {value}); }
+
+    // True if 'c' can start a primary (for implied multiplication).
+    private static boolean startsPrimary(char c) {
+        return c == '[' || c == '(' || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'z') || Character.isDigit(c) || c == '.';
+    }
+
+    // The next character that isn't a space (0 at the end), without moving past it.
+    private char peek() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        return charAt(pos);
+    }
+
+    private char charAt(int i) {
+        return i < text.length() ? text.charAt(i) : 0;
+    }
+
+    private boolean accept(char c) {
+        if (peek() != c) return false;
+        pos++;
+        return true;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) throw new RuntimeException("Syntax Error");
+    }
+}
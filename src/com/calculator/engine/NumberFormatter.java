@@ -0,0 +1,218 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.math.BigDecimal; // Answers of the adaptive-precision (decimal) mode.
+import java.math.BigInteger; // Only used once, to build the table of powers of ten.
+
+// This class turns a double into the text the calculator shows, e.g. 0.1 -> "0.1", 5.0 -> "5",
+// 1.0E-5 -> "1.0E-5". The text is always the SHORTEST one that reads back (Double.parseDouble)
+// as exactly the same double, so showing an answer never loses anything.
+//
+// It uses the Schubfach algorithm (Raffaello Giulietti, "The Schubfach way to render doubles",
+// 2020; the same one Double.toString uses since Java 19). Instead of trying more and more digits,
+// it works out the shortest decimal inside the double's rounding interval directly, with a few
+// 64-bit multiplications by a precomputed power of ten. It makes one char[] and the String, and
+// is many times faster than String.format("%s", v). (Double.toString before Java 19 sometimes
+// printed a digit too many, e.g. 2.82879384806159E17 as "2.82879384806159008E17"; this never does.)
+//
+// Whole numbers are shown exactly as before: "%d" of the long value (e.g. "120", "-3").
+// Everything else uses Double.toString's layout: plain from 0.001 up to 10^7, otherwise
+// "d.dddE±n". NaN and the infinities are "NaN", "Infinity" and "-Infinity".
+// OOP Concept: Abstraction. Callers just call 'format'; the math is hidden in here.
+public final class NumberFormatter {
+
+    // --- The double format ---
+    private static final int P = 53; // Bits in the significand (with the hidden bit).
+    private static final int Q_MIN = -1074; // The smallest binary exponent.
+    private static final long C_MIN = 1L << (P - 1); // The smallest significand of a normal double.
+    private static final int BQ_MASK = (1 << 11) - 1; // The exponent bits.
+    private static final long T_MASK = (1L << (P - 1)) - 1; // The fraction bits.
+    private static final long C_TINY = 3; // Subnormal significands below this need one extra digit.
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final int H = 17; // The most digits a double ever needs.
+
+    private static final int LENGTH = 26; // "-1.2345678901234567E-308" is the longest text.
+
+    // --- Powers of ten (see 'powersOfTen') ---
+    private static final int K_MIN = -324, K_MAX = 292;
+    private static final long[] G = powersOfTen();
+
+    private NumberFormatter() { }
+
+    // The display form: whole numbers like "%d" (no ".0"), anything else the shortest round-trip text.
+    public static String format(double v) {
+        if (v == (long) v) return Long.toString((long) v); // Exactly what String.format("%d", (long) v) gave.
+        return toShortestString(v);
+    }
+
+    // Like Double.toString ("0.1", "5.0", "1.0E-5"), but always with the fewest digits that read back as 'v'.
+    public static String toShortestString(double v) {
+        char[] text = new char[LENGTH + H]; // The text, then room for the digits while they are worked out.
+        return new String(text, 0, write(v, text));
+    }
+
+    // The display form of a decimal answer (CalculatorEngine.evaluateDecimal): no trailing zeros,
+    // plain digits from 10^-7 up to 10^21 (e.g. "0.3", "123456789"), otherwise "d.dddE±n".
+    public static String format(BigDecimal v) {
+        if (v.signum() == 0) return "0";
+        v = v.stripTrailingZeros();
+        int exponent = v.precision() - v.scale() - 1; // The power of ten of the first digit.
+        return (exponent >= -7 && exponent < 21) ? v.toPlainString() : v.toString();
+    }
+
+    // --- Schubfach ---
+
+    // Writes 'v' into 'text' and returns how many characters it used.
+    private static int write(double v, char[] text) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) { // Infinity or NaN.
+            String special = (t != 0) ? "NaN" : (bits > 0 ? "Infinity" : "-Infinity");
+            special.getChars(0, special.length(), text, 0);
+            return special.length();
+        }
+        int pos = 0;
+        if (bits < 0) text[pos++] = '-';
+        if (bq != 0) { // A normal double: v = c * 2^q.
+            int mq = -Q_MIN + 1 - bq; // -q
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) { // A whole number below 2^53: its digits are simply c >> mq.
+                long f = c >> mq;
+                if (f << mq == c) return writeDigits(text, pos, f, 0);
+            }
+            return toDecimal(text, pos, -mq, c, 0);
+        }
+        if (t != 0) { // A subnormal double.
+            return t < C_TINY ? toDecimal(text, pos, Q_MIN, 10 * t, -1) : toDecimal(text, pos, Q_MIN, t, 0);
+        }
+        return writeDigits(text, pos, 0, 0); // +0.0 or -0.0
+    }
+
+    // Finds the shortest decimal f * 10^e in the rounding interval of c * 2^q (the closest one if
+    // there are several) and writes it.
+    private static int toDecimal(char[] text, int pos, int q, long c, int dk) {
+        int out = (int) c & 0x1; // Even significands include the interval's ends (round-half-even reads them back).
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) { // The usual case: the interval is symmetric.
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else { // At a power of two the gap below is half as wide.
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[2 * (k - K_MIN)], g0 = G[2 * (k - K_MIN) + 1];
+        long vb = rop(g1, g0, cb << h); // The value, and the interval's ends, times 10^-k (scaled by 4).
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) { // Try one digit fewer first: s or s+1 rounded to a multiple of 10.
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4); // 10 * (s / 10)
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) return writeDigits(text, pos, upin ? sp10 : tp10, k);
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) return writeDigits(text, pos, uin ? s : t, k + dk); // Only one of s and s+1 is inside.
+        long cmp = vb - ((s + t) << 1); // Both are: take the closer one (the even one on a tie).
+        return writeDigits(text, pos, (cmp < 0 || (cmp == 0 && (s & 0x1) == 0)) ? s : t, k + dk);
+    }
+
+    // The top 64 bits of g * cp (g = g1 * 2^63 + g0), rounded to odd, so the comparisons above are exact.
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    // floor(e * log10(2)), floor(e * log10(3/4 * 2)) and floor(e * log2(10)), for the exponents doubles have.
+    private static int flog10pow2(int e) { return (int) (e * 661_971_961_083L >> 41); }
+    private static int flog10threeQuartersPow2(int e) { return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41); }
+    private static int flog2pow10(int e) { return (int) (e * 913_124_641_741L >> 38); }
+
+    // --- Writing the digits ---
+
+    // Writes f * 10^e (f has at most 17 digits) in Double.toString's layout.
+    private static int writeDigits(char[] text, int pos, long f, int e) {
+        if (f == 0) {
+            text[pos] = '0';
+            text[pos + 1] = '.';
+            text[pos + 2] = '0';
+            return pos + 3;
+        }
+        while (f % 10 == 0) { // Trailing zeros only move the exponent.
+            f /= 10;
+            e++;
+        }
+        char[] digits = text; // The digits go at the end of 'text', after the room for the text itself.
+        int n = 0;
+        for (long rest = f; rest != 0; rest /= 10) digits[LENGTH + H - 1 - n++] = (char) ('0' + rest % 10);
+        int first = LENGTH + H - n; // digits[first ..] are the n digits.
+        int end = LENGTH + H;
+        int exponent = e + n - 1; // The value is d.ddd * 10^exponent.
+
+        if (exponent >= -3 && exponent < 7) { // Plain: 0.001 <= |v| < 10^7.
+            if (exponent < 0) { // "0.000ddd"
+                text[pos++] = '0';
+                text[pos++] = '.';
+                for (int i = exponent + 1; i < 0; i++) text[pos++] = '0';
+                for (int i = first; i < end; i++) text[pos++] = digits[i];
+                return pos;
+            }
+            for (int i = 0; i <= exponent; i++) text[pos++] = (i < n) ? digits[first + i] : '0'; // The whole part.
+            text[pos++] = '.';
+            if (n <= exponent + 1) {
+                text[pos++] = '0';
+            } else {
+                for (int i = exponent + 1; i < n; i++) text[pos++] = digits[first + i];
+            }
+            return pos;
+        }
+        // Scientific: "d.dddE±n" (at least one digit after the point).
+        text[pos++] = digits[first];
+        text[pos++] = '.';
+        if (n == 1) text[pos++] = '0';
+        for (int i = first + 1; i < end; i++) text[pos++] = digits[i];
+        text[pos++] = 'E';
+        if (exponent < 0) {
+            text[pos++] = '-';
+            exponent = -exponent;
+        }
+        if (exponent >= 100) text[pos++] = (char) ('0' + exponent / 100);
+        if (exponent >= 10) text[pos++] = (char) ('0' + exponent / 10 % 10);
+        text[pos++] = (char) ('0' + exponent % 10);
+        return pos;
+    }
+
+    // --- The table ---
+
+    // For every k from K_MIN to K_MAX: 10^-k = β * 2^r with 2^125 <= β < 2^126, and g = floor(β) + 1.
+    // g is stored as two longs: g1 = g >> 63 and g0 = the low 63 bits. It is worked out once,
+    // exactly, with BigInteger (617 pairs, a few milliseconds) instead of being typed in.
+    private static long[] powersOfTen() {
+        long[] g = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int r = flog2pow10(-k) - 125;
+            BigInteger numerator = (k <= 0) ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+            BigInteger denominator = (k > 0) ? BigInteger.TEN.pow(k) : BigInteger.ONE;
+            if (r < 0) numerator = numerator.shiftLeft(-r);
+            else denominator = denominator.shiftLeft(r);
+            BigInteger value = numerator.divide(denominator).add(BigInteger.ONE);
+            g[2 * (k - K_MIN)] = value.shiftRight(63).longValueExact();
+            g[2 * (k - K_MIN) + 1] = value.and(mask).longValue();
+        }
+        return g;
+    }
+}
@@ -0,0 +1,287 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.Arrays; // We need Arrays.copyOf to grow and trim our arrays.
+
+// This class makes a compiled program shorter before it is ever run:
+//   - Constant parts are computed once: "2^10*sin(30)" becomes "512*0.5" becomes "256".
+//     (Only pure functions are computed early; see MathFunction.isPure.)
+//   - Harmless identities are removed: "A*1", "1*A", "A/1", "A-0" and "A^1" all become "A".
+//   - The "-1 *" the parser writes for a minus sign becomes one NEG instruction,
+//     and two minus signs in a row ("--A") cancel out.
+// Every rewrite gives exactly the same bits as running the original program, so:
+//   - "A+0" is NOT simplified, because -0.0 + 0 is +0.0 (not -0.0).
+//   - "5/0" is NOT computed early, so it still throws "Division by Zero" when run.
+//   - Nothing that contains a variable or 'Ans' is ever thrown away (e.g. "A*0" stays).
+//   - A constant part whose real answer is NaN (e.g. "sqrt(-1)" or "(-8)^(1/3)") is NOT computed
+//     early: it still gives NaN when run, and complex mode (see ComplexEvaluator) can run the same
+//     program and get the complex answer.
+// "sin(30)" depends on DEG/RAD, so programs that call sin, cos, tan, their inverses (or any
+// other function that depends on the mode) are optimized twice, once for each mode;
+// CompiledExpression.run picks the right one.
+// OOP Concept: Abstraction. The engine only calls 'optimize'.
+final class Optimizer {
+
+    private Optimizer() { }
+
+    // Returns an optimized copy of 'program' that runs with exactly the same results.
+    static CompiledExpression optimize(CompiledExpression program) {
+        int[] code = program.getCode(false); // A fresh program is the same in both modes.
+        double[] constants = program.getConstants(false);
+        MathFunction[] functions = program.getFunctions();
+
+        Pass radians = new Pass(code, constants, functions, false);
+        Pass degrees = radians;
+        if (program.dependsOnMode()) degrees = new Pass(code, constants, functions, true); // Only then can the modes differ.
+
+        return new CompiledExpression(program.getSource(), radians.code, radians.constants, degrees.code, degrees.constants,
+            Math.max(radians.maxStack, degrees.maxStack), program.usesAns(), program.usesVariables(), program.usesImpure(), functions, program.getFunctionNames(), null);
+    }
+
+    // One optimization of one program for one mode.
+    // It walks the postfix code like 'run' does, but instead of numbers it keeps a 'symbolic' stack:
+    // for each value it remembers where its instructions start in the output, and if the value is
+    // already known (a constant), what that value is.
+    private static final class Pass {
+
+        private final boolean isDegrees;
+        private final MathFunction[] functions;
+        private int[] out; // The optimized instructions so far.
+        private int outSize = 0;
+        private double[] values; // values[i] is the number pushed by out[i] if out[i] is a PUSH.
+
+        // --- The symbolic stack ---
+        private final int[] start; // Where each stack value's instructions begin in 'out'.
+        private final boolean[] known; // True if that value is a constant.
+        private final double[] value; // The constant (only if 'known').
+        private int sp = 0;
+
+        // --- The finished program ---
+        int[] code;
+        double[] constants;
+        int maxStack;
+
+        Pass(int[] input, double[] inputConstants, MathFunction[] functions, boolean isDegrees) {
+            this.isDegrees = isDegrees;
+            this.functions = functions;
+            this.out = new int[input.length];
+            this.values = new double[input.length];
+            this.start = new int[input.length + 1];
+            this.known = new boolean[input.length + 1];
+            this.value = new double[input.length + 1];
+
+            for (int instruction : input) {
+                int arg = instruction >> 8;
+                switch (instruction & 0xFF) {
+                    case CompiledExpression.PUSH: pushConstant(inputConstants[arg]); break;
+                    case CompiledExpression.LOAD_VAR:
+                    case CompiledExpression.LOAD_ANS:
+                    case CompiledExpression.LOAD_ARG:
+                    case CompiledExpression.LOAD_I: pushUnknown(instruction); break;
+                    case CompiledExpression.CALL: call(instruction, arg); break;
+                    case CompiledExpression.CALL2: call2(instruction, arg); break;
+                    case CompiledExpression.NEG: negate(); break;
+                    default: binary(instruction); break;
+                }
+            }
+            finish();
+        }
+
+        // A new constant on top of the stack.
+        private void pushConstant(double v) {
+            start[sp] = outSize;
+            known[sp] = true;
+            value[sp] = v;
+            sp++;
+            values[outSize] = v;
+            out[outSize++] = CompiledExpression.PUSH; // The argument is filled in by 'finish'.
+        }
+
+        // A new value that is only known when the program runs (a variable, 'Ans' or i).
+        private void pushUnknown(int instruction) {
+            start[sp] = outSize;
+            known[sp] = false;
+            sp++;
+            out[outSize++] = instruction;
+        }
+
+        // A function call on the top value.
+        private void call(int instruction, int id) {
+            MathFunction f = functions[id];
+            if (known[sp - 1] && f.isPure()) { // A pure function of a constant can be done right now.
+                try {
+                    CompiledExpression body = f.getBody();
+                    double[] scratch = new double[body == null ? 0 : body.getMaxStack()];
+                    double result = f.apply(value[sp - 1], NO_VARIABLES, 0.0, isDegrees, scratch, 0);
+                    if (becomesNaN(result, value[sp - 1], 0.0)) throw new ArithmeticException(); // Leave it for complex mode.
+                    sp--;
+                    outSize = start[sp];
+                    pushConstant(result);
+                    return;
+                } catch (RuntimeException e) {
+                    // It throws (e.g. a user function "1/X" at 0) or gives NaN: leave it, so it does that when run.
+                }
+            }
+            out[outSize++] = instruction; // The value still starts where its argument started.
+            known[sp - 1] = false;
+        }
+
+        // A two-argument function call on the top two values.
+        private void call2(int instruction, int id) {
+            MathFunction f = functions[id];
+            if (known[sp - 2] && known[sp - 1] && f.isPure()) {
+                try {
+                    double result = f.apply(value[sp - 2], value[sp - 1]);
+                    if (becomesNaN(result, value[sp - 2], value[sp - 1])) throw new ArithmeticException();
+                    sp -= 2;
+                    outSize = start[sp];
+                    pushConstant(result);
+                    return;
+                } catch (RuntimeException e) {
+                    // Leave it, so it throws when run.
+                }
+            }
+            sp--;
+            known[sp - 1] = false;
+            out[outSize++] = instruction;
+        }
+
+        // Flips the sign of the top value.
+        private void negate() {
+            if (known[sp - 1]) {
+                double result = -value[sp - 1];
+                sp--;
+                outSize = start[sp];
+                pushConstant(result);
+            } else if (outSize - start[sp - 1] > 1 && (out[outSize - 1] & 0xFF) == CompiledExpression.NEG) {
+                outSize--; // "- -A" is just "A".
+            } else {
+                out[outSize++] = CompiledExpression.NEG;
+            }
+        }
+
+        // One of ADD, SUB, MUL, DIV, POW.
+        private void binary(int instruction) {
+            int op = instruction & 0xFF;
+            int right = sp - 1, left = sp - 2;
+
+            // 1. Both sides are constants: compute it now (unless it would throw when run, or gives NaN).
+            double result = (known[left] && known[right]) ? fold(op, value[left], value[right]) : 0.0;
+            if (known[left] && known[right] && !(op == CompiledExpression.DIV && value[right] == 0)
+                    && !becomesNaN(result, value[left], value[right])) {
+                sp -= 2;
+                outSize = start[left];
+                pushConstant(result);
+                return;
+            }
+
+            // 2. Identities that give back the other side bit for bit.
+            if (known[right] && isNeutralOnRight(op, value[right])) {
+                sp--; // Drop the constant (its one PUSH is the last instruction).
+                outSize--;
+                return;
+            }
+            if (op == CompiledExpression.MUL && known[left] && isPlusOne(value[left])) {
+                dropLeft(left, right);
+                return;
+            }
+
+            // 3. "-1 * A" and "A * -1" become "NEG A".
+            if (op == CompiledExpression.MUL && known[right] && isMinusOne(value[right])) {
+                sp--;
+                outSize--;
+                negate();
+                return;
+            }
+            if (op == CompiledExpression.MUL && known[left] && isMinusOne(value[left])) {
+                dropLeft(left, right);
+                negate();
+                return;
+            }
+
+            // Nothing to simplify: the two values become one.
+            sp--;
+            known[left] = false;
+            out[outSize++] = instruction;
+        }
+
+        // Removes a constant left operand (one PUSH) and slides the right operand's instructions over it.
+        private void dropLeft(int left, int right) {
+            int from = start[right];
+            System.arraycopy(out, from, out, start[left], outSize - from);
+            System.arraycopy(values, from, values, start[left], outSize - from);
+            outSize--;
+            start[left] = start[right] - 1;
+            known[left] = known[right];
+            value[left] = value[right];
+            sp--;
+        }
+
+        // Trims the arrays, numbers the constants and works out the deepest stack.
+        private void finish() {
+            code = Arrays.copyOf(out, outSize);
+            double[] pool = new double[outSize];
+            int count = 0, depth = 0;
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc] & 0xFF) {
+                    case CompiledExpression.PUSH:
+                        pool[count] = values[pc];
+                        code[pc] = CompiledExpression.PUSH | (count << 8);
+                        count++;
+                        depth++;
+                        break;
+                    case CompiledExpression.LOAD_VAR:
+                    case CompiledExpression.LOAD_ANS:
+                    case CompiledExpression.LOAD_ARG:
+                    case CompiledExpression.LOAD_I: depth++; break;
+                    case CompiledExpression.CALL: // One in, one out (an expression function runs just above its argument).
+                        CompiledExpression body = functions[code[pc] >> 8].getBody();
+                        if (body != null) maxStack = Math.max(maxStack, depth + body.getMaxStack());
+                        break;
+                    case CompiledExpression.NEG: break; // One in, one out.
+                    default: depth--; break; // Two in, one out.
+                }
+                if (depth > maxStack) maxStack = depth;
+            }
+            constants = Arrays.copyOf(pool, count);
+        }
+    }
+
+    private static final double[] NO_VARIABLES = new double[CompiledExpression.SLOT_COUNT]; // Pure functions never read them.
+
+    // Does the same math as CompiledExpression.run, so folded answers are exactly the same.
+    private static double fold(int op, double left, double right) {
+        switch (op) {
+            case CompiledExpression.ADD: return left + right;
+            case CompiledExpression.SUB: return left - right;
+            case CompiledExpression.MUL: return left * right;
+            case CompiledExpression.DIV: return left / right;
+            case CompiledExpression.POW: return Math.pow(left, right);
+            default: throw new IllegalStateException("Not a binary operator: " + op);
+        }
+    }
+
+    // True if a NaN answer came from numbers that weren't NaN (so complex mode may have a real answer for it).
+    private static boolean becomesNaN(double result, double left, double right) {
+        return Double.isNaN(result) && !Double.isNaN(left) && !Double.isNaN(right);
+    }
+
+    // True if "A op c" is always exactly A: A*1, A/1, A-(+0) and A^1.
+    // (A-(-0) is A+0, which turns -0.0 into +0.0, so only a positive zero counts.)
+    private static boolean isNeutralOnRight(int op, double c) {
+        switch (op) {
+            case CompiledExpression.MUL:
+            case CompiledExpression.DIV:
+            case CompiledExpression.POW: return isPlusOne(c);
+            case CompiledExpression.SUB: return Double.doubleToRawLongBits(c) == 0L;
+            default: return false;
+        }
+    }
+
+    private static boolean isPlusOne(double c) {
+        return c == 1.0;
+    }
+
+    private static boolean isMinusOne(double c) {
+        return c == -1.0;
+    }
+}
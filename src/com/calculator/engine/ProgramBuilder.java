@@ -0,0 +1,160 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.math.BigDecimal; // Exact numbers (only kept for AdaptivePrecision).
+import java.util.Arrays; // We need Arrays.copyOf to grow and trim our arrays.
+
+// This helper collects postfix instructions while the engine reads an expression.
+// It also keeps track of how many numbers would be on the stack, so bad input
+// (like "5++") is caught once at compile time instead of every time we run.
+// OOP Concept: Abstraction. The engine just says "emit this", and this class does the bookkeeping.
+class ProgramBuilder {
+
+    private String source; // The text being compiled.
+    private final FunctionTable functions; // The functions CALL instructions refer to.
+    private int[] code = new int[16]; // The instructions so far (plain ints, no boxing).
+    private int codeSize = 0;
+    private double[] constants = new double[8]; // The numbers so far.
+    private int constantCount = 0;
+    private BigDecimal[] exactConstants; // The exact value of each number, or null if we don't keep them.
+    private int depth = 0; // How many numbers would be on the stack right now.
+    private int maxDepth = 0; // The biggest 'depth' we have seen.
+    private boolean usesAns = false; // Did we see 'Ans'?
+    private boolean usesVariables = false; // Did we see a variable (A..F, X, M)?
+    private boolean usesImpure = false; // Did we see a call to a function that is not pure?
+
+    ProgramBuilder(String source, FunctionTable functions, boolean exact) {
+        this.source = source;
+        this.functions = functions;
+        if (exact) this.exactConstants = new BigDecimal[constants.length];
+    }
+
+    // Emit "push this number".
+    void pushConstant(double value) {
+        pushConstant(value, exactConstants == null ? null : new BigDecimal(value)); // e.g. the -1 of a minus sign.
+    }
+
+    // Emit "push this number", remembering its exact value too (e.g. 0.1 is not exactly a double).
+    void pushConstant(double value, BigDecimal exact) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+            if (exactConstants != null) exactConstants = Arrays.copyOf(exactConstants, constantCount * 2);
+        }
+        if (exactConstants != null) exactConstants[constantCount] = exact;
+        constants[constantCount++] = value;
+        emit(CompiledExpression.PUSH, constantCount - 1);
+        grow();
+    }
+
+    // Emit "push this variable".
+    void loadVariable(int slot) {
+        usesVariables = true;
+        emit(CompiledExpression.LOAD_VAR, slot);
+        grow();
+    }
+
+    // Emit "push the argument" (inside a function defined as an expression over X).
+    void loadArgument() {
+        emit(CompiledExpression.LOAD_ARG, 0);
+        grow();
+    }
+
+    // Emit "push i" (the imaginary unit).
+    void loadImaginary() {
+        emit(CompiledExpression.LOAD_I, 0);
+        grow();
+    }
+
+    // Emit "push the last answer".
+    void loadAns() {
+        usesAns = true;
+        emit(CompiledExpression.LOAD_ANS, 0);
+        grow();
+    }
+
+    // Emit an entry that was taken off the engine's 'ops' stack.
+    // 'op' is an operator character, '(' or a function entry (see ExpressionParser.FUNCTION_OP).
+    void operator(int op) {
+        if (op == '(') throw new RuntimeException("Mismatched Parentheses");
+        if (depth < 2) throw new RuntimeException("Syntax Error");
+        switch (op) {
+            case '+': emit(CompiledExpression.ADD, 0); break;
+            case '-': emit(CompiledExpression.SUB, 0); break;
+            case '*': emit(CompiledExpression.MUL, 0); break;
+            case '/': emit(CompiledExpression.DIV, 0); break;
+            case '^': emit(CompiledExpression.POW, 0); break;
+            default: throw new RuntimeException("Syntax Error"); // A function without brackets.
+        }
+        depth--; // Two numbers in, one number out.
+    }
+
+    // Emit a function call (like "sin") by its id.
+    void function(MathFunction f) {
+        if (depth < f.getArity()) throw new RuntimeException("Syntax Error");
+        if (f.usesVariables()) usesVariables = true; // e.g. f = "A*X": calling f reads A.
+        if (f.usesAns()) usesAns = true;
+        if (!f.isPure()) usesImpure = true; // e.g. a random number: its answer can change from call to call.
+        if (f.getBody() != null) { // Its program runs on our stack, just above its argument.
+            maxDepth = Math.max(maxDepth, depth + f.getBody().getMaxStack());
+        }
+        if (f.getArity() == 2) {
+            emit(CompiledExpression.CALL2, f.getId()); // Two numbers in, one number out.
+            depth--;
+        } else {
+            emit(CompiledExpression.CALL, f.getId()); // One number in, one number out.
+        }
+    }
+
+    // How far the program had got at some point (see ExpressionParser.checkpoint).
+    static final class Mark {
+        final int codeSize, constantCount, depth, maxDepth;
+        final boolean usesAns, usesVariables, usesImpure;
+
+        Mark(int codeSize, int constantCount, int depth, int maxDepth, boolean usesAns, boolean usesVariables, boolean usesImpure) {
+            this.codeSize = codeSize;
+            this.constantCount = constantCount;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.usesAns = usesAns;
+            this.usesVariables = usesVariables;
+            this.usesImpure = usesImpure;
+        }
+    }
+
+    // Remembers how far we are. Instructions are only ever added at the end,
+    // so everything before this mark stays as it is.
+    Mark mark() {
+        return new Mark(codeSize, constantCount, depth, maxDepth, usesAns, usesVariables, usesImpure);
+    }
+
+    // Forgets everything emitted after 'mark', and continues as part of a (longer) 'source' text.
+    void reset(Mark mark, String source) {
+        this.source = source;
+        this.codeSize = mark.codeSize;
+        this.constantCount = mark.constantCount;
+        this.depth = mark.depth;
+        this.maxDepth = mark.maxDepth;
+        this.usesAns = mark.usesAns;
+        this.usesVariables = mark.usesVariables;
+        this.usesImpure = mark.usesImpure;
+    }
+
+    // This finishes the program and trims the arrays to their real size.
+    CompiledExpression build() {
+        if (depth != 1) throw new RuntimeException("Syntax Error"); // Safety check.
+        return new CompiledExpression(source, Arrays.copyOf(code, codeSize),
+            Arrays.copyOf(constants, constantCount), maxDepth, usesAns, usesVariables, usesImpure, functions.byId,
+            exactConstants == null ? null : Arrays.copyOf(exactConstants, constantCount));
+    }
+
+    // Adds one instruction (code in the low 8 bits, argument above it).
+    private void emit(int op, int arg) {
+        if (codeSize == code.length) code = Arrays.copyOf(code, codeSize * 2);
+        code[codeSize++] = op | (arg << 8);
+    }
+
+    // Called whenever an instruction pushes a new number.
+    private void grow() {
+        depth++;
+        if (depth > maxDepth) maxDepth = depth;
+    }
+}
@@ -0,0 +1,31 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// The answer of CalculatorEngine.solve: the X that makes the expression 0, and how sure we are.
+// OOP Concept: Encapsulation. It is immutable; the fields can only be read with getters.
+public final class SolveResult {
+
+    private final double root; // The X that was found.
+    private final double residual; // The expression's value at 'root' (ideally 0).
+    private final double errorEstimate; // The true root is within root ± errorEstimate.
+    private final int iterations; // Newton steps + Brent steps.
+    private final long evaluations; // How many times the expression was run.
+
+    SolveResult(double root, double residual, double errorEstimate, int iterations, long evaluations) {
+        this.root = root;
+        this.residual = residual;
+        this.errorEstimate = errorEstimate;
+        this.iterations = iterations;
+        this.evaluations = evaluations;
+    }
+
+    public double getRoot() { return this.root; }
+    public double getResidual() { return this.residual; }
+    public double getErrorEstimate() { return this.errorEstimate; }
+    public int getIterations() { return this.iterations; }
+    public long getEvaluations() { return this.evaluations; }
+
+    @Override
+    public String toString() {
+        return "X=" + root + " (L-R=" + residual + ", ±" + errorEstimate + ", " + iterations + " iterations)";
+    }
+}
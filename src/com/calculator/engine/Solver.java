@@ -0,0 +1,173 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class finds an X that makes an expression 0 (the calculator's SOLVE).
+//
+//   1. If we only have a starting guess, Newton's method walks from it towards a root, using
+//      the slope from two nearby points. As soon as two points have values with different
+//      signs, a root must lie between them (a 'bracket'). If Newton gets nowhere, we look
+//      further and further left and right of the guess for a sign change instead.
+//   2. Brent's method then closes the bracket. It tries fast interpolation steps and falls back
+//      to halving the bracket whenever they don't help, so it can't miss the root it has
+//      bracketed, and it usually gets there in a handful of steps.
+//
+// The expression is compiled once and run for every X (see FunctionOfX).
+// Every X it tries first checks for an interrupt (see Cancellation), so a cancelled SOLVE stops at once.
+// OOP Concept: Abstraction. The engine just calls 'solve'; the numerical methods are hidden here.
+final class Solver {
+
+    private static final double EPS = Math.ulp(1.0); // The gap between 1 and the next double.
+    private static final int MAX_NEWTON = 60;
+    private static final int MAX_BRENT = 200;
+    private static final int MAX_SEARCH = 80; // Outward search steps (each 1.5 times further).
+
+    private Solver() { }
+
+    // Solves f(X) = 0 starting from 'guess'.
+    static SolveResult solve(FunctionOfX f, double guess) {
+        if (Double.isNaN(guess) || Double.isInfinite(guess)) throw new RuntimeException("Math Error");
+        int iterations = 0;
+
+        // --- 1. Newton steps from the guess, until we have a bracket (or are already there) ---
+        double x = guess, fx = value(f, x), start = Math.abs(fx);
+        double move = Double.NaN, previousMove = Double.NaN;
+        for (int step = 0; step < MAX_NEWTON && isNumber(fx); step++) {
+            if (fx == 0) return new SolveResult(x, 0.0, 0.0, iterations, f.evaluations);
+            double h = 6e-6 * Math.max(1.0, Math.abs(x)); // About the cube root of EPS: the best step for a central difference.
+            double slope = (value(f, x + h) - value(f, x - h)) / (2 * h);
+            if (!isNumber(slope) || slope == 0) break; // Flat (or broken) here: Newton can't go on.
+
+            previousMove = move;
+            move = -fx / slope;
+            double next = x + move, fnext = value(f, next);
+            for (int halve = 0; halve < 30 && !isNumber(fnext); halve++) { // Stepped off the function (e.g. ln of a negative): step shorter.
+                move /= 2;
+                next = x + move;
+                fnext = value(f, next);
+            }
+            iterations++;
+            if (!isNumber(fnext)) break;
+            if (fnext == 0) return new SolveResult(next, 0.0, 0.0, iterations, f.evaluations);
+            if ((fnext > 0) != (fx > 0)) return brent(f, x, fx, next, fnext, iterations); // Bracketed.
+            if (Math.abs(move) <= 2 * EPS * Math.abs(next)) { // Newton stopped moving: a root that touches 0 (like X^2).
+                return new SolveResult(next, fnext, Math.abs(move), iterations, f.evaluations);
+            }
+            x = next;
+            fx = fnext;
+        }
+        // A root that only touches 0 (like X^2 at 0) has no sign change, and Newton only halves the
+        // distance each step. If it was still closing in and f is now tiny, that is our root.
+        if (isNumber(fx) && Math.abs(move) < 0.75 * Math.abs(previousMove) && Math.abs(fx) <= EPS * start) {
+            return new SolveResult(x, fx, Math.abs(move), iterations, f.evaluations);
+        }
+
+        // --- 2. Look outwards from the guess for a sign change ---
+        double left = guess, fleft = value(f, guess);
+        double right = guess, fright = fleft;
+        double width = 0.01 * Math.max(1.0, Math.abs(guess));
+        for (int step = 0; step < MAX_SEARCH; step++, width *= 1.5) {
+            double l = guess - width, fl = value(f, l);
+            if (isNumber(fl)) {
+                if (fl == 0) return new SolveResult(l, 0.0, 0.0, iterations, f.evaluations);
+                if (isNumber(fleft) && (fl > 0) != (fleft > 0)) return brent(f, l, fl, left, fleft, iterations);
+                left = l;
+                fleft = fl;
+            }
+            double r = guess + width, fr = value(f, r);
+            if (isNumber(fr)) {
+                if (fr == 0) return new SolveResult(r, 0.0, 0.0, iterations, f.evaluations);
+                if (isNumber(fright) && (fr > 0) != (fright > 0)) return brent(f, right, fright, r, fr, iterations);
+                right = r;
+                fright = fr;
+            }
+            if (isNumber(fl) && !isNumber(fleft)) { left = l; fleft = fl; }
+            if (isNumber(fr) && !isNumber(fright)) { right = r; fright = fr; }
+        }
+        throw new RuntimeException("Can't Solve");
+    }
+
+    // Solves f(X) = 0 for X between 'low' and 'high' (f must have different signs at the two ends).
+    static SolveResult solve(FunctionOfX f, double low, double high) {
+        double flow = value(f, low), fhigh = value(f, high);
+        if (!isNumber(flow) || !isNumber(fhigh)) throw new RuntimeException("Math Error");
+        if (flow == 0) return new SolveResult(low, 0.0, 0.0, 0, f.evaluations);
+        if (fhigh == 0) return new SolveResult(high, 0.0, 0.0, 0, f.evaluations);
+        if ((flow > 0) == (fhigh > 0)) throw new RuntimeException("Can't Solve"); // No sign change: no bracket.
+        return brent(f, low, flow, high, fhigh, 0);
+    }
+
+    // Brent's method on the bracket [a, b] (fa and fb have different signs).
+    // This follows the classic version (as in "Numerical Recipes", zbrent).
+    private static SolveResult brent(FunctionOfX f, double a, double fa, double b, double fb, int iterations) {
+        double c = b, fc = fb, d = b - a, e = d;
+        double largest = Math.max(Math.abs(fa), Math.abs(fb));
+        for (int step = 0; step < MAX_BRENT; step++) {
+            if ((fb > 0) == (fc > 0)) { // Keep the root between b and c.
+                c = a;
+                fc = fa;
+                e = d = b - a;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) { // b is always the best guess so far.
+                a = b; b = c; c = a;
+                fa = fb; fb = fc; fc = fa;
+            }
+            double tolerance = 2 * EPS * Math.abs(b) + Double.MIN_NORMAL;
+            double half = 0.5 * (c - b);
+            if (Math.abs(half) <= tolerance || fb == 0) {
+                return finish(f, b, fb, Math.abs(c - b), largest, iterations);
+            }
+            iterations++;
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+                // Try interpolation: a secant step, or inverse quadratic through three points.
+                double s = fb / fa, p, q;
+                if (a == c) {
+                    p = 2 * half * s;
+                    q = 1 - s;
+                } else {
+                    double r = fb / fc, t = fa / fc;
+                    p = s * (2 * half * t * (t - r) - (b - a) * (r - 1));
+                    q = (t - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) q = -q;
+                p = Math.abs(p);
+                if (2 * p < Math.min(3 * half * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d; // Accept the interpolation.
+                    d = p / q;
+                } else {
+                    d = half; // It would be too slow: halve the bracket instead.
+                    e = d;
+                }
+            } else {
+                d = half;
+                e = d;
+            }
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tolerance) ? d : Math.copySign(tolerance, half);
+            fb = value(f, b);
+            if (!isNumber(fb)) throw new RuntimeException("Math Error"); // The expression breaks inside the bracket.
+        }
+        return finish(f, b, fb, Math.abs(c - b), largest, iterations); // Out of steps: the best we have.
+    }
+
+    // The result of Brent's method, unless f grew instead of going to 0: then the sign
+    // change was a pole (like 1/X at 0), not a root.
+    private static SolveResult finish(FunctionOfX f, double root, double residual, double error, double largest, int iterations) {
+        if (Math.abs(residual) > largest) throw new RuntimeException("Can't Solve");
+        return new SolveResult(root, residual, error, iterations, f.evaluations);
+    }
+
+    // f(x), or NaN if it fails there (e.g. Division by Zero at this one X).
+    // Being cancelled is not such a failure, so it is checked outside the 'try'.
+    private static double value(FunctionOfX f, double x) {
+        Cancellation.check();
+        try {
+            return f.at(x);
+        } catch (RuntimeException e) { // "Math Error", "Division by Zero", ...
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isNumber(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+}
@@ -0,0 +1,198 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+// This class collects statistics of a list of numbers (or of (x, y) pairs) in one pass:
+// count, mean, standard deviation, min and max, and for pairs the linear and quadratic
+// regression lines. It never keeps the numbers themselves, so it needs the same small memory
+// for ten numbers or ten billion.
+//
+//   - Mean and variance use Welford's method (the mean is updated step by step), which stays
+//     accurate where "sum of squares minus square of sum" would cancel to garbage.
+//   - Two accumulators can be merged (Chan's formulas), so a big file can be cut into parts,
+//     each part added up on its own thread, and the parts merged at the end.
+//   - The quadratic fit needs sums of powers (x, x², x³, x⁴, y, xy, x²y). They are summed for
+//     x minus the first x ('shift'), so values like 1,000,000.5 don't lose all their digits in x⁴.
+//
+// It is not thread-safe: use one per thread and merge them.
+// OOP Concept: Encapsulation. The running sums are private; only the results can be read.
+public final class StatAccumulator {
+
+    private final boolean paired; // True for (x, y) pairs, false for single numbers.
+    private long count = 0;
+    private double meanX = 0, m2X = 0; // Welford: the mean and the sum of squared differences from it.
+    private double meanY = 0, m2Y = 0;
+    private double cXY = 0; // The sum of (x - meanX) * (y - meanY).
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY; // Of x.
+    private double shift = 0; // The first x; the power sums are of u = x - shift.
+    private double s1 = 0, s2 = 0, s3 = 0, s4 = 0; // Sums of u, u², u³, u⁴.
+    private double t0 = 0, t1 = 0, t2 = 0; // Sums of y, u*y, u²*y.
+
+    // 'paired' is true for (x, y) data (see add(x, y)), false for single numbers (see add(x)).
+    public StatAccumulator(boolean paired) {
+        this.paired = paired;
+    }
+
+    public boolean isPaired() { return this.paired; }
+
+    // Adds one number.
+    public void add(double x) {
+        if (paired) throw new IllegalStateException("This accumulator needs (x, y) pairs");
+        addX(x);
+    }
+
+    // Adds one (x, y) pair.
+    public void add(double x, double y) {
+        if (!paired) throw new IllegalStateException("This accumulator takes single numbers");
+        double dy = y - meanY; // Before the means move.
+        double dx = addX(x);
+        meanY += dy / count;
+        m2Y += dy * (y - meanY);
+        cXY += dx * (y - meanY);
+        double u = x - shift;
+        t0 += y;
+        t1 += u * y;
+        t2 += u * u * y;
+    }
+
+    // The part of 'add' that is the same for both kinds. Returns x - (the old mean of x).
+    private double addX(double x) {
+        if (count == 0) shift = x;
+        count++;
+        double dx = x - meanX;
+        meanX += dx / count;
+        m2X += dx * (x - meanX);
+        if (x < min) min = x;
+        if (x > max) max = x;
+        double u = x - shift, u2 = u * u;
+        s1 += u;
+        s2 += u2;
+        s3 += u2 * u;
+        s4 += u2 * u2;
+        return dx;
+    }
+
+    // Adds everything 'other' has collected (as if its numbers had been added here, after ours).
+    public void merge(StatAccumulator other) {
+        if (other.paired != paired) throw new IllegalArgumentException("Can't merge single numbers with pairs");
+        if (other.count == 0) return;
+        if (count == 0) {
+            shift = other.shift; // Take the other's shift, so its power sums can be copied as they are.
+        }
+        long n = count + other.count;
+        double fraction = (double) other.count / n; // How much of the merged data is the other's.
+        double dx = other.meanX - meanX, dy = other.meanY - meanY;
+        double weight = (double) count * other.count / n;
+        m2X += other.m2X + dx * dx * weight;
+        m2Y += other.m2Y + dy * dy * weight;
+        cXY += other.cXY + dx * dy * weight;
+        meanX += dx * fraction;
+        meanY += dy * fraction;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        // The other's power sums are of (x - other.shift); move them to (x - shift).
+        double d = other.shift - shift, d2 = d * d;
+        double k = other.count;
+        s4 += other.s4 + 4 * d * other.s3 + 6 * d2 * other.s2 + 4 * d2 * d * other.s1 + k * d2 * d2;
+        s3 += other.s3 + 3 * d * other.s2 + 3 * d2 * other.s1 + k * d2 * d;
+        s2 += other.s2 + 2 * d * other.s1 + k * d2;
+        s1 += other.s1 + k * d;
+        t2 += other.t2 + 2 * d * other.t1 + d2 * other.t0;
+        t1 += other.t1 + d * other.t0;
+        t0 += other.t0;
+        count = n;
+    }
+
+    // --- One variable (x) ---
+
+    public long getCount() { return this.count; }
+    public double getMean() { return count == 0 ? Double.NaN : meanX; }
+    public double getMin() { return count == 0 ? Double.NaN : min; }
+    public double getMax() { return count == 0 ? Double.NaN : max; }
+    public double getSum() { return s1 + count * shift; } // Σx
+    public double getSumOfSquares() { return s2 + 2 * shift * s1 + count * shift * shift; } // Σx²
+
+    // The sample variance (divided by n - 1), and the population variance (divided by n).
+    public double getVariance() { return count < 2 ? Double.NaN : m2X / (count - 1); }
+    public double getPopulationVariance() { return count == 0 ? Double.NaN : m2X / count; }
+    public double getStdDev() { return Math.sqrt(getVariance()); } // 'sx'
+    public double getPopulationStdDev() { return Math.sqrt(getPopulationVariance()); } // 'σx'
+
+    // --- Two variables (x, y) ---
+
+    public double getMeanY() { return paired && count > 0 ? meanY : Double.NaN; }
+    public double getStdDevY() { return paired && count > 1 ? Math.sqrt(m2Y / (count - 1)) : Double.NaN; }
+
+    // The line y = intercept + slope * x that fits the pairs best (least squares).
+    public double getSlope() { return paired && count > 1 ? cXY / m2X : Double.NaN; }
+    public double getIntercept() { return meanY - getSlope() * meanX; }
+
+    // The correlation coefficient r (from -1 to 1).
+    public double getCorrelation() { return paired && count > 1 ? cXY / Math.sqrt(m2X * m2Y) : Double.NaN; }
+
+    // The parabola y = a + b*x + c*x² that fits the pairs best, as {a, b, c} (NaN if it can't be found,
+    // e.g. with fewer than 3 different x values).
+    public double[] getQuadratic() {
+        double[] none = {Double.NaN, Double.NaN, Double.NaN};
+        if (!paired || count < 3) return none;
+        // The normal equations for y = p + q*u + r*u², with u = x - shift.
+        double size = count + s2 + s4; // For telling a zero pivot from a small one.
+        double[][] m = {
+            {count, s1, s2, t0},
+            {s1, s2, s3, t1},
+            {s2, s3, s4, t2},
+        };
+        for (int col = 0; col < 3; col++) { // Gaussian elimination with the biggest pivot.
+            int pivot = col;
+            for (int row = col + 1; row < 3; row++) if (Math.abs(m[row][col]) > Math.abs(m[pivot][col])) pivot = row;
+            double[] swap = m[col]; m[col] = m[pivot]; m[pivot] = swap;
+            if (Math.abs(m[col][col]) <= 1e-12 * size) return none; // All x (nearly) the same.
+            for (int row = col + 1; row < 3; row++) {
+                double f = m[row][col] / m[col][col];
+                for (int k = col; k < 4; k++) m[row][k] -= f * m[col][k];
+            }
+        }
+        double r = m[2][3] / m[2][2];
+        double q = (m[1][3] - m[1][2] * r) / m[1][1];
+        double p = (m[0][3] - m[0][1] * q - m[0][2] * r) / m[0][0];
+        // Back from u to x: p + q(x - s) + r(x - s)² = (p - qs + rs²) + (q - 2rs)x + rx².
+        return new double[] {p - q * shift + r * shift * shift, q - 2 * r * shift, r};
+    }
+
+    // Puts the results where later expressions can use them:
+    // A = mean, B = standard deviation (sx), C = min, D = max, and for pairs E = intercept, F = slope.
+    public void storeInto(CalculatorEngine engine) {
+        engine.storeVariable("A", getMean());
+        engine.storeVariable("B", getStdDev());
+        engine.storeVariable("C", getMin());
+        engine.storeVariable("D", getMax());
+        if (paired) {
+            engine.storeVariable("E", getIntercept());
+            engine.storeVariable("F", getSlope());
+        }
+    }
+
+    // A summary, one result per line, with the numbers written like the display writes them.
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("n = ").append(count).append('\n');
+        text.append("mean (A) = ").append(NumberFormatter.format(getMean())).append('\n');
+        text.append("sx (B) = ").append(NumberFormatter.format(getStdDev())).append('\n');
+        text.append("σx = ").append(NumberFormatter.format(getPopulationStdDev())).append('\n');
+        text.append("min (C) = ").append(NumberFormatter.format(getMin())).append('\n');
+        text.append("max (D) = ").append(NumberFormatter.format(getMax())).append('\n');
+        text.append("Σx = ").append(NumberFormatter.format(getSum())).append('\n');
+        text.append("Σx² = ").append(NumberFormatter.format(getSumOfSquares())).append('\n');
+        if (paired) {
+            double[] quadratic = getQuadratic();
+            text.append("mean y = ").append(NumberFormatter.format(getMeanY())).append('\n');
+            text.append("sy = ").append(NumberFormatter.format(getStdDevY())).append('\n');
+            text.append("y = a + bx: a (E) = ").append(NumberFormatter.format(getIntercept()))
+                .append(", b (F) = ").append(NumberFormatter.format(getSlope())).append('\n');
+            text.append("r = ").append(NumberFormatter.format(getCorrelation())).append('\n');
+            text.append("y = a + bx + cx²: a = ").append(NumberFormatter.format(quadratic[0]))
+                .append(", b = ").append(NumberFormatter.format(quadratic[1])).append(", c = ").append(NumberFormatter.format(quadratic[2])).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.calculator.engine; // This file belongs to the 'com.calculator.engine' package.
+
+import java.util.concurrent.RecursiveAction; // The Fork/Join base class for tasks that return nothing.
+
+// This task evaluates one compiled program for every X value in a range of an array.
+// If the range is big, it splits itself in two halves that run on different cores (Fork/Join).
+// Each element only depends on its own X, so the answers are exactly the same as a simple loop.
+// OOP Concept: Inheritance. 'extends RecursiveAction' lets the Fork/Join pool run this object.
+class SweepTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // Ranges smaller than this are done in one simple loop (splitting tiny ranges costs more than it saves).
+    static final int SPLIT_SIZE = 4096;
+
+    private final CompiledExpression program; // The expression (already parsed).
+    private final double[] vars; // A private copy of the variables (we change X in it).
+    private final double ans; // The 'Ans' value.
+    private final boolean isDegrees; // The DEG/RAD mode.
+    private final double[] xs; // The X values.
+    private final double[] results; // Where the answers go (same size as 'xs').
+    private final int from, to; // The range [from, to) this task is responsible for.
+
+    // --- Error reporting ---
+    // If an element fails (e.g. Division by Zero), we remember the lowest index that failed,
+    // so the caller can throw the same error a simple loop would have thrown first.
+    int errorIndex = -1;
+    RuntimeException error = null;
+
+    SweepTask(CompiledExpression program, double[] vars, double ans, boolean isDegrees,
+              double[] xs, double[] results, int from, int to) {
+        this.program = program;
+        this.vars = vars;
+        this.ans = ans;
+        this.isDegrees = isDegrees;
+        this.xs = xs;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SPLIT_SIZE) { // Small enough: just loop.
+            double[] stack = new double[program.getMaxStack()]; // One stack for the whole range.
+            for (int i = from; i < to; i++) {
+                vars[CompiledExpression.SLOT_X] = xs[i]; // Bind X for this element.
+                try {
+                    results[i] = program.run(vars, ans, isDegrees, stack);
+                } catch (RuntimeException e) {
+                    errorIndex = i; // Stop at the first failure in this range.
+                    error = e;
+                    return;
+                }
+            }
+            return;
+        }
+
+        // Too big: split into two halves. Each half gets its own copy of the variables.
+        int middle = (from + to) >>> 1;
+        SweepTask left = new SweepTask(program, vars.clone(), ans, isDegrees, xs, results, from, middle);
+        SweepTask right = new SweepTask(program, vars.clone(), ans, isDegrees, xs, results, middle, to);
+        invokeAll(left, right); // Run both halves (in parallel if there are free cores).
+
+        // The left half has the lower indexes, so its error (if any) comes first.
+        SweepTask failed = left.error != null ? left : right;
+        errorIndex = failed.errorIndex;
+        error = failed.error;
+    }
+}
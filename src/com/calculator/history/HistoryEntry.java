@@ -0,0 +1,30 @@
+package com.calculator.history; // This file belongs to the 'com.calculator.history' package.
+
+// One entry of the calculator's history: an expression and its answer (or its error).
+// OOP Concept: Encapsulation. It is immutable; the fields can only be read with getters.
+public final class HistoryEntry {
+
+    private final long sequence; // Its number in the history (it never changes).
+    private final long time; // When it was evaluated (milliseconds since 1970).
+    private final String expression;
+    private final double result; // NaN if it failed.
+    private final String error; // The error message, or null if it worked.
+    private final boolean truncated; // True if the expression was too long to keep in full.
+
+    HistoryEntry(long sequence, long time, String expression, double result, String error, boolean truncated) {
+        this.sequence = sequence;
+        this.time = time;
+        this.expression = expression;
+        this.result = result;
+        this.error = error;
+        this.truncated = truncated;
+    }
+
+    public long getSequence() { return this.sequence; }
+    public long getTime() { return this.time; }
+    public String getExpression() { return this.expression; }
+    public double getResult() { return this.result; }
+    public String getError() { return this.error; }
+    public boolean isError() { return this.error != null; }
+    public boolean isTruncated() { return this.truncated; }
+}
@@ -0,0 +1,243 @@
+package com.calculator.history; // This file belongs to the 'com.calculator.history' package.
+
+import com.calculator.engine.CalculatorEngine; // The engine whose memory we save and restore.
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException; // What a stopped search throws.
+import java.util.concurrent.ExecutorService; // Runs compactions in the background.
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// This class keeps the calculator's history and memory on disk, so nothing is lost on exit
+// (or if the program crashes). It uses two append-only logs (see RecordLog) in one folder:
+//
+//   history.log - every evaluation: the expression and its answer (or its error).
+//                 Never read at startup; the history view reads the records it shows, when it shows them.
+//   memory.log  - every write to A..F, X, M and 'Ans'. 'restore' replays it at startup.
+//
+// Both logs are compacted in the background: memory.log down to the newest value of each
+// variable (so replaying it stays fast), and history.log down to the newest entries once it
+// holds more than 'maxEntries'. Compacting history.log only drops the oldest entries, so every
+// entry that is kept keeps its sequence number. (memory.log's records are renumbered when
+// compaction drops records between them, but they are only replayed, never read by number.)
+// Each compaction writes a new file with the next number (e.g. history.log.7), see RecordLog.
+// All methods are thread-safe.
+// OOP Concept: Abstraction. The UI says "remember this"; it doesn't care about files.
+public class HistoryStore {
+
+    // --- Record types ---
+    private static final int EVALUATION = 1; // value = answer, text = expression
+    private static final int ERROR = 2; // text = expression + '\n' + error message
+    private static final int VARIABLE = 3; // slot = the letter, value = its value
+    private static final int ANSWER = 4; // text = 'Ans' as the UI gave it
+
+    private static final int HISTORY_RECORD_SIZE = 256; // Room for expressions of up to 232 bytes.
+    private static final int MEMORY_RECORD_SIZE = 64;
+    private static final int MEMORY_COMPACT_AT = 4096; // Compact memory.log when it has this many records.
+    public static final int DEFAULT_MAX_ENTRIES = 1000000; // History entries kept (the oldest go first).
+
+    private final RecordLog history;
+    private final RecordLog memory;
+    private final int maxEntries;
+    private final AtomicBoolean compacting = new AtomicBoolean(false); // Only one compaction at a time.
+
+    // One background thread for compactions. It is a daemon, so it never keeps the program alive.
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "history-compactor");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private HistoryStore(RecordLog history, RecordLog memory, int maxEntries) {
+        this.history = history;
+        this.memory = memory;
+        this.maxEntries = maxEntries;
+    }
+
+    // Opens (or creates) the store in 'directory'.
+    public static HistoryStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    // The same as above, keeping at most 'maxEntries' history entries.
+    public static HistoryStore open(Path directory, int maxEntries) throws IOException {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+        Files.createDirectories(directory);
+        RecordLog history = RecordLog.open(directory.resolve("history.log"), HISTORY_RECORD_SIZE);
+        RecordLog memory;
+        try {
+            memory = RecordLog.open(directory.resolve("memory.log"), MEMORY_RECORD_SIZE);
+        } catch (IOException e) {
+            history.close();
+            throw e;
+        }
+        HistoryStore store = new HistoryStore(history, memory, maxEntries);
+        store.compactIfNeeded(); // e.g. after a crash before the last compaction.
+        return store;
+    }
+
+    // The folder used by the calculator: -Dcalculator.home, or ".calculator" in the user's home.
+    public static Path defaultDirectory() {
+        String home = System.getProperty("calculator.home");
+        if (home != null) return Paths.get(home);
+        return Paths.get(System.getProperty("user.home"), ".calculator");
+    }
+
+    // --- Memory ---
+
+    // Puts every saved variable, M and 'Ans' back into 'engine'. Returns how many records were replayed.
+    public int restore(CalculatorEngine engine) {
+        long end = memory.endSequence();
+        int replayed = 0;
+        for (long sequence = memory.firstSequence(); sequence < end; sequence++) {
+            RecordLog.Record record = memory.read(sequence);
+            if (record == null) continue; // Compacted away meanwhile.
+            if (record.type == VARIABLE) engine.storeVariable(String.valueOf((char) record.slot), record.value);
+            else if (record.type == ANSWER) engine.setLastAnswer((record.slot & RecordLog.TRUNCATED) != 0 ? "" : record.text); // A cut-off number would be wrong.
+            replayed++;
+        }
+        return replayed;
+    }
+
+    // Remembers that variable 'name' ("A".."F", "X" or "M") now holds 'value'.
+    public void recordVariable(String name, double value) throws IOException {
+        if (name.length() != 1 || "ABCDEFXM".indexOf(name.charAt(0)) < 0) throw new IllegalArgumentException("Unknown variable: " + name);
+        memory.append(VARIABLE, name.charAt(0), System.currentTimeMillis(), value, "");
+        compactIfNeeded();
+    }
+
+    // Remembers the new 'Ans' (the text the display shows; it reads back as exactly the same number).
+    public void recordAnswer(String lastAnswer) throws IOException {
+        memory.append(ANSWER, 0, System.currentTimeMillis(), 0.0, lastAnswer);
+        compactIfNeeded();
+    }
+
+    // --- History ---
+
+    // Adds an evaluation that gave an answer.
+    public void recordEvaluation(String expression, double result) throws IOException {
+        history.append(EVALUATION, 0, System.currentTimeMillis(), result, expression);
+        compactIfNeeded();
+    }
+
+    // Adds an evaluation that failed (e.g. "Division by Zero").
+    public void recordError(String expression, String message) throws IOException {
+        history.append(ERROR, 0, System.currentTimeMillis(), Double.NaN, expression + "\n" + message);
+        compactIfNeeded();
+    }
+
+    // Entries have sequence numbers from getFirstSequence() (the oldest still kept)
+    // up to getEndSequence() - 1 (the newest).
+    public long getFirstSequence() { return history.firstSequence(); }
+    public long getEndSequence() { return history.endSequence(); }
+    public int size() { return history.count(); }
+
+    // Reads one entry, or returns null if it was compacted away.
+    public HistoryEntry read(long sequence) {
+        RecordLog.Record record = history.read(sequence);
+        if (record == null) return null;
+        boolean truncated = (record.slot & RecordLog.TRUNCATED) != 0;
+        if (record.type == ERROR) {
+            int split = record.text.indexOf('\n');
+            String expression = split < 0 ? record.text : record.text.substring(0, split);
+            String message = split < 0 ? "Error" : record.text.substring(split + 1);
+            return new HistoryEntry(sequence, record.time, expression, Double.NaN, message, truncated);
+        }
+        return new HistoryEntry(sequence, record.time, record.text, record.value, null, truncated);
+    }
+
+    // Finds the entries whose expression (or error message) contains 'query', newest first, and returns their
+    // sequence numbers. It compares bytes in the log, so it never loads entries onto the heap.
+    // If the thread is interrupted (e.g. Future.cancel(true) because a newer search started), it throws
+    // a CancellationException instead of returning the matches found so far as if they were all of them.
+    public long[] search(String query) {
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        long[] found = new long[64];
+        int count = 0;
+        long first = history.firstSequence();
+        for (long sequence = history.endSequence() - 1; sequence >= first; sequence--) {
+            if (Thread.currentThread().isInterrupted()) throw new CancellationException("Search cancelled");
+            if (history.matches(sequence, EVALUATION, bytes) || history.matches(sequence, ERROR, bytes)) {
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = sequence;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    // --- Compaction ---
+
+    // Starts a background compaction if a log has grown past its limit.
+    private void compactIfNeeded() {
+        boolean memoryFull = memory.count() >= MEMORY_COMPACT_AT;
+        boolean historyFull = history.count() > maxEntries + maxEntries / 4; // 25% slack, so it doesn't run too often.
+        if (!memoryFull && !historyFull) return;
+        if (!compacting.compareAndSet(false, true)) return; // One is already running.
+        compactor.execute(new Runnable() {
+            public void run() {
+                try {
+                    compactNow();
+                } catch (IOException e) {
+                    System.err.println("History compaction failed: " + e.getMessage()); // Try again next time.
+                } finally {
+                    compacting.set(false);
+                }
+            }
+        });
+    }
+
+    // Compacts both logs right away (on the calling thread).
+    void compactNow() throws IOException {
+        if (memory.count() >= MEMORY_COMPACT_AT) {
+            // Keep a record only if no newer record writes the same variable (or 'Ans').
+            memory.compact(new RecordLog.Filter() {
+                private int[] newest = null; // newest[key] is the index of the last record for that key.
+
+                public boolean keep(RecordLog log, int index, int count) {
+                    if (newest == null) { // One pass over all records, the first time we are asked.
+                        newest = new int[8 * 256];
+                        for (int i = 0; i < count; i++) newest[key(log, i)] = i;
+                    }
+                    return newest[key(log, index)] == index;
+                }
+
+                // Which variable (or 'Ans') a record writes.
+                private int key(RecordLog log, int index) {
+                    int type = log.typeAt(index);
+                    return type == VARIABLE ? type * 256 + (log.slotAt(index) & 0xFF) : type * 256;
+                }
+            });
+        }
+        if (history.count() > maxEntries) {
+            // Keep the newest 'maxEntries' (the oldest are dropped).
+            history.compact(new RecordLog.Filter() {
+                public boolean keep(RecordLog log, int index, int count) {
+                    return index >= count - maxEntries;
+                }
+            });
+        }
+    }
+
+    // Stops compacting and closes both logs (everything is written to the disk).
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS); // Let a running compaction finish.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            history.close();
+        } finally {
+            memory.close();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.calculator.history; // This file belongs to the 'com.calculator.history' package.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer; // A file that we read and write like an array in memory.
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets; // Expressions contain 'π' and '√', so we always use UTF-8.
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32; // A checksum, so a half-written record is never believed.
+
+// This class is an append-only file of fixed-size records, mapped into memory.
+//
+//   File:    [ header (64 bytes) ][ record 0 ][ record 1 ] ...
+//   Header:  magic "CALCLOG1", version, record size, first sequence number, record count
+//   Record:  CRC32 of the rest | type | slot | text length | time | value | text (UTF-8)
+//
+// Every record has the same size, so record i is at a known place and can be read without
+// reading anything before it. Each record gets a sequence number (record i has sequence
+// 'first sequence' + i). A compaction that only removes the oldest records keeps the numbers of
+// all the others; removing a record in the middle gives the records after it new numbers.
+//
+// Crash safety: a record is written first and its checksum last, and only then is the count in
+// the header raised. When the file is opened, the count is checked against the records: a
+// record with a wrong checksum (half-written when the program or the computer stopped) and
+// everything after it is ignored, and the next append simply writes over it.
+// The data is in the operating system's page cache as soon as it is written, so it survives the
+// program crashing; 'force' (called on close) also writes it to the disk.
+//
+// Compaction rewrites the file into a new one (keeping only some records) and swaps it in.
+// Most of the copying is done without holding the lock, so appends are hardly ever blocked.
+// The new file gets the next generation number ("history.log", then "history.log.1", "history.log.2", ...)
+// instead of replacing the old one: Windows refuses to replace or delete a file that is still
+// mapped, and a MappedByteBuffer can't be unmapped on purpose (only the garbage collector does it).
+// 'open' uses the newest generation. Older files are deleted when that is allowed: right after the
+// swap on Linux and macOS, and at a later compaction or the next start on Windows.
+// OOP Concept: Encapsulation. Callers see records by sequence number, not bytes and offsets.
+final class RecordLog {
+
+    private static final long MAGIC = 0x43414C434C4F4731L; // "CALCLOG1"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 24; // Where the record count is in the header.
+
+    // --- Record layout ---
+    static final int RECORD_HEADER = 24; // Bytes before the text.
+    static final int TRUNCATED = 0x40; // Added to the slot if the text was too long and was cut off.
+    private static final int TYPE = 4, SLOT = 5, LENGTH = 6, TIME = 8, VALUE = 16;
+
+    private static final int INITIAL_CAPACITY = 1024; // Records the file has room for at first.
+
+    private final Path path; // The name of generation 0 (newer generations add ".1", ".2", ...).
+    private final int recordSize;
+    private long generation; // The generation of the file in use.
+    private FileChannel channel;
+    private MappedByteBuffer map; // The whole file (header and all records we have room for).
+    private long firstSequence; // The sequence number of record 0.
+    private int count; // How many records there are.
+    private final CRC32 crc = new CRC32(); // Only used while holding the lock.
+
+    // Something that decides which records a compaction keeps.
+    interface Filter {
+        // True if record 'index' (out of 'count') should be kept.
+        boolean keep(RecordLog log, int index, int count);
+    }
+
+    private RecordLog(Path path, int recordSize) {
+        this.path = path;
+        this.recordSize = recordSize;
+    }
+
+    // Opens (or creates) a log file. Damaged records at the end are dropped.
+    static RecordLog open(Path path, int recordSize) throws IOException {
+        RecordLog log = new RecordLog(path, recordSize);
+        log.generation = log.newestGeneration();
+        log.load();
+        log.deleteOlderGenerations();
+        return log;
+    }
+
+    // The file of generation 'n': the plain name for 0, e.g. "history.log.3" for 3.
+    private Path file(long n) {
+        return n == 0 ? path : path.resolveSibling(path.getFileName() + "." + n);
+    }
+
+    // The highest generation number that has a file (0 if there is none).
+    private long newestGeneration() throws IOException {
+        long newest = 0;
+        for (long n : generations()) newest = Math.max(newest, n);
+        return newest;
+    }
+
+    // The generation numbers of the files "name.1", "name.2", ... that exist.
+    private List<Long> generations() throws IOException {
+        List<Long> found = new ArrayList<Long>();
+        String name = path.getFileName().toString();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(), name + ".*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(name.length() + 1);
+                if (isNumber(suffix)) found.add(Long.parseLong(suffix)); // Skips e.g. "history.log.compact".
+            }
+        }
+        return found;
+    }
+
+    private static boolean isNumber(String text) {
+        if (text.isEmpty() || text.length() > 18) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') return false;
+        }
+        return true;
+    }
+
+    // Deletes the files of the generations before the one in use. A file that can't be deleted
+    // yet (on Windows: it is still mapped) is simply left for next time.
+    private void deleteOlderGenerations() {
+        try {
+            if (generation > 0) deleteIfAllowed(path);
+            for (long n : generations()) {
+                if (n < generation) deleteIfAllowed(file(n));
+            }
+        } catch (IOException e) {
+            // Can't list the folder: try again next time.
+        }
+    }
+
+    private static void deleteIfAllowed(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still in use: try again next time.
+        }
+    }
+
+    // Maps the file and finds out how many good records it has.
+    private void load() throws IOException {
+        Path file = file(generation);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) { // A new (or empty) file: write a header.
+            mapCapacity(INITIAL_CAPACITY);
+            map.putLong(0, MAGIC);
+            map.putInt(8, VERSION);
+            map.putInt(12, recordSize);
+            map.putLong(16, 0L); // First sequence.
+            map.putInt(COUNT_OFFSET, 0);
+            firstSequence = 0;
+            count = 0;
+            return;
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (size - HEADER_SIZE) / recordSize);
+        mapCapacity(Math.max(capacity, INITIAL_CAPACITY));
+        if (map.getLong(0) != MAGIC || map.getInt(8) != VERSION || map.getInt(12) != recordSize) {
+            throw new IOException("Not a calculator log: " + file);
+        }
+        firstSequence = map.getLong(16);
+
+        // The header's count is almost always right, so only a few records are checked.
+        int claimed = Math.max(0, Math.min(map.getInt(COUNT_OFFSET), capacity));
+        int good = claimed;
+        while (good > 0 && !isValid(good - 1)) good--; // The header got ahead of the records.
+        while (good < capacity && isValid(good)) good++; // Records written after the header was last updated.
+        count = good;
+        if (count != claimed) map.putInt(COUNT_OFFSET, count);
+    }
+
+    // Maps the file with room for 'capacity' records (this makes the file bigger if needed).
+    private void mapCapacity(int capacity) throws IOException {
+        long bytes = HEADER_SIZE + (long) capacity * recordSize;
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Log is full: " + file(generation));
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int capacity() {
+        return (map.capacity() - HEADER_SIZE) / recordSize;
+    }
+
+    private int offset(int index) {
+        return HEADER_SIZE + index * recordSize;
+    }
+
+    // --- Writing ---
+
+    // Adds one record and returns its sequence number. Text that doesn't fit is cut off
+    // (at a whole character) and 'slot' gets TRUNCATED added.
+    synchronized long append(int type, int slot, long time, double value, String text) throws IOException {
+        if (count == capacity()) mapCapacity(capacity() * 2); // Double the room when full.
+        int at = offset(count);
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int room = recordSize - RECORD_HEADER;
+        int length = bytes.length;
+        if (length > room) {
+            slot |= TRUNCATED;
+            length = room;
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) length--; // Don't cut a 'π' in half.
+        }
+
+        map.put(at + TYPE, (byte) type);
+        map.put(at + SLOT, (byte) slot);
+        map.putShort(at + LENGTH, (short) length);
+        map.putLong(at + TIME, time);
+        map.putDouble(at + VALUE, value);
+        for (int i = 0; i < room; i++) map.put(at + RECORD_HEADER + i, i < length ? bytes[i] : 0);
+        map.putInt(at, checksum(at)); // The checksum goes last...
+        count++;
+        map.putInt(COUNT_OFFSET, count); // ...and then the record is counted.
+        return firstSequence + count - 1;
+    }
+
+    // The CRC32 of a record, without its first 4 bytes (where the CRC itself goes).
+    private int checksum(int at) {
+        ByteBuffer record = map.duplicate();
+        record.position(at + 4).limit(at + recordSize);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    // True if record 'index' was completely written.
+    private boolean isValid(int index) {
+        int at = offset(index);
+        return map.get(at + TYPE) != 0 && map.getInt(at) == checksum(at);
+    }
+
+    // --- Reading (records are found by sequence number; 'index' is sequence - firstSequence) ---
+
+    synchronized long firstSequence() { return firstSequence; }
+    synchronized long endSequence() { return firstSequence + count; } // One past the newest record.
+    synchronized int count() { return count; }
+
+    // Reads one record, or returns null if it was removed by compaction (or doesn't exist yet).
+    synchronized Record read(long sequence) {
+        long index = sequence - firstSequence;
+        if (index < 0 || index >= count) return null;
+        int at = offset((int) index);
+        byte[] text = new byte[map.getShort(at + LENGTH)];
+        for (int i = 0; i < text.length; i++) text[i] = map.get(at + RECORD_HEADER + i);
+        return new Record(sequence, map.get(at + TYPE), map.get(at + SLOT), map.getLong(at + TIME),
+            map.getDouble(at + VALUE), new String(text, StandardCharsets.UTF_8));
+    }
+
+    // True if the record has this type and its text contains 'query' (UTF-8 bytes).
+    // It compares bytes, so searching never creates a String per record.
+    synchronized boolean matches(long sequence, int type, byte[] query) {
+        long index = sequence - firstSequence;
+        if (index < 0 || index >= count) return false;
+        int at = offset((int) index);
+        if (map.get(at + TYPE) != type) return false;
+        int length = map.getShort(at + LENGTH);
+        int start = at + RECORD_HEADER;
+        outer:
+        for (int i = 0; i + query.length <= length; i++) {
+            for (int j = 0; j < query.length; j++) {
+                if (map.get(start + i + j) != query[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // The type and slot of a record (used by compaction filters, which run without the lock
+    // on records that can no longer change; a bigger mapping of the file has the same records).
+    int typeAt(int index) { return map.get(offset(index) + TYPE); }
+    int slotAt(int index) { return map.get(offset(index) + SLOT); }
+
+    // --- Compaction ---
+
+    // Rewrites the log keeping only the records 'filter' accepts, plus everything appended while
+    // it runs. The sequence numbers of kept records change only if records before them are removed,
+    // so a filter that drops the oldest records keeps every other record's number the same.
+    void compact(Filter filter) throws IOException {
+        MappedByteBuffer source;
+        int snapshotCount;
+        long snapshotFirst;
+        synchronized (this) {
+            source = map;
+            snapshotCount = count;
+            snapshotFirst = firstSequence;
+        }
+        // 1. Copy the kept records that exist now, without the lock (records never change once written).
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(temp);
+        int skippedAtStart = 0; // Records dropped before the first kept one (they shift the numbers).
+        boolean keptAny = false;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            out.write(header, 0); // Filled in at the end.
+            long position = HEADER_SIZE;
+            int written = 0;
+            for (int i = 0; i < snapshotCount; i++) {
+                if (!filter.keep(this, i, snapshotCount)) {
+                    if (!keptAny) skippedAtStart++;
+                    continue;
+                }
+                keptAny = true;
+                position += out.write(slice(source, i), position);
+                written++;
+            }
+
+            // 2. With the lock: copy what was appended meanwhile, then swap the files.
+            synchronized (this) {
+                for (int i = snapshotCount; i < count; i++) {
+                    position += out.write(slice(map, i), position);
+                    written++;
+                }
+                header.clear();
+                header.putLong(0, MAGIC).putInt(8, VERSION).putInt(12, recordSize);
+                header.putLong(16, snapshotFirst + skippedAtStart).putInt(COUNT_OFFSET, written);
+                out.write(header, 0);
+                out.force(true);
+
+                // The finished file gets a new name (nothing is replaced, so this works on Windows too).
+                // From here on 'open' would use it, even if the program stopped right now.
+                map.force();
+                Path next = file(generation + 1);
+                Files.move(temp, next, StandardCopyOption.ATOMIC_MOVE); // If this fails, nothing has changed.
+                channel.close();
+                generation++;
+                try {
+                    load();
+                } catch (IOException e) { // Go back to the old file (it is still there).
+                    generation--;
+                    Files.deleteIfExists(next);
+                    load();
+                    throw e;
+                }
+                deleteOlderGenerations();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // One record's bytes, as a buffer to write somewhere else.
+    private ByteBuffer slice(MappedByteBuffer from, int index) {
+        ByteBuffer record = from.duplicate();
+        record.position(offset(index)).limit(offset(index) + recordSize);
+        return record;
+    }
+
+    // Writes everything to the disk and closes the file.
+    synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    // One record, as read from the log.
+    static final class Record {
+        final long sequence;
+        final int type;
+        final int slot;
+        final long time;
+        final double value;
+        final String text;
+
+        Record(long sequence, int type, int slot, long time, double value, String text) {
+            this.sequence = sequence;
+            this.type = type;
+            this.slot = slot;
+            this.time = time;
+            this.value = value;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.calculator.server; // This file belongs to the 'com.calculator.server' package.
+
+import com.calculator.batch.BatchRunner; // For formatting answers like the display does.
+import com.calculator.engine.CalculatorEngine; // We need the engine to do the math.
+import com.calculator.engine.EvaluationLimits; // One set of limits is shared by every session.
+import com.calculator.engine.ExpressionCache; // One cache is shared by every session.
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap; // The set of open connections, shared by all threads.
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// This class runs the calculator as a small local service that other programs can talk to.
+// It only listens on localhost (127.0.0.1) and uses a simple text protocol over TCP:
+//
+//   - Each request is one line. It may hold several expressions separated by ';'
+//     (a 'batch'), e.g. "1+2;sin(30);1/0".
+//   - Each response is one line with one answer per expression, also separated by ';'.
+//     Errors start with '!', e.g. "3;0.49999999999999994;!Division by Zero".
+//   - Commands: "STO A <expr>" stores a value in A..F, X or M, "DEG" / "RAD" switch mode, "QUIT" closes.
+//
+// Every connection is a 'session' with its own variables, 'Ans' and DEG/RAD mode.
+// Clients may send many lines without waiting (pipelining): answers always come back in order.
+// Each connection is handled on its own virtual thread when the JVM supports them.
+// All sessions share one EvaluationLimits, so a huge or deeply nested request fails fast with
+// an error (e.g. "!Nesting Too Deep") instead of slowing everyone else down. A request line longer
+// than getMaxInputLength() characters is answered "!Input Too Long" without ever being kept in memory.
+// OOP Concept: Encapsulation. The socket handling is hidden behind 'start' and 'close'.
+public class CalculatorServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7878; // The port used when none is given.
+
+    private final ServerSocket serverSocket; // Accepts new connections.
+    private final ExecutorService sessions; // Runs one task per connection.
+    private final ExpressionCache sharedCache = new ExpressionCache(4096, ExpressionCache.Policy.LRU);
+    private final EvaluationLimits sharedLimits = new EvaluationLimits();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet(); // So 'close' can end every session.
+    private volatile boolean running = true;
+
+    private static final long MIN_ACCEPT_PAUSE_MS = 10; // The first wait after a failed accept.
+    private static final long MAX_ACCEPT_PAUSE_MS = 1000; // It doubles up to this while accept keeps failing.
+
+    // Opens the server on localhost. Port 0 picks any free port (see getPort()).
+    public CalculatorServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.sessions = newSessionExecutor();
+    }
+
+    // Getter for the limits every session uses (change them, or read how often they tripped).
+    public EvaluationLimits getLimits() {
+        return this.sharedLimits;
+    }
+
+    // Getter for the port we are listening on.
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // This is called from Main for "--server [port]". It runs until the process is stopped.
+    public static int runFromArgs(String[] args) {
+        int port;
+        try {
+            port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: --server [port]");
+            return 2;
+        }
+        try (CalculatorServer server = new CalculatorServer(port)) {
+            System.err.println("Calculator server listening on 127.0.0.1:" + server.getPort());
+            server.acceptLoop();
+        } catch (IOException e) {
+            System.err.println("Server failed: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    // Starts accepting connections on a background thread and returns immediately.
+    public void start() {
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptLoop();
+            }
+        }, "calculator-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Waits for connections and hands each one to the session executor.
+    // If accept keeps failing (e.g. "Too many open files"), it waits longer and longer between
+    // tries (and prints only once per pause), so it doesn't spin while the problem lasts.
+    private void acceptLoop() {
+        long pause = 0;
+        while (running) {
+            try {
+                final Socket socket = serverSocket.accept();
+                pause = 0;
+                openSockets.add(socket);
+                if (!running) { // 'close' ran while we were accepting it.
+                    closeQuietly(socket);
+                    break;
+                }
+                sessions.execute(new Runnable() {
+                    public void run() {
+                        handleSession(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!running || serverSocket.isClosed()) break;
+                pause = Math.min(MAX_ACCEPT_PAUSE_MS, Math.max(MIN_ACCEPT_PAUSE_MS, pause * 2));
+                System.err.println("Accept failed: " + e.getMessage() + " (trying again in " + pause + " ms)");
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException stop) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    // Talks to one client until it disconnects or says QUIT.
+    private void handleSession(Socket socket) {
+        CalculatorEngine engine = new CalculatorEngine(); // This session's own variables and Ans.
+        engine.useCache(sharedCache); // But all sessions share the parsed expressions.
+        engine.useLimits(sharedLimits); // And the limits (and their counters).
+        try (Socket s = socket;
+             LineReader in = new LineReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setTcpNoDelay(true);
+            StringBuilder line = new StringBuilder();
+            StringBuilder response = new StringBuilder();
+            long length;
+            while ((length = in.readLine(line, sharedLimits.getMaxInputLength())) >= 0) {
+                response.setLength(0);
+                if (length > line.length()) { // Too long: only the start was kept.
+                    try {
+                        sharedLimits.checkInputLength((int) Math.min(length, Integer.MAX_VALUE));
+                    } catch (RuntimeException e) {
+                        appendError(response, e);
+                    }
+                } else {
+                    String request = line.toString();
+                    if (request.equals("QUIT")) break;
+                    handleRequest(engine, request, response);
+                }
+                out.write(response.toString());
+                out.newLine();
+                // Only flush when the client has no more pipelined requests waiting,
+                // so a burst of requests goes back in as few packets as possible.
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away (or 'close' closed the socket). Nothing else to do for this session.
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    // Handles one request line and appends the answer line to 'response'.
+    static void handleRequest(CalculatorEngine engine, String line, StringBuilder response) {
+        if (line.equals("DEG") || line.equals("RAD")) {
+            engine.setDegrees(line.equals("DEG"));
+            response.append(line);
+            return;
+        }
+        if (line.startsWith("STO ") && line.length() > 6 && line.charAt(5) == ' ') { // "STO A <expr>"
+            String variable = line.substring(4, 5);
+            if (!CalculatorEngine.isVariableName(variable)) { // e.g. "STO Q 5" would store nothing.
+                response.append("!Syntax Error");
+                return;
+            }
+            try {
+                double value = engine.evaluate(line.substring(6));
+                engine.storeVariable(variable, value);
+                response.append(BatchRunner.format(value));
+            } catch (RuntimeException e) {
+                appendError(response, e);
+            }
+            return;
+        }
+
+        // A batch: one or more expressions separated by ';'.
+        int start = 0;
+        while (true) {
+            int end = line.indexOf(';', start);
+            String expression = end < 0 ? line.substring(start) : line.substring(start, end);
+            try {
+                double result = engine.evaluate(expression);
+                engine.setLastAnswer(result); // Like pressing '=': the answer becomes 'Ans' (the exact double).
+                response.append(BatchRunner.format(result));
+            } catch (RuntimeException e) {
+                appendError(response, e);
+            }
+            if (end < 0) break;
+            response.append(';');
+            start = end + 1;
+        }
+    }
+
+    // Writes an error answer ("!" followed by the engine's message).
+    private static void appendError(StringBuilder response, RuntimeException e) {
+        response.append('!').append(e.getMessage() == null ? "Error" : e.getMessage());
+    }
+
+    // Stops accepting connections, closes the listening socket and ends every session.
+    // Closing a session's socket wakes its thread from a blocked read (interrupting it
+    // doesn't, for a plain socket), so no session keeps running after 'close'.
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            serverSocket.close();
+        } finally {
+            for (Socket socket : openSockets) closeQuietly(socket);
+            sessions.shutdownNow();
+        }
+    }
+
+    // Closes a connection, ignoring errors (it may already be closed).
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more we can do.
+        }
+    }
+
+    // This reads request lines like BufferedReader.readLine, but keeps at most 'max' characters of
+    // each one, so a client can't make us hold an endless line in memory.
+    static final class LineReader implements AutoCloseable {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int pos, end; // buffer[pos .. end) has not been read yet.
+        private boolean skipNewline; // The last line ended with '\r', so a '\n' right after it belongs to it.
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        // Reads one line (ended by "\n", "\r" or "\r\n", which is not kept) into 'line', keeping its
+        // first 'max' characters. Returns the line's full length (more than line.length() if it was
+        // cut off), or -1 at the end of the input.
+        long readLine(StringBuilder line, int max) throws IOException {
+            line.setLength(0);
+            long length = 0;
+            while (true) {
+                if (pos == end && !fill()) return length == 0 ? -1 : length; // The last line may have no line break.
+                char c = buffer[pos++];
+                if (skipNewline) {
+                    skipNewline = false;
+                    if (c == '\n') continue;
+                }
+                if (c == '\n' || c == '\r') {
+                    skipNewline = c == '\r';
+                    return length;
+                }
+                if (length++ < max) line.append(c);
+            }
+        }
+
+        // True if a line may already be waiting (like BufferedReader.ready).
+        boolean ready() throws IOException {
+            if (skipNewline && pos < end && buffer[pos] == '\n') { // The rest of the last "\r\n".
+                pos++;
+                skipNewline = false;
+            }
+            return pos < end || reader.ready();
+        }
+
+        private boolean fill() throws IOException {
+            int n = reader.read(buffer, 0, buffer.length);
+            if (n <= 0) return false;
+            pos = 0;
+            end = n;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Uses one virtual thread per session when the JVM has them (Java 21+).
+    // On older JVMs we fall back to a normal cached thread pool, so the server still works.
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.calculator.server; // This file belongs to the 'com.calculator.server' package.
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// This is a small load generator for CalculatorServer. It opens several connections,
+// sends requests (optionally pipelined and batched), and measures how long each
+// request takes to come back. At the end it prints requests per second and p50/p99 latency.
+//
+// Usage: LoadGenerator [--port P] [--connections C] [--requests N] [--pipeline D] [--batch B] [--embedded]
+//   --requests is per connection, --pipeline is how many requests may be in flight at once,
+//   --batch is how many ';'-separated expressions go in each request line,
+//   --embedded starts a server inside this process first (handy for a quick test).
+public class LoadGenerator {
+
+    // A mix of the kinds of expressions users type.
+    private static final String[] EXPRESSIONS = {
+        "1+2*3", "sin(30)+cos(60)", "2^10-1", "sqrt(2)*π", "(1+2)*(3+4)/5",
+        "log(1000)+ln(e)", "A*X^2+B*X+C", "Ans+1", "asinh(1)*tanh(0.5)", "1/0"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int port = CalculatorServer.DEFAULT_PORT;
+        int connections = 4, requests = 100000, pipeline = 16, batch = 1;
+        boolean embedded = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--requests": requests = Integer.parseInt(args[++i]); break;
+                case "--pipeline": pipeline = Integer.parseInt(args[++i]); break;
+                case "--batch": batch = Integer.parseInt(args[++i]); break;
+                case "--embedded": embedded = true; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        CalculatorServer server = null;
+        if (embedded) {
+            server = new CalculatorServer(0); // Any free port.
+            server.start();
+            port = server.getPort();
+        }
+
+        // One worker thread per connection. Each records the latency of every request it sends.
+        final long[][] latencies = new long[connections][];
+        Thread[] workers = new Thread[connections];
+        final int finalPort = port, finalRequests = requests, finalPipeline = pipeline, finalBatch = batch;
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            final int index = c;
+            workers[c] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        latencies[index] = runConnection(finalPort, finalRequests, finalPipeline, finalBatch, index);
+                    } catch (IOException e) {
+                        System.err.println("Connection " + index + " failed: " + e.getMessage());
+                        latencies[index] = new long[0];
+                    }
+                }
+            });
+            workers[c].start();
+        }
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+        if (server != null) server.close();
+
+        // Merge everything and sort, so we can read off the percentiles.
+        int total = 0;
+        for (long[] l : latencies) total += l.length;
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, pos, l.length);
+            pos += l.length;
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("connections=%d pipeline=%d batch=%d%n", connections, pipeline, batch);
+        System.out.printf("requests=%d in %.2f s -> %.0f requests/s (%.0f expressions/s)%n",
+            total, seconds, total / seconds, (double) total * batch / seconds);
+        if (total > 0) {
+            System.out.printf("latency p50=%.1f us p99=%.1f us max=%.1f us%n",
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, all[total - 1] / 1e3);
+        }
+    }
+
+    // Sends 'requests' requests over one connection, keeping up to 'pipeline' in flight,
+    // and returns the latency (in nanoseconds) of each one.
+    private static long[] runConnection(int port, int requests, int pipeline, int batch, int seed) throws IOException {
+        long[] latencies = new long[requests];
+        long[] sentAt = new long[pipeline]; // A ring of send times for the requests in flight.
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            int sent = 0, received = 0;
+            while (received < requests) {
+                // Fill the pipeline.
+                while (sent < requests && sent - received < pipeline) {
+                    out.write(requestLine(seed + sent, batch));
+                    out.newLine();
+                    sentAt[sent % pipeline] = System.nanoTime();
+                    sent++;
+                }
+                out.flush();
+                // Read one answer (they come back in order).
+                if (in.readLine() == null) throw new IOException("Server closed the connection");
+                latencies[received] = System.nanoTime() - sentAt[received % pipeline];
+                received++;
+            }
+            out.write("QUIT");
+            out.newLine();
+            out.flush();
+        }
+        return latencies;
+    }
+
+    // Builds one request line with 'batch' expressions.
+    private static String requestLine(int n, int batch) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < batch; i++) {
+            if (i > 0) sb.append(';');
+            sb.append(EXPRESSIONS[(n + i) % EXPRESSIONS.length]);
+        }
+        return sb.toString();
+    }
+
+    // Reads a percentile (0..1) from a sorted array.
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
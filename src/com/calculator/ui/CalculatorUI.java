@@ -1,11 +1,32 @@
 package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
 
 import com.calculator.engine.CalculatorEngine; // We need to import the 'engine' to do the math.
+import com.calculator.engine.Complex; // The answer in complex mode (e.g. "3+4i").
+import com.calculator.engine.EngineState; // A frozen copy of the variables, for the worker thread.
+import com.calculator.engine.IntegrationResult; // The answer of the ∫dx key.
+import com.calculator.engine.LivePreview; // Computes the answer while the user is still typing.
+import com.calculator.engine.NumberFormatter; // Turns answers into text for the display.
+import com.calculator.engine.SolveResult; // The answer of the SOLVE key.
+import com.calculator.engine.StatAccumulator; // The results of the STAT window.
+import com.calculator.history.HistoryStore; // Saves the history and memory on disk.
 
 import javax.swing.*; // We need all the Swing components (buttons, text areas).
 import java.awt.*; // We need AWT for layout, color, and font.
 import java.awt.event.ActionEvent; // Represents a button click event.
 import java.awt.event.ActionListener; // The 'listener' that waits for button clicks.
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.math.BigDecimal; // The answer in decimal mode (e.g. exactly 0.3).
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue; // The worker pool's bounded queue.
+import java.util.concurrent.ExecutorService; // Runs evaluations off the Swing thread.
+import java.util.concurrent.Future; // A handle to running work, so we can cancel it.
+import java.util.concurrent.RejectedExecutionException; // Thrown when the worker queue is full.
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
         
 // This is our main UI class.
 // OOP Concept: 'extends JFrame' means our class IS-A window (Inheritance).
@@ -24,12 +45,68 @@ public class CalculatorUI extends JFrame implements ActionListener {
     private boolean isHypActive = false; 
     private boolean isStoActive = false; 
     private boolean isRclActive = false; 
+    private boolean isComplexMode = false; // CMPLX (SHIFT + MODE): answers may be complex, e.g. √(-4) = 2i.
+    private boolean isDecimalMode = false; // DEC (ALPHA + MODE): exact decimal answers, e.g. 0.1+0.2 = 0.3.
     
     // --- Engine ---
     private CalculatorEngine engine; // This will hold our calculator 'brain'.
     // OOP Concept: Our UI 'HAS-A' CalculatorEngine. This is called Composition.
     // OOP Concept: All the 'private' variables above are hidden from other classes. This is Encapsulation.
 
+    // --- Background evaluation ---
+    // The math runs on a worker thread, so a long or heavy expression never freezes the window.
+    // Only the Swing thread (EDT) reads or changes these fields.
+    // The pool has a few threads and a bounded queue, so even a storm of key presses can't pile
+    // up threads or work. Cancelling interrupts the thread, and the engine's long loops (SOLVE,
+    // ∫dx, matrices) and the history search check for that, so a cancelled job frees its thread
+    // within milliseconds; its result, if it still comes, is simply thrown away. The other threads
+    // serve the windows (e.g. a TABLE export) next to an evaluation. If the queue is ever full,
+    // a new job is refused (RejectedExecutionException) and whoever handed it in shows "Busy"
+    // straight away. Jobs that were already accepted are never dropped: someone waits for each one.
+    private static final int WORKER_THREADS = 4;
+    private static final int WORKER_QUEUE = 64;
+    private final ExecutorService worker = newWorkerPool();
+    private Future<?> running = null; // The evaluation in progress, or null.
+    private int generation = 0; // Goes up with every start and cancel, so late results can be recognized.
+    private javax.swing.Timer budgetTimer = null; // Ends the evaluation in progress when its time is up.
+    // The wall-clock time one evaluation may take (change it with -Dcalculator.timeBudgetMillis=...).
+    private long timeBudgetMillis = Long.getLong("calculator.timeBudgetMillis", 2000L);
+
+    // --- Live preview ---
+    // After every key that changes the expression, the history label shows its value so far
+    // (e.g. "= 0.5" for "sin(30"). It waits until typing pauses for PREVIEW_DELAY_MS, then
+    // computes on the worker thread, so fast typing never does extra work on the Swing thread.
+    private static final int PREVIEW_DELAY_MS = 150;
+    private LivePreview livePreview; // Reuses the parse of the part that was already typed.
+    private javax.swing.Timer previewTimer; // Restarted by every key press (debouncing).
+    private int previewGeneration = 0; // Goes up with every new preview, so late ones are ignored.
+
+    // What to do with a background result, on the Swing thread.
+    private abstract static class ResultHandler {
+        abstract void done(double result);
+        void failed(String message) { } // Most handlers just let the error show on the display.
+    }
+
+    // Any background work (e.g. SOLVE): 'compute' runs on the worker thread, the others on the Swing thread.
+    private abstract static class Job<T> {
+        abstract T compute();
+        abstract void done(T result);
+        void failed(String message) { }
+    }
+
+    // --- History and memory on disk ---
+    private HistoryStore store; // null if the history folder could not be opened.
+    private HistoryDialog historyDialog = null; // The "HIST" window (made the first time it is opened).
+    private TableDialog tableDialog = null; // The "TABLE" window (made the first time it is opened).
+    private GraphDialog graphDialog = null; // The "GRAPH" window (made the first time it is opened).
+    private StatDialog statDialog = null; // The "STAT" window (made the first time it is opened).
+    private MatrixDialog matrixDialog = null; // The "MAT" window (made the first time it is opened).
+
+    // One write to the store (see 'persist').
+    private interface StoreAction {
+        void run(HistoryStore store) throws IOException;
+    }
+
     // --- Color Scheme ---
     // These 'final' variables are constants for our theme colors.
     private final Color windowBgColor = new Color(40, 40, 40);
@@ -48,9 +125,34 @@ public class CalculatorUI extends JFrame implements ActionListener {
     // This is the constructor. It runs when 'new CalculatorUI()' is called.
     public CalculatorUI() { 
         this.engine = new CalculatorEngine(); // OOP: We create the 'engine' object.
+        try { // Bring back A..F, X, M and 'Ans' from last time.
+            this.store = HistoryStore.open(HistoryStore.defaultDirectory());
+            store.restore(engine);
+        } catch (IOException e) {
+            System.err.println("History is not saved: " + e.getMessage()); // The calculator still works.
+            this.store = null;
+        }
+        this.livePreview = new LivePreview(engine);
+        this.previewTimer = new javax.swing.Timer(PREVIEW_DELAY_MS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startPreview();
+            }
+        });
+        previewTimer.setRepeats(false); // Fire once, when the typing pauses.
 
         setTitle("OOPS mini project - Scientific Calculator"); // Set the text at the top of the window.
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Makes the 'X' button close the app.
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (store == null) return;
+                try {
+                    store.close(); // Writes everything to the disk.
+                } catch (IOException ex) {
+                    System.err.println("Could not close history: " + ex.getMessage());
+                }
+            }
+        });
         getContentPane().setBackground(windowBgColor); // Sets the window's background color.
         setLayout(new BorderLayout(10, 10)); // Sets the layout for the window.
         
@@ -100,10 +202,24 @@ public class CalculatorUI extends JFrame implements ActionListener {
         
         pack(); // Tell the window to resize to fit all components.
         setLocationRelativeTo(null); // Center the window on the screen.
-        setMinimumSize(new Dimension(420, 750)); // Set a minimum window size.
+        setMinimumSize(new Dimension(420, 850)); // Set a minimum window size.
         setVisible(true); // Make the window visible.
     }
 
+    // Makes the bounded worker pool (see 'worker'). Idle threads end after 30 seconds.
+    private static ExecutorService newWorkerPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(WORKER_QUEUE), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "calculator-worker");
+                    t.setDaemon(true); // Never keeps the program alive after the window closes.
+                    return t;
+                }
+            }, new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     // This method builds and returns the button panel.
     // OOP Concept: This is Abstraction. Main code doesn't know *how* this panel is built.
     private JPanel createButtonPanel() { 
@@ -119,6 +235,8 @@ public class CalculatorUI extends JFrame implements ActionListener {
         // A 2D array to define the button layout. 'null' is an empty space.
         String[][] buttons = { 
             {"SHIFT", "ALPHA", null, "MODE", "ON"},
+            {"HIST", "SOLVE", "∫dx", "TABLE", "GRAPH"},
+            {"STAT", "MAT"},
             {"x²", "x³", "xʸ", "x⁻¹", "√"},
             {"sin", "cos", "tan", "hyp", "log"},
             {"ln", "(", ")", "(-)", "RCL"},
@@ -143,8 +261,12 @@ public class CalculatorUI extends JFrame implements ActionListener {
                     if (c > 2) gbc.gridx = c + 1; // Shift "ON" button to the right.
                 }
                 
-                if (r == 8) { // For the last row...
-                    gbc.gridwidth = 5; // Make the "=" button 5 cells wide.
+                if (r == 1 || r == 2) { // The tools rows: share the 5 cells between their buttons.
+                    gbc.gridx = c * 5 / buttons[r].length;
+                    gbc.gridwidth = (c + 1) * 5 / buttons[r].length - gbc.gridx;
+                }
+                if (buttons[r].length == 1) { // For a row with just one button ("=")...
+                    gbc.gridwidth = 5; // Make the button 5 cells wide.
                 }
                 
                 Color color = buttonBgColor; // Set the default button color.
@@ -187,6 +309,7 @@ public class CalculatorUI extends JFrame implements ActionListener {
     @Override 
     public void actionPerformed(ActionEvent e) { 
         String command = e.getActionCommand(); // Get the text (e.g., "7" or "+") from the clicked button.
+        cancelEvaluation(); // Any new key press (including AC) stops an evaluation that is still running.
         
         // If we are in STO, RCL, or ALPHA mode, handle it differently.
         if (isStoActive || isRclActive || isAlphaActive) { 
@@ -197,13 +320,22 @@ public class CalculatorUI extends JFrame implements ActionListener {
         // A 'switch' block to handle all the regular button clicks.
         switch (command) { 
             case "=": calculate(); break; // Run the calculation.
+            case "HIST": showHistory(); break; // Open the history window.
+            case "SOLVE": solve(); break; // Find the X that makes the display 0.
+            case "∫dx": integrate(); break; // Integrate the display over X.
+            case "TABLE": showTable(); break; // Tabulate the display for many X values.
+            case "GRAPH": showGraph(); break; // Draw the display as a function of X.
+            case "STAT": showStat(); break; // Statistics and regression of a list of numbers.
+            case "MAT": showMatrix(); break; // Matrix arithmetic, stored in A..F.
             case "ON": case "AC": // If "ON" or "AC" is clicked...
+                cancelPreview();
                 display.setText("0"); history.setText(" "); // Reset the display.
                 break;
             case "DEL": // If "DEL" is clicked...
                 String current = display.getText(); // Get current text.
                 // Remove one character, but don't go past "0".
                 display.setText(current.length() > 1 && !current.equals("0") ? current.substring(0, current.length() - 1) : "0");
+                schedulePreview();
                 break;
             case "SHIFT": isShiftActive = !isShiftActive; break; // Toggle the SHIFT state.
             case "ALPHA": isAlphaActive = !isAlphaActive; break; // Toggle the ALPHA state.
@@ -221,6 +353,13 @@ public class CalculatorUI extends JFrame implements ActionListener {
             // --- END OF CORRECTION ---
                 
             case "MODE":
+                if (isShiftActive) { // SHIFT + MODE switches complex mode on or off.
+                    isComplexMode = !isComplexMode;
+                    if (isComplexMode) isDecimalMode = false; // Only one of the two modes can be on.
+                    isShiftActive = false;
+                    schedulePreview();
+                    break;
+                }
                 // OOP Concept: Abstraction. We tell the engine to change its mode.
                 engine.setDegrees(!engine.isDegrees()); 
                 break;
@@ -228,13 +367,18 @@ public class CalculatorUI extends JFrame implements ActionListener {
             case "cos": handleFunction(getTrigFunction("cos")); break;
             case "tan": handleFunction(getTrigFunction("tan")); break; 
             case "M+":
-                try { // We use 'try-catch' in case the math is bad (e.g., "5++").
-                    // OOP Concept: Abstraction. Ask the engine to evaluate the text.
-                    double currentValue = engine.evaluate(display.getText()); 
-                    // OOP Concept: Encapsulation. Use getters/setters to modify engine's memory.
-                    engine.setM(engine.getM() + currentValue); 
-                    history.setText("M=" + engine.getM()); // Update history.
-                } catch (Exception ex) { display.setText("Error"); } // Show "Error" if calculation fails.
+                // OOP Concept: Abstraction. Ask the engine to evaluate the text (in the background).
+                evaluateInBackground(display.getText(), new ResultHandler() {
+                    void done(double currentValue) {
+                        // OOP Concept: Encapsulation. Use the engine's method to modify its memory.
+                        engine.addToM(currentValue); 
+                        history.setText("M=" + engine.getM()); // Update history.
+                        final double m = engine.getM();
+                        persist(new StoreAction() {
+                            public void run(HistoryStore store) throws IOException { store.recordVariable("M", m); }
+                        });
+                    }
+                });
                 break;
             case "log": case "ln": case "√": handleFunction(command); break;
             case "Ans": handleInput("Ans"); break;
@@ -257,6 +401,14 @@ public class CalculatorUI extends JFrame implements ActionListener {
     
     // This helper method handles clicks when STO, RCL, or ALPHA is active.
     private void handleMemoryAndAlpha(String command) { 
+        if (isAlphaActive && command.equals("MODE")) { // ALPHA + MODE switches decimal mode on or off.
+            isDecimalMode = !isDecimalMode;
+            if (isDecimalMode) isComplexMode = false; // Only one of the two modes can be on.
+            isAlphaActive = false;
+            updateModeIndicator();
+            schedulePreview();
+            return;
+        }
         String variable;
         // Map the button pressed to a variable name.
         switch (command) { 
@@ -268,18 +420,25 @@ public class CalculatorUI extends JFrame implements ActionListener {
             case "RCL" : variable = "F"; break;
             case ")"   : variable = "X"; break;
             case "M+"  : variable = "M"; break;
+            case "×10ˣ": variable = isAlphaActive ? "i" : null; break; // ALPHA + ×10ˣ types the imaginary unit.
             default: variable = null;
         }
 
         if (variable != null) { // If we pressed a valid variable button...
             if (isStoActive) { // If we are in "Store" mode...
-                try {
-                    // OOP: Ask the engine to evaluate the text.
-                    double valueToStore = engine.evaluate(display.getText()); 
-                    // OOP: Ask the engine to store the value in the variable.
-                    engine.storeVariable(variable, valueToStore); 
-                    history.setText(display.getText() + "→" + variable); // Show "5→A"
-                } catch (Exception e) { display.setText("Error"); }
+                final String target = variable;
+                final String expression = display.getText();
+                // OOP: Ask the engine to evaluate the text (in the background).
+                evaluateInBackground(expression, new ResultHandler() {
+                    void done(final double valueToStore) {
+                        // OOP: Ask the engine to store the value in the variable.
+                        engine.storeVariable(target, valueToStore); 
+                        history.setText(expression + "→" + target); // Show "5→A"
+                        persist(new StoreAction() {
+                            public void run(HistoryStore store) throws IOException { store.recordVariable(target, valueToStore); }
+                        });
+                    }
+                });
             } else if (isRclActive || isAlphaActive) { // If we are in "Recall" or "Alpha" mode...
                 handleInput(variable); // Just type the variable name (e.g., "A").
             }
@@ -303,6 +462,8 @@ public class CalculatorUI extends JFrame implements ActionListener {
         if (isStoActive) indicator += "STO ";
         if (isRclActive) indicator += "RCL ";
         if (isHypActive) indicator += "HYP ";
+        if (isComplexMode) indicator += "CMPLX ";
+        if (isDecimalMode) indicator += "DEC ";
         // OOP: Encapsulation. Ask the engine for its current mode (DEG or RAD).
         indicator += (engine.isDegrees() ? "DEG" : "RAD"); 
         modeIndicator.setText(indicator); // Set the label's text.
@@ -313,6 +474,7 @@ public class CalculatorUI extends JFrame implements ActionListener {
         String currentText = display.getText();
         // If the display is just "0", replace it. Otherwise, add to it.
         display.setText(currentText.equals("0") && !"()+-*/.^,".contains(input) ? input : currentText + input);
+        schedulePreview();
     }
 
     // This helper adds a function (like "sin(") to the display.
@@ -320,6 +482,7 @@ public class CalculatorUI extends JFrame implements ActionListener {
         String currentText = display.getText();
         // If "0", replace it with "sin(". Otherwise, add "sin(" to the end.
         display.setText(currentText.equals("0") ? func + "(" : currentText + func + "(");
+        schedulePreview();
     }
     
     // This helper shows a pop-up message (for unimplemented buttons).
@@ -329,18 +492,400 @@ public class CalculatorUI extends JFrame implements ActionListener {
     
     // This helper runs the calculation.
     private void calculate() { 
-        String expression = display.getText(); // Get the text to calculate.
-        history.setText(expression + "="); // Show the expression in the history.
+        final String expression = display.getText(); // Get the text to calculate.
+        if (isComplexMode) {
+            calculateComplex(expression);
+            return;
+        }
+        if (isDecimalMode) {
+            calculateDecimal(expression);
+            return;
+        }
+        // OOP: Abstraction. Ask the engine to do the calculation (in the background).
+        evaluateInBackground(expression, new ResultHandler() {
+            void done(final double result) {
+                history.setText(expression + "="); // Show the expression in the history.
+                display.setText(formatResult(result));
+                // OOP: Encapsulation. Tell the engine what the new "Last Answer" is (the exact number, not the text).
+                final String answer = display.getText();
+                engine.setLastAnswer(result);
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException {
+                        store.recordEvaluation(expression, result);
+                        store.recordAnswer(answer);
+                    }
+                });
+            }
+
+            @Override
+            void failed(final String message) {
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException { store.recordError(expression, message); }
+                });
+            }
+        });
+    }
+
+    // The same as calculate, in complex mode: the answer is shown as "a+bi".
+    private void calculateComplex(final String expression) {
+        final EngineState snapshot = engine.getSnapshot();
+        runInBackground(expression, new Job<Complex>() {
+            Complex compute() { return engine.evaluateComplex(expression, snapshot); }
+
+            void done(final Complex result) {
+                history.setText(expression + "=");
+                display.setText(result.isReal() ? formatResult(result.getReal()) : result.toString());
+                final String answer = display.getText();
+                engine.setLastAnswer(result); // "3+4i" works as 'Ans' too (in complex mode).
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException {
+                        if (result.isReal()) store.recordEvaluation(expression, result.getReal()); // The history keeps real numbers only.
+                        store.recordAnswer(answer);
+                    }
+                });
+            }
+
+            @Override
+            void failed(final String message) {
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException { store.recordError(expression, message); }
+                });
+            }
+        });
+    }
+
+    // The same as calculate, in decimal mode: the answer is exact to the engine's digits
+    // (engine.getAdaptivePrecision(), 10 by default), so 0.1+0.2 shows "0.3", not "0.30000000000000004".
+    private void calculateDecimal(final String expression) {
+        final EngineState snapshot = engine.getSnapshot();
+        runInBackground(expression, new Job<BigDecimal>() {
+            BigDecimal compute() { return engine.evaluateDecimal(expression, snapshot); }
+
+            void done(final BigDecimal result) {
+                history.setText(expression + "=");
+                display.setText(NumberFormatter.format(result));
+                final String answer = display.getText();
+                final double value = result.doubleValue(); // 'Ans' and the history keep the nearest double.
+                engine.setLastAnswer(value);
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException {
+                        store.recordEvaluation(expression, value);
+                        store.recordAnswer(answer);
+                    }
+                });
+            }
+
+            @Override
+            void failed(final String message) {
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException { store.recordError(expression, message); }
+                });
+            }
+        });
+    }
+
+    // SOLVE: finds an X that makes the expression on the display 0 (or makes both sides of "L=R" equal).
+    // It asks for a starting guess (or "low,high" for a root between two values) and stores the root in X.
+    private void solve() {
+        final String equation = display.getText();
+        final String start = JOptionPane.showInputDialog(this, "Starting guess for X (or low,high):",
+            formatResult(engine.getSnapshot().getVariable("X")));
+        if (start == null) return; // Cancelled.
+        final EngineState snapshot = engine.getSnapshot();
+        runInBackground(equation, new Job<SolveResult>() {
+            SolveResult compute() {
+                String[] bounds = splitArguments(start);
+                if (bounds.length == 2) {
+                    return engine.solve(equation, engine.evaluate(bounds[0], snapshot), engine.evaluate(bounds[1], snapshot));
+                }
+                if (bounds.length != 1) throw new RuntimeException("Syntax Error");
+                return engine.solve(equation, engine.evaluate(start, snapshot));
+            }
+
+            void done(SolveResult result) {
+                final double root = result.getRoot();
+                engine.storeVariable("X", root);
+                display.setText(formatResult(root));
+                history.setText(equation + " → X  (" + result.getIterations() + " steps, ±" + String.format("%.1e", result.getErrorEstimate()) + ")");
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException { store.recordVariable("X", root); }
+                });
+            }
+        });
+    }
+
+    // ∫dx: integrates the expression on the display over X, between two bounds the user types
+    // (e.g. "0,π"). The answer becomes 'Ans'.
+    private void integrate() {
+        final String expression = display.getText();
+        final String range = JOptionPane.showInputDialog(this, "Integrate over X from,to:", "0,1");
+        if (range == null) return; // Cancelled.
+        final EngineState snapshot = engine.getSnapshot();
+        runInBackground("∫(" + expression + ")dx", new Job<IntegrationResult>() {
+            IntegrationResult compute() {
+                String[] bounds = splitArguments(range);
+                if (bounds.length != 2) throw new RuntimeException("Syntax Error");
+                return engine.integrate(expression, engine.evaluate(bounds[0], snapshot), engine.evaluate(bounds[1], snapshot));
+            }
+
+            void done(IntegrationResult result) {
+                display.setText(formatResult(result.getValue()));
+                history.setText("∫(" + expression + ")dx  ±" + String.format("%.1e", result.getErrorEstimate())
+                    + ", " + result.getIntervals() + " intervals" + (result.isConverged() ? "" : " (not converged)"));
+                final String answer = display.getText();
+                engine.setLastAnswer(result.getValue());
+                persist(new StoreAction() {
+                    public void run(HistoryStore store) throws IOException { store.recordAnswer(answer); }
+                });
+            }
+        });
+    }
+
+    // Splits "a,b" at the commas that are not inside brackets (so "max(1,2),3" gives two parts).
+    private static String[] splitArguments(String text) {
+        List<String> parts = new ArrayList<String>();
+        int depth = 0, start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '(') depth++;
+            else if (ch == ')') depth--;
+            else if (ch == ',' && depth == 0) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts.toArray(new String[0]);
+    }
+
+    // Saves something in the store. If that fails (e.g. the disk is full) the calculator carries on.
+    private void persist(StoreAction action) {
+        if (store == null) return;
+        try {
+            action.run(store);
+        } catch (IOException e) {
+            System.err.println("Could not save history: " + e.getMessage());
+        }
+    }
+
+    // Opens the "HIST" window.
+    private void showHistory() {
+        if (store == null) {
+            showInfoDialog("History is not available.");
+            return;
+        }
+        if (historyDialog == null) {
+            historyDialog = new HistoryDialog(this, store, worker, new HistoryDialog.Picker() {
+                public void pick(String expression) {
+                    cancelEvaluation();
+                    display.setText(expression); // Put the old expression back on the display.
+                    schedulePreview();
+                }
+            });
+        } else {
+            historyDialog.refresh();
+        }
+        historyDialog.setVisible(true);
+    }
+
+    // Opens the "TABLE" window for the expression on the display.
+    private void showTable() {
+        if (tableDialog == null) tableDialog = new TableDialog(this, engine, worker);
+        tableDialog.setExpression(display.getText());
+        tableDialog.setVisible(true);
+    }
+
+    // Opens the "GRAPH" window for the expression on the display.
+    private void showGraph() {
+        if (graphDialog == null) graphDialog = new GraphDialog(this, engine, worker);
+        graphDialog.plot(display.getText());
+        graphDialog.setVisible(true);
+    }
+
+    // Opens the "STAT" window. Its results go into A..F, which are saved like any stored variable.
+    private void showStat() {
+        if (statDialog == null) {
+            statDialog = new StatDialog(this, engine, worker, new StatDialog.Stored() {
+                public void stored(StatAccumulator stats) {
+                    final EngineState snapshot = engine.getSnapshot();
+                    final String[] names = stats.isPaired() ? new String[] {"A", "B", "C", "D", "E", "F"} : new String[] {"A", "B", "C", "D"};
+                    persist(new StoreAction() {
+                        public void run(HistoryStore store) throws IOException {
+                            for (String name : names) store.recordVariable(name, snapshot.getVariable(name));
+                        }
+                    });
+                }
+            });
+        }
+        statDialog.setVisible(true);
+    }
+
+    // Opens the "MAT" window.
+    private void showMatrix() {
+        if (matrixDialog == null) matrixDialog = new MatrixDialog(this, engine, worker);
+        matrixDialog.setVisible(true);
+    }
+
+    // Formats a result (no ".0" for whole numbers, otherwise the shortest text that reads back as 'result').
+    private static String formatResult(double result) {
+        return NumberFormatter.format(result);
+    }
+
+    // Restarts the preview countdown: the preview is computed once the typing pauses.
+    private void schedulePreview() {
+        previewGeneration++; // Any preview already on its way is now out of date.
+        previewTimer.restart();
+    }
+
+    // Stops any preview that is waiting or being computed.
+    private void cancelPreview() {
+        previewGeneration++;
+        previewTimer.stop();
+    }
+
+    // Computes the preview of the current display text on the worker thread.
+    private void startPreview() {
+        if (running != null) return; // '=' was pressed: the real answer is on its way.
+        final String text = display.getText();
+        final boolean complex = isComplexMode;
+        final boolean decimal = isDecimalMode;
+        final int myGeneration = ++previewGeneration;
+        Runnable task = new Runnable() {
+            public void run() {
+                // null if the input is unfinished.
+                final String value = complex ? previewComplex(text) : decimal ? previewDecimal(text) : previewReal(text);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != previewGeneration || running != null) return; // Out of date.
+                        history.setText(value == null ? " " : "= " + value);
+                    }
+                });
+            }
+        };
         try {
-            // OOP: Abstraction. Ask the engine to do the calculation.
-            double result = engine.evaluate(expression); 
-            // Format the result (no ".0" for whole numbers).
-            display.setText(result == (long) result ? String.format("%d", (long) result) : String.format("%s", result));
-            // OOP: Encapsulation. Tell the engine what the new "Last Answer" is.
-            engine.setLastAnswer(display.getText()); 
-        } catch (Exception e) { // If the engine throws an error...
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The queue is full: skip this preview (the next key press or '=' tries again).
+        }
+    }
+
+    // The preview text of a real-mode expression (on the worker thread).
+    private String previewReal(String text) {
+        Double value = livePreview.preview(text);
+        return value == null ? null : formatResult(value);
+    }
+
+    // The same in complex mode.
+    private String previewComplex(String text) {
+        Complex value = livePreview.previewComplex(text);
+        if (value == null) return null;
+        return value.isReal() ? formatResult(value.getReal()) : value.toString();
+    }
+
+    // The same in decimal mode: the live preview only tells us the input is complete,
+    // then the decimal answer is worked out (usually by the fast double path).
+    private String previewDecimal(String text) {
+        if (livePreview.preview(text) == null) return null;
+        try {
+            return NumberFormatter.format(engine.evaluateDecimal(text));
+        } catch (RuntimeException e) {
+            return null; // e.g. an error only the decimal mode finds: '=' will show it.
+        }
+    }
+
+    // Sets the longest wall-clock time one evaluation may take before it is stopped.
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis <= 0) throw new IllegalArgumentException("Time budget must be positive");
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    // Evaluates 'expression' on the worker thread. While it runs, the display shows a busy state;
+    // when it finishes, 'handler' gets the result on the Swing thread. Errors are shown on the
+    // display like before. It is cancelled by the next key press, or stopped when the time budget runs out.
+    private void evaluateInBackground(final String expression, final ResultHandler handler) {
+        final EngineState snapshot = engine.getSnapshot(); // The variables as they are right now.
+        runInBackground(expression, new Job<Double>() {
+            Double compute() { return engine.evaluate(expression, snapshot); }
+            void done(Double result) { handler.done(result); }
+            @Override
+            void failed(String message) { handler.failed(message); }
+        });
+    }
+
+    // Runs any job the same way ('question' is shown while it is busy).
+    private <T> void runInBackground(String question, final Job<T> job) {
+        cancelEvaluation();
+        cancelPreview();
+        final int myGeneration = ++generation;
+        history.setText(question + "= …"); // The busy state: the question, with no answer yet.
+        display.setForeground(Color.GRAY);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        Runnable task = new Runnable() {
+            public void run() {
+                T value = null;
+                Throwable error = null;
+                try {
+                    value = job.compute();
+                } catch (Throwable e) { // e.g. OutOfMemoryError too: it must still end the busy state.
+                    error = e;
+                }
+                final T result = value;
+                final Throwable failure = error;
+                // Publish the outcome back on the Swing thread (only if nobody cancelled us).
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration == generation) finishEvaluation(job, result, failure);
+                    }
+                });
+            }
+        };
+        try {
+            running = worker.submit(task);
+        } catch (RejectedExecutionException e) { // The queue is full: say so now instead of waiting for a job that never runs.
+            finishEvaluation(job, null, new RuntimeException("Busy"));
+            return;
+        }
+
+        budgetTimer = new javax.swing.Timer((int) Math.min(Integer.MAX_VALUE, timeBudgetMillis), new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (myGeneration != generation) return; // It already finished.
+                cancelEvaluation();
+                display.setText("Timed Out"); // A clear message instead of a frozen window.
+            }
+        });
+        budgetTimer.setRepeats(false);
+        budgetTimer.start();
+    }
+
+    // Called on the Swing thread when the evaluation in progress has finished.
+    private <T> void finishEvaluation(Job<T> job, T result, Throwable error) {
+        endBusyState();
+        if (error == null) {
+            job.done(result);
+        } else { // If the engine threw an error...
             // Show a simple error message on the display.
-            display.setText(e.getMessage().replace("java.lang.RuntimeException: ", ""));
+            String message = (error instanceof RuntimeException) ? error.getMessage() : "Error (" + error.getClass().getSimpleName() + ")";
+            display.setText(message == null ? "Error" : message.replace("java.lang.RuntimeException: ", ""));
+            job.failed(display.getText());
         }
     }
+
+    // Stops the evaluation in progress (if any). Its result, if it still comes, is ignored.
+    private void cancelEvaluation() {
+        if (running == null) return;
+        generation++;
+        running.cancel(true); // Interrupts the worker thread.
+        endBusyState();
+        history.setText(" ");
+    }
+
+    // Puts the display back to normal after an evaluation ends or is cancelled.
+    private void endBusyState() {
+        running = null;
+        if (budgetTimer != null) budgetTimer.stop();
+        budgetTimer = null;
+        display.setForeground(displayTextColor);
+        setCursor(Cursor.getDefaultCursor());
+    }
 }
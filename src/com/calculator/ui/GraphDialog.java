@@ -0,0 +1,94 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.engine.CalculatorEngine; // Parses f(X).
+import com.calculator.engine.CompiledExpression;
+import com.calculator.engine.EngineState; // The variables the graph uses.
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// This is the "GRAPH" window: a field for f(X) and the graph itself (see GraphPanel).
+// OOP Concept: Composition. The window HAS-A GraphPanel, which does the drawing.
+class GraphDialog extends JDialog {
+
+    private final CalculatorEngine engine;
+    private final ExecutorService worker; // The UI's worker threads (the parsing runs there).
+    private final JTextField functionField = new JTextField();
+    private final JLabel status = new JLabel(" Drag to move, turn the mouse wheel to zoom");
+    private final GraphPanel graph;
+    private int plotGeneration = 0; // Goes up with every "Plot", so a slow older one is ignored.
+
+    GraphDialog(JFrame owner, CalculatorEngine engine, ExecutorService worker) {
+        super(owner, "Graph", false);
+        this.engine = engine;
+        this.worker = worker;
+        this.graph = new GraphPanel(engine);
+
+        ActionListener plot = new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                plot();
+            }
+        };
+        functionField.addActionListener(plot); // Enter in the field plots too.
+        JButton plotButton = new JButton("Plot");
+        plotButton.addActionListener(plot);
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        top.add(new JLabel("f(X) ="), BorderLayout.WEST);
+        top.add(functionField, BorderLayout.CENTER);
+        top.add(plotButton, BorderLayout.EAST);
+        setLayout(new BorderLayout());
+        add(top, BorderLayout.NORTH);
+        add(graph, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(800, 600);
+        setLocationRelativeTo(owner);
+    }
+
+    // Puts an expression (e.g. the calculator's display) in the field and plots it.
+    void plot(String expression) {
+        functionField.setText(expression);
+        plot();
+    }
+
+    // Parses f(X) on the worker thread, then gives it to the graph.
+    private void plot() {
+        final String function = functionField.getText();
+        final EngineState snapshot = engine.getSnapshot(); // The graph uses the variables as they are now.
+        final int myGeneration = ++plotGeneration;
+        Runnable task = new Runnable() {
+            public void run() {
+                CompiledExpression program = null;
+                String error = null;
+                try {
+                    program = engine.compile(function);
+                } catch (RuntimeException e) {
+                    error = e.getMessage() == null ? "Error" : e.getMessage();
+                }
+                final CompiledExpression result = program;
+                final String failure = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != plotGeneration) return; // A newer "Plot" is on its way.
+                        if (result == null) {
+                            status.setText(" " + failure);
+                            return;
+                        }
+                        status.setText(" " + (snapshot.isDegrees() ? "DEG" : "RAD") + " - drag to move, turn the mouse wheel to zoom");
+                        graph.setFunction(result, snapshot);
+                    }
+                });
+            }
+        };
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            status.setText(" Busy, try again");
+        }
+    }
+}
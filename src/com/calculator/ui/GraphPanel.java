@@ -0,0 +1,382 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.engine.CalculatorEngine; // Samples the curve.
+import com.calculator.engine.CompiledExpression; // f(X), parsed once for the whole graph.
+import com.calculator.engine.Curve; // The points of one strip of the graph.
+import com.calculator.engine.EngineState; // The variables the graph uses.
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool; // Draws tiles on all CPU cores.
+
+// This panel draws the graph of f(X). Drag to move it, turn the mouse wheel to zoom.
+//
+// The graph is cut into square TILE x TILE pixel tiles on a grid that is fixed to the graph,
+// not to the window. Each tile is drawn once into its own image, on the Fork/Join pool (so
+// several tiles are drawn at the same time, never on the Swing thread), and kept in a cache.
+// Painting the window only copies tiles into one frame image, so moving the graph is fast and
+// only the tiles that come into view are new. Until a tile is ready, the previous frame is shown
+// moved (or zoomed) to the right place.
+// All tiles in one column share the same X range, so the curve's points (see
+// CalculatorEngine.sampleCurve) are computed once per column and zoom level (a 'strip').
+// OOP Concept: Inheritance. It IS-A JPanel, and paints itself in 'paintComponent'.
+class GraphPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int TILE = 256; // Tile size in pixels.
+    private static final int MAX_TILES = 128; // Tiles kept (256 KB each).
+    private static final int MAX_STRIPS = 512; // Strips of points kept.
+    private static final double BASE_SCALE = 1.0 / 32; // At zoom level 0, one unit is 32 pixels.
+    private static final int MIN_LEVEL = -80, MAX_LEVEL = 80; // Each level zooms by 2^(1/4).
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+    private static final Color AXIS_COLOR = new Color(120, 120, 120);
+    private static final Color CURVE_COLOR = new Color(30, 90, 200);
+
+    private final CalculatorEngine engine;
+
+    // --- What is drawn (only changed on the Swing thread; 'volatile' so tile jobs can check them) ---
+    private volatile CompiledExpression program = null; // null: just the axes.
+    private volatile EngineState snapshot = null;
+    private volatile int generation = 0; // Goes up with every new function, so old tiles are thrown away.
+    private volatile int level = 0; // The zoom level.
+    private double viewX, viewY; // The tile-grid pixel at the panel's top-left corner (Y grows downwards).
+    private boolean centered = false; // The view is put around (0, 0) the first time the size is known.
+
+    // --- Caches ---
+    // Finished tiles, least recently used first (Swing thread only).
+    private final Map<Key, BufferedImage> tiles = new LinkedHashMap<Key, BufferedImage>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    private final Set<Key> pending = new HashSet<Key>(); // Tiles being drawn (Swing thread only).
+    // Sampled strips (used by the tile jobs, so every access holds its lock).
+    private final Map<Key, Curve> strips = new LinkedHashMap<Key, Curve>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Curve> eldest) {
+            return size() > MAX_STRIPS;
+        }
+    };
+
+    // --- Frames ---
+    private BufferedImage frame = null; // The frame being put together.
+    private BufferedImage previous = null; // The last frame shown (used while tiles are missing).
+    private double previousX, previousY, previousScale; // Where 'previous' was.
+
+    GraphPanel(CalculatorEngine engine) {
+        this.engine = engine;
+        setBackground(Color.WHITE);
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) { // Move the graph with the mouse.
+                viewX -= e.getX() - last.x;
+                viewY -= e.getY() - last.y;
+                last = e.getPoint();
+                repaint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(e.getX(), e.getY(), e.getWheelRotation());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    // Shows the graph of a new function (null for just the axes). Every tile is drawn again.
+    void setFunction(CompiledExpression program, EngineState snapshot) {
+        this.program = program;
+        this.snapshot = snapshot;
+        generation++;
+        tiles.clear();
+        pending.clear();
+        synchronized (strips) {
+            strips.clear();
+        }
+        repaint();
+    }
+
+    // Zooms in (steps < 0) or out (steps > 0), keeping the point under the mouse in place.
+    void zoom(int mouseX, int mouseY, int steps) {
+        int newLevel = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level + steps));
+        if (newLevel == level) return;
+        double oldScale = scale();
+        double worldX = (viewX + mouseX) * oldScale, worldY = (viewY + mouseY) * oldScale;
+        level = newLevel;
+        viewX = worldX / scale() - mouseX;
+        viewY = worldY / scale() - mouseY;
+        repaint();
+    }
+
+    // Moves the graph by some pixels.
+    void pan(int dx, int dy) {
+        viewX += dx;
+        viewY += dy;
+        repaint();
+    }
+
+    // Graph units per pixel at the current zoom level.
+    private double scale() {
+        return scale(level);
+    }
+
+    private static double scale(int level) {
+        return BASE_SCALE * Math.pow(2, level / 4.0);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (getWidth() <= 0 || getHeight() <= 0) return;
+        g.drawImage(composeFrame(getWidth(), getHeight()), 0, 0, null);
+    }
+
+    // Puts one frame together from the tiles (asking for the ones that are missing) and returns it.
+    BufferedImage composeFrame(int width, int height) {
+        if (!centered) { // Start with (0, 0) in the middle.
+            viewX = -width / 2.0;
+            viewY = -height / 2.0;
+            centered = true;
+        }
+        if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+            frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        long left = (long) Math.floor(viewX), top = (long) Math.floor(viewY);
+        long firstI = Math.floorDiv(left, TILE), lastI = Math.floorDiv(left + width - 1, TILE);
+        long firstJ = Math.floorDiv(top, TILE), lastJ = Math.floorDiv(top + height - 1, TILE);
+        int myLevel = level;
+        double scale = scale();
+
+        Graphics2D g = frame.createGraphics();
+        boolean missing = !isComplete(width, height);
+        if (missing && previous != null && previous.getWidth() == width && previous.getHeight() == height) {
+            // Show the last frame where it belongs now, until the new tiles arrive.
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            if (previousScale == scale) { // Just moved: a plain copy.
+                g.drawImage(previous, (int) (previousX - left), (int) (previousY - top), null);
+            } else { // Zoomed: stretch it (roughly; it is only shown for a moment).
+                double k = previousScale / scale;
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                g.drawImage(previous, new AffineTransform(k, 0, 0, k, previousX * k - left, previousY * k - top), null);
+            }
+        } else if (missing) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+        }
+        for (long i = firstI; i <= lastI; i++) {
+            for (long j = firstJ; j <= lastJ; j++) {
+                Key key = new Key(myLevel, i, j);
+                BufferedImage tile = tiles.get(key);
+                if (tile != null) g.drawImage(tile, (int) (i * TILE - left), (int) (j * TILE - top), null);
+                else request(key);
+            }
+        }
+        drawLabels(g, width, height, scale);
+        g.dispose();
+
+        // This frame becomes 'previous'; the old 'previous' is reused for the next frame.
+        BufferedImage shown = frame;
+        frame = previous;
+        previous = shown;
+        previousX = left;
+        previousY = top;
+        previousScale = scale;
+        return shown;
+    }
+
+    // True if every tile of the current view is in the cache.
+    boolean isComplete(int width, int height) {
+        long left = (long) Math.floor(viewX), top = (long) Math.floor(viewY);
+        for (long i = Math.floorDiv(left, TILE); i <= Math.floorDiv(left + width - 1, TILE); i++) {
+            for (long j = Math.floorDiv(top, TILE); j <= Math.floorDiv(top + height - 1, TILE); j++) {
+                if (!tiles.containsKey(new Key(level, i, j))) return false;
+            }
+        }
+        return true;
+    }
+
+    // Starts drawing a tile on the Fork/Join pool (if it isn't being drawn already).
+    private void request(final Key key) {
+        if (!pending.add(key)) return;
+        final int myGeneration = generation;
+        final CompiledExpression myProgram = program;
+        final EngineState mySnapshot = snapshot;
+        ForkJoinPool.commonPool().execute(new Runnable() {
+            public void run() {
+                // Zoomed somewhere else (or a new function) before we started: don't bother.
+                final BufferedImage image = (myGeneration == generation && key.level == level) ? renderTile(key, myProgram, mySnapshot) : null;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != generation) return; // setFunction already cleared 'pending'.
+                        pending.remove(key);
+                        if (image == null) return;
+                        tiles.put(key, image);
+                        repaint();
+                    }
+                });
+            }
+        });
+    }
+
+    // Draws one tile: the grid, the axes and the curve (on a pool thread).
+    private BufferedImage renderTile(Key key, CompiledExpression program, EngineState snapshot) {
+        double scale = scale(key.level);
+        long originX = key.i * TILE, originY = key.j * TILE; // The tile's top-left pixel on the grid.
+        BufferedImage image = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, TILE, TILE);
+
+        // Grid lines at "nice" numbers, and the axes.
+        double step = gridStep(scale);
+        for (double k = Math.ceil(originX * scale / step); k * step / scale < originX + TILE; k++) {
+            int px = (int) Math.round(k * step / scale - originX);
+            g.setColor(k == 0 ? AXIS_COLOR : GRID_COLOR);
+            g.drawLine(px, 0, px, TILE);
+        }
+        for (double k = Math.ceil(originY * scale / step); k * step / scale < originY + TILE; k++) {
+            int py = (int) Math.round(k * step / scale - originY);
+            g.setColor(k == 0 ? AXIS_COLOR : GRID_COLOR);
+            g.drawLine(0, py, TILE, py);
+        }
+
+        // The curve. The strips on both sides are drawn too, so a line near the edge isn't cut off.
+        if (program != null) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE); // Smooth steep lines.
+            g.setColor(CURVE_COLOR);
+            g.setStroke(new BasicStroke(2f));
+            for (long i = key.i - 1; i <= key.i + 1; i++) {
+                Curve curve = strip(new Key(key.level, i, 0), program, snapshot);
+                if (curve != null) g.draw(path(curve, scale, originX, originY));
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    // The points of one column of tiles (from the cache, or sampled now). null if it can't be sampled.
+    private Curve strip(Key key, CompiledExpression program, EngineState snapshot) {
+        synchronized (strips) {
+            Curve cached = strips.get(key);
+            if (cached != null) return cached;
+        }
+        double scale = scale(key.level);
+        Curve curve;
+        try { // Sampled without the lock, so other columns can be sampled at the same time.
+            curve = engine.sampleCurve(program, snapshot, key.i * TILE * scale, (key.i + 1) * TILE * scale, scale, scale);
+        } catch (RuntimeException e) {
+            return null; // e.g. it uses 'Ans' and there is none: just the axes.
+        }
+        synchronized (strips) {
+            strips.put(key, curve);
+        }
+        return curve;
+    }
+
+    // The curve as a line in the tile's pixels. A NaN point lifts the pen.
+    private static Path2D path(Curve curve, double scale, long originX, long originY) {
+        Path2D.Double path = new Path2D.Double();
+        boolean penDown = false;
+        for (int n = 0; n < curve.size(); n++) {
+            double y = curve.getY(n);
+            if (Double.isNaN(y)) {
+                penDown = false;
+                continue;
+            }
+            double px = curve.getX(n) / scale - originX;
+            double py = Math.max(-10000, Math.min(10000, -y / scale - originY)); // Java 2D draws huge numbers badly.
+            if (penDown) path.lineTo(px, py);
+            else path.moveTo(px, py);
+            penDown = true;
+        }
+        return path;
+    }
+
+    // The numbers along the axes (drawn on the frame, so they are never cut by a tile edge).
+    private void drawLabels(Graphics2D g, int width, int height, double scale) {
+        double step = gridStep(scale);
+        g.setColor(AXIS_COLOR);
+        g.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        // Along the X axis (or the bottom edge if the axis is off screen).
+        int axisY = (int) Math.max(12, Math.min(height - 4, Math.round(-viewY) + 12));
+        for (double k = Math.ceil(viewX * scale / step); k * step / scale < viewX + width; k++) {
+            if (k == 0) continue;
+            g.drawString(label(k * step), (int) Math.round(k * step / scale - viewX) + 2, axisY);
+        }
+        // Along the Y axis (or the left edge).
+        int axisX = (int) Math.max(2, Math.min(width - 40, Math.round(-viewX) + 3));
+        for (double k = Math.ceil(viewY * scale / step); k * step / scale < viewY + height; k++) {
+            if (k == 0) continue;
+            g.drawString(label(-k * step), axisX, (int) Math.round(k * step / scale - viewY) - 2);
+        }
+    }
+
+    // A grid step of 1, 2 or 5 times a power of ten, at least 64 pixels wide.
+    private static double gridStep(double scale) {
+        double raw = 64 * scale;
+        double power = Math.pow(10, Math.floor(Math.log10(raw)));
+        if (power >= raw) return power;
+        if (2 * power >= raw) return 2 * power;
+        if (5 * power >= raw) return 5 * power;
+        return 10 * power;
+    }
+
+    private static String label(double value) {
+        String text = String.format("%.6g", value); // e.g. "0.500000" or "1.00000e+06"
+        int exponent = text.indexOf('e');
+        String digits = exponent < 0 ? text : text.substring(0, exponent);
+        if (digits.indexOf('.') >= 0) digits = digits.replaceAll("\\.?0+$", ""); // "0.500000" -> "0.5"
+        return exponent < 0 ? digits : digits + text.substring(exponent);
+    }
+
+    // A tile (zoom level, column, row) or a strip (zoom level, column, 0).
+    private static final class Key {
+        final int level;
+        final long i, j;
+
+        Key(int level, long i, long j) {
+            this.level = level;
+            this.i = i;
+            this.j = j;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return level == key.level && i == key.i && j == key.j;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (31 * level + i) + j);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.engine.NumberFormatter; // Shows the results like the display does.
+import com.calculator.history.HistoryEntry; // One saved evaluation.
+import com.calculator.history.HistoryStore; // Where the history is kept.
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Future;
+
+// This is the "HIST" window: a scrollable, searchable list of every saved evaluation, newest first.
+// The history can hold millions of entries, so the list never loads them all: the list model
+// reads an entry from the store only when the list paints its row (JList only paints the rows
+// you can see, because every row has the same fixed height). A search runs on the worker thread
+// and only collects the matching sequence numbers.
+// Double-clicking an entry puts its expression back on the calculator's display. An entry whose
+// expression was too long to be saved whole (shown with "…") can't be used again: it would be
+// a different expression.
+// OOP Concept: Inheritance. It IS-A JDialog, and its list model IS-A AbstractListModel.
+class HistoryDialog extends JDialog {
+
+    private final HistoryStore store;
+    private final ExecutorService worker; // The UI's worker threads (searches run there).
+    private final EntryModel model = new EntryModel();
+    private final JTextField searchField = new JTextField();
+    private final JLabel status = new JLabel(" ");
+    private final JList<String> list = new JList<String>(model);
+    private final javax.swing.Timer searchTimer; // Waits for typing to pause before searching.
+    private Future<?> search = null; // The search in progress, or null.
+    private int searchGeneration = 0;
+
+    // What to do with an expression the user picked.
+    interface Picker {
+        void pick(String expression);
+    }
+
+    HistoryDialog(JFrame owner, HistoryStore store, ExecutorService worker, final Picker picker) {
+        super(owner, "History", false);
+        this.store = store;
+        this.worker = worker;
+
+        list.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        list.setFixedCellHeight(22); // Fixed heights: JList never has to look at rows it doesn't show.
+        list.setPrototypeCellValue("0000000000000000000000000000000000000000");
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2) return;
+                int row = list.locationToIndex(e.getPoint());
+                HistoryEntry entry = row < 0 ? null : model.entryAt(row);
+                if (entry == null) return;
+                if (entry.isTruncated()) { // Only the start of it was saved.
+                    Toolkit.getDefaultToolkit().beep();
+                    status.setText(" This expression was too long to save whole, so it can't be reused");
+                    return;
+                }
+                picker.pick(entry.getExpression());
+            }
+        });
+
+        searchTimer = new javax.swing.Timer(200, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startSearch(searchField.getText());
+            }
+        });
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        top.add(new JLabel("Search:"), BorderLayout.WEST);
+        top.add(searchField, BorderLayout.CENTER);
+        setLayout(new BorderLayout());
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(480, 520);
+        setLocationRelativeTo(owner);
+        refresh();
+    }
+
+    // Shows all entries again (e.g. after new evaluations while the window was closed).
+    void refresh() {
+        if (searchField.getText().isEmpty()) {
+            model.showAll();
+            status.setText(" " + model.getSize() + " entries");
+        } else {
+            startSearch(searchField.getText());
+        }
+    }
+
+    // Searches on the worker thread; the list shows the matches when it is done.
+    private void startSearch(final String query) {
+        if (search != null) search.cancel(true); // A newer search replaces the old one.
+        final int myGeneration = ++searchGeneration;
+        if (query.isEmpty()) {
+            search = null;
+            refresh();
+            return;
+        }
+        status.setText(" Searching…");
+        Runnable task = new Runnable() {
+            public void run() {
+                final long[] matches = store.search(query);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != searchGeneration) return; // A newer search is running.
+                        search = null;
+                        model.showMatches(matches);
+                        status.setText(" " + matches.length + " matches");
+                    }
+                });
+            }
+        };
+        try {
+            search = worker.submit(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            search = null;
+            status.setText(" Busy, try again");
+        }
+    }
+
+    // The rows of the list: either every entry (newest first) or the matches of a search.
+    // Only the rows being painted are read from the store.
+    private final class EntryModel extends AbstractListModel<String> {
+
+        private long end; // One past the newest entry when the list was (re)filled.
+        private int size;
+        private long[] matches = null; // The sequence numbers of a search's matches, or null for all.
+
+        void showAll() {
+            int old = size;
+            matches = null;
+            end = store.getEndSequence();
+            size = store.size();
+            changed(old);
+        }
+
+        void showMatches(long[] found) {
+            int old = size;
+            matches = found;
+            size = found.length;
+            changed(old);
+        }
+
+        private void changed(int oldSize) {
+            if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+            if (size > 0) fireIntervalAdded(this, 0, size - 1);
+        }
+
+        // The entry shown in 'row', or null if it has been compacted away since.
+        HistoryEntry entryAt(int row) {
+            long sequence = (matches != null) ? matches[row] : end - 1 - row;
+            return store.read(sequence);
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int row) {
+            HistoryEntry entry = entryAt(row);
+            if (entry == null) return "";
+            String expression = entry.getExpression() + (entry.isTruncated() ? "…" : "");
+            if (entry.isError()) return expression + "  → " + entry.getError();
+            double result = entry.getResult();
+            return expression + " = " + NumberFormatter.format(result);
+        }
+    }
+}
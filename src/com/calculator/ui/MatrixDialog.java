@@ -0,0 +1,152 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.engine.CalculatorEngine; // Evaluates the matrix expressions.
+import com.calculator.engine.EngineState;
+import com.calculator.engine.Matrix;
+import com.calculator.engine.NumberFormatter;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// This is the "MAT" window: type a matrix expression (e.g. "[[1,2],[3,4]]", "A*B" or "solve(A,[1,2])",
+// see CalculatorEngine.evaluateMatrix), press "=", and optionally store the answer in A..F.
+// The math runs on the worker thread, so a 2000 x 2000 inverse doesn't freeze the window.
+// Matrices live as long as the calculator runs (they are not saved with the history).
+// OOP Concept: Composition. The window HAS-A reference to the engine that does the math.
+class MatrixDialog extends JDialog {
+
+    private static final int SHOW_ROWS = 12, SHOW_COLS = 8; // Bigger answers are shown cut short.
+    private static final String[] TARGETS = {"—", "A", "B", "C", "D", "E", "F"};
+
+    private final CalculatorEngine engine;
+    private final ExecutorService worker; // The UI's worker threads (all the math runs there).
+    private final JTextField expressionField = new JTextField();
+    private final JComboBox<String> storeIn = new JComboBox<String>(TARGETS);
+    private final JTextArea answer = new JTextArea(12, 40);
+    private final JLabel status = new JLabel(" ");
+    private int generation = 0; // Goes up with every "=", so a slow older one is ignored.
+
+    MatrixDialog(JFrame owner, CalculatorEngine engine, ExecutorService worker) {
+        super(owner, "Matrix", false);
+        this.engine = engine;
+        this.worker = worker;
+
+        ActionListener evaluate = new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                evaluate();
+            }
+        };
+        expressionField.addActionListener(evaluate); // Enter in the field works too.
+        JButton equals = new JButton("=");
+        equals.addActionListener(evaluate);
+        answer.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        answer.setEditable(false);
+
+        JPanel store = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        store.add(new JLabel("Store in:"));
+        store.add(storeIn);
+        store.add(equals);
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        top.add(expressionField, BorderLayout.CENTER);
+        top.add(store, BorderLayout.EAST);
+        setLayout(new BorderLayout());
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(answer), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(640, 360);
+        setLocationRelativeTo(owner);
+        showStored();
+    }
+
+    // Evaluates the expression on the worker thread, then shows (and maybe stores) the answer.
+    private void evaluate() {
+        final String expression = expressionField.getText();
+        final String target = (String) storeIn.getSelectedItem();
+        final EngineState snapshot = engine.getSnapshot();
+        final int myGeneration = ++generation;
+        status.setText(" Working…");
+        Runnable task = new Runnable() {
+            public void run() {
+                Matrix matrix = null;
+                String formatted = null;
+                String error = null;
+                try {
+                    matrix = engine.evaluateMatrix(expression, snapshot);
+                    formatted = format(matrix); // Formatting a big matrix is work too.
+                } catch (RuntimeException e) {
+                    matrix = null;
+                    error = e.getMessage() == null ? "Error" : e.getMessage();
+                } catch (Throwable e) { // e.g. OutOfMemoryError: it must still end the "Working…" state.
+                    matrix = null;
+                    error = "Error (" + e.getClass().getSimpleName() + ")";
+                }
+                final Matrix result = matrix;
+                final String failure = error;
+                final String text = formatted;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != generation) return; // A newer "=" is on its way.
+                        if (result == null) {
+                            status.setText(" " + failure);
+                            return;
+                        }
+                        answer.setText(text);
+                        if (target.length() == 1) engine.storeMatrix(target, result);
+                        showStored();
+                    }
+                });
+            }
+        };
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            status.setText(" Busy, try again");
+        }
+    }
+
+    // Shows which letters hold a matrix, e.g. " A: 2×2   B: 3×1".
+    private void showStored() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i < TARGETS.length; i++) {
+            Matrix m = engine.getMatrix(TARGETS[i]);
+            if (m != null) text.append(' ').append(TARGETS[i]).append(": ").append(m.getRows()).append('×').append(m.getCols()).append("  ");
+        }
+        status.setText(text.length() == 0 ? " No matrices stored" : text.toString());
+    }
+
+    // The answer in lined-up columns. A 1 x 1 answer (e.g. det) is shown as a plain number.
+    static String format(Matrix m) {
+        if (m.getRows() == 1 && m.getCols() == 1) return number(m.get(0, 0));
+        int rows = Math.min(m.getRows(), SHOW_ROWS), cols = Math.min(m.getCols(), SHOW_COLS);
+        String[][] cells = new String[rows][cols];
+        int width = 1;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                cells[r][c] = number(m.get(r, c));
+                width = Math.max(width, cells[r][c].length());
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(m.getRows()).append(" × ").append(m.getCols()).append('\n');
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                for (int pad = cells[r][c].length(); pad < width + 2; pad++) text.append(' ');
+                text.append(cells[r][c]);
+            }
+            if (cols < m.getCols()) text.append("  …");
+            text.append('\n');
+        }
+        if (rows < m.getRows()) text.append("  ⋮\n");
+        return text.toString();
+    }
+
+    // One number (no ".0" for whole numbers).
+    private static String number(double v) {
+        return NumberFormatter.format(v);
+    }
+}
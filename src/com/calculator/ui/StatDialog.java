@@ -0,0 +1,179 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.batch.StatRunner; // Reads big CSV files in parallel.
+import com.calculator.engine.CalculatorEngine; // Where the results are stored (A..F).
+import com.calculator.engine.EngineState;
+import com.calculator.engine.StatAccumulator; // Collects the statistics in one pass.
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// This is the "STAT" window. Type one number per line (or "x,y" pairs, for regression), or load
+// a CSV file, and it shows the statistics and stores them in A..F for later expressions
+// (A = mean, B = sx, C = min, D = max, E = intercept, F = slope; see StatAccumulator.storeInto).
+// The numbers are added up on the worker thread; a file is read in parallel (see StatRunner).
+// OOP Concept: Composition. The window HAS-A StatAccumulator that does the math.
+class StatDialog extends JDialog {
+
+    private final CalculatorEngine engine;
+    private final ExecutorService worker; // The UI's worker threads (all the math runs there).
+    private final Stored stored;
+    private final JTextArea data = new JTextArea(10, 20);
+    private final JTextArea results = new JTextArea(10, 30);
+    private final JTextField xColumn = new JTextField("1", 3);
+    private final JTextField yColumn = new JTextField("", 3);
+    private final JLabel status = new JLabel(" ");
+    private int generation = 0; // Goes up with every calculation, so a slow older one is ignored.
+
+    // Called after the results were put into A..F (so the calculator can save them).
+    interface Stored {
+        void stored(StatAccumulator stats);
+    }
+
+    StatDialog(JFrame owner, CalculatorEngine engine, ExecutorService worker, Stored stored) {
+        super(owner, "Statistics", false);
+        this.engine = engine;
+        this.worker = worker;
+        this.stored = stored;
+
+        data.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        results.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        results.setEditable(false);
+
+        JButton calculate = new JButton("Calculate");
+        calculate.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                calculateTyped();
+            }
+        });
+        JButton load = new JButton("Load CSV…");
+        load.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                loadCsv();
+            }
+        });
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(calculate);
+        buttons.add(load);
+        buttons.add(new JLabel("x column:"));
+        buttons.add(xColumn);
+        buttons.add(new JLabel("y column:"));
+        buttons.add(yColumn);
+
+        JPanel center = new JPanel(new GridLayout(1, 2, 5, 5));
+        center.add(new JScrollPane(data));
+        center.add(new JScrollPane(results));
+        setLayout(new BorderLayout());
+        add(new JLabel(" One number per line, or x,y pairs:"), BorderLayout.NORTH);
+        add(center, BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(buttons, BorderLayout.NORTH);
+        bottom.add(status, BorderLayout.SOUTH);
+        add(bottom, BorderLayout.SOUTH);
+        setSize(640, 420);
+        setLocationRelativeTo(owner);
+    }
+
+    // "Calculate": the typed numbers. Each one may be an expression (e.g. "π/2").
+    private void calculateTyped() {
+        final String text = data.getText();
+        final EngineState snapshot = engine.getSnapshot();
+        run(new Job() {
+            public StatAccumulator compute() {
+                StatAccumulator stats = null;
+                for (String line : text.split("\n")) {
+                    if (line.trim().isEmpty()) continue;
+                    String[] values = line.split("[,;\t]");
+                    if (stats == null) stats = new StatAccumulator(values.length == 2); // The first line decides.
+                    if (values.length != (stats.isPaired() ? 2 : 1)) throw new RuntimeException("Syntax Error"); // Mixed lines.
+                    if (stats.isPaired()) stats.add(number(values[0], snapshot), number(values[1], snapshot));
+                    else stats.add(number(values[0], snapshot));
+                }
+                if (stats == null) throw new RuntimeException("No Data");
+                return stats;
+            }
+        });
+    }
+
+    // "Load CSV": a file, read in parallel.
+    private void loadCsv() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        final Path file = chooser.getSelectedFile().toPath();
+        final int x, y;
+        try {
+            x = Integer.parseInt(xColumn.getText().trim());
+            y = yColumn.getText().trim().isEmpty() ? 0 : Integer.parseInt(yColumn.getText().trim());
+        } catch (NumberFormatException e) {
+            status.setText(" Columns must be numbers (from 1)");
+            return;
+        }
+        run(new Job() {
+            public StatAccumulator compute() throws IOException {
+                StatRunner.Result result = StatRunner.read(file, x, y, Runtime.getRuntime().availableProcessors());
+                if (result.stats.getCount() == 0) throw new RuntimeException("No Data");
+                return result.stats;
+            }
+        });
+    }
+
+    // Some work that produces statistics (run on the worker thread).
+    private interface Job {
+        StatAccumulator compute() throws IOException;
+    }
+
+    // Runs 'job' on the worker thread, then shows and stores the results.
+    private void run(final Job job) {
+        final int myGeneration = ++generation;
+        status.setText(" Working…");
+        Runnable task = new Runnable() {
+            public void run() {
+                StatAccumulator stats = null;
+                String error = null;
+                try {
+                    stats = job.compute();
+                } catch (IOException e) {
+                    error = "Can't read the file: " + e.getMessage();
+                } catch (RuntimeException e) {
+                    error = e.getMessage() == null ? "Error" : e.getMessage();
+                }
+                final StatAccumulator result = stats;
+                final String failure = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != generation) return; // A newer calculation is on its way.
+                        if (result == null) {
+                            status.setText(" " + failure);
+                            return;
+                        }
+                        results.setText(result.toString());
+                        result.storeInto(engine);
+                        stored.stored(result);
+                        status.setText(" Stored in A..D" + (result.isPaired() ? ", E, F" : ""));
+                    }
+                });
+            }
+        };
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            status.setText(" Busy, try again");
+        }
+    }
+
+    // A typed value: a plain number, or else an expression.
+    private double number(String text, EngineState snapshot) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return engine.evaluate(text.trim(), snapshot);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.calculator.ui; // This file belongs to the 'com.calculator.ui' package.
+
+import com.calculator.engine.CalculatorEngine; // Does the math.
+import com.calculator.engine.CompiledExpression; // f(X), parsed once for the whole table.
+import com.calculator.engine.EngineState; // The variables every row sees.
+import com.calculator.engine.NumberFormatter;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Future;
+
+// This is the "TABLE" window: f(X) for X = start, start + step, ... up to end.
+// A table can have tens of millions of rows, so it is never built in memory. The rows are
+// computed in blocks of BLOCK_SIZE, only when the table paints them: each block evaluates the
+// parsed expression for all its X values at once (the engine's X sweep) on the worker thread,
+// one block at a time, the newest request first. Only the last MAX_BLOCKS blocks are kept.
+// "Export CSV" computes the blocks again, one after another, and writes them straight to the file.
+// OOP Concept: Inheritance. It IS-A JDialog, and its table model IS-A AbstractTableModel.
+class TableDialog extends JDialog {
+
+    static final int BLOCK_SIZE = 4096; // Rows computed together.
+    private static final int MAX_BLOCKS = 64; // Blocks kept (about 260,000 rows).
+    static final long MAX_ROWS = 100000000L; // More rows than this don't fit in a JTable's scroll bar.
+
+    private final CalculatorEngine engine;
+    private final ExecutorService worker; // The UI's worker threads (all the math runs there).
+    private final JTextField functionField = new JTextField();
+    private final JTextField startField = new JTextField("0");
+    private final JTextField endField = new JTextField("10");
+    private final JTextField stepField = new JTextField("1");
+    private final JLabel status = new JLabel(" ");
+    private final RowModel model = new RowModel();
+    private final JTable table = new JTable(model);
+    private Future<?> export = null; // The export in progress, or null.
+    private int exportGeneration = 0; // Goes up with every export, so a cancelled one's messages are ignored.
+    private int showGeneration = 0; // Goes up with every "Show", so a slow older one is ignored.
+
+    TableDialog(JFrame owner, CalculatorEngine engine, ExecutorService worker) {
+        super(owner, "Table", false);
+        this.engine = engine;
+        this.worker = worker;
+
+        table.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        table.setRowHeight(20); // One height for all rows: JTable never has to look at rows it doesn't show.
+        table.setFillsViewportHeight(true);
+
+        JButton show = new JButton("Show");
+        show.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startTable();
+            }
+        });
+        JButton exportButton = new JButton("Export CSV…");
+        exportButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                exportCsv();
+            }
+        });
+
+        JPanel fields = new JPanel(new GridLayout(0, 2, 5, 5));
+        fields.add(new JLabel("f(X) ="));
+        fields.add(functionField);
+        fields.add(new JLabel("Start:"));
+        fields.add(startField);
+        fields.add(new JLabel("End:"));
+        fields.add(endField);
+        fields.add(new JLabel("Step:"));
+        fields.add(stepField);
+        fields.add(show);
+        fields.add(exportButton);
+        fields.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        setLayout(new BorderLayout());
+        add(fields, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(420, 560);
+        setLocationRelativeTo(owner);
+    }
+
+    // Puts an expression (e.g. the calculator's display) in the f(X) field.
+    void setExpression(String expression) {
+        functionField.setText(expression);
+    }
+
+    // "Show": parses f(X) and the range on the worker thread, then shows the (still empty) table.
+    private void startTable() {
+        final String function = functionField.getText();
+        final String start = startField.getText(), end = endField.getText(), step = stepField.getText();
+        final EngineState snapshot = engine.getSnapshot(); // Every row sees the variables as they are now.
+        final int myGeneration = ++showGeneration;
+        status.setText(" Working…");
+        Runnable task = new Runnable() {
+            public void run() {
+                Sweep sweep = null;
+                String error = null;
+                try {
+                    sweep = new Sweep(engine, engine.compile(function), snapshot,
+                        engine.evaluate(start, snapshot), engine.evaluate(end, snapshot), engine.evaluate(step, snapshot));
+                } catch (RuntimeException e) {
+                    error = message(e);
+                }
+                final Sweep result = sweep;
+                final String failure = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration != showGeneration) return; // A newer "Show" is on its way.
+                        if (result == null) {
+                            status.setText(" " + failure);
+                            return;
+                        }
+                        model.show(result);
+                        status.setText(" " + result.rows + " rows");
+                    }
+                });
+            }
+        };
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            status.setText(" Busy, try again");
+        }
+    }
+
+    // "Export CSV": writes every row of the table shown now to a file, block by block.
+    private void exportCsv() {
+        final Sweep sweep = model.sweep;
+        if (sweep == null) {
+            status.setText(" Press Show first");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("table.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        final Path file = chooser.getSelectedFile().toPath();
+
+        if (export != null) export.cancel(true); // A new export replaces the old one.
+        final int myGeneration = ++exportGeneration;
+        status.setText(" Exporting…");
+        Runnable task = new Runnable() {
+            public void run() {
+                String done;
+                try {
+                    long written = writeCsv(sweep, file, myGeneration);
+                    done = written == sweep.rows ? " Exported " + written + " rows" : " Export cancelled";
+                } catch (IOException e) {
+                    done = " Export failed: " + e.getMessage();
+                }
+                final String text = done;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (myGeneration == exportGeneration) status.setText(text);
+                    }
+                });
+            }
+        };
+        try {
+            export = worker.submit(task);
+        } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+            export = null;
+            status.setText(" Busy, try again");
+        }
+    }
+
+    // Writes "X,f(X)" lines (numbers in full precision: the shortest text that reads back as the
+    // same double, see NumberFormatter) and returns how many rows were written.
+    // It stops early if the thread is interrupted (a newer export was started).
+    private long writeCsv(Sweep sweep, Path file, final int myGeneration) throws IOException {
+        long written = 0;
+        int blocks = sweep.blockCount();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("X,f(X)\n");
+            for (int block = 0; block < blocks; block++) {
+                if (Thread.currentThread().isInterrupted()) break;
+                Block rows = sweep.compute(block);
+                for (int i = 0; i < rows.values.length; i++) {
+                    out.write(NumberFormatter.toShortestString(rows.xs[i]));
+                    out.write(',');
+                    out.write(rows.errors != null && rows.errors[i] != null ? rows.errors[i] : NumberFormatter.toShortestString(rows.values[i]));
+                    out.write('\n');
+                }
+                written += rows.values.length;
+                if (block % 256 == 255) { // Show the progress now and then.
+                    final long percent = written * 100 / sweep.rows;
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            if (myGeneration == exportGeneration) status.setText(" Exporting… " + percent + "%");
+                        }
+                    });
+                }
+            }
+        }
+        return written;
+    }
+
+    // A number as the calculator shows it (no ".0" for whole numbers).
+    private static String format(double value) {
+        return NumberFormatter.format(value);
+    }
+
+    // An error's message, as the calculator shows it.
+    private static String message(RuntimeException e) {
+        return e.getMessage() == null ? "Error" : e.getMessage();
+    }
+
+    // One table: f(X) (parsed once), the variables, and the X values.
+    // OOP Concept: Encapsulation. It is immutable, so the worker thread can use it safely.
+    private static final class Sweep {
+        final CalculatorEngine engine;
+        final CompiledExpression program;
+        final EngineState snapshot;
+        final double start, step;
+        final long rows;
+        // If start and step are short decimals (like 0.1), X = (startUnits + row * stepUnits) / scale
+        // with whole numbers, so row 4 of "-1 step 0.1" is exactly -0.6, not -0.6000000000000001.
+        // 'scale' is 0 if they aren't.
+        private final double startUnits, stepUnits, scale;
+
+        Sweep(CalculatorEngine engine, CompiledExpression program, EngineState snapshot, double start, double end, double step) {
+            double count = Math.floor((end - start) / step + 1e-9) + 1; // The 1e-9 keeps "0 to 1 step 0.1" at 11 rows.
+            if (Double.isNaN(count) || Double.isInfinite(count) || count < 1) throw new RuntimeException("Math Error"); // e.g. step 0, or the wrong sign.
+            if (count > MAX_ROWS) throw new RuntimeException("Too Many Rows");
+            this.engine = engine;
+            this.program = program;
+            this.snapshot = snapshot;
+            this.start = start;
+            this.step = step;
+            this.rows = (long) count;
+
+            double found = 0;
+            for (double power = 1; power <= 1e15 && found == 0; power *= 10) {
+                double a = Math.rint(start * power), b = Math.rint(step * power);
+                boolean exact = a / power == start && b / power == step;
+                if (exact && Math.abs(a) + this.rows * Math.abs(b) < 0x1p53) found = power; // Whole numbers stay exact below 2^53.
+            }
+            this.scale = found;
+            this.startUnits = Math.rint(start * found);
+            this.stepUnits = Math.rint(step * found);
+        }
+
+        // The X of a row (computed from the row number, so errors never add up over millions of steps).
+        double x(long row) {
+            if (scale != 0) return (startUnits + row * stepUnits) / scale;
+            return start + row * step;
+        }
+
+        int blockCount() {
+            return (int) ((rows + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        }
+
+        // Computes one block of rows (on the worker thread).
+        Block compute(int block) {
+            long first = (long) block * BLOCK_SIZE;
+            int n = (int) Math.min(BLOCK_SIZE, rows - first);
+            double[] xs = new double[n];
+            for (int i = 0; i < n; i++) xs[i] = x(first + i);
+            try {
+                return new Block(xs, engine.evaluate(program, xs, snapshot), null); // All the X values at once.
+            } catch (RuntimeException e) {
+                // Some row failed (e.g. Division by Zero at X = 0): do the rows one by one, so each shows its own result.
+                double[] values = new double[n];
+                String[] errors = new String[n];
+                double[] one = new double[1];
+                for (int i = 0; i < n; i++) {
+                    one[0] = xs[i];
+                    try {
+                        values[i] = engine.evaluate(program, one, snapshot)[0];
+                    } catch (RuntimeException rowError) {
+                        values[i] = Double.NaN;
+                        errors[i] = message(rowError);
+                    }
+                }
+                return new Block(xs, values, errors);
+            }
+        }
+    }
+
+    // The X values and results of one block of rows. 'errors' is null if no row failed.
+    private static final class Block {
+        final double[] xs;
+        final double[] values;
+        final String[] errors;
+
+        Block(double[] xs, double[] values, String[] errors) {
+            this.xs = xs;
+            this.values = values;
+            this.errors = errors;
+        }
+    }
+
+    // The rows of the table. A block that isn't computed yet shows "…" until it arrives.
+    // Only used on the Swing thread.
+    private final class RowModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        Sweep sweep = null; // The table shown, or null.
+        private int generation = 0; // Goes up with every new table, so late blocks are ignored.
+        // The computed blocks, least recently used first (the oldest is dropped when there are too many).
+        private final Map<Integer, Block> blocks = new LinkedHashMap<Integer, Block>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+                return size() > MAX_BLOCKS;
+            }
+        };
+        private final Deque<Integer> wanted = new ArrayDeque<Integer>(); // Blocks to compute, newest request first.
+        private final Set<Integer> requested = new HashSet<Integer>(); // Blocks waiting or being computed.
+        private boolean loading = false; // True while a block is being computed.
+
+        void show(Sweep newSweep) {
+            sweep = newSweep;
+            generation++;
+            blocks.clear();
+            wanted.clear();
+            requested.clear();
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return sweep == null ? 0 : (int) sweep.rows;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "X" : "f(X)";
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) return format(sweep.x(row)); // X needs no computing.
+            int block = row / BLOCK_SIZE;
+            Block rows = blocks.get(block);
+            if (rows == null) {
+                request(block);
+                return "…";
+            }
+            int i = row - block * BLOCK_SIZE;
+            if (rows.errors != null && rows.errors[i] != null) return rows.errors[i];
+            return format(rows.values[i]);
+        }
+
+        private void request(int block) {
+            if (requested.add(block)) wanted.push(block);
+            loadNext();
+        }
+
+        // Starts computing the newest wanted block that is still on screen (if none is being computed).
+        private void loadNext() {
+            if (loading) return;
+            while (!wanted.isEmpty()) {
+                final int block = wanted.pop();
+                if (!isOnScreen(block)) { // Scrolled past it: skip it (it is asked for again if it comes back).
+                    requested.remove(block);
+                    continue;
+                }
+                loading = true;
+                final int myGeneration = generation;
+                final Sweep mySweep = sweep;
+                Runnable task = new Runnable() {
+                    public void run() {
+                        final Block rows = mySweep.compute(block);
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                loading = false;
+                                if (myGeneration == generation) {
+                                    requested.remove(block);
+                                    blocks.put(block, rows);
+                                    int first = block * BLOCK_SIZE;
+                                    fireTableRowsUpdated(first, first + rows.values.length - 1);
+                                }
+                                loadNext();
+                            }
+                        });
+                    }
+                };
+                try {
+                    worker.execute(task);
+                } catch (RejectedExecutionException e) { // The queue is full (see CalculatorUI.newWorkerPool).
+                    loading = false; // Nothing is coming, so don't wait for it.
+                    requested.remove(block); // Asked for again the next time that part is painted.
+                }
+                return;
+            }
+        }
+
+        // True if the block is shown now (or is next to one that is).
+        private boolean isOnScreen(int block) {
+            Rectangle visible = table.getVisibleRect();
+            int first = table.rowAtPoint(new Point(0, visible.y));
+            int last = table.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+            if (first < 0) first = 0;
+            if (last < 0) last = getRowCount() - 1;
+            return block >= first / BLOCK_SIZE - 1 && block <= last / BLOCK_SIZE + 1;
+        }
+    }
+}